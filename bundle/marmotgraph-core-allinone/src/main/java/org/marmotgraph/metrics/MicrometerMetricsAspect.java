@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.metrics;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Observes the boundaries of the services: every method of a {@link org.marmotgraph.commons.api} client
+ * ("marmotgraph.client") and every public method of a repository ("marmotgraph.repository" - which corresponds to the
+ * AQL queries executed on behalf of the repository method). The observations are recorded as Micrometer timers
+ * (exposed at /actuator/prometheus) and - if a tracer is available - as spans, so a single request can be followed
+ * across the in-process service clients down to the database. Since the pointcuts only match these boundaries, the
+ * overhead is low - it can be removed completely by setting "org.marmotgraph.runtimeMetrics" to false.
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(value = "org.marmotgraph.runtimeMetrics", havingValue = "true", matchIfMissing = true)
+public class MicrometerMetricsAspect {
+
+    private final ObservationRegistry observationRegistry;
+
+    public MicrometerMetricsAspect(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    @Around("execution(public * org.marmotgraph.commons.api.*.Client+.*(..))")
+    public Object observeClient(final ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
+        return observe(proceedingJoinPoint, "marmotgraph.client", "api");
+    }
+
+    @Around("execution(public * org.marmotgraph..controller.*Repository.*(..))")
+    public Object observeRepository(final ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
+        return observe(proceedingJoinPoint, "marmotgraph.repository", "repository");
+    }
+
+    private Object observe(ProceedingJoinPoint proceedingJoinPoint, String name, String classTag) throws Throwable {
+        final String className = ClassUtils.getUserClass(proceedingJoinPoint.getTarget()).getSimpleName();
+        final String methodName = proceedingJoinPoint.getSignature().getName();
+        final Observation observation = Observation.createNotStarted(name, observationRegistry)
+                .contextualName(className + "#" + methodName)
+                .lowCardinalityKeyValue(classTag, className)
+                .lowCardinalityKeyValue("method", methodName)
+                .start();
+        String outcome = "success";
+        try (Observation.Scope ignored = observation.openScope()) {
+            return proceedingJoinPoint.proceed();
+        } catch (Throwable throwable) {
+            outcome = "error";
+            observation.error(throwable);
+            throw throwable;
+        } finally {
+            observation.lowCardinalityKeyValue("outcome", outcome).stop();
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.tracing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.tracing.handler.DefaultTracingObservationHandler;
+import io.micrometer.tracing.otel.bridge.OtelCurrentTraceContext;
+import io.micrometer.tracing.otel.bridge.OtelTracer;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.marmotgraph.graphdb.structure.controller.CacheEvictionCoalescer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Verifies the instrumentation with the OpenTelemetry bridge which is used for the export in the "otlp-tracing"
+ * profile (this test is only compiled and executed with this profile).
+ */
+class OtelTracingBridgeTest {
+
+    private final InMemorySpanExporter spanExporter = InMemorySpanExporter.create();
+    private final SdkTracerProvider tracerProvider = SdkTracerProvider.builder().setSampler(Sampler.alwaysOn()).addSpanProcessor(SimpleSpanProcessor.create(spanExporter)).build();
+    private final ObservationRegistry observationRegistry = ObservationRegistry.create();
+
+    OtelTracingBridgeTest() {
+        final OtelTracer tracer = new OtelTracer(tracerProvider.get("marmotgraph"), new OtelCurrentTraceContext(), event -> {
+        });
+        observationRegistry.observationConfig().observationHandler(new DefaultTracingObservationHandler(tracer));
+    }
+
+    @AfterEach
+    void tearDown() {
+        tracerProvider.close();
+    }
+
+    private SpanData getSpan(String name) {
+        return spanExporter.getFinishedSpanItems().stream().filter(s -> s.getName().equals(name)).findFirst().orElseThrow();
+    }
+
+    @Test
+    void deferredEvictionIsExportedAsChildOfTheRequest() {
+        //Given
+        CacheEvictionCoalescer<String> coalescer = new CacheEvictionCoalescer<>("test", new SimpleMeterRegistry(), observationRegistry);
+        Observation write = Observation.createNotStarted("write", observationRegistry).contextualName("write").start();
+        try (Observation.Scope ignored = write.openScope()) {
+            coalescer.request("space", 1000, true);
+        }
+        write.stop();
+        //The request is gone by the time the eviction is executed - only the coalescer keeps its observation
+        write = null;
+        System.gc();
+        Map<String, Boolean> executed = new HashMap<>();
+
+        //When
+        coalescer.executeDue(1000, executed::put);
+
+        //Then
+        assertEquals(Map.of("space", true), executed);
+        SpanData writeSpan = getSpan("write");
+        SpanData evictionSpan = getSpan("coalesced eviction of test");
+        assertEquals(writeSpan.getTraceId(), evictionSpan.getTraceId());
+        assertEquals(writeSpan.getSpanId(), evictionSpan.getParentSpanId());
+        assertEquals("test", evictionSpan.getAttributes().asMap().entrySet().stream().filter(e -> e.getKey().getKey().equals("cache")).findFirst().orElseThrow().getValue());
+    }
+}
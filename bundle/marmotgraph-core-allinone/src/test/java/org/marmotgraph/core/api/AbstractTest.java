@@ -71,7 +71,7 @@ public abstract class AbstractTest {
 
     protected void beAdmin() {
         User user = new User("bobEverythingGoes", "Admin", "fakeAdmin@ebrains.eu", "Bob Everything", "Goes", "admin");
-        final List<UUID> invitationRoles = testContext.getAuthenticationRepository().getInvitationRoles(USER_ID.toString());
+        final List<UUID> invitationRoles = new ArrayList<>(testContext.getInvitationIndex().getInvitations(USER_ID.toString()));
         UserWithRoles userWithRoles = new UserWithRoles(user, ADMIN_ROLE, ADMIN_CLIENT_ROLE, invitationRoles,"testClient");
         Mockito.doAnswer(a -> user).when(testContext.getAuthentication()).getMyUserInfo();
         Mockito.doAnswer(a -> userWithRoles).when(testContext.getAuthentication()).getRoles(Mockito.anyBoolean());
@@ -84,7 +84,7 @@ public abstract class AbstractTest {
             beAdmin();
         } else {
             User user = new User("alice", "Alice", "fakeAlice@ebrains.eu", "Alice", "User", USER_ID.toString());
-            final List<UUID> invitationRoles = testContext.getAuthenticationRepository().getInvitationRoles(USER_ID.toString());
+            final List<UUID> invitationRoles = new ArrayList<>(testContext.getInvitationIndex().getInvitations(USER_ID.toString()));
             UserWithRoles userWithRoles = new UserWithRoles(user, currentRoles.stream().filter(Objects::nonNull).map(Role::getName).collect(Collectors.toList()), ADMIN_CLIENT_ROLE, invitationRoles,"testClient");
             Mockito.doAnswer(a -> user).when(testContext.getAuthentication()).getMyUserInfo();
             Mockito.doAnswer(a -> userWithRoles).when(testContext.getAuthentication()).getRoles(Mockito.anyBoolean());
@@ -94,7 +94,7 @@ public abstract class AbstractTest {
     protected void beUnauthorized() {
         User user = new User("joeCantDoAThing", "Joe Cant Do A Thing", "fakeUnauthorized@ebrains.eu", "Joe Cant Do A", "Thing",  USER_ID.toString());
         //It's the user not having any righexts - the client is still the same with full rights
-        final List<UUID> invitationRoles = testContext.getAuthenticationRepository().getInvitationRoles(USER_ID.toString());
+        final List<UUID> invitationRoles = new ArrayList<>(testContext.getInvitationIndex().getInvitations(USER_ID.toString()));
         UserWithRoles userWithRoles = new UserWithRoles(user, Collections.emptyList(), ADMIN_CLIENT_ROLE, invitationRoles,"testClient");
         Mockito.doAnswer(a -> user).when(testContext.getAuthentication()).getMyUserInfo();
         Mockito.doAnswer(a -> userWithRoles).when(testContext.getAuthentication()).getRoles(Mockito.anyBoolean());
@@ -173,5 +173,8 @@ public abstract class AbstractTest {
             //Also remove the caches to ensure we are in sync with the database (both empty)
             testContext.getCacheManager().getCacheNames().forEach(c -> testContext.getCacheManager().getCache(c).clear());
         }
+        if(testContext.getInvitationIndex()!=null){
+            testContext.getInvitationIndex().invalidateAll();
+        }
     }
 }
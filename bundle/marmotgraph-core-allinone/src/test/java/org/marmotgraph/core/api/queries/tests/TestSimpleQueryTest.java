@@ -139,6 +139,6 @@ public class TestSimpleQueryTest extends AbstractTest {
 
     @Override
     protected void run() {
-         response = queries.runDynamicQuery(this.query, defaultPaginationParam, stage, null, null, new HashMap<>());
+         response = queries.runDynamicQuery(this.query, defaultPaginationParam, stage, null, null, null, new HashMap<>());
     }
 }
@@ -27,7 +27,7 @@ package org.marmotgraph.core.api.testutils;
 import org.marmotgraph.MarmotGraphCoreAllInOne;
 import org.marmotgraph.arango.commons.model.ArangoDatabaseProxy;
 import org.marmotgraph.authentication.api.AuthenticationAPI;
-import org.marmotgraph.authentication.controller.AuthenticationRepository;
+import org.marmotgraph.authentication.controller.InvitationIndex;
 import org.marmotgraph.authentication.keycloak.KeycloakClient;
 import org.marmotgraph.authentication.keycloak.KeycloakController;
 import org.marmotgraph.commons.AuthTokenContext;
@@ -88,15 +88,15 @@ public abstract class AbstractSystemTest {
     protected CacheManager cacheManager;
 
     @Autowired
-    private AuthenticationRepository authenticationRepository;
+    private InvitationIndex invitationIndex;
 
 
     protected TestContext ctx(RoleMapping... roles){
-        return new TestContext(idUtils, arangoDatabaseProxyList, authenticationAPI, roles, setupLogics, authenticationRepository, cacheManager);
+        return new TestContext(idUtils, arangoDatabaseProxyList, authenticationAPI, roles, setupLogics, invitationIndex, cacheManager);
     }
 
     protected TestContext ctx(List<List<Role>> roleCollections){
-        return new TestContext(idUtils, arangoDatabaseProxyList, authenticationAPI, roleCollections, setupLogics, authenticationRepository, cacheManager);
+        return new TestContext(idUtils, arangoDatabaseProxyList, authenticationAPI, roleCollections, setupLogics, invitationIndex, cacheManager);
     }
 
 }
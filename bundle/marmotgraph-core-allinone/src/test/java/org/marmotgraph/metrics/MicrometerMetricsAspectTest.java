@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.metrics;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.marmotgraph.commons.api.GraphDBHealth;
+import org.marmotgraph.commons.jsonld.DynamicJson;
+import org.marmotgraph.commons.model.DataStage;
+import org.marmotgraph.commons.tracing.InMemorySpanRecorder;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MicrometerMetricsAspectTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final InMemorySpanRecorder spanRecorder = new InMemorySpanRecorder();
+    private final ObservationRegistry observationRegistry = ObservationRegistry.create();
+
+    MicrometerMetricsAspectTest() {
+        observationRegistry.observationConfig().observationHandler(new DefaultMeterObservationHandler(meterRegistry)).observationHandler(spanRecorder);
+    }
+
+    static class HealthAPI implements GraphDBHealth.Client {
+        @Override
+        public void analyzeHealthStatus() {
+            throw new IllegalStateException("Not available");
+        }
+
+        @Override
+        public List<DynamicJson> getReport(DataStage stage, String name) {
+            return List.of();
+        }
+
+        @Override
+        public List<String> getAvailableChecks() {
+            return List.of("foo");
+        }
+    }
+
+    public static class FooRepository {
+        public String find() {
+            return "foo";
+        }
+    }
+
+    private <T> T proxy(T target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new MicrometerMetricsAspect(observationRegistry));
+        return factory.getProxy();
+    }
+
+    @Test
+    void clientMethodsAreTimed() {
+        //Given
+        HealthAPI client = proxy(new HealthAPI());
+
+        //When
+        client.getAvailableChecks();
+        client.getAvailableChecks();
+        assertThrows(IllegalStateException.class, client::analyzeHealthStatus);
+
+        //Then
+        Timer success = meterRegistry.get("marmotgraph.client").tags("api", "HealthAPI", "method", "getAvailableChecks", "outcome", "success").timer();
+        Timer error = meterRegistry.get("marmotgraph.client").tags("api", "HealthAPI", "method", "analyzeHealthStatus", "outcome", "error").timer();
+        assertEquals(2, success.count());
+        assertEquals(1, error.count());
+    }
+
+    @Test
+    void clientSpansAreChildrenOfTheCurrentObservation() {
+        //Given
+        HealthAPI client = proxy(new HealthAPI());
+        Observation request = Observation.start("http.server.requests", observationRegistry);
+
+        //When
+        try (Observation.Scope ignored = request.openScope()) {
+            client.getAvailableChecks();
+        }
+        request.stop();
+
+        //Then
+        InMemorySpanRecorder.RecordedSpan requestSpan = spanRecorder.getSpans("http.server.requests").get(0);
+        InMemorySpanRecorder.RecordedSpan clientSpan = spanRecorder.getSpans("marmotgraph.client").get(0);
+        assertEquals("HealthAPI#getAvailableChecks", clientSpan.getContextualName());
+        assertEquals(requestSpan.getSpanId(), clientSpan.getParentSpanId());
+        assertEquals(requestSpan.getTraceId(), clientSpan.getTraceId());
+    }
+
+    @Test
+    void otherClassesAreNotTimed() {
+        //Given
+        FooRepository repository = proxy(new FooRepository());
+
+        //When
+        repository.find();
+
+        //Then
+        assertNull(meterRegistry.find("marmotgraph.client").timer());
+        assertNull(meterRegistry.find("marmotgraph.repository").timer());
+    }
+
+}
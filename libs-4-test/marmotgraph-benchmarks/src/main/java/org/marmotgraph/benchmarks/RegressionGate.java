@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.benchmarks;
+
+import org.marmotgraph.benchmarks.permissions.PermissionBenchmarks;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Runs the benchmarks and compares their throughput with the baseline. Exits with a non-zero code if a benchmark
+ * regresses by more than the threshold (relative to the baseline) - or writes the measured results as new baseline.
+ * <p>
+ * Please note that the baseline is specific to the machine it was measured on - it therefore should be regenerated
+ * on the machine executing the gate (with updateBaseline=true).
+ */
+public class RegressionGate {
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: RegressionGate <baselineFile> <threshold> [updateBaseline]");
+            System.exit(2);
+        }
+        Path baselineFile = Path.of(args[0]);
+        double threshold = Double.parseDouble(args[1]);
+        boolean updateBaseline = args.length > 2 && Boolean.parseBoolean(args[2]);
+        Collection<RunResult> results = new Runner(new OptionsBuilder().include(PermissionBenchmarks.class.getName()).build()).run();
+        Map<String, Double> measured = new TreeMap<>();
+        Map<String, Double> errors = new HashMap<>();
+        for (RunResult result : results) {
+            measured.put(getKey(result), result.getPrimaryResult().getScore());
+            errors.put(getKey(result), result.getPrimaryResult().getScoreError());
+        }
+        if (updateBaseline) {
+            writeBaseline(baselineFile, measured);
+            System.out.printf("Written new baseline to %s%n", baselineFile);
+            return;
+        }
+        List<String> regressions = findRegressions(readBaseline(baselineFile), measured, errors, threshold);
+        if (!regressions.isEmpty()) {
+            System.err.printf("The throughput of %d benchmark(s) regressed by more than %.0f%%:%n", regressions.size(), threshold * 100);
+            regressions.forEach(System.err::println);
+            System.exit(1);
+        }
+        System.out.println("No throughput regression beyond the threshold detected");
+    }
+
+    static String getKey(RunResult result) {
+        String benchmark = result.getParams().getBenchmark();
+        StringBuilder key = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.') + 1));
+        for (String param : new TreeSet<>(result.getParams().getParamsKeys())) {
+            key.append('.').append(param).append('_').append(result.getParams().getParam(param));
+        }
+        return key.toString();
+    }
+
+    /**
+     * @param errors the error margins of the measured scores - a benchmark only counts as regressed if even the upper
+     *               bound of its confidence interval is below the tolerated throughput (so noisy runners don't fail the gate)
+     * @return a description of each benchmark whose throughput is lower than the baseline minus the threshold
+     */
+    static List<String> findRegressions(Map<String, Double> baseline, Map<String, Double> measured, Map<String, Double> errors, double threshold) {
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Double> entry : measured.entrySet()) {
+            Double expected = baseline.get(entry.getKey());
+            if (expected == null) {
+                System.out.printf("%s: %.3f ops/ms (no baseline)%n", entry.getKey(), entry.getValue());
+            } else {
+                double change = (entry.getValue() - expected) / expected;
+                String description = String.format("%s: %.3f ops/ms (baseline %.3f ops/ms, %+.1f%%)", entry.getKey(), entry.getValue(), expected, change * 100);
+                System.out.println(description);
+                double error = errors.getOrDefault(entry.getKey(), 0.0);
+                if (!Double.isNaN(error) && entry.getValue() + error < expected * (1 - threshold)) {
+                    regressions.add(description);
+                }
+            }
+        }
+        return regressions;
+    }
+
+    static Map<String, Double> readBaseline(Path baselineFile) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(baselineFile)) {
+            properties.load(reader);
+        }
+        Map<String, Double> baseline = new HashMap<>();
+        properties.stringPropertyNames().forEach(k -> baseline.put(k, Double.parseDouble(properties.getProperty(k))));
+        return baseline;
+    }
+
+    private static void writeBaseline(Path baselineFile, Map<String, Double> measured) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(baselineFile)) {
+            writer.write("# Throughput (ops/ms) of the permission benchmarks - regenerate with -Dbenchmark.updateBaseline=true\n");
+            for (Map.Entry<String, Double> entry : measured.entrySet()) {
+                writer.write(String.format(Locale.ROOT, "%s=%.3f%n", entry.getKey(), entry.getValue()));
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.benchmarks.permissions;
+
+import org.marmotgraph.commons.model.DataStage;
+import org.marmotgraph.commons.model.SpaceName;
+import org.marmotgraph.commons.model.User;
+import org.marmotgraph.commons.models.UserWithRoles;
+import org.marmotgraph.commons.permission.Functionality;
+import org.marmotgraph.commons.permissions.controller.Permissions;
+import org.marmotgraph.graphdb.commons.controller.PermissionsController;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the construction of {@link UserWithRoles} (evaluation and compilation of the permissions) and the
+ * throughput of the permission checks for realistic role sets (see {@link RoleSets}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermissionBenchmarks {
+
+    @Param({"100", "1000", "5000"})
+    public int numberOfSpaces;
+
+    private final Permissions permissions = new Permissions();
+    // We're not interested in the materialization of grant sets here (which would require a database)
+    private final PermissionsController permissionsController = new PermissionsController(permissions, null, 0);
+    private final User user = new User("benchmarkUser", "Benchmark", "benchmark@test.xy", "Benchmark", "User", "benchmarkUser");
+    private RoleSets roleSets;
+    private UserWithRoles userWithRoles;
+    private SpaceName spaceWithPermission;
+    private SpaceName spaceWithoutPermission;
+    private SpaceName spaceWithWildcardPermission;
+    private UUID invitedInstance;
+
+    @Setup
+    public void setup() {
+        roleSets = RoleSets.generate(numberOfSpaces, 42);
+        userWithRoles = createUserWithRoles();
+        spaceWithPermission = roleSets.getSpacesWithPermission().get(roleSets.getSpacesWithPermission().size() - 1);
+        spaceWithoutPermission = roleSets.getSpacesWithoutPermission().get(roleSets.getSpacesWithoutPermission().size() - 1);
+        spaceWithWildcardPermission = new SpaceName("collab-group0-notExplicitlyListed");
+        invitedInstance = roleSets.getInvitations().get(roleSets.getInvitations().size() - 1);
+    }
+
+    private UserWithRoles createUserWithRoles() {
+        return new UserWithRoles(user, roleSets.getRoles(), null, roleSets.getInvitations(), "benchmarkClient");
+    }
+
+    @Benchmark
+    public UserWithRoles constructUserWithRoles() {
+        return createUserWithRoles();
+    }
+
+    @Benchmark
+    public boolean hasPermissionForSpace() {
+        return permissions.hasPermission(userWithRoles, Functionality.READ_RELEASED, spaceWithPermission);
+    }
+
+    @Benchmark
+    public boolean hasNoPermissionForSpace() {
+        return permissions.hasPermission(userWithRoles, Functionality.WRITE, spaceWithoutPermission);
+    }
+
+    @Benchmark
+    public boolean hasGlobalPermission() {
+        return permissions.hasGlobalPermission(userWithRoles, Functionality.DEFINE_TYPES_AND_PROPERTIES);
+    }
+
+    @Benchmark
+    public Set<SpaceName> spacesWithReadPermission() {
+        return permissions.getSpacesForPermission(roleSets.getAllSpaces(), userWithRoles, Functionality.READ);
+    }
+
+    @Benchmark
+    public boolean hasPermissionByWildcard() {
+        return permissions.hasPermission(userWithRoles, Functionality.READ_RELEASED, spaceWithWildcardPermission);
+    }
+
+    @Benchmark
+    public boolean hasPermissionByInvitation() {
+        return permissions.hasPermission(userWithRoles, Functionality.READ, spaceWithoutPermission, invitedInstance);
+    }
+
+    @Benchmark
+    public Map<String, Object> whitelistFilterForReadInstances() {
+        return permissionsController.whitelistFilterForReadInstances(roleSets.getAllSpaces(), userWithRoles, DataStage.IN_PROGRESS);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.benchmarks.permissions;
+
+import org.marmotgraph.commons.model.SpaceName;
+import org.marmotgraph.commons.permission.roles.RoleMapping;
+
+import java.util.*;
+
+/**
+ * Generates role sets as we see them in production: A user is member of many (collab) spaces - mostly with consumer
+ * rights but some with reviewer, editor or owner rights - has a few wildcard roles (e.g. for all spaces of a collab
+ * group) and has been invited for individual instances.
+ */
+public class RoleSets {
+
+    private final List<String> roles = new ArrayList<>();
+    private final List<UUID> invitations = new ArrayList<>();
+    private final Set<SpaceName> allSpaces = new HashSet<>();
+    private final List<SpaceName> spacesWithPermission = new ArrayList<>();
+    private final List<SpaceName> spacesWithoutPermission = new ArrayList<>();
+
+    private RoleSets() {
+    }
+
+    /**
+     * @param numberOfSpaces the number of spaces the user has a role for (the system has twice as many spaces)
+     * @param seed           to make the generated role sets reproducible
+     */
+    public static RoleSets generate(int numberOfSpaces, long seed) {
+        Random random = new Random(seed);
+        RoleSets roleSets = new RoleSets();
+        int numberOfGroups = Math.max(1, numberOfSpaces / 20);
+        for (int i = 0; i < numberOfSpaces * 2; i++) {
+            SpaceName space = new SpaceName(String.format("collab-group%d-space%d", i % numberOfGroups, i));
+            roleSets.allSpaces.add(space);
+            if (i < numberOfSpaces) {
+                roleSets.roles.add(pickRole(random).toRole(space).getName());
+                roleSets.spacesWithPermission.add(space);
+            } else if (i % numberOfGroups != 0) {
+                roleSets.spacesWithoutPermission.add(space);
+            }
+        }
+        // The spaces of the first group are accessible via a wildcard role
+        roleSets.roles.add(RoleMapping.CONSUMER.toRole(new SpaceName("collab-group0-*")).getName());
+        for (int i = 0; i < numberOfSpaces / 2; i++) {
+            roleSets.invitations.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        Collections.shuffle(roleSets.roles, random);
+        return roleSets;
+    }
+
+    private static RoleMapping pickRole(Random random) {
+        int r = random.nextInt(100);
+        if (r < 60) {
+            return RoleMapping.CONSUMER;
+        } else if (r < 85) {
+            return RoleMapping.REVIEWER;
+        } else if (r < 95) {
+            return RoleMapping.EDITOR;
+        }
+        return RoleMapping.OWNER;
+    }
+
+    public List<String> getRoles() {
+        return roles;
+    }
+
+    public List<UUID> getInvitations() {
+        return invitations;
+    }
+
+    public Set<SpaceName> getAllSpaces() {
+        return allSpaces;
+    }
+
+    public List<SpaceName> getSpacesWithPermission() {
+        return spacesWithPermission;
+    }
+
+    public List<SpaceName> getSpacesWithoutPermission() {
+        return spacesWithoutPermission;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.benchmarks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegressionGateTest {
+
+    @Test
+    void testFindRegressions() {
+        //Given
+        Map<String, Double> baseline = Map.of("faster", 100.0, "slightlySlower", 100.0, "muchSlower", 100.0);
+        Map<String, Double> measured = Map.of("faster", 150.0, "slightlySlower", 85.0, "muchSlower", 70.0, "new", 10.0);
+
+        //When
+        List<String> regressions = RegressionGate.findRegressions(baseline, measured, Map.of(), 0.2);
+
+        //Then
+        assertEquals(1, regressions.size());
+        assertTrue(regressions.get(0).startsWith("muchSlower"));
+    }
+
+    @Test
+    void testNoisyMeasurementIsNoRegression() {
+        //Given
+        Map<String, Double> baseline = Map.of("noisy", 100.0);
+        Map<String, Double> measured = Map.of("noisy", 70.0);
+
+        //When
+        List<String> regressions = RegressionGate.findRegressions(baseline, measured, Map.of("noisy", 15.0), 0.2);
+
+        //Then
+        assertTrue(regressions.isEmpty());
+    }
+}
@@ -479,6 +479,50 @@ public class Simpsons {
             }
             """;
 
+        public static final String FAMILY_MEMBERS_WITH_REQUIRED_CHILDREN = """
+            {
+              "https://core.kg.ebrains.eu/vocab/query/meta": {
+                "https://core.kg.ebrains.eu/vocab/query/alias": "simpsonsFamilyMembers",
+                "https://core.kg.ebrains.eu/vocab/query/name": "Simpson Family Members",
+                "https://core.kg.ebrains.eu/vocab/query/type": "https://thesimpsons.com/FamilyMember"
+              },
+              "https://core.kg.ebrains.eu/vocab/query/structure": [
+                {
+                  "https://core.kg.ebrains.eu/vocab/query/path": {
+                    "@id": "http://schema.org/givenName"
+                  },
+                  "https://core.kg.ebrains.eu/vocab/query/filter": {
+                    "https://core.kg.ebrains.eu/vocab/query/op": "STARTS_WITH",
+                    "https://core.kg.ebrains.eu/vocab/query/value": "M"
+                  }
+                },
+                {
+                  "https://core.kg.ebrains.eu/vocab/query/path": [
+                    {
+                      "@id": "http://schema.org/address"
+                    },
+                    {
+                      "@id": "http://schema.org/streetAddress"
+                    }
+                  ],
+                  "https://core.kg.ebrains.eu/vocab/query/singleValue": "FIRST"
+                },
+                {
+                  "https://core.kg.ebrains.eu/vocab/query/propertyName": {"@id":  "http://schema.org/children"},
+                  "https://core.kg.ebrains.eu/vocab/query/path": [
+                    {
+                      "@id": "http://schema.org/children"
+                    },
+                    {
+                      "@id": "http://schema.org/givenName"
+                    }
+                  ],
+                  "https://core.kg.ebrains.eu/vocab/query/required": true
+                }
+              ]
+            }
+            """;
+
         public static final String QUERY_DYNAMIC_FILTER = """
             {
               "https://core.kg.ebrains.eu/vocab/query/meta": {
@@ -0,0 +1,386 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.arango.commons;
+
+import com.arangodb.ArangoCursor;
+import com.arangodb.ArangoDatabase;
+import com.arangodb.entity.CursorStats;
+import com.arangodb.model.AqlQueryOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * The central place through which all AQL queries are executed: {@link org.marmotgraph.arango.commons.model.ArangoDatabaseProxy}
+ * hands out {@link #instrument(ArangoDatabase) instrumented} databases which route their queries to {@link #execute(ArangoDatabase, String, Class, Map, AqlQueryOptions)}.
+ * There is one instance per application context (see {@link AqlQueryExecutorConfiguration}) which is shared by all
+ * database proxies.
+ * <p>
+ * Every execution is aggregated by its fingerprint (the normalized AQL without comments and literals): the execution
+ * time, the number of returned rows (counted while the cursor is consumed), the scanned / filtered documents and the
+ * peak memory reported in the cursor stats as well as the failures. Queries exceeding the slow query threshold are
+ * logged by the logger "org.marmotgraph.arango.commons.AqlQueryExecutor.SlowQueries". Additionally, every execution
+ * is reported to the registered {@link QueryObserver} (e.g. to trace it as a span).
+ */
+public class AqlQueryExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(AqlQueryExecutor.class);
+    private static final Logger slowQueryLogger = LoggerFactory.getLogger(AqlQueryExecutor.class.getName() + ".SlowQueries");
+
+    private static final Pattern COMMENTS = Pattern.compile("/\\*.*?\\*/|//[^\\n]*", Pattern.DOTALL);
+    private static final Pattern STRING_LITERALS = Pattern.compile("\"(?:[^\"\\\\]|\\\\.)*\"|'(?:[^'\\\\]|\\\\.)*'");
+    private static final Pattern NUMBER_LITERALS = Pattern.compile("(?<![\\w@.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern WHITESPACES = Pattern.compile("\\s+");
+
+    private final Map<String, QueryStatistics> statistics = new ConcurrentHashMap<>();
+    private final LongAdder untrackedExecutions = new LongAdder();
+    private final long slowQueryThresholdInMs;
+    private final int maxFingerprints;
+    private final QueryObserver queryObserver;
+
+    /**
+     * Gets notified about the start of every query execution.
+     */
+    public interface QueryObserver {
+        /**
+         * @return the observation which is stopped as soon as the query has returned (or failed)
+         */
+        QueryObservation start(String fingerprint);
+    }
+
+    public interface QueryObservation {
+        /**
+         * @param error the failure of the query or null if it was successful
+         */
+        void stop(Throwable error);
+    }
+
+    private static final QueryObservation NOOP_OBSERVATION = error -> {
+    };
+
+    /**
+     * @param slowQueryThresholdInMs queries taking longer than the given threshold are written to the slow query log. A negative value disables the log.
+     * @param maxFingerprints        limits the number of distinct fingerprints which are aggregated - executions of additional fingerprints are only counted.
+     * @param queryObserver          is notified about every query execution (optional)
+     */
+    public AqlQueryExecutor(long slowQueryThresholdInMs, int maxFingerprints, QueryObserver queryObserver) {
+        this.slowQueryThresholdInMs = slowQueryThresholdInMs;
+        this.maxFingerprints = maxFingerprints;
+        this.queryObserver = queryObserver != null ? queryObserver : fingerprint -> NOOP_OBSERVATION;
+    }
+
+    public enum Order {
+        TOTAL_TIME(Comparator.comparingLong(QueryStatistics::getTotalTimeInMs)),
+        MAX_TIME(Comparator.comparingLong(QueryStatistics::getMaxTimeInMs)),
+        EXECUTIONS(Comparator.comparingLong(QueryStatistics::getExecutions)),
+        ROWS(Comparator.comparingLong(QueryStatistics::getRows)),
+        SCANNED(Comparator.comparingLong(s -> s.getScannedFull() + s.getScannedIndex())),
+        PEAK_MEMORY(Comparator.comparingLong(QueryStatistics::getMaxPeakMemoryInBytes)),
+        ERRORS(Comparator.comparingLong(QueryStatistics::getErrors));
+
+        private final Comparator<QueryStatistics> comparator;
+
+        Order(Comparator<QueryStatistics> comparator) {
+            this.comparator = comparator;
+        }
+    }
+
+    /**
+     * @return the aggregated statistics of the top n fingerprints in descending order
+     */
+    public List<QueryStatistics> getTopQueries(int n, Order order) {
+        return statistics.values().stream().sorted(order.comparator.reversed()).limit(n).toList();
+    }
+
+    public long getUntrackedExecutions() {
+        return untrackedExecutions.sum();
+    }
+
+    public void reset() {
+        statistics.clear();
+        untrackedExecutions.reset();
+    }
+
+    public ArangoDatabase instrument(ArangoDatabase db) {
+        if (db == null || Proxy.isProxyClass(db.getClass()) && Proxy.getInvocationHandler(db) instanceof InstrumentedDatabase) {
+            return db;
+        }
+        return (ArangoDatabase) Proxy.newProxyInstance(AqlQueryExecutor.class.getClassLoader(), new Class[]{ArangoDatabase.class}, new InstrumentedDatabase(db));
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> ArangoCursor<T> execute(ArangoDatabase db, String query, Class<T> type, Map<String, Object> bindVars, AqlQueryOptions options) {
+        final String fingerprint = fingerprint(query);
+        final QueryStatistics queryStatistics = getStatistics(fingerprint);
+        final QueryObservation observation = queryObserver.start(fingerprint);
+        final long start = System.nanoTime();
+        final ArangoCursor<T> cursor;
+        try {
+            cursor = db.query(query, type, bindVars, options != null ? options : new AqlQueryOptions());
+        } catch (RuntimeException e) {
+            final long durationInMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            observation.stop(e);
+            if (queryStatistics != null) {
+                queryStatistics.recordError(durationInMs);
+            }
+            logger.warn("AQL query failed after {}ms: {}", durationInMs, fingerprint);
+            throw e;
+        }
+        final long durationInMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        observation.stop(null);
+        final CursorStats stats = cursor.getStats();
+        if (queryStatistics != null) {
+            queryStatistics.recordExecution(durationInMs, stats);
+        }
+        if (slowQueryThresholdInMs >= 0 && durationInMs > slowQueryThresholdInMs) {
+            slowQueryLogger.warn("Slow AQL query [{}] took {}ms (rows: {}, scanned full: {}, scanned index: {}, filtered: {}, peak memory: {} bytes): {}",
+                    Integer.toHexString(fingerprint.hashCode()), durationInMs, cursor.getCount(), stats != null ? stats.getScannedFull() : null, stats != null ? stats.getScannedIndex() : null,
+                    stats != null ? stats.getFiltered() : null, stats != null ? stats.getPeakMemoryUsage() : null, fingerprint);
+        }
+        if (queryStatistics == null) {
+            return cursor;
+        }
+        return (ArangoCursor<T>) Proxy.newProxyInstance(AqlQueryExecutor.class.getClassLoader(), new Class[]{ArangoCursor.class}, new RowCountingCursor(cursor, queryStatistics));
+    }
+
+    private QueryStatistics getStatistics(String fingerprint) {
+        final QueryStatistics existing = statistics.get(fingerprint);
+        if (existing != null) {
+            return existing;
+        }
+        if (statistics.size() >= maxFingerprints) {
+            untrackedExecutions.increment();
+            return null;
+        }
+        return statistics.computeIfAbsent(fingerprint, QueryStatistics::new);
+    }
+
+    /**
+     * Normalizes the query to its "shape": comments (such as query tags) and literals are removed and whitespaces are
+     * collapsed so executions which only differ by their values are aggregated together.
+     */
+    public static String fingerprint(String query) {
+        if (query == null) {
+            return "";
+        }
+        String fingerprint = COMMENTS.matcher(query).replaceAll(" ");
+        fingerprint = STRING_LITERALS.matcher(fingerprint).replaceAll("?");
+        fingerprint = NUMBER_LITERALS.matcher(fingerprint).replaceAll("?");
+        return WHITESPACES.matcher(fingerprint).replaceAll(" ").trim();
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private class InstrumentedDatabase implements InvocationHandler {
+
+        private final ArangoDatabase db;
+
+        private InstrumentedDatabase(ArangoDatabase db) {
+            this.db = db;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("query") && args != null && args.length >= 2 && args[0] instanceof String query) {
+                Map<String, Object> bindVars = null;
+                AqlQueryOptions options = null;
+                for (int i = 2; i < args.length; i++) {
+                    if (args[i] instanceof Map<?, ?> map) {
+                        bindVars = (Map<String, Object>) map;
+                    } else if (args[i] instanceof AqlQueryOptions o) {
+                        options = o;
+                    }
+                }
+                return execute(db, query, (Class<Object>) args[1], bindVars, options);
+            }
+            if (method.getName().equals("equals") && args != null && args.length == 1) {
+                return proxy == args[0] || db.equals(args[0]);
+            }
+            return AqlQueryExecutor.invoke(db, method, args);
+        }
+    }
+
+    /**
+     * Counts the rows while the cursor is consumed. Since the default methods (e.g. {@link ArangoCursor#asListRemaining()}
+     * or {@link ArangoCursor#stream()}) are executed on the proxy, they are counted too.
+     */
+    private static class RowCountingCursor implements InvocationHandler {
+
+        private final ArangoCursor<?> cursor;
+        private final QueryStatistics queryStatistics;
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private RowCountingCursor(ArangoCursor<?> cursor, QueryStatistics queryStatistics) {
+            this.cursor = cursor;
+            this.queryStatistics = queryStatistics;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "iterator":
+                    return proxy;
+                case "next":
+                    final Object next = cursor.next();
+                    rows.incrementAndGet();
+                    return next;
+                case "hasNext":
+                    final boolean hasNext = cursor.hasNext();
+                    if (!hasNext) {
+                        finish();
+                    }
+                    return hasNext;
+                case "close":
+                    try {
+                        cursor.close();
+                    } finally {
+                        finish();
+                    }
+                    return null;
+                default:
+                    if (method.isDefault()) {
+                        return InvocationHandler.invokeDefault(proxy, method, args);
+                    }
+                    return AqlQueryExecutor.invoke(cursor, method, args);
+            }
+        }
+
+        private void finish() {
+            if (finished.compareAndSet(false, true)) {
+                queryStatistics.recordRows(rows.get());
+            }
+        }
+    }
+
+    public static class QueryStatistics {
+        private final String fingerprint;
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalTimeInMs = new LongAdder();
+        private final LongAccumulator maxTimeInMs = new LongAccumulator(Long::max, 0);
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder scannedFull = new LongAdder();
+        private final LongAdder scannedIndex = new LongAdder();
+        private final LongAdder filtered = new LongAdder();
+        private final LongAccumulator maxPeakMemoryInBytes = new LongAccumulator(Long::max, 0);
+
+        QueryStatistics(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        private void recordExecution(long durationInMs, CursorStats stats) {
+            executions.increment();
+            totalTimeInMs.add(durationInMs);
+            maxTimeInMs.accumulate(durationInMs);
+            if (stats != null) {
+                scannedFull.add(stats.getScannedFull() != null ? stats.getScannedFull() : 0);
+                scannedIndex.add(stats.getScannedIndex() != null ? stats.getScannedIndex() : 0);
+                filtered.add(stats.getFiltered() != null ? stats.getFiltered() : 0);
+                maxPeakMemoryInBytes.accumulate(stats.getPeakMemoryUsage() != null ? stats.getPeakMemoryUsage() : 0);
+            }
+        }
+
+        private void recordError(long durationInMs) {
+            errors.increment();
+            totalTimeInMs.add(durationInMs);
+            maxTimeInMs.accumulate(durationInMs);
+        }
+
+        private void recordRows(long numberOfRows) {
+            rows.add(numberOfRows);
+        }
+
+        public String getId() {
+            return Integer.toHexString(fingerprint.hashCode());
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public long getExecutions() {
+            return executions.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getTotalTimeInMs() {
+            return totalTimeInMs.sum();
+        }
+
+        public long getMaxTimeInMs() {
+            return maxTimeInMs.get();
+        }
+
+        public long getAverageTimeInMs() {
+            final long count = getExecutions() + getErrors();
+            return count > 0 ? getTotalTimeInMs() / count : 0;
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public long getScannedFull() {
+            return scannedFull.sum();
+        }
+
+        public long getScannedIndex() {
+            return scannedIndex.sum();
+        }
+
+        public long getFiltered() {
+            return filtered.sum();
+        }
+
+        public long getMaxPeakMemoryInBytes() {
+            return maxPeakMemoryInBytes.get();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.arango.commons;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class AqlQueryExecutorConfiguration {
+
+    @Bean
+    public AqlQueryExecutor produceAqlQueryExecutor(@Value("${org.marmotgraph.arango.slowQueryThresholdInMs:1000}") long slowQueryThresholdInMs, @Value("${org.marmotgraph.arango.maxQueryFingerprints:1000}") int maxQueryFingerprints, ObjectProvider<ObservationRegistry> observationRegistry) {
+        return new AqlQueryExecutor(slowQueryThresholdInMs, maxQueryFingerprints, observeQueries(observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP)));
+    }
+
+    /**
+     * Every AQL execution becomes an observation (and therefore a span as a child of the current request / repository method)
+     */
+    private static AqlQueryExecutor.QueryObserver observeQueries(ObservationRegistry observationRegistry) {
+        return fingerprint -> {
+            final Observation observation = Observation.createNotStarted("marmotgraph.arango.query", observationRegistry)
+                    .contextualName("AQL")
+                    .lowCardinalityKeyValue("db.system", "arangodb")
+                    .highCardinalityKeyValue("db.statement", fingerprint)
+                    .start();
+            return error -> {
+                if (error != null) {
+                    observation.error(error);
+                }
+                observation.stop();
+            };
+        };
+    }
+}
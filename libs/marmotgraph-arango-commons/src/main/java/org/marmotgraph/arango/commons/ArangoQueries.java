@@ -27,6 +27,7 @@ package org.marmotgraph.arango.commons;
 import com.arangodb.ArangoCursor;
 import com.arangodb.ArangoDBException;
 import com.arangodb.ArangoDatabase;
+import com.arangodb.entity.QueryEntity;
 import org.marmotgraph.arango.commons.aqlbuilder.AQL;
 import org.marmotgraph.arango.commons.model.AQLQuery;
 import org.marmotgraph.commons.exception.InvalidRequestException;
@@ -38,8 +39,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Date;
-import java.util.Objects;
+import java.math.BigDecimal;
+import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -75,7 +76,7 @@ public class ArangoQueries {
             }
 
             logger.debug("Start parsing the results after {}ms", new Date().getTime() - launch);
-            final Stream<NormalizedJsonLd> stream = StreamSupport.stream(result.spliterator(), false);
+            final Stream<NormalizedJsonLd> stream = StreamSupport.stream(result.spliterator(), false).onClose(() -> closeCursor(result));
             Stream<T> resultStream = stream.map(Objects.requireNonNullElseGet(mapper, () -> s -> (T) s));
             logger.debug("Done processing the Arango result - received {} results in {}ms total", count, new Date().getTime() - launch);
             if (aql.getPaginationParam() != null && aql.getPaginationParam().getSize() == null && (int) aql.getPaginationParam().getFrom() > 0 && count != null && (int) aql.getPaginationParam().getFrom() < count) {
@@ -89,6 +90,7 @@ public class ArangoQueries {
             logger.error(String.format("Was not able to execute query : %s", aqlQuery), ex);
             switch (ex.getErrorNum()) {
                 case 32 -> throw new LimitExceededException("Query size limit exceeded");
+                case 1500 -> throw new LimitExceededException("Query has been killed - either because it exceeded its maximum runtime or because it was cancelled");
                 case 1501 -> throw new InvalidRequestException("Invalid query");
                 default -> throw ex;
             }
@@ -97,11 +99,77 @@ public class ArangoQueries {
 
     public static Paginated<NormalizedJsonLd> queryDocuments(ArangoDatabase db, AQLQuery aqlQuery, Double
             maxMemoryForQuery) {
-        return new Paginated<>(queryDocuments(db, aqlQuery, null, maxMemoryForQuery));
+        final PaginatedStream<NormalizedJsonLd> paginatedStream = queryDocuments(db, aqlQuery, null, maxMemoryForQuery);
+        try (Stream<NormalizedJsonLd> stream = paginatedStream.getStream()) {
+            return new Paginated<>(stream.toList(), paginatedStream.getTotalResults(), paginatedStream.getSize(), paginatedStream.getFrom());
+        }
     }
 
     public static PaginatedStream<NormalizedJsonLd> queryDocumentsAsStream(ArangoDatabase db, AQLQuery
             aqlQuery, Double maxMemoryForQuery) {
         return queryDocuments(db, aqlQuery, null, maxMemoryForQuery);
     }
+
+    private static void closeCursor(ArangoCursor<?> cursor) {
+        try {
+            cursor.close();
+        } catch (IOException | ArangoDBException e) {
+            logger.warn("Was not able to close the cursor", e);
+        }
+    }
+
+    /**
+     * Looks up the currently running queries in the database with the given query string and bind variables - in the
+     * order they have been started. We don't tag the query string since this would make every query unique and would
+     * therefore defeat the plan and result caches of the database.
+     */
+    public static List<QueryEntity> findRunningQueries(ArangoDatabase db, String query, Map<String, Object> bindVars) {
+        return findRunningQueries(db.getCurrentlyRunningQueries(), query, bindVars);
+    }
+
+    public static List<QueryEntity> findRunningQueries(Collection<QueryEntity> runningQueries, String query, Map<String, Object> bindVars) {
+        final Object normalizedBindVars = normalizeBindVar(bindVars);
+        return runningQueries.stream().filter(q -> query.equals(q.getQuery()) && normalizedBindVars.equals(normalizeBindVar(q.getBindVars() != null ? q.getBindVars() : Collections.emptyMap())))
+                .sorted(Comparator.comparing(QueryEntity::getStarted, Comparator.nullsLast(Comparator.naturalOrder()))).toList();
+    }
+
+    /**
+     * The bind variables reported by the database are deserialized generically - we therefore compare them by their JSON representation.
+     */
+    private static Object normalizeBindVar(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            final Map<String, Object> normalized = new TreeMap<>();
+            map.forEach((k, v) -> normalized.put(String.valueOf(k), normalizeBindVar(v)));
+            return normalized;
+        }
+        if (value instanceof Collection<?> collection) {
+            return collection.stream().map(ArangoQueries::normalizeBindVar).toList();
+        }
+        if (value instanceof Object[] array) {
+            return Arrays.stream(array).map(ArangoQueries::normalizeBindVar).toList();
+        }
+        if (value instanceof Number number) {
+            return new BigDecimal(number.toString()).stripTrailingZeros();
+        }
+        if (value == null || value instanceof String || value instanceof Boolean) {
+            return value;
+        }
+        return value.toString();
+    }
+
+    /**
+     * Kills the given running query
+     *
+     * @return true if the query was killed, false if it has terminated in the meantime
+     */
+    public static boolean killRunningQuery(ArangoDatabase db, QueryEntity runningQuery) {
+        try {
+            db.killQuery(runningQuery.getId());
+            return true;
+        } catch (ArangoDBException e) {
+            //The query might have terminated in the meantime
+            logger.debug(String.format("Was not able to kill query %s", runningQuery.getId()), e);
+            return false;
+        }
+    }
 }
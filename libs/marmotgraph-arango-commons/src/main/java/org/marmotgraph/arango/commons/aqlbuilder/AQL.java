@@ -42,6 +42,12 @@ public class AQL {
 
     public static final String READ_ACCESS_BY_SPACE = "readAccessBySpace";
     public static final String READ_ACCESS_BY_INVITATION = "readAccessByInvitation";
+    /**
+     * Alternative to {@link #READ_ACCESS_BY_INVITATION} for large sets of explicitly permitted instances: the document id prefix of a materialized grant set (the instances are looked up by primary key instead of being passed as bind variable).
+     */
+    public static final String READ_ACCESS_BY_GRANT_SET = "readAccessByGrantSet";
+    public static final String PAGINATION_FROM = "paginationFrom";
+    public static final String PAGINATION_SIZE = "paginationSize";
 
     private final static ArangoKey WHITELIST_ALIAS = new ArangoKey("whitelist");
     private final static ArangoKey INVITATION_ALIAS = new ArangoKey("invitation");
@@ -51,6 +57,11 @@ public class AQL {
     private int indent = 0;
     private final AqlQueryOptions queryOptions = new AqlQueryOptions();
     private PaginationParam paginationParam;
+    private boolean planCacheRequested;
+    /**
+     * Whether the query text is eligible for the plan cache - it's evaluated once and reset whenever the query text changes.
+     */
+    private Boolean planCacheable;
 
     /**
      * With applying this method to a string, you state that you have checked, the provided string does not contain any unchecked "dynamic" part (such as user inputs).
@@ -63,9 +74,22 @@ public class AQL {
         return new TrustedAqlValue(trustedString);
     }
 
-    public void specifyWhitelist() {
+    /**
+     * States that the query text is stable across executions (all dynamic values are passed as bind variables) and can therefore profit from the query plan cache.
+     * Please use {@link AqlQueryDefaults#newPlanCacheableQuery()} instead of calling it directly, so the plan cache is only used if it is enabled for the instance.
+     */
+    public AQL usePlanCache() {
+        this.planCacheRequested = true;
+        return this;
+    }
+
+    public void specifyWhitelist(Map<String, Object> whitelistFilter) {
         addLine(trust("LET " + WHITELIST_ALIAS + "=@" + READ_ACCESS_BY_SPACE));
-        addLine(trust("LET " + INVITATION_ALIAS + "=@" + READ_ACCESS_BY_INVITATION));
+        addLine(trust("LET " + INVITATION_ALIAS + "=@" + (usesGrantSet(whitelistFilter) ? READ_ACCESS_BY_GRANT_SET : READ_ACCESS_BY_INVITATION)));
+    }
+
+    private static boolean usesGrantSet(Map<String, Object> whitelistFilter) {
+        return whitelistFilter != null && whitelistFilter.containsKey(READ_ACCESS_BY_GRANT_SET);
     }
 
     public AQL indent() {
@@ -103,6 +127,7 @@ public class AQL {
 
     public AQL add(TrustedAqlValue... trustedAqlValue) {
         if (trustedAqlValue != null) {
+            planCacheable = null;
             for (TrustedAqlValue aqlValue : trustedAqlValue) {
                 if (aqlValue != null) {
                     query.append(aqlValue.getValue());
@@ -113,6 +138,7 @@ public class AQL {
     }
 
     public void addComma() {
+        planCacheable = null;
         query.append(", ");
     }
 
@@ -142,9 +168,13 @@ public class AQL {
         addLine(new TrustedAqlValue("FILTER " + documentAlias.getValue() + " != NULL"));
     }
 
-    public void addDocumentFilterWithWhitelistFilter(TrustedAqlValue documentAlias) {
+    public void addDocumentFilterWithWhitelistFilter(TrustedAqlValue documentAlias, Map<String, Object> whitelistFilter) {
         addDocumentFilter(documentAlias);
-        addLine(trust("FILTER " + documentAlias.getValue() + "." + ArangoVocabulary.COLLECTION + " IN " + WHITELIST_ALIAS + " OR HAS(" + INVITATION_ALIAS+", "+documentAlias.getValue() + "." + ArangoVocabulary.KEY + ")"));
+        if (usesGrantSet(whitelistFilter)) {
+            addLine(trust("FILTER " + documentAlias.getValue() + "." + ArangoVocabulary.COLLECTION + " IN " + WHITELIST_ALIAS + " OR DOCUMENT(CONCAT(" + INVITATION_ALIAS + ", " + documentAlias.getValue() + "." + ArangoVocabulary.KEY + ")) != null"));
+        } else {
+            addLine(trust("FILTER " + documentAlias.getValue() + "." + ArangoVocabulary.COLLECTION + " IN " + WHITELIST_ALIAS + " OR HAS(" + INVITATION_ALIAS + ", " + documentAlias.getValue() + "." + ArangoVocabulary.KEY + ")"));
+        }
     }
 
 
@@ -158,14 +188,39 @@ public class AQL {
         }
     }
 
+    /**
+     * Same as {@link #addPagination(PaginationParam)} but passes the pagination values as bind variables - this keeps the query text stable across pages.
+     */
+    public void addPagination(PaginationParam paginationParam, Map<String, Object> bindVars) {
+        this.paginationParam = paginationParam;
+        if (paginationParam != null && paginationParam.getSize() != null ) {
+            queryOptions.fullCount(paginationParam.isReturnTotalResults());
+            addLine(AQL.trust(String.format("LIMIT @%s, @%s", PAGINATION_FROM, PAGINATION_SIZE)));
+            bindVars.put(PAGINATION_FROM, paginationParam.getFrom());
+            bindVars.put(PAGINATION_SIZE, paginationParam.getSize());
+        } else {
+            queryOptions.count(true);
+        }
+    }
+
     public PaginationParam getPaginationParam() {
         return paginationParam;
     }
 
     public AqlQueryOptions getQueryOptions() {
+        if (planCacheRequested && isPlanCacheable()) {
+            queryOptions.usePlanCache(true);
+        }
         return queryOptions;
     }
 
+    private boolean isPlanCacheable() {
+        if (planCacheable == null) {
+            planCacheable = AQLTemplate.isPlanCacheable(query.toString());
+        }
+        return planCacheable;
+    }
+
     public String buildSimpleDebugQuery(Map<String, Object> bindVars) {
         String aql = query.toString();
         for (Map.Entry<String,Object> entry : bindVars.entrySet()) {
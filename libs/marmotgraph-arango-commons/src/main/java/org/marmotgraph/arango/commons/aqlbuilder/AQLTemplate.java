@@ -0,0 +1,185 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.arango.commons.aqlbuilder;
+
+import com.arangodb.ArangoCursor;
+import com.arangodb.ArangoDatabase;
+import com.arangodb.model.AqlQueryOptions;
+
+import java.util.*;
+
+/**
+ * An AQL template is a query with a static text - all dynamic values are passed as bind variables. Since the query string
+ * doesn't change between executions, Arango can re-use the query plan (if the plan cache is enabled - see {@link AqlQueryDefaults})
+ * and - if requested - the query result cache.
+ * <p>
+ * Templates are meant to be created once (e.g. as a static constant) and executed many times with different bind variables.
+ */
+public class AQLTemplate {
+
+    private final String query;
+    private final Set<String> bindVariables;
+    private final boolean cacheResults;
+    private final boolean planCacheable;
+
+    private AQLTemplate(String query, boolean cacheResults) {
+        this.query = query;
+        Set<String> attributeNameBindVariables = new HashSet<>();
+        this.bindVariables = Collections.unmodifiableSet(extractBindVariables(query, attributeNameBindVariables));
+        this.cacheResults = cacheResults;
+        // Bind variables for attribute names are affecting the query plan - such queries are not eligible for the plan cache.
+        this.planCacheable = attributeNameBindVariables.isEmpty();
+    }
+
+    /**
+     * Creates a template out of the given (static) query. Please note that the query must not contain any parameter placeholders (see {@link AQL#setParameter(String, String)}) since those would be resolved only once.
+     */
+    public static AQLTemplate of(AQL aql) {
+        return new AQLTemplate(aql.build().getValue(), false);
+    }
+
+    /**
+     * Same as {@link #of(AQL)} but additionally requests the query result cache of Arango. This is only useful for queries on collections which are rarely changed (since the cache is invalidated on every write operation of an involved collection) and only has an effect if the query cache mode of the database is set to "demand".
+     */
+    public static AQLTemplate withResultCacheOf(AQL aql) {
+        return new AQLTemplate(aql.build().getValue(), true);
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * @return the names of the bind variables used in the query (collection bind variables are prefixed with "@" - the same way as they are passed to Arango).
+     */
+    public Set<String> getBindVariables() {
+        return bindVariables;
+    }
+
+    public boolean isCacheResults() {
+        return cacheResults;
+    }
+
+    public boolean isPlanCacheable() {
+        return planCacheable;
+    }
+
+    public AqlQueryOptions createQueryOptions(AqlQueryDefaults defaults) {
+        AqlQueryOptions options = defaults.apply(new AqlQueryOptions(), planCacheable);
+        if (cacheResults) {
+            options.cache(true);
+        }
+        return options;
+    }
+
+    public <T> ArangoCursor<T> query(ArangoDatabase db, Class<T> type, Map<String, Object> bindVars, AqlQueryDefaults defaults) {
+        return db.query(query, type, validate(bindVars), createQueryOptions(defaults));
+    }
+
+    public <T> List<T> queryList(ArangoDatabase db, Class<T> type, Map<String, Object> bindVars, AqlQueryDefaults defaults) {
+        return query(db, type, bindVars, defaults).asListRemaining();
+    }
+
+    /**
+     * Arango rejects queries with missing or unused bind variables - we check it upfront to provide a more meaningful error message.
+     */
+    Map<String, Object> validate(Map<String, Object> bindVars) {
+        Set<String> provided = bindVars != null ? bindVars.keySet() : Collections.emptySet();
+        if (!provided.equals(bindVariables)) {
+            Set<String> missing = new TreeSet<>(bindVariables);
+            missing.removeAll(provided);
+            Set<String> unused = new TreeSet<>(provided);
+            unused.removeAll(bindVariables);
+            throw new IllegalArgumentException(String.format("The bind variables don't match the template (missing: %s, unused: %s)", missing, unused));
+        }
+        return bindVars;
+    }
+
+    static boolean isPlanCacheable(String query) {
+        Set<String> attributeNameBindVariables = new HashSet<>();
+        extractBindVariables(query, attributeNameBindVariables);
+        return attributeNameBindVariables.isEmpty();
+    }
+
+    /**
+     * Finds the bind variables in the query - everything starting with @ or @@ outside of string literals, quoted attribute names and comments.
+     */
+    static Set<String> extractBindVariables(String query, Set<String> attributeNameBindVariables) {
+        Set<String> result = new HashSet<>();
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (c == '"' || c == '\'' || c == '`' || c == '´') {
+                i = skipQuoted(query, i, c);
+            } else if (c == '/' && i + 1 < query.length() && query.charAt(i + 1) == '*') {
+                int end = query.indexOf("*/", i + 2);
+                i = end < 0 ? query.length() : end + 2;
+            } else if (c == '/' && i + 1 < query.length() && query.charAt(i + 1) == '/') {
+                int end = query.indexOf('\n', i + 2);
+                i = end < 0 ? query.length() : end + 1;
+            } else if (c == '@') {
+                int start = i + 1;
+                if (start < query.length() && query.charAt(start) == '@') {
+                    start++;
+                }
+                int end = start;
+                while (end < query.length() && (Character.isLetterOrDigit(query.charAt(end)) || query.charAt(end) == '_')) {
+                    end++;
+                }
+                if (end > start) {
+                    String bindVariable = query.substring(i + 1, end);
+                    result.add(bindVariable);
+                    if (i > 0 && query.charAt(i - 1) == '.') {
+                        attributeNameBindVariables.add(bindVariable);
+                    }
+                }
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        return result;
+    }
+
+    private static int skipQuoted(String query, int start, char quote) {
+        int i = start + 1;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    @Override
+    public String toString() {
+        return query;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.arango.commons.aqlbuilder;
+
+import com.arangodb.model.AqlQueryOptions;
+
+/**
+ * The instance-wide defaults for the execution of AQL queries. They are provided as a bean so the repositories can
+ * apply them to the queries they build (see {@link AQL#usePlanCache()} and {@link AQLTemplate#createQueryOptions(AqlQueryDefaults)}).
+ */
+public class AqlQueryDefaults {
+
+    private final boolean planCacheEnabled;
+
+    /**
+     * @param planCacheEnabled if the queries which are eligible shall make use of the query plan cache of Arango (available since ArangoDB 3.12.4).
+     */
+    public AqlQueryDefaults(boolean planCacheEnabled) {
+        this.planCacheEnabled = planCacheEnabled;
+    }
+
+    public boolean isPlanCacheEnabled() {
+        return planCacheEnabled;
+    }
+
+    /**
+     * @return a new query builder for a query with a stable text (all dynamic values are passed as bind variables) - it makes use of the plan cache if enabled.
+     */
+    public AQL newPlanCacheableQuery() {
+        final AQL aql = new AQL();
+        return planCacheEnabled ? aql.usePlanCache() : aql;
+    }
+
+    AqlQueryOptions apply(AqlQueryOptions options, boolean planCacheable) {
+        if (planCacheEnabled && planCacheable) {
+            options.usePlanCache(true);
+        }
+        return options;
+    }
+}
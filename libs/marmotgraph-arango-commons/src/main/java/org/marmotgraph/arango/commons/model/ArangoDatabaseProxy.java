@@ -32,6 +32,7 @@ import com.arangodb.entity.CollectionType;
 import com.arangodb.entity.IndexEntity;
 import com.arangodb.model.CollectionCreateOptions;
 import com.arangodb.model.PersistentIndexOptions;
+import org.marmotgraph.arango.commons.AqlQueryExecutor;
 import org.marmotgraph.arango.commons.aqlbuilder.ArangoVocabulary;
 import org.marmotgraph.commons.jsonld.IndexedJsonLdDoc;
 import org.marmotgraph.commons.jsonld.JsonLdConsts;
@@ -39,7 +40,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ArangoDatabaseProxy {
 
@@ -48,13 +51,21 @@ public class ArangoDatabaseProxy {
 
     private static final int ARANGO_CONNECTION_RETRIES = 5;
 
+    /**
+     * The locks for the creation of collections - striped by database and collection name so the creation of different
+     * collections rarely contends while the number of locks stays bounded.
+     */
+    private static final Object[] COLLECTION_CREATION_LOCKS = Stream.generate(Object::new).limit(64).toArray();
+
     private final ArangoDB arangoDB;
     private final String databaseName;
-    private boolean exists;
+    private final AqlQueryExecutor aqlQueryExecutor;
+    private volatile boolean exists;
 
-    public ArangoDatabaseProxy(ArangoDB arangoDB, String databaseName) {
+    public ArangoDatabaseProxy(ArangoDB arangoDB, String databaseName, AqlQueryExecutor aqlQueryExecutor) {
         this.arangoDB = arangoDB;
         this.databaseName = databaseName;
+        this.aqlQueryExecutor = aqlQueryExecutor;
     }
 
     public synchronized void removeDatabase() {
@@ -91,10 +102,11 @@ public class ArangoDatabaseProxy {
     public synchronized void createIfItDoesntExist() {
         ArangoDatabase db = arangoDB.db(databaseName);
         doCreateIfItDoesntExist(db, 0);
+        exists = true;
     }
 
     public ArangoDatabase get() {
-        return arangoDB.db(databaseName);
+        return aqlQueryExecutor.instrument(arangoDB.db(databaseName));
     }
 
     /**
@@ -105,15 +117,16 @@ public class ArangoDatabaseProxy {
     public ArangoDatabase getOrCreate() {
         ArangoDatabase db = arangoDB.db(databaseName);
         if (!exists) {
-            //If the database is flagged to not exist yet, we're asking the database to be sure.
-            exists = db.exists();
-        }
-        if (!exists) {
-            //The database really doesn't exist -> let's create it.
-            db.create();
-            exists = true;
+            synchronized (this) {
+                //If the database is flagged to not exist yet, we're asking the database to be sure.
+                if (!exists && !db.exists()) {
+                    //The database really doesn't exist -> let's create it.
+                    db.create();
+                }
+                exists = true;
+            }
         }
-        return db;
+        return aqlQueryExecutor.instrument(db);
     }
 
     public synchronized void createCollectionIfItDoesntExist(ArangoCollectionReference collection) {
@@ -132,25 +145,39 @@ public class ArangoDatabaseProxy {
     }
 
     public static ArangoCollection getOrCreateArangoCollection(ArangoDatabase db, ArangoCollectionReference c) {
+        return getOrCreateArangoCollection(db, c, ArangoDatabaseProxy::ensureIndicesOnCollection);
+    }
+
+    /**
+     * Same as {@link #getOrCreateArangoCollection(ArangoDatabase, ArangoCollectionReference)} but hands a newly created
+     * collection to the given index setup instead of ensuring its indices on the calling thread.
+     */
+    public static ArangoCollection getOrCreateArangoCollection(ArangoDatabase db, ArangoCollectionReference c, Consumer<ArangoCollection> indexSetup) {
         ArangoCollection collection = db.collection(c.getCollectionName());
         if (!collection.exists()) {
-            return createArangoCollection(db, c);
+            return createArangoCollection(db, c, indexSetup);
         }
         return collection;
     }
 
-    private static synchronized ArangoCollection createArangoCollection(ArangoDatabase db, ArangoCollectionReference c) {
-        ArangoCollection collection = db.collection(c.getCollectionName());
-        //We check again, if the collection has been created in the meantime
-        if (!collection.exists()) {
-            logger.debug("Creating collection {}", c.getCollectionName());
-            db.createCollection(c.getCollectionName(), new CollectionCreateOptions().waitForSync(true).type(c.isEdge() != null && c.isEdge() ? CollectionType.EDGES : CollectionType.DOCUMENT));
-            ensureIndicesOnCollection(collection);
+    private static ArangoCollection createArangoCollection(ArangoDatabase db, ArangoCollectionReference c, Consumer<ArangoCollection> indexSetup) {
+        synchronized (collectionCreationLock(db, c)) {
+            ArangoCollection collection = db.collection(c.getCollectionName());
+            //We check again, if the collection has been created in the meantime
+            if (!collection.exists()) {
+                logger.debug("Creating collection {}", c.getCollectionName());
+                db.createCollection(c.getCollectionName(), new CollectionCreateOptions().waitForSync(true).type(c.isEdge() != null && c.isEdge() ? CollectionType.EDGES : CollectionType.DOCUMENT));
+                indexSetup.accept(collection);
+            }
+            return collection;
         }
-        return collection;
     }
 
 
+    private static Object collectionCreationLock(ArangoDatabase db, ArangoCollectionReference c) {
+        return COLLECTION_CREATION_LOCKS[Math.floorMod(Objects.hash(db.name(), c.getCollectionName()), COLLECTION_CREATION_LOCKS.length)];
+    }
+
     public static void ensureIndicesOnCollection(ArangoCollection collection) {
         if(logger.isDebugEnabled()) {
             logger.debug("Ensuring indices properly set for collection {}", collection.name());
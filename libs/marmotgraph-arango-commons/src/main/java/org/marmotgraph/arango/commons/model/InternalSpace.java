@@ -44,11 +44,15 @@ public class InternalSpace extends SpaceName {
     public static final SpaceName USERS_PICTURE_SPACE = new SpaceName("userpictures");
     public static final ArangoCollectionReference TYPE_EDGE_COLLECTION = new ArangoCollectionReference("internaltype", true);
     public static final InternalSpace TYPE_SPACE = new InternalSpace("types");
+    public static final InternalSpace MATERIALIZED_QUERIES_SPACE = new InternalSpace("materializedQueries");
+    public static final InternalSpace MATERIALIZED_QUERY_RESULTS_SPACE = new InternalSpace("materializedQueryResults");
+    public static final InternalSpace PERMISSION_GRANTS_SPACE = new InternalSpace("permissionGrants");
+    public static final InternalSpace STRUCTURE_STATISTICS_SPACE = new InternalSpace("structureStatistics");
 
     public InternalSpace() {
     }
 
-    public static final Collection<String> INTERNAL_SPACENAMES = Arrays.asList(ArangoCollectionReference.fromSpace(GLOBAL_SPEC).getCollectionName(),  ArangoCollectionReference.fromSpace(DOCUMENT_ID_SPACE).getCollectionName(), ArangoCollectionReference.fromSpace(RELEASE_STATUS_SPACE).getCollectionName(), ArangoCollectionReference.fromSpace(TYPE_SPACE).getCollectionName(), ArangoCollectionReference.fromSpace(USERS_PICTURE_SPACE).getCollectionName());
+    public static final Collection<String> INTERNAL_SPACENAMES = Arrays.asList(ArangoCollectionReference.fromSpace(GLOBAL_SPEC).getCollectionName(),  ArangoCollectionReference.fromSpace(DOCUMENT_ID_SPACE).getCollectionName(), ArangoCollectionReference.fromSpace(RELEASE_STATUS_SPACE).getCollectionName(), ArangoCollectionReference.fromSpace(TYPE_SPACE).getCollectionName(), ArangoCollectionReference.fromSpace(USERS_PICTURE_SPACE).getCollectionName(), ArangoCollectionReference.fromSpace(MATERIALIZED_QUERIES_SPACE).getCollectionName(), ArangoCollectionReference.fromSpace(MATERIALIZED_QUERY_RESULTS_SPACE).getCollectionName(), ArangoCollectionReference.fromSpace(PERMISSION_GRANTS_SPACE).getCollectionName(), ArangoCollectionReference.fromSpace(STRUCTURE_STATISTICS_SPACE).getCollectionName());
 
     public static final Collection<ArangoCollectionReference> INTERNAL_NON_META_EDGES = Arrays.asList(DOCUMENT_ID_EDGE_COLLECTION, ArangoCollectionReference.fromSpace(INFERENCE_OF_SPACE), RELEASE_STATUS_EDGE_COLLECTION, TYPE_EDGE_COLLECTION, ArangoCollectionReference.fromSpace(UNRESOLVED_SPACE));
 
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.arango.commons;
+
+import com.arangodb.ArangoCursor;
+import com.arangodb.ArangoDBException;
+import com.arangodb.ArangoDatabase;
+import com.arangodb.model.AqlQueryOptions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AqlQueryExecutorTest {
+
+    private final AqlQueryExecutor aqlQueryExecutor = new AqlQueryExecutor(1000, 1000, null);
+
+    @SuppressWarnings("unchecked")
+    private static ArangoCursor<Object> cursorOf(List<Object> rows) {
+        final Iterator<Object> iterator = rows.iterator();
+        final ArangoCursor<Object> cursor = mock(ArangoCursor.class);
+        when(cursor.hasNext()).thenAnswer(i -> iterator.hasNext());
+        when(cursor.next()).thenAnswer(i -> iterator.next());
+        return cursor;
+    }
+
+    @Test
+    void fingerprintRemovesCommentsAndLiterals() {
+        //Given
+        String query = "/* 1234-abcd */ FOR doc IN `my-collection`\n  FILTER doc.name == \"foo\" AND doc.v2 > 42 AND doc.id == @id\n LIMIT 0, 10 RETURN doc";
+
+        //When
+        String fingerprint = AqlQueryExecutor.fingerprint(query);
+
+        //Then
+        assertEquals("FOR doc IN `my-collection` FILTER doc.name == ? AND doc.v2 > ? AND doc.id == @id LIMIT ?, ? RETURN doc", fingerprint);
+    }
+
+    @Test
+    void aggregatesExecutionsAndRowsByFingerprint() {
+        //Given
+        ArangoDatabase db = mock(ArangoDatabase.class);
+        when(db.query(anyString(), eq(Object.class), any(), any())).thenAnswer(i -> cursorOf(List.of("a", "b", "c")));
+        ArangoDatabase instrumented = aqlQueryExecutor.instrument(db);
+
+        //When
+        List<Object> first = instrumented.query("FOR doc IN foo FILTER doc.value == 1 RETURN doc", Object.class).asListRemaining();
+        long second = instrumented.query("FOR doc IN foo FILTER doc.value == 2 RETURN doc", Object.class, Map.of(), new AqlQueryOptions()).stream().count();
+
+        //Then
+        assertEquals(3, first.size());
+        assertEquals(3, second);
+        List<AqlQueryExecutor.QueryStatistics> top = aqlQueryExecutor.getTopQueries(10, AqlQueryExecutor.Order.EXECUTIONS);
+        assertEquals(1, top.size());
+        assertEquals("FOR doc IN foo FILTER doc.value == ? RETURN doc", top.get(0).getFingerprint());
+        assertEquals(2, top.get(0).getExecutions());
+        assertEquals(6, top.get(0).getRows());
+        assertSame(instrumented, aqlQueryExecutor.instrument(instrumented));
+    }
+
+    @Test
+    void recordsFailedQueries() {
+        //Given
+        ArangoDatabase db = mock(ArangoDatabase.class);
+        when(db.query(anyString(), eq(Object.class), any(), any())).thenThrow(new ArangoDBException("Invalid query"));
+        ArangoDatabase instrumented = aqlQueryExecutor.instrument(db);
+
+        //When
+        assertThrows(ArangoDBException.class, () -> instrumented.query("FOR doc IN foo RETURN doc", Object.class));
+
+        //Then
+        List<AqlQueryExecutor.QueryStatistics> top = aqlQueryExecutor.getTopQueries(10, AqlQueryExecutor.Order.ERRORS);
+        assertEquals(1, top.get(0).getErrors());
+        assertEquals(0, top.get(0).getExecutions());
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.arango.commons.aqlbuilder;
+
+import com.arangodb.model.AqlQueryOptions;
+import org.junit.jupiter.api.Test;
+import org.marmotgraph.commons.model.PaginationParam;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AQLTemplateTest {
+
+    private final AQLTemplate template = AQLTemplate.of(new AQL()
+            .addLine(AQL.trust("FOR doc IN @@collection"))
+            .addLine(AQL.trust("FILTER @type IN doc.`@type` AND doc.name == \"@notABindVariable\""))
+            .addLine(AQL.trust("/* @neitherInComment */ LIMIT @from, @size"))
+            .addLine(AQL.trust("RETURN doc")));
+
+    @Test
+    void extractsBindVariables() {
+        assertEquals(Set.of("@collection", "type", "from", "size"), template.getBindVariables());
+        assertTrue(template.isPlanCacheable());
+    }
+
+    @Test
+    void detectsAttributeNameBindVariables() {
+        AQLTemplate withAttributeName = AQLTemplate.of(new AQL().addLine(AQL.trust("FOR doc IN @@collection FILTER doc.@property == @value RETURN doc")));
+
+        assertEquals(Set.of("@collection", "property", "value"), withAttributeName.getBindVariables());
+        assertFalse(withAttributeName.isPlanCacheable());
+    }
+
+    @Test
+    void rejectsMismatchingBindVariables() {
+        //Given
+        Map<String, Object> bindVars = new HashMap<>();
+        bindVars.put("@collection", "foo");
+        bindVars.put("type", "bar");
+        bindVars.put("from", 0);
+        bindVars.put("unknown", 1);
+
+        //When
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> template.validate(bindVars));
+
+        //Then
+        assertEquals("The bind variables don't match the template (missing: [size], unused: [unknown])", exception.getMessage());
+    }
+
+    @Test
+    void paginationAsBindVariables() {
+        //Given
+        Map<String, Object> bindVars = new HashMap<>();
+        AQL first = new AQL();
+        AQL second = new AQL();
+
+        //When
+        first.addPagination(new PaginationParam().setFrom(0).setSize(10L), bindVars);
+        second.addPagination(new PaginationParam().setFrom(50).setSize(20L), bindVars);
+
+        //Then
+        assertEquals(first.build().getValue(), second.build().getValue());
+        assertEquals(50L, bindVars.get(AQL.PAGINATION_FROM));
+        assertEquals(20L, bindVars.get(AQL.PAGINATION_SIZE));
+    }
+
+    @Test
+    void queryOptions() {
+        //Given
+        AqlQueryDefaults planCacheEnabled = new AqlQueryDefaults(true);
+
+        //When
+        AqlQueryOptions withPlanCache = template.createQueryOptions(planCacheEnabled);
+        AqlQueryOptions withoutPlanCache = template.createQueryOptions(new AqlQueryDefaults(false));
+
+        //Then
+        assertTrue(AQLTemplate.withResultCacheOf(new AQL().addLine(AQL.trust("RETURN @foo"))).createQueryOptions(planCacheEnabled).getCache());
+        assertTrue(withPlanCache.getUsePlanCache());
+        assertNull(withPlanCache.getCache());
+        assertNull(withoutPlanCache.getUsePlanCache());
+    }
+
+    @Test
+    void planCacheOnlyForQueriesBuiltWithEnabledDefaults() {
+        //Given
+        AqlQueryDefaults planCacheEnabled = new AqlQueryDefaults(true);
+
+        //When
+        AQL enabled = planCacheEnabled.newPlanCacheableQuery().addLine(AQL.trust("FOR doc IN @@collection RETURN doc"));
+        AQL disabled = new AqlQueryDefaults(false).newPlanCacheableQuery().addLine(AQL.trust("FOR doc IN @@collection RETURN doc"));
+        AQL attributeName = planCacheEnabled.newPlanCacheableQuery().addLine(AQL.trust("FOR doc IN @@collection FILTER doc.@property == @value RETURN doc"));
+
+        //Then
+        assertTrue(enabled.getQueryOptions().getUsePlanCache());
+        assertNull(disabled.getQueryOptions().getUsePlanCache());
+        assertNull(attributeName.getQueryOptions().getUsePlanCache());
+    }
+}
@@ -44,11 +44,9 @@ public class CacheConstant {
 
 
     public static final String CACHE_KEYS_REFLECTED_SPACES = "reflectedSpaces";
-    public static final String CACHE_KEYS_TERMS_OF_USE = "termsOfUse";
-    public static final String CACHE_KEYS_TERMS_OF_USE_BY_USER= "termsOfUseByUser";
-    public static final String CACHE_KEYS_USER_ROLE_MAPPINGS = "userRoleMappings";
 
     public static final String CACHE_KEYS_TARGET_TYPES = "targetTypes";
+    public static final String CACHE_KEYS_COLLECTION_COUNTS = "collectionCounts";
 
     public static final String CACHE_KEYS_TYPES_IN_SPACE = "typesInSpace";
     public static final String CACHE_KEYS_SPACES = "spaces";
@@ -82,10 +80,8 @@ public class CacheConstant {
             CACHE_KEYS_PRIMARY_STORE_COLLECTION,
             CACHE_KEYS_ARANGO_COLLECTION,
             CACHE_KEYS_REFLECTED_SPACES,
-            CACHE_KEYS_TERMS_OF_USE,
-            CACHE_KEYS_TERMS_OF_USE_BY_USER,
-            CACHE_KEYS_USER_ROLE_MAPPINGS,
             CACHE_KEYS_TARGET_TYPES,
+            CACHE_KEYS_COLLECTION_COUNTS,
             CACHE_KEYS_TYPES_IN_SPACE,
             CACHE_KEYS_SPACES,
             CACHE_KEYS_SPACE_SPECIFICATIONS,
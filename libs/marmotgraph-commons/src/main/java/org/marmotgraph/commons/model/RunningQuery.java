@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.commons.model;
+
+import java.util.Date;
+import java.util.UUID;
+
+public class RunningQuery {
+    private UUID id;
+    private String userId;
+    private String clientId;
+    private DataStage stage;
+    private Date started;
+    private Double maxRuntime;
+    private String databaseQueryId;
+    private Double databaseRunTime;
+    private String databaseState;
+
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+
+    public DataStage getStage() {
+        return stage;
+    }
+
+    public void setStage(DataStage stage) {
+        this.stage = stage;
+    }
+
+    public Date getStarted() {
+        return started;
+    }
+
+    public void setStarted(Date started) {
+        this.started = started;
+    }
+
+    /**
+     * @return the maximal runtime of the query in seconds (or null if the runtime is not restricted)
+     */
+    public Double getMaxRuntime() {
+        return maxRuntime;
+    }
+
+    public void setMaxRuntime(Double maxRuntime) {
+        this.maxRuntime = maxRuntime;
+    }
+
+    /**
+     * @return the id of the query in the database or null if the query is not (or no longer) executed by the database (e.g. because its results are currently streamed to the client)
+     */
+    public String getDatabaseQueryId() {
+        return databaseQueryId;
+    }
+
+    public void setDatabaseQueryId(String databaseQueryId) {
+        this.databaseQueryId = databaseQueryId;
+    }
+
+    public Double getDatabaseRunTime() {
+        return databaseRunTime;
+    }
+
+    public void setDatabaseRunTime(Double databaseRunTime) {
+        this.databaseRunTime = databaseRunTime;
+    }
+
+    public String getDatabaseState() {
+        return databaseState;
+    }
+
+    public void setDatabaseState(String databaseState) {
+        this.databaseState = databaseState;
+    }
+}
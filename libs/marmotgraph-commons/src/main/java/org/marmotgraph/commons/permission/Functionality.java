@@ -82,6 +82,10 @@ public enum Functionality {
 
     CHECK_HEALTH_STATUS(Permission.Level.GLOBAL_ONLY, FunctionalityGroup.ADMIN, null, null, null),
 
+    //Query mgmt
+    MANAGE_RUNNING_QUERIES(Permission.Level.GLOBAL_ONLY, FunctionalityGroup.ADMIN, null, null, null),
+    MANAGE_MATERIALIZED_QUERIES(Permission.Level.GLOBAL_ONLY, FunctionalityGroup.ADMIN, null, null, null),
+
     //Cache mgmt
     CACHE_FLUSH(Permission.Level.GLOBAL_ONLY, FunctionalityGroup.ADMIN, null, null, null),
 
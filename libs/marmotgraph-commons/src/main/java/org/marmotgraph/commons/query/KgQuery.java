@@ -32,6 +32,7 @@ import org.marmotgraph.commons.model.SpaceName;
 import org.marmotgraph.commons.semantics.vocabularies.EBRAINSVocabulary;
 
 import java.util.List;
+import java.util.UUID;
 
 public class KgQuery {
 
@@ -39,6 +40,8 @@ public class KgQuery {
     private DataStage stage;
     private InstanceId idRestriction;
     private List<SpaceName> restrictToSpaces;
+    private Double maxRuntime;
+    private UUID queryId;
 
     public KgQuery() {
     }
@@ -85,6 +88,30 @@ public class KgQuery {
         return this;
     }
 
+    public Double getMaxRuntime() {
+        return maxRuntime;
+    }
+
+    /**
+     * @param maxRuntime the maximal runtime of the query in seconds - it can only further restrict the runtime configured for the whole system.
+     */
+    public KgQuery setMaxRuntime(Double maxRuntime) {
+        this.maxRuntime = maxRuntime;
+        return this;
+    }
+
+    /**
+     * @return the id of the stored query or null if the query is executed dynamically
+     */
+    public UUID getQueryId() {
+        return queryId;
+    }
+
+    public KgQuery setQueryId(UUID queryId) {
+        this.queryId = queryId;
+        return this;
+    }
+
     private void validateQuery(){
         if (this.payload == null || this.payload.size() == 0) {
             throw new MissingQueryFieldsException("The provided query is empty");
@@ -24,14 +24,30 @@
 
 package org.marmotgraph.commons;
 
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.marmotgraph.commons.models.UserWithRoles;
 import org.springframework.core.task.TaskDecorator;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
 import java.util.Map;
 
+/**
+ * Propagates the request headers, the already resolved users and the current observation (and therefore the trace) to asynchronous tasks.
+ */
 public class AuthAwareTaskDecorator implements TaskDecorator {
 
+    private final ObservationRegistry observationRegistry;
+
+    public AuthAwareTaskDecorator() {
+        this(ObservationRegistry.NOOP);
+    }
+
+    public AuthAwareTaskDecorator(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
     @Override
     public Runnable decorate(Runnable runnable) {
         Map<String, String> headers;
@@ -43,12 +59,23 @@ public class AuthAwareTaskDecorator implements TaskDecorator {
             headers = RequestHeadersHolder.get();
         }
         final Map<String, String> resolvedHeaders = headers;
+        // The task is executed on behalf of the same user - so we can share the already resolved users of the request
+        final Map<Boolean, UserWithRoles> resolvedUsers = UserWithRolesHolder.get();
+        final Observation parentObservation = observationRegistry.getCurrentObservation();
         return () -> {
             try {
                 RequestHeadersHolder.setAuthTokens(resolvedHeaders);
-                runnable.run();
+                UserWithRolesHolder.set(resolvedUsers);
+                if (parentObservation != null) {
+                    try (Observation.Scope ignored = parentObservation.openScope()) {
+                        runnable.run();
+                    }
+                } else {
+                    runnable.run();
+                }
             } finally {
                 RequestHeadersHolder.reset();
+                UserWithRolesHolder.reset();
             }
         };
     }
@@ -30,13 +30,17 @@ import org.marmotgraph.commons.model.internal.spaces.Space;
 import org.marmotgraph.commons.models.UserWithRoles;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
 @Component
 public class AuthContext {
 
 
     private final AuthTokenContext authTokenContext;
     private final Authentication.Client authentication;
-
+    private final AtomicLong roleResolutionsWithTermsCheck = new AtomicLong();
+    private final AtomicLong roleResolutionsWithoutTermsCheck = new AtomicLong();
 
     public AuthContext(AuthTokenContext authTokenContext, Authentication.Client authentication) {
         this.authTokenContext = authTokenContext;
@@ -44,15 +48,43 @@ public class AuthContext {
     }
 
     public UserWithRoles getUserWithRoles() {
-        return authentication.getRoles(true);
+        return resolveUserWithRoles(true);
     }
 
     public UserWithRoles getUserWithRolesWithoutTermsCheck() {
-        return authentication.getRoles(false);
+        return resolveUserWithRoles(false);
+    }
+
+    /**
+     * Resolving the roles is expensive (token verification, role mapping, invitations, terms of use) - within the scope of a request
+     * (see {@link UserWithRolesHolder}), we therefore do it only once per terms-of-use check mode.
+     */
+    private UserWithRoles resolveUserWithRoles(boolean checkForTermsOfUse) {
+        Map<Boolean, UserWithRoles> resolvedUsers = UserWithRolesHolder.get();
+        if (resolvedUsers != null) {
+            UserWithRoles resolved = resolvedUsers.get(checkForTermsOfUse);
+            if (resolved != null) {
+                return resolved;
+            }
+        }
+        UserWithRoles userWithRoles = authentication.getRoles(checkForTermsOfUse);
+        (checkForTermsOfUse ? roleResolutionsWithTermsCheck : roleResolutionsWithoutTermsCheck).incrementAndGet();
+        if (resolvedUsers != null && userWithRoles != null) {
+            resolvedUsers.put(checkForTermsOfUse, userWithRoles);
+        }
+        return userWithRoles;
+    }
+
+    /**
+     * @return the number of times the roles have been resolved by the authentication (and not taken from the request scope) since the start of the service
+     */
+    public long getNumberOfRoleResolutions(boolean checkForTermsOfUse) {
+        return (checkForTermsOfUse ? roleResolutionsWithTermsCheck : roleResolutionsWithoutTermsCheck).get();
     }
 
     public Space getClientSpace(){
-        return getUserWithRoles()!=null && getUserWithRoles().getClientId()!=null ? new Space(new SpaceName(getUserWithRoles().getClientId()),  false, true, false) : null;
+        UserWithRoles userWithRoles = getUserWithRoles();
+        return userWithRoles!=null && userWithRoles.getClientId()!=null ? new Space(new SpaceName(userWithRoles.getClientId()),  false, true, false) : null;
     }
 
     public String getUserId(){
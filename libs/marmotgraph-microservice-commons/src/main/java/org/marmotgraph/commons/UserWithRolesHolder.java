@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.commons;
+
+import org.marmotgraph.commons.models.UserWithRoles;
+import org.springframework.core.NamedThreadLocal;
+import org.springframework.lang.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the already resolved users (by terms-of-use check mode) for the scope of a request. The scope is opened by the
+ * {@link UserWithRolesScopeFilter} and propagated to asynchronous tasks by the {@link AuthAwareTaskDecorator}.
+ * Outside of such a scope, the users are not memorized at all.
+ */
+public class UserWithRolesHolder {
+    private UserWithRolesHolder() {
+    }
+
+    private static final ThreadLocal<Map<Boolean, UserWithRoles>> resolvedUsersHolder = new NamedThreadLocal<>("Resolved users with roles");
+
+    public static void open() {
+        resolvedUsersHolder.set(new ConcurrentHashMap<>());
+    }
+
+    public static void reset() {
+        resolvedUsersHolder.remove();
+    }
+
+    public static Map<Boolean, UserWithRoles> get() {
+        return resolvedUsersHolder.get();
+    }
+
+    public static void set(@Nullable Map<Boolean, UserWithRoles> resolvedUsers) {
+        if (resolvedUsers == null) {
+            resolvedUsersHolder.remove();
+        } else {
+            resolvedUsersHolder.set(resolvedUsers);
+        }
+    }
+}
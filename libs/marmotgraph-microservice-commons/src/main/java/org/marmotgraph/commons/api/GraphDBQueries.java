@@ -24,14 +24,26 @@
 
 package org.marmotgraph.commons.api;
 
+import org.marmotgraph.commons.model.DataStage;
 import org.marmotgraph.commons.model.PaginationParam;
+import org.marmotgraph.commons.model.RunningQuery;
 import org.marmotgraph.commons.model.StreamedQueryResult;
 import org.marmotgraph.commons.query.KgQuery;
 
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 public interface GraphDBQueries {
     interface Client extends GraphDBQueries {}
 
     StreamedQueryResult executeQuery(KgQuery query, Map<String, String> params, PaginationParam paginationParam);
+
+    List<RunningQuery> getRunningQueries();
+
+    boolean cancelRunningQuery(UUID id);
+
+    void materializeQuery(KgQuery query);
+
+    boolean dematerializeQuery(DataStage stage, UUID queryId);
 }
@@ -62,4 +62,6 @@ public interface GraphDBTypes {
 
     void removePropertyFromType(String typeName, String propertyName, boolean global);
 
+    void rebuildStructureStatistics(DataStage stage);
+
 }
@@ -24,7 +24,9 @@
 
 package org.marmotgraph.commons.config;
 
+import io.micrometer.observation.ObservationRegistry;
 import org.marmotgraph.commons.AuthAwareTaskDecorator;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -36,11 +38,18 @@ import java.util.concurrent.Executor;
 @ConditionalOnProperty(value = "org.marmotgraph.test", havingValue = "false", matchIfMissing = true)
 @Configuration
 public class AsyncThreadPoolConfig extends AsyncConfigurerSupport {
+
+    private final ObjectProvider<ObservationRegistry> observationRegistry;
+
+    public AsyncThreadPoolConfig(ObjectProvider<ObservationRegistry> observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
     @Override
     @Bean
     public Executor getAsyncExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setTaskDecorator(new AuthAwareTaskDecorator());
+        executor.setTaskDecorator(new AuthAwareTaskDecorator(observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP)));
         executor.setThreadNamePrefix("AuthAwareTaskExecutor-");
         executor.initialize();
         return executor;
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.commons.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.marmotgraph.commons.cache.CacheConstant;
+import org.marmotgraph.commons.model.tenant.ImageResult;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * All caches of {@link CacheConstant} are bounded and record their statistics. Every cache can be tuned individually
+ * by the properties
+ * <ul>
+ *     <li>org.marmotgraph.cache.&lt;name&gt;.maxSize</li>
+ *     <li>org.marmotgraph.cache.&lt;name&gt;.maxWeightInBytes (binary caches only)</li>
+ *     <li>org.marmotgraph.cache.&lt;name&gt;.expireAfterWriteInSeconds</li>
+ *     <li>org.marmotgraph.cache.&lt;name&gt;.expireAfterAccessInSeconds</li>
+ * </ul>
+ * which fall back to the same properties with the name "default" (and "binary" for the weight). An expiration of 0
+ * disables it.
+ */
+@Configuration
+public class CacheConf {
+
+    private static final String PREFIX = "org.marmotgraph.cache.";
+
+    /**
+     * The caches holding images are bounded by the number of bytes they occupy instead of their number of entries -
+     * a handful of large background images otherwise could take the same space as thousands of type specifications.
+     */
+    static final Set<String> BINARY_CACHES = Set.of(CacheConstant.CACHE_KEYS_LOGOS, CacheConstant.CACHE_KEYS_FAVICONS, CacheConstant.CACHE_KEYS_BACKGROUND_IMAGES);
+
+    @Bean
+    public CacheManager cacheManager(Environment environment) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        // Caches which are not registered explicitly are created on demand with the default configuration
+        cacheManager.setCaffeine(createBuilder(environment, "default"));
+        for (String cacheName : CacheConstant.CACHE_KEYS_ALL) {
+            cacheManager.registerCustomCache(cacheName, createBuilder(environment, cacheName).build());
+        }
+        return cacheManager;
+    }
+
+    static Caffeine<Object, Object> createBuilder(Environment environment, String cacheName) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().recordStats();
+        if (BINARY_CACHES.contains(cacheName)) {
+            builder.maximumWeight(getProperty(environment, cacheName, "maxWeightInBytes", getProperty(environment, "binary", "maxWeightInBytes", 50L * 1024 * 1024)));
+            builder.weigher((key, value) -> weigh(value));
+        } else {
+            builder.maximumSize(getProperty(environment, cacheName, "maxSize", getProperty(environment, "default", "maxSize", 10000L)));
+        }
+        long expireAfterWrite = getProperty(environment, cacheName, "expireAfterWriteInSeconds", getProperty(environment, "default", "expireAfterWriteInSeconds", 0L));
+        if (expireAfterWrite > 0) {
+            builder.expireAfterWrite(Duration.ofSeconds(expireAfterWrite));
+        }
+        long expireAfterAccess = getProperty(environment, cacheName, "expireAfterAccessInSeconds", getProperty(environment, "default", "expireAfterAccessInSeconds", 0L));
+        if (expireAfterAccess > 0) {
+            builder.expireAfterAccess(Duration.ofSeconds(expireAfterAccess));
+        }
+        return builder;
+    }
+
+    private static long getProperty(Environment environment, String cacheName, String property, long defaultValue) {
+        return environment.getProperty(PREFIX + cacheName + "." + property, Long.class, defaultValue);
+    }
+
+    static int weigh(Object value) {
+        if (value instanceof ImageResult imageResult) {
+            return imageResult.getImage() != null ? Math.max(1, imageResult.getImage().length) : 1;
+        }
+        if (value instanceof byte[] bytes) {
+            return Math.max(1, bytes.length);
+        }
+        if (value instanceof String string) {
+            return Math.max(1, string.length());
+        }
+        return 1;
+    }
+
+}
@@ -25,14 +25,21 @@
 package org.marmotgraph.commons.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.ClientCodecConfigurer;
 import org.springframework.http.codec.json.Jackson2JsonDecoder;
 import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.ExchangeStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 @Configuration
 public class WebClientConf {
@@ -47,9 +54,31 @@ public class WebClientConf {
                 }).build();
     }
 
+    /**
+     * All web clients share a bounded connection pool - a slow remote system therefore can't exhaust the sockets of
+     * the JVM and callers waiting for a connection give up after the pending acquire timeout.
+     */
+    @Bean(destroyMethod = "dispose")
+    ConnectionProvider webClientConnectionProvider(@Value("${org.marmotgraph.webclient.pool.maxConnections:200}") int maxConnections,
+                                                   @Value("${org.marmotgraph.webclient.pool.pendingAcquireTimeoutInMs:5000}") long pendingAcquireTimeoutInMs,
+                                                   @Value("${org.marmotgraph.webclient.pool.maxIdleTimeInMs:30000}") long maxIdleTimeInMs) {
+        return ConnectionProvider.builder("marmotgraph")
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutInMs))
+                .maxIdleTime(Duration.ofMillis(maxIdleTimeInMs))
+                .evictInBackground(Duration.ofMillis(maxIdleTimeInMs))
+                .build();
+    }
+
     @Bean
-    WebClient.Builder webClient(ObjectMapper objectMapper) {
-        return WebClient.builder().exchangeStrategies(createExchangeStrategy(objectMapper));
+    WebClient.Builder webClient(ObjectMapper objectMapper, ConnectionProvider webClientConnectionProvider,
+                                @Value("${org.marmotgraph.webclient.connectTimeoutInMs:5000}") int connectTimeoutInMs,
+                                @Value("${org.marmotgraph.webclient.responseTimeoutInMs:0}") long responseTimeoutInMs) {
+        HttpClient httpClient = HttpClient.create(webClientConnectionProvider).option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutInMs);
+        if (responseTimeoutInMs > 0) {
+            httpClient = httpClient.responseTimeout(Duration.ofMillis(responseTimeoutInMs));
+        }
+        return WebClient.builder().clientConnector(new ReactorClientHttpConnector(httpClient)).exchangeStrategies(createExchangeStrategy(objectMapper));
     }
 
 }
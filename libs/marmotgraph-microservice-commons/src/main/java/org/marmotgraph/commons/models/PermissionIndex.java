@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.commons.models;
+
+import org.marmotgraph.commons.model.SpaceName;
+import org.marmotgraph.commons.permission.Functionality;
+import org.marmotgraph.commons.permission.FunctionalityInstance;
+import org.marmotgraph.commons.permission.Permission;
+
+import java.util.*;
+
+/**
+ * A compiled representation of a list of {@link FunctionalityInstance}s which allows to check permissions without
+ * scanning the whole list. Per functionality, it keeps
+ * <ul>
+ *     <li>if it is granted globally</li>
+ *     <li>a bitset of the spaces it is granted for (the spaces are numbered by a dictionary of the index itself - it is
+ *     therefore released together with the index and only contains the spaces of this user)</li>
+ *     <li>the prefixes of the wildcard spaces it is granted for</li>
+ *     <li>the instances it is granted for</li>
+ * </ul>
+ * The evaluation is equivalent to the one of the original list (including its specifics such as the permission levels
+ * allowed for the functionality).
+ */
+public class PermissionIndex {
+
+    private final Map<SpaceName, Integer> spaceDictionary = new HashMap<>();
+    private final boolean[] global;
+    private final BitSet[] spaces;
+    private final List<String>[] wildcardPrefixes;
+    private final Set<UUID>[] instances;
+    private final Set<UUID>[] explicitInstances;
+
+    @SuppressWarnings("unchecked")
+    public PermissionIndex(Collection<FunctionalityInstance> permissions) {
+        int numberOfFunctionalities = Functionality.values().length;
+        this.global = new boolean[numberOfFunctionalities];
+        this.spaces = new BitSet[numberOfFunctionalities];
+        this.wildcardPrefixes = new List[numberOfFunctionalities];
+        this.instances = new Set[numberOfFunctionalities];
+        this.explicitInstances = new Set[numberOfFunctionalities];
+        for (int i = 0; i < numberOfFunctionalities; i++) {
+            spaces[i] = new BitSet();
+            wildcardPrefixes[i] = new ArrayList<>();
+            instances[i] = new HashSet<>();
+            explicitInstances[i] = new HashSet<>();
+        }
+        for (FunctionalityInstance permission : permissions) {
+            int f = permission.getFunctionality().ordinal();
+            SpaceName space = permission.getSpace();
+            UUID id = permission.getId();
+            if (id != null) {
+                explicitInstances[f].add(id);
+                if (space == null) {
+                    instances[f].add(id);
+                }
+            } else if (space == null) {
+                global[f] = true;
+            } else {
+                spaces[f].set(intern(space));
+                if (space.isWildcard()) {
+                    wildcardPrefixes[f].add(space.getName().substring(0, space.getName().length() - 1));
+                }
+            }
+        }
+    }
+
+    private int intern(SpaceName space) {
+        return spaceDictionary.computeIfAbsent(space, s -> spaceDictionary.size());
+    }
+
+    private boolean hasSpace(int functionality, SpaceName space) {
+        // The dictionary is only written during the construction - if the space is not known, it can't be part of the index.
+        Integer index = spaceDictionary.get(space);
+        return index != null && spaces[functionality].get(index);
+    }
+
+    private boolean matchesWildcard(int functionality, SpaceName space) {
+        if (space.getName() == null) {
+            return false;
+        }
+        for (String prefix : wildcardPrefixes[functionality]) {
+            if (space.getName().startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean hasPermission(Functionality functionality, SpaceName space, UUID id) {
+        int f = functionality.ordinal();
+        List<Permission.Level> levels = functionality.getAllowedPermissionLevels();
+        if (global[f] && levels.contains(Permission.Level.GLOBAL)) {
+            return true;
+        }
+        if (space != null && levels.contains(Permission.Level.SPACE) && (hasSpace(f, space) || matchesWildcard(f, space))) {
+            return true;
+        }
+        return id != null && levels.contains(Permission.Level.INSTANCE) && instances[f].contains(id);
+    }
+
+    /**
+     * @return the subset of the given spaces for which the functionality is granted on the space level (directly or by wildcard).
+     */
+    public Set<SpaceName> getSpacesWithPermission(Collection<SpaceName> candidates, Functionality functionality) {
+        int f = functionality.ordinal();
+        Set<SpaceName> result = new HashSet<>();
+        if (spaces[f].isEmpty()) {
+            return result;
+        }
+        for (SpaceName candidate : candidates) {
+            if (candidate != null && (hasSpace(f, candidate) || matchesWildcard(f, candidate))) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    public Set<UUID> getInstancesWithExplicitPermission(Functionality functionality) {
+        return Collections.unmodifiableSet(explicitInstances[functionality.ordinal()]);
+    }
+}
@@ -24,6 +24,7 @@
 
 package org.marmotgraph.commons.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.marmotgraph.commons.model.SpaceName;
 import org.marmotgraph.commons.model.User;
 import org.marmotgraph.commons.permission.Functionality;
@@ -47,6 +48,8 @@ public class UserWithRoles {
     private List<UUID> invitations;
     private String clientId;
     private List<FunctionalityInstance> permissions;
+    private transient PermissionIndex permissionIndex;
+    private transient Set<UUID> invitationIndex;
     private transient final Logger logger = LoggerFactory.getLogger(getClass());
 
     // For serialization
@@ -65,6 +68,7 @@ public class UserWithRoles {
         this.clientId = clientId;
         this.invitations = invitations == null ? null : Collections.unmodifiableList(invitations);
         this.permissions = calculatePermissions();
+        this.permissionIndex = new PermissionIndex(this.permissions);
     }
 
     /**
@@ -88,6 +92,18 @@ public class UserWithRoles {
         return permissions;
     }
 
+    /**
+     * @return the compiled form of the {@link #getPermissions()} for fast permission checks
+     */
+    @JsonIgnore
+    public PermissionIndex getPermissionIndex() {
+        if(permissionIndex == null){
+            //The instance has been deserialized - we need to compile the permissions first.
+            permissionIndex = new PermissionIndex(permissions != null ? permissions : Collections.emptyList());
+        }
+        return permissionIndex;
+    }
+
     private List<FunctionalityInstance> calculatePermissions(){
         //Invitation permissions are added after permission evaluation (of global and space)
         final List<FunctionalityInstance> functionalityInstances = evaluatePermissions(userRoles, clientRoles);
@@ -213,6 +229,24 @@ public class UserWithRoles {
         return this.invitations!=null && !this.invitations.isEmpty();
     }
 
+    /**
+     * @return the (distinct) ids of the instances the user is invited for - to be used for filtering by set membership
+     */
+    @JsonIgnore
+    public Set<UUID> getInvitationIds(){
+        if(invitationIndex == null){
+            invitationIndex = invitations == null ? Collections.emptySet() : Collections.unmodifiableSet(new HashSet<>(invitations));
+        }
+        return invitationIndex;
+    }
+
+    /**
+     * @return true if the user is invited for the given instance (directly or because it is in the scope of an instance the user is invited for)
+     */
+    public boolean isInvitedFor(UUID instanceId){
+        return instanceId != null && getInvitationIds().contains(instanceId);
+    }
+
     public final static UserWithRoles INTERNAL_ADMIN = createInternalAdminUser();
 
     private static UserWithRoles createInternalAdminUser(){
@@ -29,13 +29,11 @@ import org.marmotgraph.commons.model.SpaceName;
 import org.marmotgraph.commons.models.UserWithRoles;
 import org.marmotgraph.commons.permission.Functionality;
 import org.marmotgraph.commons.permission.FunctionalityInstance;
-import org.marmotgraph.commons.permission.Permission;
 import org.springframework.stereotype.Component;
 
 
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * The permission service allows to evaluate if a user has the permissions to execute a specific action or not.
@@ -43,39 +41,15 @@ import java.util.stream.Stream;
 @Component
 public class Permissions {
 
-    private Set<FunctionalityInstance> getExpectedFunctionalityList(Functionality functionality, SpaceName space, UUID id) {
-        Set<FunctionalityInstance> instances = new HashSet<>();
-        if (functionality.getAllowedPermissionLevels().contains(Permission.Level.GLOBAL)) {
-            instances.add(new FunctionalityInstance(functionality, null, null));
-        }
-        if (space != null && functionality.getAllowedPermissionLevels().contains(Permission.Level.SPACE)) {
-            instances.add(new FunctionalityInstance(functionality, space, null));
-        }
-        if (id != null && functionality.getAllowedPermissionLevels().contains(Permission.Level.INSTANCE)) {
-            instances.add(new FunctionalityInstance(functionality, null, id));
-        }
-        return instances;
-    }
-
     public boolean hasPermission(UserWithRoles userWithRoles, Functionality functionality, SpaceName space) {
         return hasPermission(userWithRoles, functionality, space, null);
     }
 
-    private boolean checkFunctionalities(Functionality functionality, SpaceName space, UUID id, List<FunctionalityInstance> permissions) {
-        Set<FunctionalityInstance> expectedRoles = getExpectedFunctionalityList(functionality, space, id);
-        boolean fullMatch = expectedRoles.stream().anyMatch(permissions::contains);
-        if(fullMatch){
-            return true;
-        }
-        final Set<FunctionalityInstance> applicableWildcardRoles = permissions.stream().filter(i -> i.getId() == null && i.getSpace() != null && i.getSpace().isWildcard() && i.getFunctionality() == functionality).collect(Collectors.toSet());
-        return applicableWildcardRoles.stream().anyMatch(wildcardRole -> expectedRoles.stream().anyMatch(wildcardRole::matchesWildcard));
-    }
-
     public boolean hasPermission(UserWithRoles userWithRoles, Functionality functionality, SpaceName space, UUID id) {
         if (userWithRoles == null || functionality == null) {
             return false;
         }
-        return checkFunctionalities(functionality, space, id, userWithRoles.getPermissions());
+        return userWithRoles.getPermissionIndex().hasPermission(functionality, space, id);
     }
 
     public boolean hasGlobalPermission(UserWithRoles userWithRoles, Functionality functionality) {
@@ -84,19 +58,17 @@ public class Permissions {
 
     @NotNull
     public Set<SpaceName> getSpacesForPermission(Set<SpaceName> spaces, UserWithRoles userWithRoles, Functionality functionality) {
-        List<FunctionalityInstance> permissions = userWithRoles.getPermissions();
         if (functionality == null || hasGlobalPermission(userWithRoles, functionality)) {
             return Collections.emptySet();
         }
-        final Set<FunctionalityInstance> applicableWildcardRoles = permissions.stream().filter(i -> i.getId() == null && i.getSpace() != null && i.getSpace().isWildcard() && i.getFunctionality() == functionality).collect(Collectors.toSet());
-        final Stream<SpaceName> directHits = permissions.stream().filter(f -> f.getId() == null && f.getFunctionality().equals(functionality) && spaces.contains(f.getSpace())).map(FunctionalityInstance::getSpace).filter(Objects::nonNull);
-        if(!applicableWildcardRoles.isEmpty()) {
-            final Stream<SpaceName> spacesFromWildcards = spaces.stream().filter(space -> applicableWildcardRoles.stream().anyMatch(w -> w.getSpace().matchesWildcard(space)));
-            return Stream.concat(directHits, spacesFromWildcards).collect(Collectors.toSet());
-        }
-        else {
-            return directHits.collect(Collectors.toSet());
+        return userWithRoles.getPermissionIndex().getSpacesWithPermission(spaces, functionality);
+    }
+
+    public Set<UUID> getInstancesWithExplicitPermission(UserWithRoles userWithRoles, Functionality functionality) {
+        if (functionality == null) {
+            return Collections.emptySet();
         }
+        return userWithRoles.getPermissionIndex().getInstancesWithExplicitPermission(functionality);
     }
 
     public Set<UUID> getInstancesWithExplicitPermission(List<FunctionalityInstance> permissions, Functionality functionality) {
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.commons.tracing;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationView;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the latest finished observations as spans in memory - e.g. to verify the instrumentation in tests. It is
+ * registered as soon as "org.marmotgraph.tracing.inMemory.enabled" is set to true. For the export to an OpenTelemetry
+ * collector, the bundle can be built with the "otlp-tracing" profile instead.
+ */
+@Component
+@ConditionalOnProperty(value = "org.marmotgraph.tracing.inMemory.enabled", havingValue = "true")
+public class InMemorySpanRecorder implements ObservationHandler<Observation.Context> {
+
+    private static final String SPAN_ID = InMemorySpanRecorder.class.getName() + ".spanId";
+    private static final String TRACE_ID = InMemorySpanRecorder.class.getName() + ".traceId";
+    private static final String START = InMemorySpanRecorder.class.getName() + ".start";
+    private static final int DEFAULT_CAPACITY = 10000;
+
+    private final AtomicLong spanIds = new AtomicLong();
+    private final Deque<RecordedSpan> spans = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int capacity;
+
+    public InMemorySpanRecorder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public InMemorySpanRecorder(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void onStart(Observation.Context context) {
+        final long spanId = spanIds.incrementAndGet();
+        final ObservationView parent = context.getParentObservation();
+        final Long traceId = parent != null ? parent.getContextView().get(TRACE_ID) : null;
+        context.put(SPAN_ID, spanId);
+        context.put(TRACE_ID, traceId != null ? traceId : spanId);
+        context.put(START, System.nanoTime());
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+        final Long start = context.get(START);
+        final Long spanId = context.get(SPAN_ID);
+        if (start == null || spanId == null) {
+            return;
+        }
+        final ObservationView parent = context.getParentObservation();
+        final Map<String, String> tags = new TreeMap<>();
+        for (KeyValue keyValue : context.getAllKeyValues()) {
+            tags.put(keyValue.getKey(), keyValue.getValue());
+        }
+        spans.addLast(new RecordedSpan(spanId, context.get(TRACE_ID), parent != null ? parent.getContextView().get(SPAN_ID) : null, context.getName(),
+                context.getContextualName() != null ? context.getContextualName() : context.getName(), tags, System.nanoTime() - start, context.getError(), Thread.currentThread().getName()));
+        if (size.incrementAndGet() > capacity && spans.pollFirst() != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return true;
+    }
+
+    /**
+     * @return the finished spans in the order they have been finished
+     */
+    public List<RecordedSpan> getSpans() {
+        return new ArrayList<>(spans);
+    }
+
+    public List<RecordedSpan> getSpans(String name) {
+        return spans.stream().filter(s -> s.getName().equals(name)).toList();
+    }
+
+    public void reset() {
+        spans.clear();
+        size.set(0);
+    }
+
+    public static class RecordedSpan {
+        private final long spanId;
+        private final long traceId;
+        private final Long parentSpanId;
+        private final String name;
+        private final String contextualName;
+        private final Map<String, String> tags;
+        private final long durationInNanos;
+        private final Throwable error;
+        private final String thread;
+
+        private RecordedSpan(long spanId, long traceId, Long parentSpanId, String name, String contextualName, Map<String, String> tags, long durationInNanos, Throwable error, String thread) {
+            this.spanId = spanId;
+            this.traceId = traceId;
+            this.parentSpanId = parentSpanId;
+            this.name = name;
+            this.contextualName = contextualName;
+            this.tags = tags;
+            this.durationInNanos = durationInNanos;
+            this.error = error;
+            this.thread = thread;
+        }
+
+        public long getSpanId() {
+            return spanId;
+        }
+
+        public long getTraceId() {
+            return traceId;
+        }
+
+        public Long getParentSpanId() {
+            return parentSpanId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getContextualName() {
+            return contextualName;
+        }
+
+        public Map<String, String> getTags() {
+            return tags;
+        }
+
+        public long getDurationInNanos() {
+            return durationInNanos;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        public String getThread() {
+            return thread;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%dµs)", contextualName, durationInNanos / 1000);
+        }
+    }
+}
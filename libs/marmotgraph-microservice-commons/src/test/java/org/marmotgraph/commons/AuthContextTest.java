@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.commons;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.marmotgraph.commons.api.Authentication;
+import org.marmotgraph.commons.model.User;
+import org.marmotgraph.commons.models.UserWithRoles;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AuthContextTest {
+
+    private final User user = new User("testUser", "Test", "test@test.xy", "Test", "User", null);
+    private final UserWithRoles userWithRoles = new UserWithRoles(user, Collections.emptyList(), Collections.emptyList(), "testClient");
+    private final UserWithRoles userWithRolesWithoutTermsCheck = new UserWithRoles(user, Collections.emptyList(), Collections.emptyList(), "testClient");
+
+    private AuthContext createAuthContext(Authentication.Client authentication) {
+        when(authentication.getRoles(true)).thenReturn(userWithRoles);
+        when(authentication.getRoles(false)).thenReturn(userWithRolesWithoutTermsCheck);
+        return new AuthContext(mock(AuthTokenContext.class), authentication);
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserWithRolesHolder.reset();
+    }
+
+    @Test
+    void testResolveOncePerRequestAndMode() {
+        //Given
+        Authentication.Client authentication = mock(Authentication.Client.class);
+        AuthContext authContext = createAuthContext(authentication);
+        UserWithRolesHolder.open();
+
+        //When
+        for (int i = 0; i < 5; i++) {
+            assertSame(userWithRoles, authContext.getUserWithRoles());
+            assertSame(userWithRolesWithoutTermsCheck, authContext.getUserWithRolesWithoutTermsCheck());
+        }
+        authContext.getClientSpace();
+
+        //Then
+        verify(authentication, times(1)).getRoles(true);
+        verify(authentication, times(1)).getRoles(false);
+        assertEquals(1, authContext.getNumberOfRoleResolutions(true));
+        assertEquals(1, authContext.getNumberOfRoleResolutions(false));
+    }
+
+    @Test
+    void testResolveEveryTimeOutsideOfRequestScope() {
+        //Given
+        Authentication.Client authentication = mock(Authentication.Client.class);
+        AuthContext authContext = createAuthContext(authentication);
+
+        //When
+        authContext.getUserWithRoles();
+        authContext.getUserWithRoles();
+
+        //Then
+        verify(authentication, times(2)).getRoles(true);
+        assertEquals(2, authContext.getNumberOfRoleResolutions(true));
+    }
+
+    @Test
+    void testResolveAgainInNewRequestScope() {
+        //Given
+        Authentication.Client authentication = mock(Authentication.Client.class);
+        AuthContext authContext = createAuthContext(authentication);
+
+        //When
+        UserWithRolesHolder.open();
+        authContext.getUserWithRoles();
+        UserWithRolesHolder.reset();
+        UserWithRolesHolder.open();
+        authContext.getUserWithRoles();
+
+        //Then
+        verify(authentication, times(2)).getRoles(true);
+    }
+
+    @Test
+    void testResolvedUserIsPropagatedToAsyncTasks() throws InterruptedException {
+        //Given
+        Authentication.Client authentication = mock(Authentication.Client.class);
+        AuthContext authContext = createAuthContext(authentication);
+        UserWithRolesHolder.open();
+        authContext.getUserWithRoles();
+        AtomicReference<UserWithRoles> resolvedInTask = new AtomicReference<>();
+        Runnable task = new AuthAwareTaskDecorator().decorate(() -> resolvedInTask.set(authContext.getUserWithRoles()));
+
+        //When
+        Thread thread = new Thread(task);
+        thread.start();
+        thread.join();
+
+        //Then
+        assertSame(userWithRoles, resolvedInTask.get());
+        verify(authentication, times(1)).getRoles(true);
+    }
+
+}
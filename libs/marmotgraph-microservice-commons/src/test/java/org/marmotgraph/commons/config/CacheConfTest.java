@@ -0,0 +1,122 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.commons.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.junit.jupiter.api.Test;
+import org.marmotgraph.commons.cache.CacheConstant;
+import org.marmotgraph.commons.cache.CacheStatisticsEndpoint;
+import org.marmotgraph.commons.model.tenant.ImageResult;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheConfTest {
+
+    private static StandardEnvironment environment(Map<String, Object> properties) {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+        return environment;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Cache<Object, Object> nativeCache(CacheManager cacheManager, String name) {
+        return ((CaffeineCache) cacheManager.getCache(name)).getNativeCache();
+    }
+
+    @Test
+    void registersAllCaches() {
+        //Given
+        CacheManager cacheManager = new CacheConf().cacheManager(environment(Map.of()));
+
+        //When
+        //Then
+        assertEquals(new HashSet<>(Arrays.asList(CacheConstant.CACHE_KEYS_ALL)), new HashSet<>(cacheManager.getCacheNames()));
+    }
+
+    @Test
+    void boundsCacheBySizeOfIndividualConfiguration() {
+        //Given
+        CacheManager cacheManager = new CacheConf().cacheManager(environment(Map.of("org.marmotgraph.cache.typeSpecification.maxSize", "10", "org.marmotgraph.cache.default.maxSize", "100")));
+
+        //When
+        for (int i = 0; i < 50; i++) {
+            cacheManager.getCache(CacheConstant.CACHE_KEYS_TYPE_SPECIFICATION).put(i, "value" + i);
+            cacheManager.getCache(CacheConstant.CACHE_KEYS_PROPERTY_SPECIFICATION).put(i, "value" + i);
+        }
+        nativeCache(cacheManager, CacheConstant.CACHE_KEYS_TYPE_SPECIFICATION).cleanUp();
+        nativeCache(cacheManager, CacheConstant.CACHE_KEYS_PROPERTY_SPECIFICATION).cleanUp();
+
+        //Then
+        assertEquals(10, nativeCache(cacheManager, CacheConstant.CACHE_KEYS_TYPE_SPECIFICATION).estimatedSize());
+        assertEquals(50, nativeCache(cacheManager, CacheConstant.CACHE_KEYS_PROPERTY_SPECIFICATION).estimatedSize());
+    }
+
+    @Test
+    void boundsBinaryCachesByWeight() {
+        //Given
+        CacheManager cacheManager = new CacheConf().cacheManager(environment(Map.of("org.marmotgraph.cache.binary.maxWeightInBytes", "1000")));
+
+        //When
+        for (int i = 0; i < 10; i++) {
+            cacheManager.getCache(CacheConstant.CACHE_KEYS_LOGOS).put(i, new ImageResult(new byte[300], "image/png"));
+        }
+        nativeCache(cacheManager, CacheConstant.CACHE_KEYS_LOGOS).cleanUp();
+
+        //Then
+        assertEquals(3, nativeCache(cacheManager, CacheConstant.CACHE_KEYS_LOGOS).estimatedSize());
+    }
+
+    @Test
+    void exposesStatistics() {
+        //Given
+        CacheManager cacheManager = new CacheConf().cacheManager(environment(Map.of("org.marmotgraph.cache.spaces.maxSize", "1")));
+        CacheStatisticsEndpoint endpoint = new CacheStatisticsEndpoint(cacheManager);
+        org.springframework.cache.Cache spaces = cacheManager.getCache(CacheConstant.CACHE_KEYS_SPACES);
+
+        //When
+        spaces.put("a", "a");
+        spaces.get("a");
+        spaces.get("b");
+        spaces.put("b", "b");
+        nativeCache(cacheManager, CacheConstant.CACHE_KEYS_SPACES).cleanUp();
+
+        //Then
+        CacheStatisticsEndpoint.Statistics statistics = endpoint.getStatistics().get(CacheConstant.CACHE_KEYS_SPACES);
+        assertEquals(1, statistics.getHitCount());
+        assertEquals(1, statistics.getMissCount());
+        assertEquals(1, statistics.getEvictionCount());
+        assertEquals(1, statistics.getSize());
+        assertEquals(CacheConstant.CACHE_KEYS_ALL.length, endpoint.getStatistics().size());
+    }
+
+}
@@ -33,6 +33,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -121,4 +122,21 @@ class UserWithRolesTest {
         assertFalse(permissions.contains(new FunctionalityInstance(Functionality.CREATE, null, null)));
     }
 
-}
\ No newline at end of file
+    @Test
+    void testIsInvitedFor(){
+        //Given
+        UUID invitation = UUID.randomUUID();
+        UserWithRoles userWithRoles = new UserWithRoles(user, getUserRoles(RoleMapping.CONSUMER, space), null, List.of(invitation), "testClient");
+
+        //when
+        boolean invited = userWithRoles.isInvitedFor(invitation);
+        boolean notInvited = userWithRoles.isInvitedFor(UUID.randomUUID());
+
+        //Then
+        assertTrue(invited);
+        assertFalse(notInvited);
+        assertFalse(userWithRoles.isInvitedFor(null));
+        assertTrue(userWithRoles.getPermissions().contains(new FunctionalityInstance(Functionality.READ, null, invitation)));
+    }
+
+}
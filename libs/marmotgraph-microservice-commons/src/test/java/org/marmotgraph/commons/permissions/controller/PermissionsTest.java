@@ -0,0 +1,180 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.commons.permissions.controller;
+
+import org.junit.jupiter.api.Test;
+import org.marmotgraph.commons.model.SpaceName;
+import org.marmotgraph.commons.model.User;
+import org.marmotgraph.commons.models.UserWithRoles;
+import org.marmotgraph.commons.permission.Functionality;
+import org.marmotgraph.commons.permission.FunctionalityInstance;
+import org.marmotgraph.commons.permission.Permission;
+import org.marmotgraph.commons.permission.roles.RoleMapping;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ensures that the compiled permission index evaluates exactly as the linear scan over the functionality instances does.
+ */
+class PermissionsTest {
+
+    private final Permissions permissions = new Permissions();
+    private final User user = new User("testUser", "Test", "test@test.xy", "Test", "User", null);
+
+    private static final List<SpaceName> SPACES = List.of(new SpaceName("foo"), new SpaceName("foobar"), new SpaceName("bar"), new SpaceName("barfoo"),
+            new SpaceName("review"), new SpaceName("foo*"), new SpaceName("ba*"), new SpaceName("unknown"), new SpaceName("f*"));
+
+    private static final List<UUID> INSTANCES = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+
+    /**
+     * The linear evaluation as it has been done before the introduction of the {@link org.marmotgraph.commons.models.PermissionIndex}
+     */
+    private static boolean hasPermissionByScan(List<FunctionalityInstance> permissions, Functionality functionality, SpaceName space, UUID id) {
+        Set<FunctionalityInstance> expectedRoles = new HashSet<>();
+        if (functionality.getAllowedPermissionLevels().contains(Permission.Level.GLOBAL)) {
+            expectedRoles.add(new FunctionalityInstance(functionality, null, null));
+        }
+        if (space != null && functionality.getAllowedPermissionLevels().contains(Permission.Level.SPACE)) {
+            expectedRoles.add(new FunctionalityInstance(functionality, space, null));
+        }
+        if (id != null && functionality.getAllowedPermissionLevels().contains(Permission.Level.INSTANCE)) {
+            expectedRoles.add(new FunctionalityInstance(functionality, null, id));
+        }
+        if (expectedRoles.stream().anyMatch(permissions::contains)) {
+            return true;
+        }
+        final Set<FunctionalityInstance> applicableWildcardRoles = permissions.stream().filter(i -> i.getId() == null && i.getSpace() != null && i.getSpace().isWildcard() && i.getFunctionality() == functionality).collect(Collectors.toSet());
+        return applicableWildcardRoles.stream().anyMatch(wildcardRole -> expectedRoles.stream().anyMatch(wildcardRole::matchesWildcard));
+    }
+
+    private static Set<SpaceName> getSpacesForPermissionByScan(Set<SpaceName> spaces, List<FunctionalityInstance> permissions, Functionality functionality) {
+        if (hasPermissionByScan(permissions, functionality, null, null)) {
+            return Collections.emptySet();
+        }
+        final Set<FunctionalityInstance> applicableWildcardRoles = permissions.stream().filter(i -> i.getId() == null && i.getSpace() != null && i.getSpace().isWildcard() && i.getFunctionality() == functionality).collect(Collectors.toSet());
+        Set<SpaceName> result = permissions.stream().filter(f -> f.getId() == null && f.getFunctionality().equals(functionality) && spaces.contains(f.getSpace())).map(FunctionalityInstance::getSpace).filter(Objects::nonNull).collect(Collectors.toSet());
+        spaces.stream().filter(space -> applicableWildcardRoles.stream().anyMatch(w -> w.getSpace().matchesWildcard(space))).forEach(result::add);
+        return result;
+    }
+
+    private List<String> randomRoles(Random random) {
+        List<String> roles = new ArrayList<>();
+        int numberOfRoles = random.nextInt(4);
+        for (int i = 0; i < numberOfRoles; i++) {
+            RoleMapping role = RoleMapping.values()[random.nextInt(RoleMapping.values().length)];
+            // Global roles should be rare - otherwise, most checks are trivially true
+            SpaceName space = random.nextInt(10) == 0 ? null : SPACES.get(random.nextInt(SPACES.size()));
+            roles.add(role.toRole(space).getName());
+        }
+        return roles;
+    }
+
+    private UserWithRoles randomUser(Random random) {
+        List<String> clientRoles = random.nextBoolean() ? null : randomRoles(random);
+        List<UUID> invitations = INSTANCES.stream().filter(i -> random.nextBoolean()).toList();
+        return new UserWithRoles(user, randomRoles(random), clientRoles, invitations, "testClient");
+    }
+
+    @Test
+    void testHasPermissionEquivalentToScan() {
+        //Given
+        Random random = new Random(42);
+        List<SpaceName> spaces = new ArrayList<>(SPACES);
+        spaces.add(null);
+        List<UUID> instances = new ArrayList<>(INSTANCES);
+        instances.add(null);
+        instances.add(UUID.randomUUID());
+
+        for (int u = 0; u < 200; u++) {
+            UserWithRoles userWithRoles = randomUser(random);
+            for (Functionality functionality : Functionality.values()) {
+                for (SpaceName space : spaces) {
+                    for (UUID id : instances) {
+                        //When
+                        boolean expected = hasPermissionByScan(userWithRoles.getPermissions(), functionality, space, id);
+                        boolean actual = permissions.hasPermission(userWithRoles, functionality, space, id);
+
+                        //Then
+                        assertEquals(expected, actual, String.format("Mismatch for %s on %s/%s with permissions %s", functionality, space, id, userWithRoles.getPermissions()));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSpacesForPermissionEquivalentToScan() {
+        //Given
+        Random random = new Random(4711);
+
+        for (int u = 0; u < 200; u++) {
+            UserWithRoles userWithRoles = randomUser(random);
+            Set<SpaceName> candidates = SPACES.stream().filter(s -> random.nextInt(4) > 0).collect(Collectors.toSet());
+            for (Functionality functionality : Functionality.values()) {
+                //When
+                Set<SpaceName> expected = getSpacesForPermissionByScan(candidates, userWithRoles.getPermissions(), functionality);
+                Set<SpaceName> actual = permissions.getSpacesForPermission(candidates, userWithRoles, functionality);
+
+                //Then
+                assertEquals(expected, actual, String.format("Mismatch for %s with permissions %s", functionality, userWithRoles.getPermissions()));
+            }
+        }
+    }
+
+    @Test
+    void testInstancesWithExplicitPermissionEquivalentToScan() {
+        //Given
+        Random random = new Random(815);
+
+        for (int u = 0; u < 100; u++) {
+            UserWithRoles userWithRoles = randomUser(random);
+            for (Functionality functionality : Functionality.values()) {
+                //When
+                Set<UUID> expected = permissions.getInstancesWithExplicitPermission(userWithRoles.getPermissions(), functionality);
+                Set<UUID> actual = permissions.getInstancesWithExplicitPermission(userWithRoles, functionality);
+
+                //Then
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    void testNoPermissionsWithoutUser() {
+        //Given
+        UserWithRoles userWithRoles = new UserWithRoles(user, null, null, "testClient");
+
+        //When
+        boolean hasPermission = permissions.hasPermission(userWithRoles, Functionality.READ, new SpaceName("foo"));
+
+        //Then
+        assertFalse(hasPermission);
+        assertFalse(permissions.hasPermission(null, Functionality.READ, new SpaceName("foo")));
+    }
+
+}
@@ -26,6 +26,9 @@ package org.marmotgraph.authentication.api;
 
 import org.marmotgraph.authentication.config.AuthorizationConfiguration;
 import org.marmotgraph.authentication.controller.AuthenticationRepository;
+import org.marmotgraph.authentication.controller.InvitationIndex;
+import org.marmotgraph.authentication.controller.RoleMappings;
+import org.marmotgraph.authentication.controller.TermsOfUseAcceptances;
 import org.marmotgraph.authentication.controller.TermsOfUseRepository;
 import org.marmotgraph.authentication.keycloak.KeycloakClient;
 import org.marmotgraph.authentication.keycloak.KeycloakConfig;
@@ -47,6 +50,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -71,7 +75,13 @@ public class AuthenticationAPI implements Authentication.Client {
 
     private final AuthorizationConfiguration authorizationConfiguration;
 
-    public AuthenticationAPI(KeycloakConfig keycloakConfig, KeycloakClient keycloakClient, KeycloakController keycloakController, AuthenticationRepository authenticationRepository, TermsOfUseRepository termsOfUseRepository, Permissions permissions, AuthorizationConfiguration authorizationConfiguration) {
+    private final RoleMappings roleMappings;
+
+    private final InvitationIndex invitationIndex;
+
+    private final TermsOfUseAcceptances termsOfUseAcceptances;
+
+    public AuthenticationAPI(KeycloakConfig keycloakConfig, KeycloakClient keycloakClient, KeycloakController keycloakController, AuthenticationRepository authenticationRepository, TermsOfUseRepository termsOfUseRepository, Permissions permissions, AuthorizationConfiguration authorizationConfiguration, RoleMappings roleMappings, InvitationIndex invitationIndex, TermsOfUseAcceptances termsOfUseAcceptances) {
         this.keycloakController = keycloakController;
         this.keycloakClient = keycloakClient;
         this.keycloakConfig = keycloakConfig;
@@ -79,6 +89,9 @@ public class AuthenticationAPI implements Authentication.Client {
         this.termsOfUseRepository = termsOfUseRepository;
         this.permissions = permissions;
         this.authorizationConfiguration = authorizationConfiguration;
+        this.roleMappings = roleMappings;
+        this.invitationIndex = invitationIndex;
+        this.termsOfUseAcceptances = termsOfUseAcceptances;
         if(authorizationConfiguration.isDisablePermissionAuthorization()){
             logger.warn("ATTENTION: You have disabled the authorization requirement for defining permissions! This is meant to be active only for the first execution! Please define a mapping for your administrator and set this property to false!");
         }
@@ -123,13 +136,13 @@ public class AuthenticationAPI implements Authentication.Client {
             if(clientProfile!=null && !keycloakController.isServiceAccount(clientProfile.getClaims())){
                 throw new UnauthorizedException("The client authorization credentials you've passed doesn't belong to a service account. This is not allowed!");
             }
-            List<UUID> invitationRoles = authenticationRepository.getInvitationRoles(user.getNativeId());
+            List<UUID> invitationRoles = new ArrayList<>(invitationIndex.getInvitations(user.getNativeId()));
             UserWithRoles userWithRoles = new UserWithRoles(user, userProfile.getRoleNames(), clientProfile != null ? clientProfile.getRoleNames() : null, invitationRoles,
                     keycloakController.getClientInfoFromKeycloak(clientProfile != null ? clientProfile.getClaims() : null));
             // We only do the terms of use check for direct access calls (the clients are required to ensure that the user
             // agrees to the terms of use.)
             if(checkForTermsOfUse && clientProfile==null) {
-                TermsOfUse termsOfUseToAccept = authenticationRepository.findTermsOfUseToAccept(user.getNativeId());
+                TermsOfUse termsOfUseToAccept = termsOfUseAcceptances.findTermsOfUseToAccept(user.getNativeId());
                 if (termsOfUseToAccept != null) {
                     throw new NotAcceptedTermsOfUseException(termsOfUseToAccept);
                 }
@@ -148,13 +161,13 @@ public class AuthenticationAPI implements Authentication.Client {
         if (userProfile != null) {
             User user = keycloakController.buildUserInfoFromKeycloak(userProfile.getClaims());
             if (user != null) {
-                termsOfUse = authenticationRepository.findTermsOfUseToAccept(user.getNativeId());
+                termsOfUse = termsOfUseAcceptances.findTermsOfUseToAccept(user.getNativeId());
                 if (termsOfUse != null) {
                     return new TermsOfUseResult(termsOfUse, false);
                 }
             }
         }
-        termsOfUse = termsOfUseRepository.getCurrentTermsOfUse();
+        termsOfUse = termsOfUseAcceptances.getCurrentTermsOfUse();
         return termsOfUse != null ? new TermsOfUseResult(termsOfUse, true) : null;
     }
 
@@ -163,6 +176,7 @@ public class AuthenticationAPI implements Authentication.Client {
         User user = getMyUserInfo();
         if (user != null) {
             authenticationRepository.acceptTermsOfUse(version, user.getNativeId());
+            termsOfUseAcceptances.invalidate(user.getNativeId());
         } else {
             throw new IllegalArgumentException("Was not able to resolve the user information");
         }
@@ -174,7 +188,11 @@ public class AuthenticationAPI implements Authentication.Client {
         if (!permissions.hasGlobalPermission(this.getRoles(false), Functionality.DEFINE_TERMS_OF_USE)){
             throw new UnauthorizedException("You don't have the rights to define terms of use");
         }
-        termsOfUseRepository.setCurrentTermsOfUse(termsOfUse);
+        try {
+            termsOfUseRepository.setCurrentTermsOfUse(termsOfUse);
+        } finally {
+            termsOfUseAcceptances.invalidateCurrentTermsOfUse();
+        }
     }
 
     /**
@@ -182,6 +200,16 @@ public class AuthenticationAPI implements Authentication.Client {
      **/
     @Override
     public JsonLdDoc updateClaimForRole(RoleMapping role, String space, Map<String, Object> claimPattern, boolean removeClaim) {
+        try {
+            return doUpdateClaimForRole(role, space, claimPattern, removeClaim);
+        }
+        finally {
+            // Even a failing update could have changed the role definitions partially - so we rather invalidate once too often.
+            roleMappings.invalidate();
+        }
+    }
+
+    private JsonLdDoc doUpdateClaimForRole(RoleMapping role, String space, Map<String, Object> claimPattern, boolean removeClaim) {
         if(removeClaim){
             if(authorizationConfiguration.isDisablePermissionAuthorization() || permissions.hasGlobalPermission(this.getRoles(false), Functionality.DELETE_PERMISSION)) {
                 return authenticationRepository.removeClaimFromRole(role.toRole(SpaceName.fromString(space)), claimPattern);
@@ -26,6 +26,7 @@ package org.marmotgraph.authentication.api;
 
 import org.marmotgraph.authentication.controller.AuthenticationRepository;
 import org.marmotgraph.authentication.controller.InvitationController;
+import org.marmotgraph.authentication.controller.InvitationIndex;
 import org.marmotgraph.authentication.model.Invitation;
 import org.springframework.stereotype.Component;
 
@@ -38,20 +39,23 @@ public class InvitationAPI implements org.marmotgraph.commons.api.Invitation.Cli
 
     private final AuthenticationRepository authenticationRepository;
     private final InvitationController invitationController;
-    public InvitationAPI(AuthenticationRepository authenticationRepository, InvitationController invitationController) {
+    private final InvitationIndex invitationIndex;
+    public InvitationAPI(AuthenticationRepository authenticationRepository, InvitationController invitationController, InvitationIndex invitationIndex) {
         this.authenticationRepository = authenticationRepository;
         this.invitationController = invitationController;
+        this.invitationIndex = invitationIndex;
     }
 
     @Override
     public void inviteUserForInstance(UUID id, UUID userId) {
         authenticationRepository.createInvitation(new Invitation(id.toString(), userId.toString()));
-        this.invitationController.calculateInstanceScope(id);
+        calculateInstanceScope(id);
     }
 
     @Override
     public void revokeUserInvitation(UUID id, UUID userId) {
         authenticationRepository.deleteInvitation(new Invitation(id.toString(), userId.toString()));
+        this.invitationIndex.refresh(Collections.singleton(userId.toString()));
     }
 
     @Override
@@ -70,5 +74,7 @@ public class InvitationAPI implements org.marmotgraph.commons.api.Invitation.Cli
     @Override
     public void calculateInstanceScope(UUID id) {
         this.invitationController.calculateInstanceScope(id);
+        // The scope of the instance has changed - this affects everybody who is invited to it.
+        this.invitationIndex.refresh(listInvitedUserIds(id));
     }
 }
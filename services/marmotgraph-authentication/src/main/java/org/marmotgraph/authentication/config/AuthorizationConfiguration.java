@@ -25,6 +25,7 @@
 package org.marmotgraph.authentication.config;
 
 import com.arangodb.ArangoDB;
+import org.marmotgraph.arango.commons.AqlQueryExecutor;
 import org.marmotgraph.arango.commons.model.ArangoDatabaseProxy;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -62,8 +63,8 @@ public class AuthorizationConfiguration {
 
     @Bean
     @Qualifier("termsOfUseDB")
-    public ArangoDatabaseProxy produceTermsOfUseDB(@Qualifier("arangoBuilderForTermsOfUse") ArangoDB.Builder arangoDB) {
-        return new ArangoDatabaseProxy(arangoDB.build(), "kg1-authentication");
+    public ArangoDatabaseProxy produceTermsOfUseDB(@Qualifier("arangoBuilderForTermsOfUse") ArangoDB.Builder arangoDB, AqlQueryExecutor aqlQueryExecutor) {
+        return new ArangoDatabaseProxy(arangoDB.build(), "kg1-authentication", aqlQueryExecutor);
     }
 
 }
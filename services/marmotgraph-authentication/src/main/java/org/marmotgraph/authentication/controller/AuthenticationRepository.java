@@ -29,7 +29,6 @@ import com.arangodb.ArangoDatabase;
 import com.arangodb.model.DocumentCreateOptions;
 import com.arangodb.model.OverwriteMode;
 import jakarta.annotation.PostConstruct;
-import jakarta.validation.constraints.NotNull;
 import org.marmotgraph.arango.commons.aqlbuilder.AQL;
 import org.marmotgraph.arango.commons.aqlbuilder.ArangoVocabulary;
 import org.marmotgraph.arango.commons.model.ArangoDatabaseProxy;
@@ -38,23 +37,17 @@ import org.marmotgraph.authentication.model.InstanceScope;
 import org.marmotgraph.authentication.model.Invitation;
 import org.marmotgraph.authentication.model.TermsOfUseAcceptance;
 import org.marmotgraph.commons.SetupLogic;
-import org.marmotgraph.commons.cache.CacheConstant;
 import org.marmotgraph.commons.jsonld.JsonLdDoc;
-import org.marmotgraph.commons.model.TermsOfUse;
 import org.marmotgraph.commons.permission.roles.Role;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Component
 public class AuthenticationRepository implements SetupLogic {
 
     private final ArangoDatabaseProxy arangoDatabase;
-    private final TermsOfUseRepository termsOfUseRepository;
 
     @PostConstruct
     public void setup() {
@@ -65,9 +58,8 @@ public class AuthenticationRepository implements SetupLogic {
         arangoDatabase.createCollectionIfItDoesntExist("instanceScopes");
     }
 
-    public AuthenticationRepository(@Qualifier("termsOfUseDB") ArangoDatabaseProxy arangoDatabase, TermsOfUseRepository termsOfUseRepository) {
+    public AuthenticationRepository(@Qualifier("termsOfUseDB") ArangoDatabaseProxy arangoDatabase) {
         this.arangoDatabase = arangoDatabase;
-        this.termsOfUseRepository = termsOfUseRepository;
     }
 
     private ArangoCollection getPermissionsCollection() {
@@ -89,40 +81,6 @@ public class AuthenticationRepository implements SetupLogic {
         return database.collection("instanceScopes");
     }
 
-    private Collection<?> ensureCollection(Object o){
-        if(o == null){
-            return Collections.emptySet();
-        }
-        else if(o instanceof Collection){
-            return (Collection<?>) o;
-        }
-        else {
-            return Collections.singleton(o);
-        }
-    }
-
-    @NotNull
-    private Set<String> translateUserInfoToRole(String roleLabel, String key, Map<?,?> role, Map<?,?> userInfo) {
-        if (!userInfo.containsKey(key)) {
-            return Collections.emptySet();
-        }
-        Object r = role.get(key);
-        Object u = userInfo.get(key);
-        if (r instanceof Map && u instanceof Map) {
-            return ((Map<?, ?>) r).keySet().stream()
-                    .map(k -> translateUserInfoToRole(roleLabel, (String) k, (Map) r, (Map) u)).
-                    flatMap(Collection::stream).collect(Collectors.toSet());
-        }
-        if(r!=null && u!=null){
-            return ensureCollection(u).stream().filter(userClaim -> userClaim instanceof String).map(userClaim ->
-                    ensureCollection(r).stream()
-                            .filter(roleClaim -> ((String) userClaim).matches((String) roleClaim))
-                            .map(roleClaim -> ((String)userClaim).replaceAll((String) roleClaim, roleLabel))
-                            .collect(Collectors.toSet())).flatMap(Collection::stream).collect(Collectors.toSet());
-        }
-        return Collections.emptySet();
-    }
-
     public List<Invitation> getAllInvitationsByInstanceId(String instanceId){
         AQL aql = new AQL();
         Map<String, Object> bindVars = new HashMap<>();
@@ -139,15 +97,34 @@ public class AuthenticationRepository implements SetupLogic {
         return arangoDatabase.get().query(aql.build().getValue(), UUID.class).asListRemaining();
     }
 
-    public List<String> getAllInvitationsForUserId(String userId){
+    /**
+     * @return the ids of all instances the given users are invited for (including the scope of the instances) by user id - in a single query.
+     */
+    public Map<String, Set<UUID>> getInvitationRolesByUserIds(Collection<String> userIds){
         AQL aql = new AQL();
         Map<String, Object> bindVars = new HashMap<>();
-        aql.add(AQL.trust("FOR id IN FLATTEN(FOR i IN invitations "));
-        aql.addLine(AQL.trust("FILTER i.`userId` == @userId"));
-        aql.addLine(AQL.trust("LET scope = APPEND([i.`instanceId`], DOCUMENT(\"instanceScopes\", i.`instanceId`).relatedIds)"));
-        aql.addLine(AQL.trust("RETURN scope) RETURN id"));
-        bindVars.put("userId", userId);
-        return arangoDatabase.get().query(aql.build().getValue(), String.class, bindVars).asListRemaining();
+        aql.add(AQL.trust("FOR i IN invitations "));
+        aql.addLine(AQL.trust("FILTER i.`userId` IN @userIds"));
+        aql.addLine(AQL.trust("COLLECT userId = i.`userId` INTO invitationsOfUser"));
+        aql.addLine(AQL.trust("LET ids = UNIQUE(FLATTEN(FOR g IN invitationsOfUser RETURN APPEND([g.i.`instanceId`], DOCUMENT(\"instanceScopes\", g.i.`instanceId`).relatedIds)))"));
+        aql.addLine(AQL.trust("RETURN {\"userId\": userId, \"ids\": ids}"));
+        bindVars.put("userIds", userIds);
+        Map<String, Set<UUID>> result = new HashMap<>();
+        userIds.forEach(u -> result.put(u, new HashSet<>()));
+        for (Map<?, ?> invitationsOfUser : arangoDatabase.get().query(aql.build().getValue(), Map.class, bindVars).asListRemaining()) {
+            Object ids = invitationsOfUser.get("ids");
+            if (ids instanceof Collection<?> c) {
+                c.stream().filter(Objects::nonNull).map(id -> UUID.fromString(id.toString())).forEach(result.get((String) invitationsOfUser.get("userId"))::add);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the combined revision of the invitations and the instance scopes - changes with every modification of any of them.
+     */
+    public String getInvitationsRevision() {
+        return getInvitationsCollection().getRevision().getRevision() + "/" + getInstanceScopesCollection().getRevision().getRevision();
     }
 
     public List<Invitation> get(String userId){
@@ -181,32 +158,12 @@ public class AuthenticationRepository implements SetupLogic {
 
 
     /**
-     * @param userInfo Map of user information
-     * @return Mutable List of strings to make the serialization work with cache mechanism (see https://github.com/spring-projects/spring-data-redis/issues/2697#issuecomment-1709664940)
+     * @return the revision of the role definitions - changes with every modification of any of them.
      */
-    public List<String> getRolesFromUserInfo(Map<String, Object> userInfo) {
-        if (userInfo == null || userInfo.isEmpty()) {
-            return new ArrayList<>();
-        }
-        Object user = userInfo.get("sub");
-        final List<JsonLdDoc> results = getAllRoleDefinitions();
-        return results.stream().map(r -> {
-            String role = r.get(ArangoVocabulary.KEY) != null ? (String) r.get(ArangoVocabulary.KEY) : null;
-            if (role != null) {
-                if (r.containsKey("authenticated") && (boolean) r.get("authenticated") && user != null) {
-                    //If the role is specified to be applied whenever somebody is authenticated, we can just return it.
-                    //Please note, that it is not possible to apply regex pattern for these kind of assignments.
-                    return Collections.singletonList(role);
-                }
-                return r.keySet().stream().filter(k -> !k.startsWith("_"))
-                        .map(k -> translateUserInfoToRole(role, k, r, userInfo))
-                        .flatMap(Collection::stream).collect(Collectors.toSet());
-            }
-            return null;
-        }).filter(Objects::nonNull).flatMap(Collection::stream).distinct().collect(Collectors.toList());
+    public String getRoleDefinitionsRevision() {
+        return getPermissionsCollection().getRevision().getRevision();
     }
 
-
     public JsonLdDoc getClaimForRole(Role role) {
         return getPermissionsCollection().getDocument(role.getName(), JsonLdDoc.class);
     }
@@ -293,25 +250,11 @@ public class AuthenticationRepository implements SetupLogic {
         return target.isEmpty();
     }
 
-    public List<UUID> getInvitationRoles(String userId){
-        List<String> ids = this.getAllInvitationsForUserId(userId);
-        return ids.stream().distinct().map(UUID::fromString).toList();
-    }
-
-    @Cacheable(CacheConstant.CACHE_KEYS_TERMS_OF_USE_BY_USER)
-    public TermsOfUse findTermsOfUseToAccept(String userId) {
+    public boolean hasAcceptedTermsOfUse(String userId, String version) {
         TermsOfUseAcceptance termsOfUse = getUsersCollection().getDocument(userId, TermsOfUseAcceptance.class);
-        TermsOfUse currentTermsOfUse = termsOfUseRepository.getCurrentTermsOfUse();
-        if (currentTermsOfUse != null) {
-            String currentVersion = currentTermsOfUse.getVersion();
-            if (termsOfUse != null && termsOfUse.getAcceptedTermsOfUse().stream().anyMatch(t -> t.getVersion().equals(currentVersion))) {
-                return null;
-            }
-        }
-        return currentTermsOfUse;
+        return termsOfUse != null && termsOfUse.getAcceptedTermsOfUse().stream().anyMatch(t -> t.getVersion().equals(version));
     }
 
-    @CacheEvict(value = CacheConstant.CACHE_KEYS_TERMS_OF_USE_BY_USER, key = "#userId")
     public void acceptTermsOfUse(String version, String userId) {
         TermsOfUseAcceptance userAcceptance = getUsersCollection().getDocument(userId, TermsOfUseAcceptance.class);
         if (userAcceptance == null) {
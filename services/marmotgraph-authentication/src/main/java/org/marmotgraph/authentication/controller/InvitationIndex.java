@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.authentication.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Keeps the (scope-resolved) ids of the instances a user is invited for. The sets are materialized whenever the
+ * invitations of a user or the scope of an instance with invitations change through this service. To catch changes
+ * made by other instances, all entries are dropped whenever the revision of the underlying collections has changed
+ * (the expiry of the entries is only a fallback). Users which haven't been materialized yet are loaded lazily.
+ */
+@Component
+public class InvitationIndex {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final AuthenticationRepository authenticationRepository;
+    private final long ttlInMs;
+    private final Map<String, Entry> invitationsByUser;
+    private long version;
+    private String revision;
+
+    public InvitationIndex(AuthenticationRepository authenticationRepository, @Value("${org.marmotgraph.authentication.invitationIndex.maxSize:10000}") int maxSize, @Value("${org.marmotgraph.authentication.invitationIndex.ttlInSeconds:300}") long ttlInSeconds) {
+        this.authenticationRepository = authenticationRepository;
+        this.ttlInMs = ttlInSeconds * 1000;
+        this.invitationsByUser = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    private static class Entry {
+        private final Set<UUID> instanceIds;
+        private final long expiresAt;
+
+        private Entry(Set<UUID> instanceIds, long expiresAt) {
+            this.instanceIds = instanceIds;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * @return the ids of the instances the given user is invited for (including the ones in the scope of these instances)
+     */
+    public Set<UUID> getInvitations(String userId) {
+        if (userId == null) {
+            return Collections.emptySet();
+        }
+        long currentVersion;
+        synchronized (this) {
+            Entry entry = invitationsByUser.get(userId);
+            if (entry != null && System.currentTimeMillis() < entry.expiresAt) {
+                return entry.instanceIds;
+            }
+            currentVersion = version;
+        }
+        return load(Collections.singleton(userId), currentVersion).get(userId);
+    }
+
+    /**
+     * Materializes the invitations of the given users - to be called whenever their invitations (or the scope of the instances they are invited for) have changed.
+     */
+    public void refresh(Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        long currentVersion;
+        synchronized (this) {
+            // Whatever is loaded concurrently could be outdated already.
+            currentVersion = ++version;
+            userIds.forEach(invitationsByUser::remove);
+        }
+        load(userIds, currentVersion);
+    }
+
+    /**
+     * Drops all materialized invitations - they are loaded lazily again.
+     */
+    public synchronized void invalidateAll() {
+        version++;
+        invitationsByUser.clear();
+    }
+
+    @Scheduled(fixedDelayString = "${org.marmotgraph.authentication.invitationIndex.revisionCheckInMs:10000}", initialDelayString = "${org.marmotgraph.authentication.invitationIndex.revisionCheckInMs:10000}")
+    public void checkRevision() {
+        try {
+            String currentRevision = authenticationRepository.getInvitationsRevision();
+            synchronized (this) {
+                if (!Objects.equals(currentRevision, revision)) {
+                    if (!invitationsByUser.isEmpty()) {
+                        logger.info("The invitations have been changed (revision {} -> {}) - dropping the materialized invitations", revision, currentRevision);
+                        invalidateAll();
+                    }
+                    revision = currentRevision;
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Was not able to check the revision of the invitations", e);
+        }
+    }
+
+    private Map<String, Set<UUID>> load(Collection<String> userIds, long loadedAtVersion) {
+        Map<String, Set<UUID>> invitations = authenticationRepository.getInvitationRolesByUserIds(userIds);
+        long expiresAt = System.currentTimeMillis() + ttlInMs;
+        Map<String, Set<UUID>> result = new HashMap<>();
+        synchronized (this) {
+            for (String userId : userIds) {
+                Set<UUID> instanceIds = Collections.unmodifiableSet(invitations.getOrDefault(userId, Collections.emptySet()));
+                result.put(userId, instanceIds);
+                if (version == loadedAtVersion) {
+                    invitationsByUser.put(userId, new Entry(instanceIds, expiresAt));
+                }
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.authentication.controller;
+
+import org.marmotgraph.arango.commons.aqlbuilder.ArangoVocabulary;
+import org.marmotgraph.authentication.keycloak.TokenCache;
+import org.marmotgraph.commons.jsonld.JsonLdDoc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps an in-memory snapshot of all role definitions with precompiled claim patterns so the roles of a user can be
+ * evaluated without any database access. The snapshot is replaced whenever the role definitions are changed through
+ * this service and - to catch changes made by other instances - whenever the revision of the underlying collection
+ * has changed.
+ */
+@Component
+public class RoleMappings {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final AuthenticationRepository authenticationRepository;
+
+    private final TokenCache tokenCache;
+
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile Snapshot snapshot;
+
+    public RoleMappings(AuthenticationRepository authenticationRepository, TokenCache tokenCache) {
+        this.authenticationRepository = authenticationRepository;
+        this.tokenCache = tokenCache;
+    }
+
+    /**
+     * @param userInfo Map of user information
+     * @return Mutable List of strings to make the serialization work with cache mechanism (see https://github.com/spring-projects/spring-data-redis/issues/2697#issuecomment-1709664940)
+     */
+    public List<String> getRolesFromUserInfo(Map<String, Object> userInfo) {
+        if (userInfo == null || userInfo.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Object user = userInfo.get("sub");
+        Set<String> roles = new LinkedHashSet<>();
+        for (RoleDefinition roleDefinition : getSnapshot().roleDefinitions) {
+            if (roleDefinition.authenticated && user != null) {
+                //If the role is specified to be applied whenever somebody is authenticated, we can just return it.
+                //Please note, that it is not possible to apply regex pattern for these kind of assignments.
+                roles.add(roleDefinition.role);
+            } else {
+                roleDefinition.claims.collect(roleDefinition.role, userInfo, roles);
+            }
+        }
+        return new ArrayList<>(roles);
+    }
+
+    public long getVersion() {
+        return getSnapshot().version;
+    }
+
+    /**
+     * @return the names of all (top level) claims the role definitions are referring to
+     */
+    public Set<String> getReferencedClaims() {
+        return getSnapshot().referencedClaims;
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = load(version.get());
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Drops the current snapshot - to be called whenever the role definitions have been changed. The new snapshot is
+     * loaded lazily with the next evaluation.
+     */
+    public synchronized void invalidate() {
+        version.incrementAndGet();
+        snapshot = null;
+        tokenCache.invalidateRoleDefinitions();
+    }
+
+    @Scheduled(fixedDelayString = "${org.marmotgraph.authentication.roleMappings.revisionCheckInMs:30000}", initialDelayString = "${org.marmotgraph.authentication.roleMappings.revisionCheckInMs:30000}")
+    public void checkRevision() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            // Nothing has been loaded so far - so there is nothing to be outdated either.
+            return;
+        }
+        try {
+            String revision = authenticationRepository.getRoleDefinitionsRevision();
+            if (!Objects.equals(revision, current.revision)) {
+                logger.info("The role definitions have been changed (revision {} -> {}) - reloading them", current.revision, revision);
+                invalidate();
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Was not able to check the revision of the role definitions", e);
+        }
+    }
+
+    private Snapshot load(long version) {
+        // We read the revision first - if there is a change while we're loading the definitions, the next check will reload them again.
+        String revision = authenticationRepository.getRoleDefinitionsRevision();
+        List<RoleDefinition> roleDefinitions = new ArrayList<>();
+        for (JsonLdDoc definition : authenticationRepository.getAllRoleDefinitions()) {
+            Object role = definition.get(ArangoVocabulary.KEY);
+            if (role instanceof String r) {
+                roleDefinitions.add(new RoleDefinition(r, Boolean.TRUE.equals(definition.get("authenticated")), ClaimMatcher.compile(definition)));
+            }
+        }
+        return new Snapshot(version, revision, roleDefinitions);
+    }
+
+    private static class Snapshot {
+        private final long version;
+        private final String revision;
+        private final List<RoleDefinition> roleDefinitions;
+        private final Set<String> referencedClaims;
+
+        private Snapshot(long version, String revision, List<RoleDefinition> roleDefinitions) {
+            this.version = version;
+            this.revision = revision;
+            this.roleDefinitions = roleDefinitions;
+            Set<String> claims = new HashSet<>();
+            for (RoleDefinition roleDefinition : roleDefinitions) {
+                if (roleDefinition.authenticated) {
+                    claims.add("sub");
+                } else {
+                    claims.addAll(roleDefinition.claims.nested.keySet());
+                }
+            }
+            this.referencedClaims = Collections.unmodifiableSet(claims);
+        }
+    }
+
+    private static class RoleDefinition {
+        private final String role;
+        private final boolean authenticated;
+        private final ClaimMatcher claims;
+
+        private RoleDefinition(String role, boolean authenticated, ClaimMatcher claims) {
+            this.role = role;
+            this.authenticated = authenticated;
+            this.claims = claims;
+        }
+    }
+
+    /**
+     * The compiled form of a claim pattern: either a structure of nested claims or a list of regular expressions
+     * which are applied to the value(s) of the claim of the user.
+     */
+    static class ClaimMatcher {
+        private final Map<String, ClaimMatcher> nested;
+        private final List<Pattern> patterns;
+
+        private ClaimMatcher(Map<String, ClaimMatcher> nested, List<Pattern> patterns) {
+            this.nested = nested;
+            this.patterns = patterns;
+        }
+
+        static ClaimMatcher compile(Map<?, ?> claimPattern) {
+            Map<String, ClaimMatcher> nested = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : claimPattern.entrySet()) {
+                if (entry.getKey() instanceof String key && !key.startsWith("_")) {
+                    nested.put(key, compileValue(entry.getValue()));
+                }
+            }
+            return new ClaimMatcher(nested, null);
+        }
+
+        private static ClaimMatcher compileValue(Object value) {
+            if (value instanceof Map<?, ?> map) {
+                Map<String, ClaimMatcher> nested = new LinkedHashMap<>();
+                map.forEach((k, v) -> nested.put((String) k, compileValue(v)));
+                return new ClaimMatcher(nested, null);
+            }
+            Collection<?> values = value instanceof Collection<?> c ? c : value != null ? Collections.singleton(value) : Collections.emptySet();
+            // Only strings can be regular expressions - everything else can never match.
+            return new ClaimMatcher(null, values.stream().filter(v -> v instanceof String).map(v -> Pattern.compile((String) v)).toList());
+        }
+
+        void collect(String roleLabel, Map<?, ?> userInfo, Set<String> collector) {
+            for (Map.Entry<String, ClaimMatcher> entry : nested.entrySet()) {
+                Object userValue = userInfo.get(entry.getKey());
+                if (userValue != null) {
+                    entry.getValue().collectValue(roleLabel, userValue, collector);
+                }
+            }
+        }
+
+        private void collectValue(String roleLabel, Object userValue, Set<String> collector) {
+            if (nested != null) {
+                if (userValue instanceof Map<?, ?> userMap) {
+                    collect(roleLabel, userMap, collector);
+                }
+            } else if (!patterns.isEmpty() && !(userValue instanceof Map)) {
+                Collection<?> userClaims = userValue instanceof Collection<?> c ? c : Collections.singleton(userValue);
+                for (Object userClaim : userClaims) {
+                    if (userClaim instanceof String claim) {
+                        for (Pattern pattern : patterns) {
+                            Matcher matcher = pattern.matcher(claim);
+                            if (matcher.matches()) {
+                                collector.add(matcher.replaceAll(roleLabel));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
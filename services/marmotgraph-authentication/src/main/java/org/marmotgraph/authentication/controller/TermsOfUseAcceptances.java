@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.authentication.controller;
+
+import org.marmotgraph.commons.model.TermsOfUse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the current terms of use and - per user - the version of the terms of use the user is known to have accepted.
+ * Since an acceptance can't be revoked, the common "already accepted" case can be answered without any I/O as long as
+ * the terms of use don't change. The current terms of use are reloaded regularly so changes by other instances are
+ * taken into account eventually.
+ */
+@Component
+public class TermsOfUseAcceptances {
+
+    private final TermsOfUseRepository termsOfUseRepository;
+    private final AuthenticationRepository authenticationRepository;
+    private final long currentTermsOfUseTtlInMs;
+    private final Map<String, String> acceptedVersionByUser;
+    private CurrentTermsOfUse currentTermsOfUse;
+    private long version;
+
+    public TermsOfUseAcceptances(TermsOfUseRepository termsOfUseRepository, AuthenticationRepository authenticationRepository, @Value("${org.marmotgraph.authentication.termsOfUse.maxSize:10000}") int maxSize, @Value("${org.marmotgraph.authentication.termsOfUse.ttlInSeconds:60}") long currentTermsOfUseTtlInSeconds) {
+        this.termsOfUseRepository = termsOfUseRepository;
+        this.authenticationRepository = authenticationRepository;
+        this.currentTermsOfUseTtlInMs = currentTermsOfUseTtlInSeconds * 1000;
+        this.acceptedVersionByUser = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    private static class CurrentTermsOfUse {
+        private final TermsOfUse termsOfUse;
+        private final long expiresAt;
+
+        private CurrentTermsOfUse(TermsOfUse termsOfUse, long expiresAt) {
+            this.termsOfUse = termsOfUse;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public TermsOfUse getCurrentTermsOfUse() {
+        long loadedAtVersion;
+        synchronized (this) {
+            if (currentTermsOfUse != null && System.currentTimeMillis() < currentTermsOfUse.expiresAt) {
+                return currentTermsOfUse.termsOfUse;
+            }
+            loadedAtVersion = version;
+        }
+        TermsOfUse termsOfUse = termsOfUseRepository.getCurrentTermsOfUse();
+        synchronized (this) {
+            if (version == loadedAtVersion) {
+                currentTermsOfUse = new CurrentTermsOfUse(termsOfUse, System.currentTimeMillis() + currentTermsOfUseTtlInMs);
+            }
+        }
+        return termsOfUse;
+    }
+
+    /**
+     * @return the current terms of use if the given user hasn't accepted them yet - null otherwise
+     */
+    public TermsOfUse findTermsOfUseToAccept(String userId) {
+        TermsOfUse termsOfUse = getCurrentTermsOfUse();
+        if (termsOfUse == null) {
+            return null;
+        }
+        String currentVersion = termsOfUse.getVersion();
+        synchronized (this) {
+            if (currentVersion.equals(acceptedVersionByUser.get(userId))) {
+                return null;
+            }
+        }
+        if (authenticationRepository.hasAcceptedTermsOfUse(userId, currentVersion)) {
+            synchronized (this) {
+                acceptedVersionByUser.put(userId, currentVersion);
+            }
+            return null;
+        }
+        return termsOfUse;
+    }
+
+    /**
+     * To be called after the user has accepted terms of use
+     */
+    public synchronized void invalidate(String userId) {
+        acceptedVersionByUser.remove(userId);
+    }
+
+    /**
+     * To be called after the terms of use have changed
+     */
+    public synchronized void invalidateCurrentTermsOfUse() {
+        version++;
+        currentTermsOfUse = null;
+        acceptedVersionByUser.clear();
+    }
+
+    synchronized int size() {
+        return acceptedVersionByUser.size();
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.authentication.keycloak;
+
+import com.auth0.jwt.interfaces.RSAKeyProvider;
+import org.marmotgraph.commons.JsonAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigInteger;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Provides the public keys of the identity provider by their key id as published in its JSON web key set (JWKS).
+ * The keys are cached locally so tokens can be verified without contacting the identity provider. They are refreshed
+ * regularly (see {@link #refresh()}) and - to handle key rotations - on demand if a token refers to an unknown key id
+ * (at most once per min refresh interval to prevent floods of tokens with arbitrary key ids to reach the identity provider).
+ * If the key id remains unknown (or the identity provider doesn't publish any keys), the fallback key is used.
+ */
+public class JwksKeyProvider implements RSAKeyProvider {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Supplier<String> jwksLoader;
+    private final JsonAdapter jsonAdapter;
+    private final RSAPublicKey fallbackKey;
+    private final long minRefreshIntervalInMs;
+    private volatile Map<String, RSAPublicKey> keys = Collections.emptyMap();
+    private final AtomicLong lastRefresh = new AtomicLong();
+
+    /**
+     * @param jwksLoader  loads the JSON web key set - null if the identity provider doesn't publish one
+     * @param fallbackKey the key to be used for tokens without or with an unknown key id
+     */
+    public JwksKeyProvider(Supplier<String> jwksLoader, JsonAdapter jsonAdapter, RSAPublicKey fallbackKey, long minRefreshIntervalInMs) {
+        this.jwksLoader = jwksLoader;
+        this.jsonAdapter = jsonAdapter;
+        this.fallbackKey = fallbackKey;
+        this.minRefreshIntervalInMs = minRefreshIntervalInMs;
+    }
+
+    @Override
+    public RSAPublicKey getPublicKeyById(String keyId) {
+        if (keyId == null) {
+            return fallbackKey;
+        }
+        RSAPublicKey key = keys.get(keyId);
+        if (key == null && refreshIfAllowed()) {
+            //The key might have been rotated in the meantime...
+            key = keys.get(keyId);
+        }
+        return key != null ? key : fallbackKey;
+    }
+
+    /**
+     * Only the thread claiming the refresh slot loads the key set - the others continue with the keys they have. The
+     * key set is loaded outside of any lock so a slow identity provider doesn't block the verification of other tokens.
+     */
+    private boolean refreshIfAllowed() {
+        if (jwksLoader == null) {
+            return false;
+        }
+        long previousRefresh = lastRefresh.get();
+        long now = System.currentTimeMillis();
+        if (now - previousRefresh >= minRefreshIntervalInMs && lastRefresh.compareAndSet(previousRefresh, now)) {
+            load();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reloads the key set. If this fails, the previously loaded keys remain active.
+     */
+    public void refresh() {
+        if (jwksLoader == null) {
+            return;
+        }
+        lastRefresh.set(System.currentTimeMillis());
+        load();
+    }
+
+    private void load() {
+        try {
+            Map<String, RSAPublicKey> loadedKeys = parse(jwksLoader.get());
+            if (!loadedKeys.keySet().equals(keys.keySet())) {
+                logger.info("Loaded the keys {} of the identity provider", loadedKeys.keySet());
+            }
+            keys = loadedKeys;
+        } catch (RuntimeException e) {
+            logger.warn("Was not able to refresh the keys of the identity provider - keeping the previous ones", e);
+        }
+    }
+
+    public Set<String> getKeyIds() {
+        return Collections.unmodifiableSet(keys.keySet());
+    }
+
+    private Map<String, RSAPublicKey> parse(String jwks) {
+        Map<String, RSAPublicKey> result = new HashMap<>();
+        Map<?, ?> keySet = jsonAdapter.fromJson(jwks, Map.class);
+        Object keyList = keySet != null ? keySet.get("keys") : null;
+        if (keyList instanceof Collection<?> c) {
+            for (Object k : c) {
+                if (k instanceof Map<?, ?> key && "RSA".equals(key.get("kty")) && key.get("kid") != null && !"enc".equals(key.get("use"))) {
+                    result.put(key.get("kid").toString(), toPublicKey((String) key.get("n"), (String) key.get("e")));
+                }
+            }
+        }
+        return result;
+    }
+
+    static RSAPublicKey toPublicKey(String modulus, String exponent) {
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            RSAPublicKeySpec spec = new RSAPublicKeySpec(new BigInteger(1, decoder.decode(modulus)), new BigInteger(1, decoder.decode(exponent)));
+            return (RSAPublicKey) KeyFactory.getInstance("RSA").generatePublic(spec);
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Override
+    public RSAPrivateKey getPrivateKey() {
+        // We only verify tokens - we never sign them.
+        return null;
+    }
+
+    @Override
+    public String getPrivateKeyId() {
+        return null;
+    }
+}
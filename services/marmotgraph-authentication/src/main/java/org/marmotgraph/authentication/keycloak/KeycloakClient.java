@@ -31,11 +31,15 @@ import jakarta.annotation.PostConstruct;
 import org.marmotgraph.authentication.model.IssuerInfo;
 import org.marmotgraph.authentication.model.OpenIdConfig;
 import org.marmotgraph.commons.JsonAdapter;
+import org.marmotgraph.commons.exception.ServiceNotAvailableException;
 import org.marmotgraph.commons.exception.UnauthorizedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 
@@ -44,8 +48,11 @@ import java.security.NoSuchAlgorithmException;
 import java.security.interfaces.RSAPublicKey;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
-import java.util.Base64;
-import java.util.Map;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 @Component
@@ -63,26 +70,73 @@ public class KeycloakClient {
 
     private IssuerInfo issuerInfo;
 
-    public KeycloakClient(JsonAdapter jsonAdapter, KeycloakConfig config, WebClient.Builder internalWebClient) {
+    private JwksKeyProvider keyProvider;
+
+    private final long jwksMinRefreshIntervalInMs;
+
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * Concurrent user info lookups for the same token share the same in-flight call
+     */
+    private final Map<String, CompletableFuture<Map<String, Object>>> inFlightUserInfo = new ConcurrentHashMap<>();
+
+    /**
+     * The last known user info per (hashed) token - served directly while fresh and as fallback while being
+     * revalidated or if the identity provider is not reachable.
+     */
+    private final Map<String, UserInfoEntry> userInfoCache;
+
+    public KeycloakClient(JsonAdapter jsonAdapter, KeycloakConfig config, WebClient.Builder internalWebClient, @Value("${org.marmotgraph.authentication.jwks.minRefreshIntervalInMs:10000}") long jwksMinRefreshIntervalInMs) {
         this.config = config;
         this.webclient = internalWebClient;
         this.jsonAdapter = jsonAdapter;
+        this.jwksMinRefreshIntervalInMs = jwksMinRefreshIntervalInMs;
+        this.circuitBreaker = new CircuitBreaker(config.getCircuitBreakerFailureThreshold(), config.getCircuitBreakerOpenDurationInMs());
+        final int maxSize = config.getUserInfoMaxSize();
+        this.userInfoCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UserInfoEntry> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    private static class UserInfoEntry {
+        private final Map<String, Object> userInfo;
+        private final long fetchedAt = System.currentTimeMillis();
+
+        private UserInfoEntry(Map<String, Object> userInfo) {
+            this.userInfo = userInfo;
+        }
     }
 
 
     @PostConstruct
     public void initialize() {
-        openIdConfig = loadWithRetry(0, i-> {
-            String result = WebClient.builder().build().get().uri(config.getConfigUrl()).accept(MediaType.APPLICATION_JSON).retrieve().bodyToMono(String.class).block();
-            return jsonAdapter.fromJson(result, OpenIdConfig.class);
-        });
-        issuerInfo = loadWithRetry(0, i -> {
-            String result = WebClient.builder().build().get().uri(openIdConfig.getIssuer()).accept(MediaType.APPLICATION_JSON).retrieve().bodyToMono(String.class).block();
-            return jsonAdapter.fromJson(result, IssuerInfo.class);
-        });
+        openIdConfig = loadWithRetry(0, i-> jsonAdapter.fromJson(get(config.getConfigUrl()), OpenIdConfig.class));
+        issuerInfo = loadWithRetry(0, i -> jsonAdapter.fromJson(get(openIdConfig.getIssuer()), IssuerInfo.class));
+        final String jwksUri = openIdConfig.getJwksUri();
+        keyProvider = new JwksKeyProvider(jwksUri != null ? () -> get(jwksUri) : null,
+                jsonAdapter, issuerInfo.getPublicKey() != null ? getPublicKeyFromKeycloakConfig(issuerInfo.getPublicKey()) : null, jwksMinRefreshIntervalInMs);
+        keyProvider.refresh();
         logger.info("Successfully loaded keycloak configuration");
     }
 
+    /**
+     * The keys are cached locally - we refresh them regularly to make sure we're aware of key rotations before the first token signed with a new key arrives.
+     */
+    @Scheduled(fixedDelayString = "${org.marmotgraph.authentication.jwks.refreshIntervalInMs:300000}", initialDelayString = "${org.marmotgraph.authentication.jwks.refreshIntervalInMs:300000}")
+    public void refreshKeys() {
+        if (keyProvider != null) {
+            keyProvider.refresh();
+        }
+    }
+
+
+    private String get(String uri) {
+        return webclient.build().get().uri(uri).accept(MediaType.APPLICATION_JSON).retrieve().bodyToMono(String.class).timeout(Duration.ofMillis(config.getTimeoutInMs())).block();
+    }
 
     public String getServerUrl(){
         return openIdConfig.getIssuer().split("/realms")[0];
@@ -114,14 +168,19 @@ public class KeycloakClient {
     }
 
     JWTVerifier getJWTVerifier() {
-        return JWT.require(getAlgorithmFromKeycloakConfig(issuerInfo.getPublicKey())).withIssuer(openIdConfig.getIssuer()).build();
+        // Tokens are verified with the locally cached keys - the identity provider is only contacted if there is a new key id.
+        return JWT.require(Algorithm.RSA256(keyProvider)).withIssuer(openIdConfig.getIssuer()).build();
     }
 
     public String getTokenEndpoint() {
         return openIdConfig.getTokenEndpoint();
     }
 
-    private Algorithm getAlgorithmFromKeycloakConfig(String publicKey) {
+    Map<?, ?> requestClientCredentialsToken(String clientId, String clientSecret) {
+        return webclient.build().post().uri(getTokenEndpoint()).body(BodyInserters.fromFormData("grant_type", "client_credentials").with("client_id", clientId).with("client_secret", clientSecret)).retrieve().bodyToMono(Map.class).timeout(Duration.ofMillis(config.getTimeoutInMs())).block();
+    }
+
+    private RSAPublicKey getPublicKeyFromKeycloakConfig(String publicKey) {
         try {
             if(logger.isDebugEnabled()) {
                 logger.debug(String.format("Validation by public RSA key (%s) of keycloak host %s", publicKey, openIdConfig.getIssuer()));
@@ -130,23 +189,92 @@ public class KeycloakClient {
             KeyFactory keyFactory = KeyFactory.getInstance("RSA");
             X509EncodedKeySpec keySpec = new X509EncodedKeySpec(buffer);
             RSAPublicKey key = (RSAPublicKey) keyFactory.generatePublic(keySpec);
-            Algorithm algorithm = Algorithm.RSA256(key, null);
             if(logger.isInfoEnabled()) {
                 logger.info(String.format("Initialized validation by public RSA key of keycloak host %s", openIdConfig.getIssuer()));
             }
-            return algorithm;
+            return key;
         } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
             throw new RuntimeException(e);
         }
     }
 
-    public Map<String, Object> getUserInfo(String token){
+    public Map<String, Object> getUserInfo(String token) {
         try {
-            return this.webclient.build().get().uri(this.openIdConfig.getUserInfoEndpoint()).accept(MediaType.APPLICATION_JSON).header("Authorization", token).retrieve().bodyToMono(Map.class).block();
+            return getUserInfoAsync(token).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UnauthorizedException || cause instanceof ServiceNotAvailableException || (cause instanceof WebClientResponseException r && r.getStatusCode().is4xxClientError())) {
+                throw (RuntimeException) cause;
+            }
+            throw new ServiceNotAvailableException(String.format("Was not able to fetch the user info from the identity provider: %s", cause != null ? cause.getMessage() : e.getMessage()));
         }
-        catch(WebClientResponseException.Unauthorized e){
-            throw new UnauthorizedException();
+    }
+
+    /**
+     * Resolves the user info without blocking the calling thread. A fresh cached value is returned immediately, a
+     * stale one is returned immediately as well but triggers a revalidation in the background.
+     */
+    public CompletableFuture<Map<String, Object>> getUserInfoAsync(String token) {
+        String key = TokenCache.hash(token);
+        UserInfoEntry cached = userInfoCache.get(key);
+        if (cached != null) {
+            long age = System.currentTimeMillis() - cached.fetchedAt;
+            if (age < config.getUserInfoFreshnessInMs()) {
+                return CompletableFuture.completedFuture(cached.userInfo);
+            }
+            if (age < config.getUserInfoMaxStalenessInMs()) {
+                fetchUserInfo(key, token);
+                return CompletableFuture.completedFuture(cached.userInfo);
+            }
+            userInfoCache.remove(key);
+        }
+        return fetchUserInfo(key, token);
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<Map<String, Object>> fetchUserInfo(String key, String token) {
+        CompletableFuture<Map<String, Object>> request = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> inFlight = inFlightUserInfo.putIfAbsent(key, request);
+        if (inFlight != null) {
+            return inFlight;
         }
+        if (!circuitBreaker.allowRequest()) {
+            inFlightUserInfo.remove(key, request);
+            request.completeExceptionally(new ServiceNotAvailableException("The identity provider is currently not available"));
+            return request;
+        }
+        this.webclient.build().get().uri(this.openIdConfig.getUserInfoEndpoint()).accept(MediaType.APPLICATION_JSON).header("Authorization", token).retrieve().bodyToMono(Map.class)
+                .timeout(Duration.ofMillis(config.getTimeoutInMs())).toFuture().whenComplete((result, error) -> {
+                    if (error == null) {
+                        circuitBreaker.onSuccess();
+                        Map<String, Object> userInfo = result != null ? (Map<String, Object>) result : Collections.emptyMap();
+                        userInfoCache.put(key, new UserInfoEntry(userInfo));
+                        inFlightUserInfo.remove(key, request);
+                        request.complete(userInfo);
+                    } else {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                        inFlightUserInfo.remove(key, request);
+                        if (cause instanceof WebClientResponseException e && e.getStatusCode().is4xxClientError()) {
+                            // The identity provider is responsive - it's the token which is not accepted (anymore).
+                            circuitBreaker.onSuccess();
+                            if (e instanceof WebClientResponseException.Unauthorized) {
+                                userInfoCache.remove(key);
+                                request.completeExceptionally(new UnauthorizedException());
+                            } else {
+                                request.completeExceptionally(e);
+                            }
+                        } else {
+                            logger.warn("Was not able to fetch the user info from the identity provider: {}", cause.getMessage());
+                            circuitBreaker.onFailure();
+                            request.completeExceptionally(cause);
+                        }
+                    }
+                });
+        return request;
+    }
+
+    CircuitBreaker.State getCircuitBreakerState() {
+        return circuitBreaker.getState();
     }
 
 }
@@ -36,6 +36,24 @@ public class KeycloakConfig {
     @Value("${org.marmotgraph.login.client}")
     String loginClientId;
 
+    @Value("${org.marmotgraph.authentication.keycloak.timeoutInMs:5000}")
+    long timeoutInMs;
+
+    @Value("${org.marmotgraph.authentication.keycloak.circuitBreaker.failureThreshold:5}")
+    int circuitBreakerFailureThreshold;
+
+    @Value("${org.marmotgraph.authentication.keycloak.circuitBreaker.openDurationInMs:30000}")
+    long circuitBreakerOpenDurationInMs;
+
+    @Value("${org.marmotgraph.authentication.keycloak.userInfo.freshnessInMs:60000}")
+    long userInfoFreshnessInMs;
+
+    @Value("${org.marmotgraph.authentication.keycloak.userInfo.maxStalenessInMs:900000}")
+    long userInfoMaxStalenessInMs;
+
+    @Value("${org.marmotgraph.authentication.keycloak.userInfo.maxSize:10000}")
+    int userInfoMaxSize;
+
     public String getConfigUrl() {
         return configUrl;
     }
@@ -43,4 +61,28 @@ public class KeycloakConfig {
     public String getLoginClientId() {
         return loginClientId;
     }
+
+    public long getTimeoutInMs() {
+        return timeoutInMs;
+    }
+
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    public long getCircuitBreakerOpenDurationInMs() {
+        return circuitBreakerOpenDurationInMs;
+    }
+
+    public long getUserInfoFreshnessInMs() {
+        return userInfoFreshnessInMs;
+    }
+
+    public long getUserInfoMaxStalenessInMs() {
+        return userInfoMaxStalenessInMs;
+    }
+
+    public int getUserInfoMaxSize() {
+        return userInfoMaxSize;
+    }
 }
@@ -34,8 +34,6 @@ import org.marmotgraph.commons.exception.UnauthorizedException;
 import org.marmotgraph.commons.model.User;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
-import org.springframework.web.reactive.function.BodyInserters;
-import org.springframework.web.reactive.function.client.WebClient;
 
 import java.util.Map;
 
@@ -53,16 +51,19 @@ public class KeycloakController {
 
     private final UserInfoMapping userInfoMapping;
 
+    private final TokenCache tokenCache;
 
-    public KeycloakController(KeycloakClient keycloakClient, AuthTokenContext authTokenContext, UserInfoMapping userInfoMapping) {
+
+    public KeycloakController(KeycloakClient keycloakClient, AuthTokenContext authTokenContext, UserInfoMapping userInfoMapping, TokenCache tokenCache) {
         this.keycloakClient = keycloakClient;
         this.authTokenContext = authTokenContext;
         this.jwtVerifier = keycloakClient.getJWTVerifier(); // Reusable verifier instance
         this.userInfoMapping = userInfoMapping;
+        this.tokenCache = tokenCache;
     }
 
     public String authenticate(String clientId, String clientSecret) {
-        Map<?, ?> result = WebClient.builder().build().post().uri(keycloakClient.getTokenEndpoint()).body(BodyInserters.fromFormData("grant_type", "client_credentials").with("client_id", clientId).with("client_secret", clientSecret)).retrieve().bodyToMono(Map.class).block();
+        Map<?, ?> result = keycloakClient.requestClientCredentialsToken(clientId, clientSecret);
         if (result != null) {
             Object access_token = result.get("access_token");
             if (access_token != null) {
@@ -91,11 +92,11 @@ public class KeycloakController {
     UserOrClientProfile getInfo(String token, boolean fetchRoles) {
         String bareToken = token.substring("Bearer ".length());
         try {
-            Map<String, Claim> claims = jwtVerifier.verify(bareToken).getClaims();
+            TokenCache.Entry verified = tokenCache.getVerified(bareToken, jwtVerifier::verify);
             if (fetchRoles) {
-                return new UserOrClientProfile(claims, userInfoMapping.getUserOrClientProfile(token));
+                return new UserOrClientProfile(verified.getClaims(), tokenCache.getRoleNames(verified, () -> userInfoMapping.getUserOrClientProfile(token, verified.getClaims())));
             }
-            return new UserOrClientProfile(claims, null);
+            return new UserOrClientProfile(verified.getClaims(), null);
         } catch (JWTVerificationException ex) {
             throw new UnauthorizedException(ex);
         }
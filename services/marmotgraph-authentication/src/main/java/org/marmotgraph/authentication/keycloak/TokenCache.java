@@ -0,0 +1,158 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.authentication.keycloak;
+
+import com.auth0.jwt.interfaces.Claim;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache for the verification results of tokens and the role names derived of them. The entries are keyed by
+ * the hash of the token (so we don't keep the tokens themselves) and live as long as the token is valid but at most for
+ * the configured max TTL (which ensures that e.g. changes in the identity provider are taken into account eventually).
+ * <p>
+ * The role names are invalidated as soon as the role definitions change.
+ */
+@Component
+public class TokenCache {
+
+    private final int maxSize;
+    private final long maxTtlInMs;
+    private final Map<String, Entry> entries;
+    private final AtomicLong roleDefinitionsVersion = new AtomicLong();
+
+    public TokenCache(@Value("${org.marmotgraph.authentication.tokenCache.maxSize:10000}") int maxSize, @Value("${org.marmotgraph.authentication.tokenCache.maxTtlInSeconds:3600}") long maxTtlInSeconds) {
+        this.maxSize = maxSize;
+        this.maxTtlInMs = maxTtlInSeconds * 1000;
+        this.entries = createBoundedMap(maxSize);
+    }
+
+    private static Map<String, Entry> createBoundedMap(int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    public static class Entry {
+        private final Map<String, Claim> claims;
+        private final long expiresAt;
+        private volatile List<String> roleNames;
+        private volatile long roleNamesVersion;
+
+        private Entry(Map<String, Claim> claims, long expiresAt) {
+            this.claims = claims;
+            this.expiresAt = expiresAt;
+        }
+
+        public Map<String, Claim> getClaims() {
+            return claims;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    /**
+     * @return the cached verification result of the given token or - if not available (yet) - verifies it with the given verifier.
+     * Verification failures are propagated and never cached.
+     */
+    public Entry getVerified(String bareToken, Function<String, DecodedJWT> verifier) {
+        long now = System.currentTimeMillis();
+        String key = hash(bareToken);
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.isExpired(now)) {
+            return entry;
+        }
+        DecodedJWT verified = verifier.apply(bareToken);
+        long expiresAt = now + maxTtlInMs;
+        if (verified.getExpiresAt() != null) {
+            expiresAt = Math.min(expiresAt, verified.getExpiresAt().getTime());
+        }
+        entry = new Entry(verified.getClaims(), expiresAt);
+        if (maxSize > 0) {
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * @return the role names cached for the given entry or - if not available (yet) or outdated - the ones provided by the given supplier.
+     */
+    public List<String> getRoleNames(Entry entry, Supplier<List<String>> roleNamesSupplier) {
+        long version = roleDefinitionsVersion.get();
+        List<String> roleNames = entry.roleNames;
+        if (roleNames != null && entry.roleNamesVersion == version) {
+            return roleNames;
+        }
+        roleNames = roleNamesSupplier.get();
+        synchronized (entry) {
+            // We only keep the result if the role definitions haven't changed in the meantime - otherwise, the next call needs to re-evaluate them.
+            if (roleDefinitionsVersion.get() == version) {
+                entry.roleNames = roleNames;
+                entry.roleNamesVersion = version;
+            }
+        }
+        return roleNames;
+    }
+
+    /**
+     * The role names are derived from the claims by applying all role definitions - this is why a change of any of them
+     * invalidates the role names of all entries.
+     */
+    public void invalidateRoleDefinitions() {
+        roleDefinitionsVersion.incrementAndGet();
+    }
+
+    public void invalidateAll() {
+        invalidateRoleDefinitions();
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
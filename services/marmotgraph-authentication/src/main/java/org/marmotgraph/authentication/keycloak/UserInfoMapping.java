@@ -24,43 +24,54 @@
 
 package org.marmotgraph.authentication.keycloak;
 
-import org.marmotgraph.authentication.controller.AuthenticationRepository;
-import org.marmotgraph.commons.cache.CacheConstant;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.scheduling.annotation.Scheduled;
+import com.auth0.jwt.interfaces.Claim;
+import org.marmotgraph.authentication.controller.RoleMappings;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 @Component
 public class UserInfoMapping {
 
-
-    private final Logger logger = LoggerFactory.getLogger(getClass());
-
     private final KeycloakClient keycloakClient;
 
-    private final AuthenticationRepository authenticationRepository;
+    private final RoleMappings roleMappings;
+
+    private final boolean offlineUserInfo;
 
-    public UserInfoMapping(KeycloakClient keycloakClient, AuthenticationRepository authenticationRepository) {
+    public UserInfoMapping(KeycloakClient keycloakClient, RoleMappings roleMappings, @Value("${org.marmotgraph.authentication.offlineUserInfo:false}") boolean offlineUserInfo) {
         this.keycloakClient = keycloakClient;
-        this.authenticationRepository = authenticationRepository;
+        this.roleMappings = roleMappings;
+        this.offlineUserInfo = offlineUserInfo;
     }
 
-    @Cacheable(CacheConstant.CACHE_KEYS_USER_ROLE_MAPPINGS)
-    public List<String> getUserOrClientProfile(String token){
-        Map<String, Object> userInfo = keycloakClient.getUserInfo(token);
-        return authenticationRepository.getRolesFromUserInfo(userInfo);
+    /**
+     * Not cached by itself - the results are kept by the {@link TokenCache} for the lifetime of the token.
+     *
+     * @param claims the claims of the already verified token
+     */
+    public List<String> getUserOrClientProfile(String token, Map<String, Claim> claims){
+        Map<String, Object> userInfo;
+        if (offlineUserInfo && claims != null && claims.keySet().containsAll(roleMappings.getReferencedClaims())) {
+            // The token already contains everything we need to evaluate the roles - no need to ask the identity provider.
+            userInfo = toUserInfo(claims);
+        } else {
+            userInfo = keycloakClient.getUserInfo(token);
+        }
+        return roleMappings.getRolesFromUserInfo(userInfo);
     }
 
-    @Scheduled(fixedRate = 1000*60*60) //TODO this is a quickfix to make sure the cache is cleared regularly. Please replace with a proper cache implementation supporting a TTL on a per-entry level
-    @CacheEvict(value = CacheConstant.CACHE_KEYS_USER_ROLE_MAPPINGS, allEntries = true)
-    public void evictUserOrClientProfiles() {
-        logger.info("Wiping cached user role mappings");
+    private static Map<String, Object> toUserInfo(Map<String, Claim> claims) {
+        Map<String, Object> userInfo = new HashMap<>();
+        claims.forEach((k, v) -> {
+            if (!v.isNull() && !v.isMissing()) {
+                userInfo.put(k, v.as(Object.class));
+            }
+        });
+        return userInfo;
     }
 
 }
@@ -37,6 +37,9 @@ public class OpenIdConfig {
     @JsonProperty("userinfo_endpoint")
     private String userInfoEndpoint;
 
+    @JsonProperty("jwks_uri")
+    private String jwksUri;
+
     public String getTokenEndpoint() {
         return tokenEndpoint;
     }
@@ -45,6 +48,10 @@ public class OpenIdConfig {
         return userInfoEndpoint;
     }
 
+    public String getJwksUri() {
+        return jwksUri;
+    }
+
     public String getIssuer() {
         return issuer;
     }
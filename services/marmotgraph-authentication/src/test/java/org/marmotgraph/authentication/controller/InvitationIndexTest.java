@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.authentication.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class InvitationIndexTest {
+
+    private final UUID instance = UUID.randomUUID();
+    private final UUID relatedInstance = UUID.randomUUID();
+    private AuthenticationRepository authenticationRepository;
+    private InvitationIndex invitationIndex;
+
+    @BeforeEach
+    void setup() {
+        authenticationRepository = mock(AuthenticationRepository.class);
+        when(authenticationRepository.getInvitationRolesByUserIds(any())).thenAnswer(a -> {
+            Map<String, Set<UUID>> result = new HashMap<>();
+            for (Object userId : (Collection<?>) a.getArgument(0)) {
+                result.put((String) userId, "foo".equals(userId) ? new HashSet<>(Set.of(instance, relatedInstance)) : new HashSet<>());
+            }
+            return result;
+        });
+        invitationIndex = new InvitationIndex(authenticationRepository, 10, 3600);
+    }
+
+    @Test
+    void testLoadOncePerUser() {
+        //When
+        Set<UUID> first = invitationIndex.getInvitations("foo");
+        Set<UUID> second = invitationIndex.getInvitations("foo");
+
+        //Then
+        assertEquals(Set.of(instance, relatedInstance), first);
+        assertSame(first, second);
+        verify(authenticationRepository, times(1)).getInvitationRolesByUserIds(any());
+    }
+
+    @Test
+    void testUserWithoutInvitations() {
+        //When
+        Set<UUID> invitations = invitationIndex.getInvitations("bar");
+
+        //Then
+        assertTrue(invitations.isEmpty());
+        assertTrue(invitationIndex.getInvitations(null).isEmpty());
+    }
+
+    @Test
+    void testRefreshMaterializesInOneBatch() {
+        //Given
+        invitationIndex.getInvitations("foo");
+
+        //When
+        invitationIndex.refresh(List.of("foo", "bar"));
+        invitationIndex.getInvitations("foo");
+        invitationIndex.getInvitations("bar");
+
+        //Then
+        verify(authenticationRepository, times(1)).getInvitationRolesByUserIds(Collections.singleton("foo"));
+        verify(authenticationRepository, times(1)).getInvitationRolesByUserIds(List.of("foo", "bar"));
+        verifyNoMoreInteractions(authenticationRepository);
+    }
+
+    @Test
+    void testConcurrentlyLoadedInvitationsAreNotKeptAfterRefresh() {
+        //Given
+        when(authenticationRepository.getInvitationRolesByUserIds(Collections.singleton("bar"))).thenAnswer(a -> {
+            // A refresh happens while we're loading...
+            invitationIndex.refresh(List.of("foo"));
+            return Map.of("bar", new HashSet<UUID>());
+        });
+
+        //When
+        invitationIndex.getInvitations("bar");
+        invitationIndex.getInvitations("bar");
+
+        //Then
+        verify(authenticationRepository, times(2)).getInvitationRolesByUserIds(Collections.singleton("bar"));
+    }
+
+    @Test
+    void testChangedRevisionDropsMaterializedInvitations() {
+        //Given
+        when(authenticationRepository.getInvitationsRevision()).thenReturn("1/1");
+        invitationIndex.checkRevision();
+        invitationIndex.getInvitations("foo");
+
+        //When
+        invitationIndex.checkRevision();
+        invitationIndex.getInvitations("foo");
+        when(authenticationRepository.getInvitationsRevision()).thenReturn("2/1");
+        invitationIndex.checkRevision();
+        invitationIndex.getInvitations("foo");
+
+        //Then
+        verify(authenticationRepository, times(2)).getInvitationRolesByUserIds(Collections.singleton("foo"));
+    }
+
+}
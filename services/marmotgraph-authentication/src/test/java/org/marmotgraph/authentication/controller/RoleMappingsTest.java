@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.authentication.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.marmotgraph.arango.commons.aqlbuilder.ArangoVocabulary;
+import org.marmotgraph.authentication.keycloak.TokenCache;
+import org.marmotgraph.commons.jsonld.JsonLdDoc;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RoleMappingsTest {
+
+    private AuthenticationRepository authenticationRepository;
+    private RoleMappings roleMappings;
+
+    private static JsonLdDoc roleDefinition(String role, Map<String, Object> claims) {
+        JsonLdDoc doc = new JsonLdDoc();
+        doc.put(ArangoVocabulary.KEY, role);
+        doc.put("_rev", "foo");
+        doc.putAll(claims);
+        return doc;
+    }
+
+    @BeforeEach
+    void setup() {
+        authenticationRepository = mock(AuthenticationRepository.class);
+        when(authenticationRepository.getRoleDefinitionsRevision()).thenReturn("1");
+        when(authenticationRepository.getAllRoleDefinitions()).thenReturn(List.of(
+                roleDefinition(":admin", Map.of("roles", Map.of("team", List.of("administrator")))),
+                roleDefinition("$1:owner", Map.of("groups", List.of("space-(.*)-owner"))),
+                roleDefinition(":consumer", Map.of("authenticated", true)),
+                roleDefinition("foo:reviewer", Map.of("email", "[a-z]+@reviewers\\.xy"))
+        ));
+        roleMappings = new RoleMappings(authenticationRepository, new TokenCache(10, 3600));
+    }
+
+    @Test
+    void testEvaluateClaimPatterns() {
+        //Given
+        Map<String, Object> userInfo = Map.of("sub", "123", "groups", List.of("space-foo-owner", "space-bar-owner", "other"), "roles", Map.of("team", "administrator"), "email", "john@reviewers.xy");
+
+        //When
+        List<String> roles = roleMappings.getRolesFromUserInfo(userInfo);
+
+        //Then
+        assertEquals(Set.of(":admin", "foo:owner", "bar:owner", ":consumer", "foo:reviewer"), new HashSet<>(roles));
+    }
+
+    @Test
+    void testNoMatch() {
+        //Given
+        Map<String, Object> userInfo = Map.of("groups", "space-foo-editor", "roles", List.of("administrator"), "email", "john@example.xy");
+
+        //When
+        List<String> roles = roleMappings.getRolesFromUserInfo(userInfo);
+
+        //Then
+        assertTrue(roles.isEmpty());
+        assertTrue(roleMappings.getRolesFromUserInfo(Collections.emptyMap()).isEmpty());
+    }
+
+    @Test
+    void testNoDatabaseAccessOnHotPath() {
+        //Given
+        Map<String, Object> userInfo = Map.of("sub", "123");
+
+        //When
+        for (int i = 0; i < 10; i++) {
+            roleMappings.getRolesFromUserInfo(userInfo);
+        }
+
+        //Then
+        verify(authenticationRepository, times(1)).getAllRoleDefinitions();
+    }
+
+    @Test
+    void testReloadOnRevisionChange() {
+        //Given
+        Map<String, Object> userInfo = Map.of("sub", "123");
+        roleMappings.getRolesFromUserInfo(userInfo);
+        long initialVersion = roleMappings.getVersion();
+
+        //When
+        roleMappings.checkRevision();
+        roleMappings.getRolesFromUserInfo(userInfo);
+        when(authenticationRepository.getRoleDefinitionsRevision()).thenReturn("2");
+        when(authenticationRepository.getAllRoleDefinitions()).thenReturn(List.of(roleDefinition(":admin", Map.of("authenticated", true))));
+        roleMappings.checkRevision();
+        List<String> roles = roleMappings.getRolesFromUserInfo(userInfo);
+
+        //Then
+        verify(authenticationRepository, times(2)).getAllRoleDefinitions();
+        assertEquals(List.of(":admin"), roles);
+        assertEquals(initialVersion + 1, roleMappings.getVersion());
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.authentication.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.marmotgraph.commons.model.TermsOfUse;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TermsOfUseAcceptancesTest {
+
+    private TermsOfUseRepository termsOfUseRepository;
+    private AuthenticationRepository authenticationRepository;
+    private TermsOfUseAcceptances termsOfUseAcceptances;
+
+    @BeforeEach
+    void setup() {
+        termsOfUseRepository = mock(TermsOfUseRepository.class);
+        authenticationRepository = mock(AuthenticationRepository.class);
+        when(termsOfUseRepository.getCurrentTermsOfUse()).thenReturn(new TermsOfUse("v1", "Terms v1"));
+        when(authenticationRepository.hasAcceptedTermsOfUse("foo", "v1")).thenReturn(true);
+        termsOfUseAcceptances = new TermsOfUseAcceptances(termsOfUseRepository, authenticationRepository, 2, 3600);
+    }
+
+    @Test
+    void testAcceptedTermsOfUseWithoutIO() {
+        //When
+        for (int i = 0; i < 10; i++) {
+            assertNull(termsOfUseAcceptances.findTermsOfUseToAccept("foo"));
+        }
+
+        //Then
+        verify(termsOfUseRepository, times(1)).getCurrentTermsOfUse();
+        verify(authenticationRepository, times(1)).hasAcceptedTermsOfUse("foo", "v1");
+    }
+
+    @Test
+    void testNotAcceptedTermsOfUse() {
+        //When
+        TermsOfUse first = termsOfUseAcceptances.findTermsOfUseToAccept("bar");
+        when(authenticationRepository.hasAcceptedTermsOfUse("bar", "v1")).thenReturn(true);
+        termsOfUseAcceptances.invalidate("bar");
+        TermsOfUse afterAcceptance = termsOfUseAcceptances.findTermsOfUseToAccept("bar");
+
+        //Then
+        assertEquals("v1", first.getVersion());
+        assertNull(afterAcceptance);
+    }
+
+    @Test
+    void testChangedTermsOfUse() {
+        //Given
+        assertNull(termsOfUseAcceptances.findTermsOfUseToAccept("foo"));
+
+        //When
+        when(termsOfUseRepository.getCurrentTermsOfUse()).thenReturn(new TermsOfUse("v2", "Terms v2"));
+        termsOfUseAcceptances.invalidateCurrentTermsOfUse();
+        TermsOfUse toAccept = termsOfUseAcceptances.findTermsOfUseToAccept("foo");
+
+        //Then
+        assertEquals("v2", toAccept.getVersion());
+        assertEquals(0, termsOfUseAcceptances.size());
+    }
+
+    @Test
+    void testBoundedSize() {
+        //Given
+        when(authenticationRepository.hasAcceptedTermsOfUse(anyString(), eq("v1"))).thenReturn(true);
+
+        //When
+        for (int i = 0; i < 5; i++) {
+            termsOfUseAcceptances.findTermsOfUseToAccept("user" + i);
+        }
+
+        //Then
+        assertEquals(2, termsOfUseAcceptances.size());
+    }
+}
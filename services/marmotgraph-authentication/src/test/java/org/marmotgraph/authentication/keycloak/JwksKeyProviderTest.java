@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.authentication.keycloak;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.marmotgraph.commons.JsonAdapter;
+
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPublicKey;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwksKeyProviderTest {
+
+    private final JsonAdapter jsonAdapter = new JsonAdapter(new ObjectMapper());
+
+    private static RSAPublicKey createKey() throws NoSuchAlgorithmException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return (RSAPublicKey) generator.generateKeyPair().getPublic();
+    }
+
+    @Test
+    void testFallbackForUnknownKeyIds() throws NoSuchAlgorithmException {
+        //Given
+        RSAPublicKey fallbackKey = createKey();
+        AtomicInteger requests = new AtomicInteger();
+        JwksKeyProvider keyProvider = new JwksKeyProvider(() -> {
+            requests.incrementAndGet();
+            return "{\"keys\": []}";
+        }, jsonAdapter, fallbackKey, 60000);
+        keyProvider.refresh();
+
+        //When
+        RSAPublicKey unknown = keyProvider.getPublicKeyById("unknown");
+        RSAPublicKey withoutKeyId = keyProvider.getPublicKeyById(null);
+
+        //Then
+        assertSame(fallbackKey, unknown);
+        assertSame(fallbackKey, withoutKeyId);
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void testFallbackWithoutKeySet() throws NoSuchAlgorithmException {
+        //Given
+        RSAPublicKey fallbackKey = createKey();
+        JwksKeyProvider keyProvider = new JwksKeyProvider(null, jsonAdapter, fallbackKey, 0);
+
+        //When
+        keyProvider.refresh();
+
+        //Then
+        assertSame(fallbackKey, keyProvider.getPublicKeyById("unknown"));
+        assertTrue(keyProvider.getKeyIds().isEmpty());
+    }
+}
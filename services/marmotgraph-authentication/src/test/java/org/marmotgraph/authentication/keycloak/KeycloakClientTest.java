@@ -0,0 +1,251 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.authentication.keycloak;
+
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.marmotgraph.authentication.controller.RoleMappings;
+import org.marmotgraph.commons.JsonAdapter;
+import org.marmotgraph.commons.exception.ServiceNotAvailableException;
+import org.marmotgraph.commons.exception.UnauthorizedException;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class KeycloakClientTest {
+
+    private LocalTokenIssuer issuer;
+
+    @BeforeEach
+    void setup() throws IOException {
+        issuer = new LocalTokenIssuer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        issuer.close();
+    }
+
+    private KeycloakClient createClient(long minRefreshIntervalInMs) {
+        return createClient(minRefreshIntervalInMs, 5000, 60000);
+    }
+
+    private KeycloakClient createClient(long minRefreshIntervalInMs, long timeoutInMs, long userInfoFreshnessInMs) {
+        KeycloakConfig config = new KeycloakConfig();
+        config.configUrl = issuer.getConfigUrl();
+        config.timeoutInMs = timeoutInMs;
+        config.circuitBreakerFailureThreshold = 2;
+        config.circuitBreakerOpenDurationInMs = 500;
+        config.userInfoFreshnessInMs = userInfoFreshnessInMs;
+        config.userInfoMaxStalenessInMs = 60000;
+        config.userInfoMaxSize = 100;
+        KeycloakClient client = new KeycloakClient(new JsonAdapter(new ObjectMapper()), config, WebClient.builder(), minRefreshIntervalInMs);
+        client.initialize();
+        return client;
+    }
+
+    @Test
+    void testVerifyOffline() {
+        //Given
+        KeycloakClient client = createClient(0);
+        JWTVerifier verifier = client.getJWTVerifier();
+        String token = issuer.createToken("initial", "foo", Collections.emptyMap());
+
+        //When
+        for (int i = 0; i < 100; i++) {
+            assertEquals("foo", verifier.verify(token).getSubject());
+        }
+
+        //Then
+        assertEquals(1, issuer.getJwksRequests());
+    }
+
+    @Test
+    void testKeyRotation() {
+        //Given
+        issuer.addKey("previous");
+        KeycloakClient client = createClient(0);
+        JWTVerifier verifier = client.getJWTVerifier();
+        String oldToken = issuer.createToken("previous", "foo", Collections.emptyMap());
+
+        //When
+        issuer.addKey("rotated");
+        String newToken = issuer.createToken("rotated", "foo", Collections.emptyMap());
+        verifier.verify(newToken);
+        issuer.removeKey("previous");
+        client.refreshKeys();
+
+        //Then
+        assertEquals(3, issuer.getJwksRequests());
+        verifier.verify(newToken);
+        assertThrows(JWTVerificationException.class, () -> verifier.verify(oldToken));
+    }
+
+    @Test
+    void testUnknownKeyIdsDontFloodTheIssuer() {
+        //Given
+        KeycloakClient client = createClient(60000);
+        JWTVerifier verifier = client.getJWTVerifier();
+        issuer.addKey("unknown");
+        String token = issuer.createToken("unknown", "foo", Collections.emptyMap());
+
+        //When
+        for (int i = 0; i < 10; i++) {
+            assertThrows(JWTVerificationException.class, () -> verifier.verify(token));
+        }
+
+        //Then
+        assertEquals(1, issuer.getJwksRequests());
+    }
+
+    @Test
+    void testOfflineUserInfo() {
+        //Given
+        KeycloakClient client = createClient(0);
+        RoleMappings roleMappings = mock(RoleMappings.class);
+        when(roleMappings.getReferencedClaims()).thenReturn(Set.of("sub", "groups"));
+        when(roleMappings.getRolesFromUserInfo(any())).thenAnswer(a -> new ArrayList<>(((Map<?, ?>) a.getArgument(0)).keySet().stream().map(Object::toString).sorted().toList()));
+        UserInfoMapping userInfoMapping = new UserInfoMapping(client, roleMappings, true);
+        JWTVerifier verifier = client.getJWTVerifier();
+        String tokenWithGroups = issuer.createToken("initial", "foo", Map.of("groups", List.of("a", "b")));
+        String tokenWithoutGroups = issuer.createToken("initial", "bar", Collections.emptyMap());
+
+        //When
+        List<String> offline = userInfoMapping.getUserOrClientProfile("Bearer " + tokenWithGroups, verifier.verify(tokenWithGroups).getClaims());
+        int userInfoRequestsAfterOffline = issuer.getUserInfoRequests();
+        List<String> online = userInfoMapping.getUserOrClientProfile("Bearer " + tokenWithoutGroups, verifier.verify(tokenWithoutGroups).getClaims());
+
+        //Then
+        assertTrue(offline.containsAll(List.of("groups", "sub")));
+        assertEquals(0, userInfoRequestsAfterOffline);
+        assertEquals(List.of("sub"), online);
+        assertEquals(1, issuer.getUserInfoRequests());
+    }
+
+    @Test
+    void testConcurrentUserInfoLookupsAreCoalesced() throws Exception {
+        //Given
+        KeycloakClient client = createClient(0);
+        issuer.setUserInfoLatencyInMs(300);
+        ExecutorService executorService = Executors.newFixedThreadPool(20);
+
+        //When
+        List<Future<Map<String, Object>>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(executorService.submit(() -> client.getUserInfo("Bearer foo")));
+        }
+        for (Future<Map<String, Object>> result : results) {
+            assertEquals("testUser", result.get().get("sub"));
+        }
+        executorService.shutdown();
+
+        //Then
+        assertEquals(1, issuer.getUserInfoRequests());
+    }
+
+    @Test
+    void testSlowIdentityProviderOpensCircuit() {
+        //Given
+        KeycloakClient client = createClient(0, 100, 60000);
+        issuer.setUserInfoLatencyInMs(1000);
+
+        //When
+        assertThrows(ServiceNotAvailableException.class, () -> client.getUserInfo("Bearer foo"));
+        assertThrows(ServiceNotAvailableException.class, () -> client.getUserInfo("Bearer bar"));
+        long start = System.currentTimeMillis();
+        assertThrows(ServiceNotAvailableException.class, () -> client.getUserInfo("Bearer foobar"));
+        long rejectedWithin = System.currentTimeMillis() - start;
+
+        //Then
+        assertEquals(CircuitBreaker.State.OPEN, client.getCircuitBreakerState());
+        assertEquals(2, issuer.getUserInfoRequests());
+        assertTrue(rejectedWithin < 100, String.format("An open circuit should reject immediately but took %d ms", rejectedWithin));
+    }
+
+    @Test
+    void testCircuitClosesAfterSuccessfulProbe() throws InterruptedException {
+        //Given
+        KeycloakClient client = createClient(0);
+        issuer.setUserInfoStatus(500);
+        assertThrows(ServiceNotAvailableException.class, () -> client.getUserInfo("Bearer foo"));
+        assertThrows(ServiceNotAvailableException.class, () -> client.getUserInfo("Bearer foo"));
+        assertEquals(CircuitBreaker.State.OPEN, client.getCircuitBreakerState());
+
+        //When
+        issuer.setUserInfoStatus(200);
+        Thread.sleep(600);
+        Map<String, Object> userInfo = client.getUserInfo("Bearer foo");
+
+        //Then
+        assertEquals("testUser", userInfo.get("sub"));
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitBreakerState());
+    }
+
+    @Test
+    void testStaleWhileRevalidate() throws InterruptedException {
+        //Given
+        KeycloakClient client = createClient(0, 5000, 0);
+        client.getUserInfo("Bearer foo");
+        issuer.setUserInfo(Map.of("sub", "updatedUser"));
+        issuer.setUserInfoLatencyInMs(50);
+
+        //When
+        Map<String, Object> stale = client.getUserInfo("Bearer foo");
+        Thread.sleep(300);
+        issuer.setUserInfoStatus(500);
+        Map<String, Object> revalidated = client.getUserInfo("Bearer foo");
+        Thread.sleep(300);
+        Map<String, Object> duringOutage = client.getUserInfo("Bearer foo");
+
+        //Then
+        assertEquals("testUser", stale.get("sub"));
+        assertEquals("updatedUser", revalidated.get("sub"));
+        assertEquals("updatedUser", duringOutage.get("sub"));
+    }
+
+    @Test
+    void testUnauthorizedUserInfo() {
+        //Given
+        KeycloakClient client = createClient(0);
+        issuer.setUserInfoStatus(401);
+
+        //When
+        assertThrows(UnauthorizedException.class, () -> client.getUserInfo("Bearer foo"));
+
+        //Then
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitBreakerState());
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.authentication.keycloak;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal, embedded OpenID connect issuer standing in for Keycloak in tests: it publishes its configuration, the
+ * realm information, the key set (which can be rotated) and a user info endpoint (with configurable latency).
+ */
+class LocalTokenIssuer implements AutoCloseable {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final Map<String, KeyPair> keys = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final AtomicInteger jwksRequests = new AtomicInteger();
+    private final AtomicInteger userInfoRequests = new AtomicInteger();
+    private volatile Map<String, Object> userInfo = Map.of("sub", "testUser");
+    private volatile long userInfoLatencyInMs;
+    private volatile int userInfoStatus = 200;
+
+    LocalTokenIssuer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/realms/test/.well-known/openid-configuration", e -> respond(e, 200, Map.of(
+                "issuer", getIssuer(),
+                "token_endpoint", getIssuer() + "/protocol/openid-connect/token",
+                "userinfo_endpoint", getIssuer() + "/protocol/openid-connect/userinfo",
+                "jwks_uri", getIssuer() + "/protocol/openid-connect/certs")));
+        server.createContext("/realms/test/protocol/openid-connect/certs", e -> {
+            jwksRequests.incrementAndGet();
+            respond(e, 200, Map.of("keys", createKeySet()));
+        });
+        server.createContext("/realms/test/protocol/openid-connect/userinfo", e -> {
+            userInfoRequests.incrementAndGet();
+            sleep(userInfoLatencyInMs);
+            respond(e, userInfoStatus, userInfo);
+        });
+        server.createContext("/realms/test", e -> respond(e, 200, Map.of("realm", "test",
+                "public_key", Base64.getEncoder().encodeToString(keys.values().iterator().next().getPublic().getEncoded()))));
+        addKey("initial");
+        server.start();
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<Map<String, Object>> createKeySet() {
+        List<Map<String, Object>> keySet = new ArrayList<>();
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        synchronized (keys) {
+            keys.forEach((kid, keyPair) -> {
+                RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
+                keySet.add(Map.of("kid", kid, "kty", "RSA", "alg", "RS256", "use", "sig",
+                        "n", encoder.encodeToString(toUnsignedBytes(publicKey.getModulus().toByteArray())),
+                        "e", encoder.encodeToString(toUnsignedBytes(publicKey.getPublicExponent().toByteArray()))));
+            });
+        }
+        return keySet;
+    }
+
+    private static byte[] toUnsignedBytes(byte[] bytes) {
+        return bytes.length > 1 && bytes[0] == 0 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes;
+    }
+
+    private void respond(HttpExchange exchange, int status, Object payload) throws IOException {
+        byte[] body = objectMapper.writeValueAsBytes(payload);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    String getIssuer() {
+        return String.format("http://127.0.0.1:%d/realms/test", server.getAddress().getPort());
+    }
+
+    String getConfigUrl() {
+        return getIssuer() + "/.well-known/openid-configuration";
+    }
+
+    void addKey(String kid) {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            keys.put(kid, generator.generateKeyPair());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    void removeKey(String kid) {
+        keys.remove(kid);
+    }
+
+    String createToken(String kid, String subject, Map<String, Object> claims) {
+        KeyPair keyPair = keys.get(kid);
+        JWTCreator.Builder builder = JWT.create().withKeyId(kid).withIssuer(getIssuer()).withSubject(subject).withExpiresAt(new Date(System.currentTimeMillis() + 60000));
+        claims.forEach((k, v) -> {
+            if (v instanceof List<?> l) {
+                builder.withClaim(k, l);
+            } else {
+                builder.withClaim(k, v.toString());
+            }
+        });
+        return builder.sign(Algorithm.RSA256((RSAPublicKey) keyPair.getPublic(), (RSAPrivateKey) keyPair.getPrivate()));
+    }
+
+    int getJwksRequests() {
+        return jwksRequests.get();
+    }
+
+    int getUserInfoRequests() {
+        return userInfoRequests.get();
+    }
+
+    void setUserInfo(Map<String, Object> userInfo) {
+        this.userInfo = userInfo;
+    }
+
+    void setUserInfoLatencyInMs(long userInfoLatencyInMs) {
+        this.userInfoLatencyInMs = userInfoLatencyInMs;
+    }
+
+    void setUserInfoStatus(int userInfoStatus) {
+        this.userInfoStatus = userInfoStatus;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
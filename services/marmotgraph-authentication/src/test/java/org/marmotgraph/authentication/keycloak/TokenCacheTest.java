@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.authentication.keycloak;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenCacheTest {
+
+    private final Algorithm algorithm = Algorithm.HMAC256("secret");
+    private final JWTVerifier verifier = JWT.require(algorithm).build();
+
+    private String createToken(String subject, long validForInMs) {
+        return JWT.create().withSubject(subject).withExpiresAt(new Date(System.currentTimeMillis() + validForInMs)).sign(algorithm);
+    }
+
+    @Test
+    void testVerifyOnlyOncePerToken() {
+        //Given
+        TokenCache tokenCache = new TokenCache(10, 3600);
+        String token = createToken("foo", 60000);
+        AtomicInteger verifications = new AtomicInteger();
+
+        //When
+        TokenCache.Entry first = tokenCache.getVerified(token, t -> {verifications.incrementAndGet(); return verifier.verify(t);});
+        TokenCache.Entry second = tokenCache.getVerified(token, t -> {verifications.incrementAndGet(); return verifier.verify(t);});
+
+        //Then
+        assertSame(first, second);
+        assertEquals(1, verifications.get());
+        assertEquals("foo", first.getClaims().get("sub").asString());
+    }
+
+    @Test
+    void testEntryExpiresWithToken() throws InterruptedException {
+        //Given
+        TokenCache tokenCache = new TokenCache(10, 3600);
+        String token = createToken("foo", 1000);
+        AtomicInteger verifications = new AtomicInteger();
+        tokenCache.getVerified(token, t -> {verifications.incrementAndGet(); return JWT.decode(t);});
+
+        //When
+        Thread.sleep(1100);
+        tokenCache.getVerified(token, t -> {verifications.incrementAndGet(); return JWT.decode(t);});
+
+        //Then
+        assertEquals(2, verifications.get());
+    }
+
+    @Test
+    void testFailedVerificationIsNotCached() {
+        //Given
+        TokenCache tokenCache = new TokenCache(10, 3600);
+        String token = createToken("foo", 60000);
+        JWTVerifier otherVerifier = JWT.require(Algorithm.HMAC256("other")).build();
+
+        //When
+        assertThrows(JWTVerificationException.class, () -> tokenCache.getVerified(token, otherVerifier::verify));
+
+        //Then
+        assertEquals(0, tokenCache.size());
+    }
+
+    @Test
+    void testBounded() {
+        //Given
+        TokenCache tokenCache = new TokenCache(2, 3600);
+
+        //When
+        for (int i = 0; i < 5; i++) {
+            tokenCache.getVerified(createToken("user" + i, 60000), verifier::verify);
+        }
+
+        //Then
+        assertEquals(2, tokenCache.size());
+    }
+
+    @Test
+    void testRoleNamesInvalidatedByRoleDefinitionChange() {
+        //Given
+        TokenCache tokenCache = new TokenCache(10, 3600);
+        TokenCache.Entry entry = tokenCache.getVerified(createToken("foo", 60000), verifier::verify);
+        AtomicInteger evaluations = new AtomicInteger();
+
+        //When
+        tokenCache.getRoleNames(entry, () -> List.of("role" + evaluations.incrementAndGet()));
+        List<String> cached = tokenCache.getRoleNames(entry, () -> List.of("role" + evaluations.incrementAndGet()));
+        tokenCache.invalidateRoleDefinitions();
+        List<String> reevaluated = tokenCache.getRoleNames(entry, () -> List.of("role" + evaluations.incrementAndGet()));
+
+        //Then
+        assertEquals(List.of("role1"), cached);
+        assertEquals(List.of("role2"), reevaluated);
+    }
+
+}
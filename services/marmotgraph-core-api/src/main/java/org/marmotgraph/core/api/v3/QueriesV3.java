@@ -27,6 +27,7 @@ package org.marmotgraph.core.api.v3;
 import org.marmotgraph.commons.AuthContext;
 import org.marmotgraph.commons.Version;
 import org.marmotgraph.commons.api.JsonLd;
+import org.marmotgraph.commons.config.openApiGroups.Admin;
 import org.marmotgraph.commons.config.openApiGroups.Simple;
 import org.marmotgraph.commons.exception.InstanceNotFoundException;
 import org.marmotgraph.commons.jsonld.InstanceId;
@@ -99,15 +100,17 @@ public class QueriesV3 {
     @PostMapping
     @ExposesData
     @Simple
-    public PaginatedStreamResult<? extends JsonLdDoc> runDynamicQuery(@RequestBody JsonLdDoc query, @ParameterObject PaginationParam paginationParam, @RequestParam("stage") ExposedStage stage, @RequestParam(value = "instanceId", required = false) UUID instanceId, @RequestParam(value = "restrictToSpaces", required = false) List<String> restrictToSpaces, @RequestParam(defaultValue = "{}") Map<String, String> allRequestParams) {
+    public PaginatedStreamResult<? extends JsonLdDoc> runDynamicQuery(@RequestBody JsonLdDoc query, @ParameterObject PaginationParam paginationParam, @RequestParam("stage") ExposedStage stage, @RequestParam(value = "instanceId", required = false) UUID instanceId, @RequestParam(value = "restrictToSpaces", required = false) List<String> restrictToSpaces, @RequestParam(value = "maxRuntime", required = false) @Parameter(description = "The maximal runtime of the query in seconds") Double maxRuntime, @RequestParam(defaultValue = "{}") Map<String, String> allRequestParams) {
         //Remove the non-dynamic parameters from the map
         allRequestParams.remove("stage");
         allRequestParams.remove("instanceId");
         allRequestParams.remove("from");
         allRequestParams.remove("size");
+        allRequestParams.remove("maxRuntime");
         NormalizedJsonLd normalizedJsonLd = jsonLd.normalize(query, true);
         KgQuery q = new KgQuery(normalizedJsonLd, stage.getStage());
         q.setIdRestriction(ids.resolveId(stage.getStage(), instanceId));
+        q.setMaxRuntime(maxRuntime);
         if(restrictToSpaces!=null){
             q.setRestrictToSpaces(restrictToSpaces.stream().filter(Objects::nonNull).map(r -> SpaceName.getInternalSpaceName(r, authContext.getUserWithRoles().getPrivateSpace())).collect(Collectors.toList()));
         }
@@ -196,20 +199,22 @@ public class QueriesV3 {
     @GetMapping("/{queryId}/instances")
     @ExposesData
     @Simple
-    public PaginatedStreamResult<? extends JsonLdDoc> executeQueryById(@PathVariable("queryId") UUID queryId, @ParameterObject PaginationParam paginationParam, @RequestParam("stage") ExposedStage stage, @RequestParam(value = "instanceId", required = false) UUID instanceId, @RequestParam(value = "restrictToSpaces", required = false) List<String> restrictToSpaces, @RequestParam(defaultValue = "{}") Map<String, String> allRequestParams) {
+    public PaginatedStreamResult<? extends JsonLdDoc> executeQueryById(@PathVariable("queryId") UUID queryId, @ParameterObject PaginationParam paginationParam, @RequestParam("stage") ExposedStage stage, @RequestParam(value = "instanceId", required = false) UUID instanceId, @RequestParam(value = "restrictToSpaces", required = false) List<String> restrictToSpaces, @RequestParam(value = "maxRuntime", required = false) @Parameter(description = "The maximal runtime of the query in seconds") Double maxRuntime, @RequestParam(defaultValue = "{}") Map<String, String> allRequestParams) {
         //Remove the non-dynamic parameters from the map
         allRequestParams.remove("stage");
         allRequestParams.remove("instanceId");
         allRequestParams.remove("from");
         allRequestParams.remove("size");
+        allRequestParams.remove("maxRuntime");
         InstanceId queryInstance = ids.resolveId(DataStage.IN_PROGRESS, queryId);
         final NormalizedJsonLd queryPayload = queryController.fetchQueryById(queryInstance);
         if(queryPayload==null){
             throw new InstanceNotFoundException(String.format("Query with id %s not found", queryId));
         }
         KgQuery query = new KgQuery(queryPayload, stage.getStage());
-
+        query.setQueryId(queryInstance.getUuid());
         query.setIdRestriction(ids.resolveId(stage.getStage(), instanceId));
+        query.setMaxRuntime(maxRuntime);
         if(restrictToSpaces!=null){
             query.setRestrictToSpaces(restrictToSpaces.stream().filter(Objects::nonNull).map(r -> SpaceName.getInternalSpaceName(r, authContext.getUserWithRoles().getPrivateSpace())).collect(Collectors.toList()));
         }
@@ -220,4 +225,30 @@ public class QueriesV3 {
         return result;
     }
 
+    @Operation(summary = "Materialize a stored query - its results are persisted and refreshed when the underlying data changes")
+    @PutMapping("/{queryId}/materialization")
+    @Admin
+    public ResponseEntity<Void> materializeQuery(@PathVariable("queryId") UUID queryId, @RequestParam("stage") ExposedStage stage) {
+        InstanceId queryInstance = ids.resolveId(DataStage.IN_PROGRESS, queryId);
+        final NormalizedJsonLd queryPayload = queryController.fetchQueryById(queryInstance);
+        if(queryPayload==null){
+            throw new InstanceNotFoundException(String.format("Query with id %s not found", queryId));
+        }
+        KgQuery query = new KgQuery(queryPayload, stage.getStage());
+        query.setQueryId(queryInstance.getUuid());
+        queryController.materializeQuery(query);
+        return ResponseEntity.ok().build();
+    }
+
+    @Operation(summary = "Remove the materialization of a stored query")
+    @DeleteMapping("/{queryId}/materialization")
+    @Admin
+    public ResponseEntity<Void> dematerializeQuery(@PathVariable("queryId") UUID queryId, @RequestParam("stage") ExposedStage stage) {
+        InstanceId queryInstance = ids.resolveId(DataStage.IN_PROGRESS, queryId);
+        if(queryInstance != null && queryController.dematerializeQuery(stage.getStage(), queryInstance.getUuid())){
+            return ResponseEntity.ok().build();
+        }
+        return ResponseEntity.notFound().build();
+    }
+
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.core.api.v3;
+
+import io.swagger.v3.oas.annotations.Operation;
+import org.marmotgraph.commons.Version;
+import org.marmotgraph.commons.api.GraphDBQueries;
+import org.marmotgraph.commons.config.openApiGroups.Admin;
+import org.marmotgraph.commons.model.RunningQuery;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequestMapping(Version.V3 + "/runningQueries")
+public class RunningQueriesV3 {
+
+    private final GraphDBQueries.Client graphDBQueries;
+
+    public RunningQueriesV3(GraphDBQueries.Client graphDBQueries) {
+        this.graphDBQueries = graphDBQueries;
+    }
+
+    @Operation(summary = "List the queries which are currently executed")
+    @GetMapping
+    @Admin
+    public List<RunningQuery> getRunningQueries() {
+        return graphDBQueries.getRunningQueries();
+    }
+
+    @Operation(summary = "Kill a currently executed query")
+    @DeleteMapping("/{id}")
+    @Admin
+    public ResponseEntity<Void> cancelRunningQuery(@PathVariable("id") UUID id) {
+        if (graphDBQueries.cancelRunningQuery(id)) {
+            return ResponseEntity.ok().build();
+        }
+        return ResponseEntity.notFound().build();
+    }
+}
@@ -120,4 +120,12 @@ public class TypesV3 {
         String decodedType = URLDecoder.decode(type, StandardCharsets.UTF_8);
         graphDBTypes.removeTypeSpecification(new JsonLdId(decodedType), global);
     }
+
+    @Operation(summary = "Rebuild the type statistics", description = "Recalculates the statistics of types, properties and target types from the data. They are maintained incrementally - this is only required if they are suspected to be inconsistent.")
+    @PostMapping("/types/statistics/rebuild")
+    @WritesData
+    @Admin
+    public void rebuildTypeStatistics(@RequestParam("stage") ExposedStage stage) {
+        graphDBTypes.rebuildStructureStatistics(stage.getStage());
+    }
 }
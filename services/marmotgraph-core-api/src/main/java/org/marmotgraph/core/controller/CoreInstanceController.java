@@ -360,12 +360,12 @@ public class CoreInstanceController {
         return instance;
     }
     public boolean isInvited(NormalizedJsonLd normalizedJsonLd) {
-        final UUID uuid = idUtils.getUUID(normalizedJsonLd.id());
-        if (authContext.getUserWithRolesWithoutTermsCheck().getInvitations().contains(uuid)) {
+        final UserWithRoles userWithRoles = authContext.getUserWithRolesWithoutTermsCheck();
+        if (userWithRoles.hasInvitations() && userWithRoles.isInvitedFor(idUtils.getUUID(normalizedJsonLd.id()))) {
             //The user is invited for this instance
             final String space = normalizedJsonLd.getAs(EBRAINSVocabulary.META_SPACE, String.class, null);
             if(space!=null){
-                return !permissions.hasPermission(authContext.getUserWithRolesWithoutTermsCheck(), Functionality.READ, SpaceName.fromString(space));
+                return !permissions.hasPermission(userWithRoles, Functionality.READ, SpaceName.fromString(space));
             }
         }
         return false;
@@ -91,6 +91,14 @@ public class CoreQueryController {
         return null;
     }
 
+    public void materializeQuery(KgQuery query) {
+        graphDBQueries.materializeQuery(query);
+    }
+
+    public boolean dematerializeQuery(DataStage stage, UUID queryId) {
+        return graphDBQueries.dematerializeQuery(stage, queryId);
+    }
+
     public Set<InstanceId> deleteQuery(InstanceId instanceId) {
         return instanceController.deleteInstance(instanceId);
     }
@@ -29,6 +29,7 @@ import org.marmotgraph.commons.jsonld.NormalizedJsonLd;
 import org.marmotgraph.commons.model.*;
 import org.springframework.stereotype.Component;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -57,7 +58,10 @@ public class VirtualSpaceController {
         r.setReturnEmbedded(responseConfiguration.isReturnEmbedded());
         r.setReturnPayload(responseConfiguration.isReturnPayload());
         r.setReturnPermissions(responseConfiguration.isReturnPermissions());
-        final List<String> invitationIds = authContext.getUserWithRoles().getInvitations().stream().map(UUID::toString).sorted().collect(Collectors.toList());
+        final List<String> invitationIds = authContext.getUserWithRoles().getInvitationIds().stream().map(UUID::toString).sorted().collect(Collectors.toList());
+        if (invitationIds.isEmpty()) {
+            return Collections.emptyList();
+        }
         final Map<String, Result<NormalizedJsonLd>> instancesByIds = instanceController.getInstancesByIds(invitationIds, stage, r, type);
         return instancesByIds.values().stream().map(Result::getData).filter(Objects::nonNull).collect(Collectors.toList());
     }
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.commons.controller;
+
+import org.marmotgraph.arango.commons.AqlQueryExecutor;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Exposes the top n AQL query fingerprints (see {@link AqlQueryExecutor}) at /actuator/aqlqueries - ordered by
+ * "TOTAL_TIME" by default. The fingerprints don't contain any literals, bind variables or query tags.
+ */
+@Component
+@Endpoint(id = "aqlqueries")
+public class AqlQueriesEndpoint {
+
+    private static final int DEFAULT_TOP = 20;
+
+    private final AqlQueryExecutor aqlQueryExecutor;
+
+    public AqlQueriesEndpoint(AqlQueryExecutor aqlQueryExecutor) {
+        this.aqlQueryExecutor = aqlQueryExecutor;
+    }
+
+    @ReadOperation
+    public Report getTopQueries(@Nullable Integer top, @Nullable String orderBy) {
+        final AqlQueryExecutor.Order order = orderBy != null ? parseOrder(orderBy) : AqlQueryExecutor.Order.TOTAL_TIME;
+        return new Report(order, aqlQueryExecutor.getTopQueries(top != null ? top : DEFAULT_TOP, order), aqlQueryExecutor.getUntrackedExecutions());
+    }
+
+    /**
+     * @throws InvalidEndpointRequestException (reported as "400 Bad Request") if the order is unknown
+     */
+    private static AqlQueryExecutor.Order parseOrder(String orderBy) {
+        try {
+            return AqlQueryExecutor.Order.valueOf(orderBy.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            final String message = String.format("Unknown order \"%s\" - supported are %s", orderBy, Arrays.toString(AqlQueryExecutor.Order.values()));
+            throw new InvalidEndpointRequestException(message, message);
+        }
+    }
+
+    @DeleteOperation
+    public void reset() {
+        aqlQueryExecutor.reset();
+    }
+
+    public static class Report {
+        private final AqlQueryExecutor.Order orderBy;
+        private final List<AqlQueryExecutor.QueryStatistics> queries;
+        private final long untrackedExecutions;
+
+        private Report(AqlQueryExecutor.Order orderBy, List<AqlQueryExecutor.QueryStatistics> queries, long untrackedExecutions) {
+            this.orderBy = orderBy;
+            this.queries = queries;
+            this.untrackedExecutions = untrackedExecutions;
+        }
+
+        public AqlQueryExecutor.Order getOrderBy() {
+            return orderBy;
+        }
+
+        public List<AqlQueryExecutor.QueryStatistics> getQueries() {
+            return queries;
+        }
+
+        public long getUntrackedExecutions() {
+            return untrackedExecutions;
+        }
+    }
+}
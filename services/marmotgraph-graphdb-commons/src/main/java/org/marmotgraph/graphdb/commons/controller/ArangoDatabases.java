@@ -24,25 +24,17 @@
 
 package org.marmotgraph.graphdb.commons.controller;
 
-import com.arangodb.ArangoCollection;
 import com.arangodb.ArangoDatabase;
-import com.arangodb.model.CollectionsReadOptions;
 import org.marmotgraph.arango.commons.model.ArangoDatabaseProxy;
 import org.marmotgraph.commons.model.DataStage;
-import org.marmotgraph.graphdb.structure.controller.StructureRepository;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Scope;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
 @Component
 @Scope("prototype")
 public class ArangoDatabases {
 
-    private static final Logger logger = LoggerFactory.getLogger(ArangoDatabases.class);
-
     final ArangoDatabaseProxy structureDB;
     final ArangoDatabaseProxy releasedDB;
     final ArangoDatabaseProxy nativeDB;
@@ -70,29 +62,6 @@ public class ArangoDatabases {
     }
 
 
-    @Async
-    public void setup(){
-        structureDB.createIfItDoesntExist();
-        inProgressDB.createIfItDoesntExist();
-        releasedDB.createIfItDoesntExist();
-        consistencyChecks.createIfItDoesntExist();
-        StructureRepository.setupCollections(structureDB);
-        logger.debug("Setting up in progress db... ");
-        ArangoDatabase inProgress = inProgressDB.get();
-        inProgress.getCollections(new CollectionsReadOptions().excludeSystem(true)).parallelStream().forEach(c -> {
-            logger.debug(String.format("Ensuring configuration of collection \"%s\" in \"in progress\"", c.getName()));
-            ArangoCollection collection = inProgress.collection(c.getName());
-            ArangoDatabaseProxy.ensureIndicesOnCollection(collection);
-        });
-        ArangoDatabase released = releasedDB.get();
-        released.getCollections(new CollectionsReadOptions().excludeSystem(true)).parallelStream().forEach(c -> {
-            logger.debug(String.format("Ensuring configuration of collection \"%s\" in \"released\"", c.getName()));
-            ArangoCollection collection = released.collection(c.getName());
-            ArangoDatabaseProxy.ensureIndicesOnCollection(collection);
-        });
-    }
-
-
     public ArangoDatabase getStructureDB(){
         return this.structureDB.getOrCreate();
     }
@@ -24,12 +24,14 @@
 
 package org.marmotgraph.graphdb.commons.controller;
 
+import com.arangodb.ArangoDBException;
 import com.arangodb.ArangoDatabase;
 import com.arangodb.entity.CollectionEntity;
 import com.arangodb.entity.CollectionType;
 import com.arangodb.entity.StreamTransactionEntity;
 import com.arangodb.model.*;
 import com.arangodb.util.RawJson;
+import io.micrometer.core.instrument.Timer;
 import org.marmotgraph.arango.commons.aqlbuilder.AQL;
 import org.marmotgraph.arango.commons.aqlbuilder.ArangoVocabulary;
 import org.marmotgraph.arango.commons.model.ArangoCollectionReference;
@@ -47,6 +49,7 @@ import org.marmotgraph.graphdb.commons.model.ArangoEdge;
 import org.marmotgraph.graphdb.ingestion.controller.DataController;
 import org.marmotgraph.graphdb.ingestion.model.*;
 import org.marmotgraph.graphdb.structure.controller.CacheController;
+import org.marmotgraph.graphdb.structure.controller.StructureStatisticsRepository;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -69,15 +72,21 @@ public class ArangoRepositoryCommons {
 
     private final CacheController cacheController;
 
+    private final StructureStatisticsRepository structureStatistics;
+
+    private final ArangoTransactionMetrics transactionMetrics;
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
 
-    public ArangoRepositoryCommons(ArangoDatabases databases, JsonAdapter jsonAdapter, GraphDBArangoUtils utils, EntryHookDocuments entryHookDocuments, CacheController cacheController) {
+    public ArangoRepositoryCommons(ArangoDatabases databases, JsonAdapter jsonAdapter, GraphDBArangoUtils utils, EntryHookDocuments entryHookDocuments, CacheController cacheController, StructureStatisticsRepository structureStatistics, ArangoTransactionMetrics transactionMetrics) {
         this.databases = databases;
         this.jsonAdapter = jsonAdapter;
         this.utils = utils;
         this.entryHookDocuments = entryHookDocuments;
         this.cacheController = cacheController;
+        this.structureStatistics = structureStatistics;
+        this.transactionMetrics = transactionMetrics;
     }
 
     private List<ArangoCollectionReference> getAllEdgeCollections(ArangoDatabase db) {
@@ -321,40 +330,91 @@ public class ArangoRepositoryCommons {
         collections.addAll(removedDocuments.stream().map(ArangoDocumentReference::getArangoCollectionReference).collect(Collectors.toSet()));
         collections.addAll(edgeResolutionDependencies.values().stream().map(d -> d.getOriginalDocument().getArangoCollectionReference()).collect(Collectors.toSet()));
         collections.addAll(insertedDocuments.keySet());
+        final boolean maintainsStructure = stage == DataStage.IN_PROGRESS || stage == DataStage.RELEASED;
 
         //Create missing collections...
         collections.forEach(c -> {
             utils.getOrCreateArangoCollection(db, c);
         });
 
+        List<String> allIds = null;
+        List<CacheEvictionPlan> cacheEvictionPlansBeforeTransaction = null;
+        boolean maintainsStatistics = false;
+        if (maintainsStructure) {
+            allIds = Stream.concat(Stream.concat(removedDocuments.stream().map(ArangoDocumentReference::getId), edgeResolutionDependencies.keySet().stream().map(ArangoDocumentReference::getId)), insertedDocuments.values().stream().flatMap(Collection::stream).map(i -> jsonAdapter.fromJson(i.get(), DynamicJson.class).getAs(ArangoVocabulary.ID, String.class))).distinct().collect(Collectors.toList());
+            cacheEvictionPlansBeforeTransaction = fetchCacheEvictionPlans(stage, allIds);
+            maintainsStatistics = structureStatistics.setupCollection(stage);
+        }
+        //The statistics can't be maintained by this transaction - they are rebuilt after the data has been written.
+        boolean invalidateStatistics = maintainsStructure && !maintainsStatistics;
+
         long startTransactionDate = new Date().getTime();
 
-        StreamTransactionEntity tx = db.beginStreamTransaction(new StreamTransactionOptions().writeCollections(collections.stream().map(ArangoCollectionReference::getCollectionName).toArray(String[]::new)));
+        Timer.Sample transactionSample = transactionMetrics.begin();
+        StreamTransactionEntity tx;
+        try {
+            tx = db.beginStreamTransaction(writeCollections(collections, maintainsStatistics));
+        } catch (ArangoDBException e) {
+            if (!maintainsStatistics) {
+                throw e;
+            }
+            //The statistics collection might have disappeared (e.g. because the database has been recreated) - this must not prevent the data from being written.
+            logger.warn("Was not able to include the structure statistics in the transaction: {}", e.getMessage());
+            maintainsStatistics = false;
+            invalidateStatistics = true;
+            tx = db.beginStreamTransaction(writeCollections(collections, false));
+        }
         logger.debug(String.format("Starting transaction %s", tx.getId()));
         DocumentDeleteOptions deleteOptions = new DocumentDeleteOptions().streamTransactionId(tx.getId());
         DocumentCreateOptions insertOptions = new DocumentCreateOptions().streamTransactionId(tx.getId());
         DocumentUpdateOptions updateOptions = new DocumentUpdateOptions().streamTransactionId(tx.getId());
-        List<String> allIds = null;
-        List<CacheEvictionPlan> cacheEvictionPlansBeforeTransaction = null;
-        if (stage == DataStage.IN_PROGRESS || stage == DataStage.RELEASED) {
-            allIds = Stream.concat(Stream.concat(removedDocuments.stream().map(ArangoDocumentReference::getId), edgeResolutionDependencies.keySet().stream().map(ArangoDocumentReference::getId)), insertedDocuments.values().stream().flatMap(Collection::stream).map(i -> jsonAdapter.fromJson(i.get(), DynamicJson.class).getAs(ArangoVocabulary.ID, String.class))).distinct().collect(Collectors.toList());
-            cacheEvictionPlansBeforeTransaction = fetchCacheEvictionPlans(stage, allIds);
-        }
         try {
+            Map<String, StructureStatisticsRepository.Source> structureBeforeTransaction = null;
+            if (maintainsStatistics) {
+                try {
+                    structureBeforeTransaction = structureStatistics.snapshot(db, allIds, tx.getId());
+                } catch (RuntimeException e) {
+                    logger.warn(String.format("Was not able to read the structure statistics before transaction %s", tx.getId()), e);
+                    invalidateStatistics = true;
+                }
+            }
             removedDocuments.stream().collect(Collectors.groupingBy(ArangoDocumentReference::getArangoCollectionReference)).forEach((c, v) -> db.collection(c.getCollectionName()).deleteDocuments(v.stream().map(r -> r.getDocumentId().toString()).collect(Collectors.toSet()), deleteOptions, String.class));
             edgeResolutionDependencies.values().stream().collect(Collectors.groupingBy(i -> i.getReference().getArangoCollectionReference())).forEach((c, v) -> db.collection(c.getCollectionName()).updateDocuments(v.stream().map(doc -> RawJson.of(jsonAdapter.toJson(doc.getDoc()))).collect(Collectors.toList()), updateOptions));
             insertedDocuments.forEach((c, v) -> db.collection(c.getCollectionName()).insertDocuments(v, insertOptions.overwriteMode(OverwriteMode.replace)));
+            if (structureBeforeTransaction != null) {
+                try {
+                    structureStatistics.recordChanges(db, tx.getId(), structureBeforeTransaction, allIds);
+                } catch (RuntimeException e) {
+                    logger.warn(String.format("Was not able to record the structure statistics of transaction %s", tx.getId()), e);
+                    invalidateStatistics = true;
+                }
+            }
             db.commitStreamTransaction(tx.getId());
+            transactionMetrics.committed(transactionSample, "upsert");
             logger.debug(String.format("Committing transaction %s after %dms", tx.getId(), new Date().getTime() - startTransactionDate));
         } catch (Exception e) {
-            logger.debug(String.format("Execution of transaction has failed after %dms. \n\n TRANSACTION: %s\n\n", new Date().getTime() - startTransactionDate, tx.getId()));
-            db.abortStreamTransaction(tx.getId());
+            logger.error(String.format("Execution of transaction %s has failed after %dms - aborting", tx.getId(), new Date().getTime() - startTransactionDate), e);
+            try {
+                db.abortStreamTransaction(tx.getId());
+            } catch (RuntimeException abortFailure) {
+                e.addSuppressed(abortFailure);
+            }
+            transactionMetrics.aborted(transactionSample, "upsert");
+            throw e;
         }
-        if (stage == DataStage.IN_PROGRESS || stage == DataStage.RELEASED) {
+        if (invalidateStatistics) {
+            structureStatistics.invalidate(stage);
+        }
+        if (maintainsStructure) {
             cacheController.evictCacheByPlan(stage, cacheEvictionPlansBeforeTransaction, fetchCacheEvictionPlans(stage, allIds));
         }
     }
 
+    private static StreamTransactionOptions writeCollections(Set<ArangoCollectionReference> collections, boolean withStatistics) {
+        Stream<ArangoCollectionReference> writeCollections = withStatistics ? Stream.concat(collections.stream(), Stream.of(StructureStatisticsRepository.STATISTICS)) : collections.stream();
+        return new StreamTransactionOptions().writeCollections(writeCollections.map(ArangoCollectionReference::getCollectionName).distinct().toArray(String[]::new));
+    }
+
     private Set<ArangoDocumentReference> findRemovalOfAllDependenciesForDocumentId(ArangoDatabase db, ArangoDocumentReference delete, Set<ArangoDocumentReference> skipList) {
         return findArangoReferencesForDocumentId(db, delete.getDocumentId()).stream().filter(Objects::nonNull).filter(ref -> !skipList.contains(ref)).collect(Collectors.toSet());
     }
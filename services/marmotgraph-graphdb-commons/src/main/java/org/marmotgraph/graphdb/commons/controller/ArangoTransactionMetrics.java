@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.commons.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the duration of the stream transactions ("marmotgraph.arango.transaction") tagged by the transaction and
+ * whether it has been committed or aborted.
+ */
+@Component
+public class ArangoTransactionMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    public ArangoTransactionMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Timer.Sample begin() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void committed(Timer.Sample sample, String transaction) {
+        stop(sample, transaction, "committed");
+    }
+
+    public void aborted(Timer.Sample sample, String transaction) {
+        stop(sample, transaction, "aborted");
+    }
+
+    private void stop(Timer.Sample sample, String transaction, String outcome) {
+        sample.stop(Timer.builder("marmotgraph.arango.transaction").description("Duration of the stream transactions").tag("transaction", transaction).tag("outcome", outcome).register(meterRegistry));
+    }
+}
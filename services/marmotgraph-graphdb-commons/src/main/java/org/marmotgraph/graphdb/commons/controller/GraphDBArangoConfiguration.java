@@ -25,6 +25,8 @@
 package org.marmotgraph.graphdb.commons.controller;
 
 import com.arangodb.ArangoDB;
+import org.marmotgraph.arango.commons.AqlQueryExecutor;
+import org.marmotgraph.arango.commons.aqlbuilder.AqlQueryDefaults;
 import org.marmotgraph.arango.commons.model.ArangoDatabaseProxy;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -34,6 +36,14 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class GraphDBArangoConfiguration {
 
+    /**
+     * The plan cache is only available in recent versions of ArangoDB (>= 3.12.4) - we therefore need to enable it explicitly.
+     */
+    @Bean
+    public AqlQueryDefaults produceAqlQueryDefaults(@Value("${org.marmotgraph.arango.usePlanCache:false}") boolean usePlanCache) {
+        return new AqlQueryDefaults(usePlanCache);
+    }
+
     @Bean
     @Qualifier("arangoBuilderForGraphDB")
     public ArangoDB.Builder produceGraphDBArangoDB(
@@ -55,32 +65,32 @@ public class GraphDBArangoConfiguration {
 
     @Bean
     @Qualifier("native")
-    public ArangoDatabaseProxy produceDefaultDb(@Qualifier("arangoBuilderForGraphDB") ArangoDB.Builder arangoDB) {
-        return new ArangoDatabaseProxy(arangoDB.build(), "kg1-native");
+    public ArangoDatabaseProxy produceDefaultDb(@Qualifier("arangoBuilderForGraphDB") ArangoDB.Builder arangoDB, AqlQueryExecutor aqlQueryExecutor) {
+        return new ArangoDatabaseProxy(arangoDB.build(), "kg1-native", aqlQueryExecutor);
     }
 
     @Bean
     @Qualifier("inProgress")
-    public ArangoDatabaseProxy produceInProgressDB(@Qualifier("arangoBuilderForGraphDB") ArangoDB.Builder arangoDB) {
-        return new ArangoDatabaseProxy(arangoDB.build(), "kg1-inProgress");
+    public ArangoDatabaseProxy produceInProgressDB(@Qualifier("arangoBuilderForGraphDB") ArangoDB.Builder arangoDB, AqlQueryExecutor aqlQueryExecutor) {
+        return new ArangoDatabaseProxy(arangoDB.build(), "kg1-inProgress", aqlQueryExecutor);
     }
 
     @Bean
     @Qualifier("released")
-    public ArangoDatabaseProxy produceReleasedDb(@Qualifier("arangoBuilderForGraphDB") ArangoDB.Builder arangoDB) {
-        return new ArangoDatabaseProxy(arangoDB.build(), "kg1-release");
+    public ArangoDatabaseProxy produceReleasedDb(@Qualifier("arangoBuilderForGraphDB") ArangoDB.Builder arangoDB, AqlQueryExecutor aqlQueryExecutor) {
+        return new ArangoDatabaseProxy(arangoDB.build(), "kg1-release", aqlQueryExecutor);
     }
 
     @Bean
     @Qualifier("structure")
-    public ArangoDatabaseProxy produceStructureDb(@Qualifier("arangoBuilderForGraphDB") ArangoDB.Builder arangoDB) {
-        return new ArangoDatabaseProxy(arangoDB.build(), "kg1-structure");
+    public ArangoDatabaseProxy produceStructureDb(@Qualifier("arangoBuilderForGraphDB") ArangoDB.Builder arangoDB, AqlQueryExecutor aqlQueryExecutor) {
+        return new ArangoDatabaseProxy(arangoDB.build(), "kg1-structure", aqlQueryExecutor);
     }
 
     @Bean
     @Qualifier("consistencyChecks")
-    public ArangoDatabaseProxy produceConsistencyChecksDb(@Qualifier("arangoBuilderForGraphDB") ArangoDB.Builder arangoDB) {
-        return new ArangoDatabaseProxy(arangoDB.build(), "kg1-consistencyChecks");
+    public ArangoDatabaseProxy produceConsistencyChecksDb(@Qualifier("arangoBuilderForGraphDB") ArangoDB.Builder arangoDB, AqlQueryExecutor aqlQueryExecutor) {
+        return new ArangoDatabaseProxy(arangoDB.build(), "kg1-consistencyChecks", aqlQueryExecutor);
     }
 
 
@@ -40,33 +40,61 @@ import org.marmotgraph.commons.jsonld.IndexedJsonLdDoc;
 import org.marmotgraph.commons.jsonld.NormalizedJsonLd;
 import org.marmotgraph.commons.model.SpaceName;
 import org.marmotgraph.graphdb.instances.model.ArangoRelation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 
 @Component
 public class GraphDBArangoUtils {
 
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
     private final ArangoDatabases arangoDatabases;
 
     private final IdUtils idUtils;
 
+    private final GraphDBBootstrap bootstrap;
+
+    private final GraphDBIOExecutor ioExecutor;
+
 
     @PostConstruct
     public void setup() {
-        arangoDatabases.setup();
+        bootstrap.bootstrap();
     }
 
-    public GraphDBArangoUtils(ArangoDatabases arangoDatabases, IdUtils idUtils) {
+    public GraphDBArangoUtils(ArangoDatabases arangoDatabases, IdUtils idUtils, GraphDBBootstrap bootstrap, GraphDBIOExecutor ioExecutor) {
         this.arangoDatabases = arangoDatabases;
         this.idUtils = idUtils;
+        this.bootstrap = bootstrap;
+        this.ioExecutor = ioExecutor;
     }
 
+    /**
+     * Creates the collection if it doesn't exist yet. The collection itself has to exist before the calling (write)
+     * transaction can use it, but its indices are non-unique and only speed up reads - they are therefore set up in
+     * the background so the request doesn't wait for the index creation.
+     */
     @Cacheable(value = CacheConstant.CACHE_KEYS_ARANGO_COLLECTION, key = "{#db.name(), #c.collectionName}")
     public ArangoCollection getOrCreateArangoCollection(ArangoDatabase db, ArangoCollectionReference c) {
-        return ArangoDatabaseProxy.getOrCreateArangoCollection(db, c);
+        return ArangoDatabaseProxy.getOrCreateArangoCollection(db, c, this::ensureIndicesInBackground);
+    }
+
+    private void ensureIndicesInBackground(ArangoCollection collection) {
+        try {
+            ioExecutor.submit("ensureIndices", () -> ArangoDatabaseProxy.ensureIndicesOnCollection(collection)).exceptionally(e -> {
+                logger.error(String.format("Was not able to ensure the indices of collection %s", collection.name()), e);
+                return null;
+            });
+        } catch (RejectedExecutionException e) {
+            //The background queue is full - we rather wait for the indices than leaving the collection without them
+            ArangoDatabaseProxy.ensureIndicesOnCollection(collection);
+        }
     }
 
 
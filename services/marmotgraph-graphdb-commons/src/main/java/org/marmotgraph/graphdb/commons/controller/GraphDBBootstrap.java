@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.commons.controller;
+
+import com.arangodb.ArangoCollection;
+import com.arangodb.ArangoDatabase;
+import com.arangodb.model.CollectionsReadOptions;
+import org.marmotgraph.arango.commons.model.ArangoDatabaseProxy;
+import org.marmotgraph.graphdb.structure.controller.StructureRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Bootstraps the graph databases exactly once in the background: it creates the databases and ensures the indices of
+ * all existing collections with a bounded parallelism. A failed bootstrap is retried with an exponential backoff. The
+ * progress is exposed as health indicator ("graphDBBootstrap") which reports "OUT_OF_SERVICE" until the bootstrap is
+ * done. It is meant for the readiness probe only and is therefore not part of the primary health group
+ * (see {@link ReadinessOnlyHealthIndicators}).
+ */
+@Component(GraphDBBootstrap.HEALTH_INDICATOR)
+public class GraphDBBootstrap implements HealthIndicator {
+
+    public static final String HEALTH_INDICATOR = "graphDBBootstrap";
+
+    public enum State {PENDING, CREATING_DATABASES, ENSURING_INDICES, RETRYING, READY}
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphDBBootstrap.class);
+    private static final int PROGRESS_LOG_INTERVAL = 100;
+
+    private final ArangoDatabases arangoDatabases;
+    private final GraphDBIOExecutor ioExecutor;
+    private final int parallelism;
+    private final long retryDelayInMs;
+    private final long maxRetryDelayInMs;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicInteger attempts = new AtomicInteger();
+    private final AtomicInteger collectionsTotal = new AtomicInteger();
+    private final AtomicInteger collectionsDone = new AtomicInteger();
+    private volatile State state = State.PENDING;
+    private volatile String failure;
+
+    public GraphDBBootstrap(ArangoDatabases arangoDatabases, GraphDBIOExecutor ioExecutor, @Value("${org.marmotgraph.graphdb.bootstrap.parallelism:4}") int parallelism, @Value("${org.marmotgraph.graphdb.bootstrap.retryDelayInMs:1000}") long retryDelayInMs, @Value("${org.marmotgraph.graphdb.bootstrap.maxRetryDelayInMs:60000}") long maxRetryDelayInMs) {
+        this.arangoDatabases = arangoDatabases;
+        this.ioExecutor = ioExecutor;
+        this.parallelism = Math.max(parallelism, 1);
+        this.retryDelayInMs = Math.max(retryDelayInMs, 1);
+        this.maxRetryDelayInMs = Math.max(maxRetryDelayInMs, this.retryDelayInMs);
+    }
+
+    @Async
+    public void bootstrap() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        long retryDelay = retryDelayInMs;
+        while (!tryBootstrap()) {
+            state = State.RETRYING;
+            logger.info("Retrying the bootstrap of the graph databases in {}ms", retryDelay);
+            try {
+                Thread.sleep(retryDelay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            retryDelay = Math.min(retryDelay * 2, maxRetryDelayInMs);
+        }
+    }
+
+    /**
+     * @return true if the bootstrap has succeeded - all of its steps are idempotent so it can be repeated after a failure.
+     */
+    private boolean tryBootstrap() {
+        attempts.incrementAndGet();
+        collectionsDone.set(0);
+        try {
+            state = State.CREATING_DATABASES;
+            ioExecutor.forEach("createDatabases", List.of(arangoDatabases.structureDB, arangoDatabases.inProgressDB, arangoDatabases.releasedDB, arangoDatabases.consistencyChecks), ArangoDatabaseProxy::createIfItDoesntExist);
+            StructureRepository.setupCollections(arangoDatabases.structureDB);
+
+            state = State.ENSURING_INDICES;
+            final List<ArangoCollection> collections = Stream.concat(collections(arangoDatabases.inProgressDB.get()), collections(arangoDatabases.releasedDB.get())).toList();
+            collectionsTotal.set(collections.size());
+            logger.info("Ensuring the indices of {} collections", collections.size());
+            //The collections are split into as many partitions as we allow DDL operations in parallel
+            final List<List<ArangoCollection>> partitions = IntStream.range(0, parallelism).mapToObj(i -> IntStream.range(0, collections.size()).filter(c -> c % parallelism == i).mapToObj(collections::get).toList()).filter(p -> !p.isEmpty()).toList();
+            ioExecutor.forEach("ensureIndices", partitions, partition -> partition.forEach(collection -> {
+                ArangoDatabaseProxy.ensureIndicesOnCollection(collection);
+                final int done = collectionsDone.incrementAndGet();
+                if (done % PROGRESS_LOG_INTERVAL == 0 || done == collections.size()) {
+                    logger.info("Ensured the indices of {}/{} collections", done, collections.size());
+                }
+            }));
+            state = State.READY;
+            failure = null;
+            logger.info("Bootstrap of the graph databases done");
+            return true;
+        } catch (RuntimeException e) {
+            failure = e.getMessage();
+            logger.error(String.format("Bootstrap of the graph databases failed (attempt %d)", attempts.get()), e);
+            return false;
+        }
+    }
+
+    private static Stream<ArangoCollection> collections(ArangoDatabase db) {
+        return new ArrayList<>(db.getCollections(new CollectionsReadOptions().excludeSystem(true))).stream().map(c -> db.collection(c.getName()));
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    @Override
+    public Health health() {
+        final Health.Builder health = state == State.READY ? Health.up() : Health.outOfService();
+        if (failure != null) {
+            health.withDetail("failure", failure);
+        }
+        return health.withDetail("state", state).withDetail("attempts", attempts.get()).withDetail("collections", collectionsTotal.get()).withDetail("collectionsWithEnsuredIndices", collectionsDone.get()).build();
+    }
+}
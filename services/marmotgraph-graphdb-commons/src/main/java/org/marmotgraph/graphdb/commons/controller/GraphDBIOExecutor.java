@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.commons.controller;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A bounded executor for fanning out blocking database operations (e.g. the reflection of the meta data structure by space
+ * or the index setup by collection). These operations used to run on the common fork join pool which is shared with all
+ * parallel streams of the process and is sized for CPU bound work.
+ * <p>
+ * The calling thread participates in the execution of its own tasks - nested fan-outs therefore can't exhaust the pool.
+ * The queue of the fan-outs is bounded: if it is full, the calling thread executes the remaining tasks on its own.
+ * Background actions (see {@link #submit(String, Runnable)}) are executed by a separate (bounded) pool so long running
+ * recalculations can't delay the fan-outs of the requests.
+ * The current observation of the calling thread is propagated to the tasks so their spans belong to the same trace.
+ */
+@Component
+public class GraphDBIOExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor backgroundExecutor;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+
+    public GraphDBIOExecutor(MeterRegistry meterRegistry, ObservationRegistry observationRegistry, @Value("${org.marmotgraph.graphdb.io.poolSize:16}") int poolSize, @Value("${org.marmotgraph.graphdb.io.queueCapacity:1000}") int queueCapacity, @Value("${org.marmotgraph.graphdb.io.background.poolSize:4}") int backgroundPoolSize, @Value("${org.marmotgraph.graphdb.io.background.queueCapacity:100}") int backgroundQueueCapacity, @Value("${org.marmotgraph.graphdb.io.virtualThreads:false}") boolean virtualThreads) {
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry;
+        this.executor = createExecutor("GraphDBIO-", poolSize, queueCapacity, virtualThreads);
+        this.backgroundExecutor = createExecutor("GraphDBIOBackground-", backgroundPoolSize, backgroundQueueCapacity, virtualThreads);
+        registerGauges("fanOut", executor);
+        registerGauges("background", backgroundExecutor);
+    }
+
+    private static ThreadPoolExecutor createExecutor(String threadNamePrefix, int poolSize, int queueCapacity, boolean virtualThreads) {
+        final ThreadFactory threadFactory;
+        if (virtualThreads) {
+            threadFactory = Thread.ofVirtual().name(threadNamePrefix, 1).factory();
+        } else {
+            AtomicInteger threadCounter = new AtomicInteger();
+            threadFactory = r -> {
+                Thread thread = new Thread(r, threadNamePrefix + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+        return new ThreadPoolExecutor(Math.max(poolSize, 1), Math.max(poolSize, 1), 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)), threadFactory);
+    }
+
+    private void registerGauges(String pool, ThreadPoolExecutor poolExecutor) {
+        Gauge.builder("marmotgraph.graphdb.io.queue.depth", poolExecutor, e -> e.getQueue().size()).description("Number of database operations waiting for an I/O thread").tag("pool", pool).register(meterRegistry);
+        Gauge.builder("marmotgraph.graphdb.io.active", poolExecutor, ThreadPoolExecutor::getActiveCount).description("Number of I/O threads currently executing a database operation").tag("pool", pool).register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        backgroundExecutor.shutdownNow();
+    }
+
+    /**
+     * Executes the action for all items concurrently and waits for their completion.
+     *
+     * @param operation the name of the operation - used to tag the latency metrics
+     */
+    public <T> void forEach(String operation, Collection<T> items, Consumer<T> action) {
+        final List<FutureTask<Void>> tasks = new ArrayList<>(items.size());
+        for (T item : items) {
+            final FutureTask<Void> task = new FutureTask<>(instrument(operation, () -> action.accept(item)), null);
+            tasks.add(task);
+            if (tasks.size() > 1) {
+                //The first task is kept for the calling thread
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    //The queue is full - the task is executed by the calling thread below
+                }
+            }
+        }
+        // A task which has already been started by another thread is not run a second time
+        tasks.forEach(FutureTask::run);
+        RuntimeException failure = null;
+        for (FutureTask<Void> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(String.format("Interrupted while waiting for %s", operation), e);
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException runtimeException ? runtimeException : new IllegalStateException(e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Executes the action in the background without waiting for its completion (e.g. for long running recalculations
+     * which shouldn't block the request thread).
+     *
+     * @param operation the name of the operation - used to tag the latency metrics
+     * @throws RejectedExecutionException if the queue of the background pool is full
+     */
+    public CompletableFuture<Void> submit(String operation, Runnable action) {
+        return CompletableFuture.runAsync(instrument(operation, action), backgroundExecutor);
+    }
+
+    /**
+     * Wraps the action so it records the queueing and execution time and runs in the scope of the current observation
+     * of the calling thread.
+     */
+    private Runnable instrument(String operation, Runnable action) {
+        final Timer waitTimer = Timer.builder("marmotgraph.graphdb.io.wait").description("Time a database operation was queued before its execution").tag("operation", operation).register(meterRegistry);
+        final Timer executionTimer = Timer.builder("marmotgraph.graphdb.io.execution").description("Execution time of a database operation").tag("operation", operation).register(meterRegistry);
+        final Observation parentObservation = observationRegistry.getCurrentObservation();
+        final long submitted = System.nanoTime();
+        return () -> {
+            waitTimer.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+            if (parentObservation != null) {
+                try (Observation.Scope ignored = parentObservation.openScope()) {
+                    executionTimer.record(action);
+                }
+            } else {
+                executionTimer.record(action);
+            }
+        };
+    }
+
+    int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+}
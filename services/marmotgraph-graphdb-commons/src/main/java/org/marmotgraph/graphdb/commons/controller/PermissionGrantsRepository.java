@@ -0,0 +1,205 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.commons.controller;
+
+import com.arangodb.ArangoCollection;
+import com.arangodb.ArangoDatabase;
+import com.arangodb.entity.CollectionType;
+import com.arangodb.model.*;
+import org.marmotgraph.arango.commons.model.ArangoCollectionReference;
+import org.marmotgraph.arango.commons.model.InternalSpace;
+import org.marmotgraph.commons.model.DataStage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Materializes large sets of explicitly permitted instances as documents in the database of the stage so the
+ * whitelist filter can look them up by primary key instead of receiving them as (potentially huge) bind variable.
+ * <p>
+ * Grant sets are content addressed (the key is the hash of the sorted instance ids): They are written once, are
+ * shared by all users with the same grants and are never updated - a change of the grants simply leads to another
+ * grant set. Grant sets which haven't been used for the retention period are removed regularly.
+ * <p>
+ * Read paths only use grant sets which are known to be materialized (see {@link #findMaterialized(DataStage, Collection)}) -
+ * the materialization itself (and the recording of the usage) happens in the background.
+ */
+@Component
+public class PermissionGrantsRepository {
+
+    static final ArangoCollectionReference GRANTS = ArangoCollectionReference.fromSpace(InternalSpace.PERMISSION_GRANTS_SPACE);
+    private static final String GRANT_SET = "grantSet";
+    private static final String LAST_USED = "lastUsed";
+    private static final int BATCH_SIZE = 10000;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ArangoDatabases databases;
+
+    private final GraphDBIOExecutor ioExecutor;
+
+    private final long touchIntervalInMs;
+
+    private final long retentionInMs;
+
+    /**
+     * The grant sets known to be materialized (by stage) and the time we've last marked them as used.
+     */
+    private final Map<String, Long> knownGrantSets = new ConcurrentHashMap<>();
+
+    /**
+     * The grant sets which are currently materialized (or touched) in the background.
+     */
+    private final Set<String> pendingGrantSets = ConcurrentHashMap.newKeySet();
+
+    public PermissionGrantsRepository(ArangoDatabases databases, GraphDBIOExecutor ioExecutor, @Value("${org.marmotgraph.permissions.grantSets.touchIntervalInMs:3600000}") long touchIntervalInMs, @Value("${org.marmotgraph.permissions.grantSets.retentionInMs:604800000}") long retentionInMs) {
+        this.databases = databases;
+        this.ioExecutor = ioExecutor;
+        this.touchIntervalInMs = touchIntervalInMs;
+        this.retentionInMs = retentionInMs;
+    }
+
+    /**
+     * Doesn't write anything on the calling thread: if the grant set is not known to be materialized yet (or its usage
+     * needs to be recorded), this is done in the background.
+     *
+     * @return the document id prefix of the grant set if it is known to be materialized - null otherwise (the caller has to pass the instances explicitly then).
+     */
+    public String findMaterialized(DataStage stage, Collection<UUID> instanceIds) {
+        String grantSet = getGrantSetId(instanceIds);
+        String knownKey = stage.name() + ":" + grantSet;
+        Long lastTouched = knownGrantSets.get(knownKey);
+        if ((lastTouched == null || System.currentTimeMillis() - lastTouched > touchIntervalInMs) && pendingGrantSets.add(knownKey)) {
+            List<UUID> snapshot = new ArrayList<>(instanceIds);
+            try {
+                ioExecutor.submit("grantSetMaterialization", () -> materialize(stage, snapshot)).whenComplete((r, e) -> {
+                    pendingGrantSets.remove(knownKey);
+                    if (e != null) {
+                        logger.warn(String.format("Was not able to materialize the grant set %s in stage %s", grantSet, stage.name()), e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // The executor is saturated (or shut down) - we try again with the next read.
+                pendingGrantSets.remove(knownKey);
+                logger.debug("Was not able to schedule the materialization of grant set {}", grantSet, e);
+            }
+        }
+        return lastTouched != null ? GRANTS.getCollectionName() + "/" + getGrantKeyPrefix(grantSet) : null;
+    }
+
+    /**
+     * @return the document id prefix of the grant set - the document of a permitted instance is found by appending its key.
+     */
+    public String materialize(DataStage stage, Collection<UUID> instanceIds) {
+        String grantSet = getGrantSetId(instanceIds);
+        String knownKey = stage.name() + ":" + grantSet;
+        Long lastTouched = knownGrantSets.get(knownKey);
+        long now = System.currentTimeMillis();
+        if (lastTouched == null || now - lastTouched > touchIntervalInMs) {
+            ArangoCollection collection = getOrCreateCollection(databases.getByStage(stage));
+            if (collection.documentExists(grantSet)) {
+                collection.updateDocument(grantSet, Map.of(LAST_USED, now), new DocumentUpdateOptions().silent(true));
+            } else {
+                insertGrantSet(collection, grantSet, instanceIds, now);
+            }
+            knownGrantSets.put(knownKey, now);
+        }
+        return GRANTS.getCollectionName() + "/" + getGrantKeyPrefix(grantSet);
+    }
+
+    private void insertGrantSet(ArangoCollection collection, String grantSet, Collection<UUID> instanceIds, long now) {
+        logger.debug("Materializing grant set {} with {} instances", grantSet, instanceIds.size());
+        List<Map<String, Object>> batch = new ArrayList<>(Math.min(BATCH_SIZE, instanceIds.size()));
+        DocumentCreateOptions options = new DocumentCreateOptions().overwriteMode(OverwriteMode.ignore).silent(true);
+        for (UUID instanceId : instanceIds) {
+            batch.add(Map.of("_key", getGrantKeyPrefix(grantSet) + instanceId, GRANT_SET, grantSet));
+            if (batch.size() == BATCH_SIZE) {
+                collection.insertDocuments(batch, options);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            collection.insertDocuments(batch, options);
+        }
+        // The marker is written last - a grant set is only considered to be available if it's complete.
+        collection.insertDocument(Map.of("_key", grantSet, GRANT_SET, grantSet, LAST_USED, now), options);
+    }
+
+    private ArangoCollection getOrCreateCollection(ArangoDatabase db) {
+        ArangoCollection collection = db.collection(GRANTS.getCollectionName());
+        if (!collection.exists()) {
+            synchronized (this) {
+                if (!collection.exists()) {
+                    db.createCollection(GRANTS.getCollectionName(), new CollectionCreateOptions().type(CollectionType.DOCUMENT));
+                    collection.ensurePersistentIndex(Collections.singletonList(GRANT_SET), new PersistentIndexOptions());
+                    collection.ensurePersistentIndex(Collections.singletonList(LAST_USED), new PersistentIndexOptions().sparse(true));
+                }
+            }
+        }
+        return collection;
+    }
+
+    @Scheduled(fixedDelayString = "${org.marmotgraph.permissions.grantSets.cleanupIntervalInMs:86400000}", initialDelayString = "${org.marmotgraph.permissions.grantSets.cleanupIntervalInMs:86400000}")
+    public void removeUnusedGrantSets() {
+        long threshold = System.currentTimeMillis() - retentionInMs;
+        knownGrantSets.values().removeIf(lastTouched -> lastTouched < threshold);
+        for (DataStage stage : Arrays.asList(DataStage.IN_PROGRESS, DataStage.RELEASED)) {
+            ArangoDatabase db = databases.getByStage(stage);
+            if (db.collection(GRANTS.getCollectionName()).exists()) {
+                Map<String, Object> bindVars = new HashMap<>();
+                bindVars.put("@grants", GRANTS.getCollectionName());
+                bindVars.put("threshold", threshold);
+                List<String> unused = db.query(String.format("FOR m IN @@grants FILTER m.%s != null AND m.%s < @threshold RETURN m.%s", LAST_USED, LAST_USED, GRANT_SET), String.class, bindVars).asListRemaining();
+                for (String grantSet : unused) {
+                    logger.info("Removing unused grant set {} in stage {}", grantSet, stage.name());
+                    knownGrantSets.remove(stage.name() + ":" + grantSet);
+                    db.query(String.format("FOR g IN @@grants FILTER g.%s == @grantSet REMOVE g IN @@grants", GRANT_SET), Void.class, Map.of("@grants", GRANTS.getCollectionName(), GRANT_SET, grantSet));
+                }
+            }
+        }
+    }
+
+    private static String getGrantKeyPrefix(String grantSet) {
+        return grantSet + "-";
+    }
+
+    static String getGrantSetId(Collection<UUID> instanceIds) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            instanceIds.stream().map(UUID::toString).sorted().forEach(id -> digest.update(id.getBytes(StandardCharsets.UTF_8)));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -32,6 +32,7 @@ import org.marmotgraph.commons.models.UserWithRoles;
 import org.marmotgraph.commons.permission.Functionality;
 import org.marmotgraph.commons.permission.FunctionalityInstance;
 import org.marmotgraph.commons.permissions.controller.Permissions;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
@@ -42,8 +43,14 @@ public class PermissionsController {
 
     private final Permissions permissions;
 
-    public PermissionsController(Permissions permissions) {
+    private final PermissionGrantsRepository permissionGrantsRepository;
+
+    private final int grantSetThreshold;
+
+    public PermissionsController(Permissions permissions, PermissionGrantsRepository permissionGrantsRepository, @Value("${org.marmotgraph.permissions.grantSets.threshold:1000}") int grantSetThreshold) {
         this.permissions = permissions;
+        this.permissionGrantsRepository = permissionGrantsRepository;
+        this.grantSetThreshold = grantSetThreshold;
     }
 
     public Set<SpaceName> whitelistedSpaceReads(UserWithRoles userWithRoles){
@@ -80,19 +87,38 @@ public class PermissionsController {
 
     public Set<UUID> getInstancesWithExplicitPermission(UserWithRoles userWithRoles, DataStage stage){
         Functionality readFunctionality = getReadFunctionality(stage);
-        return permissions.getInstancesWithExplicitPermission(userWithRoles.getPermissions(), readFunctionality);
+        return permissions.getInstancesWithExplicitPermission(userWithRoles, readFunctionality);
     }
 
 
-    public Map<String, Object> whitelistFilterForReadInstances(Set<SpaceName> possibleSpaces, UserWithRoles userWithRoles, DataStage stage) {
+    /**
+     * Only resolves the spaces (it doesn't consider any explicit instance permissions) - and therefore never touches the database.
+     *
+     * @return the collection names of the spaces the user is allowed to read or null if there is a global read permission (and therefore no filter needed).
+     */
+    public List<String> readableSpaceCollections(Set<SpaceName> possibleSpaces, UserWithRoles userWithRoles, DataStage stage) {
         Functionality readFunctionality = getReadFunctionality(stage);
-        if (!permissions.hasGlobalPermission(userWithRoles, readFunctionality)){
+        if (permissions.hasGlobalPermission(userWithRoles, readFunctionality)) {
+            return null;
+        }
+        Set<SpaceName> spacesWithReadPermission = permissions.getSpacesForPermission(possibleSpaces, userWithRoles, readFunctionality);
+        return spacesWithReadPermission.stream().map(s -> ArangoCollectionReference.fromSpace(s).getCollectionName()).collect(Collectors.toList());
+    }
+
+    public Map<String, Object> whitelistFilterForReadInstances(Set<SpaceName> possibleSpaces, UserWithRoles userWithRoles, DataStage stage) {
+        List<String> readableSpaces = readableSpaceCollections(possibleSpaces, userWithRoles, stage);
+        if (readableSpaces != null){
             //We only need to filter if there is no "global" read available...
             Map<String, Object> bindVars = new HashMap<>();
-            Set<SpaceName> spacesWithReadPermission = permissions.getSpacesForPermission(possibleSpaces, userWithRoles, readFunctionality);
             Set<UUID> instancesWithReadPermissions = getInstancesWithExplicitPermission(userWithRoles, stage);
-            bindVars.put(AQL.READ_ACCESS_BY_SPACE, spacesWithReadPermission.stream().map(s -> ArangoCollectionReference.fromSpace(s).getCollectionName()).collect(Collectors.toList()));
-            bindVars.put(AQL.READ_ACCESS_BY_INVITATION, instancesWithReadPermissions != null ? instancesWithReadPermissions.stream().collect(Collectors.toMap(k -> k, v -> Collections.emptyMap())): Collections.emptyList());
+            bindVars.put(AQL.READ_ACCESS_BY_SPACE, readableSpaces);
+            // For large sets of explicitly permitted instances, we look them up in the database instead of passing (and hashing) them with every query - as soon as they are materialized (which happens in the background).
+            String grantSet = instancesWithReadPermissions != null && grantSetThreshold > 0 && instancesWithReadPermissions.size() > grantSetThreshold ? permissionGrantsRepository.findMaterialized(stage, instancesWithReadPermissions) : null;
+            if (grantSet != null) {
+                bindVars.put(AQL.READ_ACCESS_BY_GRANT_SET, grantSet);
+            } else {
+                bindVars.put(AQL.READ_ACCESS_BY_INVITATION, instancesWithReadPermissions != null ? instancesWithReadPermissions.stream().collect(Collectors.toMap(k -> k, v -> Collections.emptyMap())) : Collections.emptyList());
+            }
             return bindVars;
         }
         return null;
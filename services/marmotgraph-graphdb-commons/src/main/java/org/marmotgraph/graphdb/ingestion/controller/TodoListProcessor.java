@@ -41,6 +41,7 @@ import org.marmotgraph.graphdb.commons.model.ArangoInstance;
 import org.marmotgraph.graphdb.ingestion.model.DBOperation;
 import org.marmotgraph.graphdb.ingestion.model.EdgeResolutionOperation;
 import org.marmotgraph.graphdb.ingestion.model.RemoveReleaseStateOperation;
+import org.marmotgraph.graphdb.queries.controller.MaterializedQueryController;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -65,14 +66,16 @@ public class TodoListProcessor {
 
     private final ReleasingController releasingController;
 
+    private final MaterializedQueryController materializedQueryController;
 
-    public TodoListProcessor(ArangoRepositoryCommons repository, StructureSplitter splitter, MainEventTracker eventTracker, IdUtils idUtils, DataController dataController, ReleasingController releasingController) {
+    public TodoListProcessor(ArangoRepositoryCommons repository, StructureSplitter splitter, MainEventTracker eventTracker, IdUtils idUtils, DataController dataController, ReleasingController releasingController, MaterializedQueryController materializedQueryController) {
         this.repository = repository;
         this.splitter = splitter;
         this.eventTracker = eventTracker;
         this.idUtils = idUtils;
         this.dataController = dataController;
         this.releasingController = releasingController;
+        this.materializedQueryController = materializedQueryController;
     }
 
     public void doProcessTodoList(List<TodoItem> todoList, DataStage stage) {
@@ -145,14 +148,20 @@ public class TodoListProcessor {
             lazyIdResolutionOperations = dataController.createResolutionsForPreviouslyUnresolved(stage, rootDocumentRef, payload.allIdentifiersIncludingId());
             repository.executeTransactional(stage, lazyIdResolutionOperations);
         }
+        materializedQueryController.onInstanceChange(stage, rootDocumentRef.getDocumentId(), payload, false);
         return rootDocumentRef;
     }
 
 
     public void deleteDocument(DataStage stage, ArangoDocumentReference documentReference) {
-        if (repository.doesDocumentExist(stage, documentReference)) {
+        //We only need to know what has been removed if there are materialized queries which could depend on it - otherwise the existence check is sufficient
+        final ArangoDocument removedDocument = materializedQueryController.hasMaterializedQueries(stage) ? repository.getDocument(stage, documentReference) : null;
+        if (removedDocument != null || repository.doesDocumentExist(stage, documentReference)) {
             final List<DBOperation> deleteOperations = dataController.createDeleteOperations(Collections.singletonList(documentReference));
             repository.executeTransactional(stage, deleteOperations);
+            if (removedDocument != null) {
+                materializedQueryController.onInstanceChange(stage, documentReference.getDocumentId(), removedDocument.asIndexedDoc().getDoc(), true);
+            }
         } else {
             logger.warn(String.format("Tried to remove non-existent document with id %s in stage %s", documentReference.getId(), stage.name()));
         }
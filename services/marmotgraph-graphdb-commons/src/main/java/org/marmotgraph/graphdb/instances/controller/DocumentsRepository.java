@@ -28,6 +28,8 @@ import com.arangodb.ArangoDatabase;
 import com.arangodb.model.AqlQueryOptions;
 import org.marmotgraph.arango.commons.ArangoQueries;
 import org.marmotgraph.arango.commons.aqlbuilder.AQL;
+import org.marmotgraph.arango.commons.aqlbuilder.AqlQueryDefaults;
+import org.marmotgraph.arango.commons.aqlbuilder.AQLTemplate;
 import org.marmotgraph.arango.commons.aqlbuilder.ArangoVocabulary;
 import org.marmotgraph.arango.commons.model.*;
 import org.marmotgraph.commons.*;
@@ -43,20 +45,34 @@ import org.marmotgraph.commons.model.*;
 import org.marmotgraph.commons.semantics.vocabularies.EBRAINSVocabulary;
 import org.marmotgraph.graphdb.commons.controller.ArangoDatabases;
 import org.marmotgraph.graphdb.commons.controller.GraphDBArangoUtils;
+import org.marmotgraph.graphdb.commons.controller.GraphDBIOExecutor;
 import org.marmotgraph.graphdb.commons.controller.PermissionsController;
 import org.marmotgraph.graphdb.commons.model.ArangoDocument;
 import org.marmotgraph.graphdb.instances.model.ArangoRelation;
+import org.marmotgraph.graphdb.instances.utils.SortedDocumentsMerger;
 import org.marmotgraph.graphdb.structure.controller.MetaDataController;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Component
 public class DocumentsRepository extends  AbstractRepository{
 
+    private static final AQLTemplate DOCUMENT_IDS_BY_SPACE = AQLTemplate.of(new AQL()
+            .addLine(AQL.trust("FOR doc IN @@space"))
+            .addLine(AQL.trust("FILTER doc." + IndexedJsonLdDoc.EMBEDDED + " == NULL"))
+            .addLine(AQL.trust("RETURN doc.`" + IndexedJsonLdDoc.DOCUMENT_ID + "`")));
+
+    private static final AQLTemplate DOCUMENTS_BY_REFERENCES = AQLTemplate.of(new AQL()
+            .addLine(AQL.trust("RETURN MERGE(FOR ref IN @references"))
+            .addLine(AQL.trust("LET doc = DOCUMENT(ref.id)"))
+            .addLine(AQL.trust("RETURN { [ref.key]: (@typeRestriction == null OR @typeRestriction IN doc.`" + JsonLdConsts.TYPE + "`) ? doc : null })")));
+
     private final ArangoDatabases databases;
     private final AuthContext authContext;
     private final PermissionsController permissionsController;
@@ -70,7 +86,24 @@ public class DocumentsRepository extends  AbstractRepository{
 
     private final Ids.Client ids;
 
-    public DocumentsRepository(ArangoDatabases databases, AuthContext authContext, PermissionsController permissionsController, MetaDataController metaDataController, JsonAdapter jsonAdapter, GraphDBArangoUtils graphDBArangoUtils, EmbeddedAndAlternativesRepository embeddedAndAlternatives, IdUtils idUtils, Permissions permissions, IncomingLinksRepository incomingLinks, Ids.Client ids) {
+    /**
+     * If the window to be returned is larger than this, the parallel execution by space would need to load too many
+     * documents per space - we therefore rather stick with the single (dynamic) query
+     */
+    private static final long MAX_WINDOW_FOR_PARALLEL_SPACE_QUERIES = 10000;
+
+    /**
+     * The sort keys of the windows of all spaces are merged in memory (see {@link SortedDocumentsMerger}) - beyond this number
+     * of sort keys, the single (dynamic) query is the cheaper option.
+     */
+    private static final long MAX_SORT_KEYS_FOR_PARALLEL_SPACE_QUERIES = 100000;
+
+    private final boolean parallelSpaceQueries;
+    private final int parallelSpaceQueriesMinSpaces;
+    private final GraphDBIOExecutor ioExecutor;
+    private final AqlQueryDefaults queryDefaults;
+
+    public DocumentsRepository(ArangoDatabases databases, AuthContext authContext, PermissionsController permissionsController, MetaDataController metaDataController, JsonAdapter jsonAdapter, GraphDBArangoUtils graphDBArangoUtils, EmbeddedAndAlternativesRepository embeddedAndAlternatives, IdUtils idUtils, Permissions permissions, IncomingLinksRepository incomingLinks, Ids.Client ids, @Value("${org.marmotgraph.documents.parallelSpaceQueries:false}") boolean parallelSpaceQueries, @Value("${org.marmotgraph.documents.parallelSpaceQueries.minSpaces:3}") int parallelSpaceQueriesMinSpaces, GraphDBIOExecutor ioExecutor, AqlQueryDefaults queryDefaults) {
         this.databases = databases;
         this.authContext = authContext;
         this.permissionsController = permissionsController;
@@ -82,6 +115,10 @@ public class DocumentsRepository extends  AbstractRepository{
         this.permissions = permissions;
         this.incomingLinks = incomingLinks;
         this.ids = ids;
+        this.parallelSpaceQueries = parallelSpaceQueries;
+        this.parallelSpaceQueriesMinSpaces = parallelSpaceQueriesMinSpaces;
+        this.ioExecutor = ioExecutor;
+        this.queryDefaults = queryDefaults;
     }
 
     public ArangoDocument getDocument(DataStage stage, ArangoDocumentReference reference) {
@@ -90,35 +127,38 @@ public class DocumentsRepository extends  AbstractRepository{
     @ExposesIds
     public List<String> getDocumentIdsBySpace(SpaceName space) {
         //FIXME: Shouldn't those be restricted to the ones we have at least minimal read access rights?
-        AQL aql = new AQL();
         Map<String, Object> bindVars = new HashMap<>();
-        aql.addLine(AQL.trust("FOR doc IN @@space"));
         bindVars.put("@space", ArangoCollectionReference.fromSpace(space).getCollectionName());
-        aql.addLine(AQL.trust("FILTER doc." + IndexedJsonLdDoc.EMBEDDED + " == NULL"));
-        aql.addLine(AQL.trust("RETURN doc.`" + IndexedJsonLdDoc.DOCUMENT_ID + "`"));
-        return databases.getByStage(DataStage.NATIVE).query(aql.build().getValue(), String.class, bindVars, aql.getQueryOptions()).asListRemaining();
+        return DOCUMENT_IDS_BY_SPACE.queryList(databases.getByStage(DataStage.NATIVE), String.class, bindVars, queryDefaults);
     }
 
     @ExposesData
     public Paginated<NormalizedJsonLd> getDocumentsByTypes(DataStage stage, Type typeWithLabelInfo, SpaceName space, String filterProperty, String filterValue, PaginationParam paginationParam, String search, boolean embedded, boolean alternatives, List<String> searchableProperties) {
+        return getDocumentsByTypes(stage, typeWithLabelInfo, space, filterProperty, filterValue, paginationParam, search, embedded, alternatives, searchableProperties, parallelSpaceQueries);
+    }
+
+    Paginated<NormalizedJsonLd> getDocumentsByTypes(DataStage stage, Type typeWithLabelInfo, SpaceName space, String filterProperty, String filterValue, PaginationParam paginationParam, String search, boolean embedded, boolean alternatives, List<String> searchableProperties, boolean parallelBySpace) {
         if (typeWithLabelInfo != null) {
             final UserWithRoles userWithRoles = authContext.getUserWithRoles();
             //TODO find label field for type (and client) and filter by search if set.
             ArangoDatabase database = databases.getByStage(stage);
             Map<String, Object> bindVars = new HashMap<>();
-            AQL aql = new AQL();
+            AQL aql = queryDefaults.newPlanCacheableQuery();
             Tuple<DocumentsByTypeMode, Set<SpaceName>> restrictToSpaces = restrictToSpaces(typeWithLabelInfo, stage, space);
             DocumentsByTypeMode mode = restrictToSpaces.getA();
             if (mode != DocumentsByTypeMode.EMPTY) {
                 if (search != null && InstanceId.deserialize(search) != null) {
                     mode = DocumentsByTypeMode.BY_ID;
                 }
+                if (mode == DocumentsByTypeMode.DYNAMIC && parallelBySpace && canBeExecutedBySpace(restrictToSpaces.getB(), paginationParam, userWithRoles, stage)) {
+                    return postProcess(getDocumentsByTypesInParallelBySpace(database, typeWithLabelInfo, restrictToSpaces.getB(), filterProperty, filterValue, paginationParam, search, searchableProperties), stage, embedded, alternatives);
+                }
                 Map<String, Object> whitelistFilter = null;
                 switch (mode) {
                     case BY_ID, DYNAMIC -> {
                         whitelistFilter = permissionsController.whitelistFilterForReadInstances(metaDataController.getSpaceNames(stage, userWithRoles), userWithRoles, stage);
                         if (whitelistFilter != null) {
-                            aql.specifyWhitelist();
+                            aql.specifyWhitelist(whitelistFilter);
                             bindVars.putAll(whitelistFilter);
                         }
                     }
@@ -154,7 +194,7 @@ public class DocumentsRepository extends  AbstractRepository{
                 switch (mode) {
                     case BY_ID, DYNAMIC -> {
                         if (whitelistFilter != null) {
-                            aql.addDocumentFilterWithWhitelistFilter(AQL.trust("v"));
+                            aql.addDocumentFilterWithWhitelistFilter(AQL.trust("v"), whitelistFilter);
                         }
                         if (space != null) {
                             aql.addLine(AQL.trust("FILTER v." + ArangoVocabulary.COLLECTION + " == @spaceFilter"));
@@ -174,27 +214,101 @@ public class DocumentsRepository extends  AbstractRepository{
                             //We only sort if there is pagination involved.
                             aql.addLine(AQL.trust(String.format("SORT v.%s, v.%s ASC", IndexedJsonLdDoc.LABEL, ArangoVocabulary.KEY)));
                         }
-                        aql.addPagination(paginationParam);
+                        aql.addPagination(paginationParam, bindVars);
                     }
                 }
                 aql.addLine(AQL.trust("RETURN v"));
-                Paginated<NormalizedJsonLd> normalizedJsonLdPaginated = ArangoQueries.queryDocuments(database, new AQLQuery(aql, bindVars), null);
-                embeddedAndAlternatives.handleAlternativesAndEmbedded(normalizedJsonLdPaginated.getData(), stage, alternatives, embedded);
-                exposeRevision(normalizedJsonLdPaginated.getData());
-                final SpaceName privateSpace = authContext.getUserWithRolesWithoutTermsCheck().getPrivateSpace();
-                normalizedJsonLdPaginated.getData().forEach(r -> {
-                    r.removeAllInternalProperties();
-                    final String s = r.getAs(EBRAINSVocabulary.META_SPACE, String.class);
-                    if (privateSpace.getName().equals(s)) {
-                        r.put(EBRAINSVocabulary.META_SPACE, SpaceName.PRIVATE_SPACE);
-                    }
-                });
-                return normalizedJsonLdPaginated;
+                return postProcess(ArangoQueries.queryDocuments(database, new AQLQuery(aql, bindVars), null), stage, embedded, alternatives);
             }
         }
         return new Paginated<>(Collections.emptyList(), 0L, 0, 0);
     }
 
+    private Paginated<NormalizedJsonLd> postProcess(Paginated<NormalizedJsonLd> normalizedJsonLdPaginated, DataStage stage, boolean embedded, boolean alternatives) {
+        embeddedAndAlternatives.handleAlternativesAndEmbedded(normalizedJsonLdPaginated.getData(), stage, alternatives, embedded);
+        exposeRevision(normalizedJsonLdPaginated.getData());
+        final SpaceName privateSpace = authContext.getUserWithRolesWithoutTermsCheck().getPrivateSpace();
+        normalizedJsonLdPaginated.getData().forEach(r -> {
+            r.removeAllInternalProperties();
+            final String s = r.getAs(EBRAINSVocabulary.META_SPACE, String.class);
+            if (privateSpace.getName().equals(s)) {
+                r.put(EBRAINSVocabulary.META_SPACE, SpaceName.PRIVATE_SPACE);
+            }
+        });
+        return normalizedJsonLdPaginated;
+    }
+
+    /**
+     * The execution by space is only possible if the spaces are exhaustive regarding the read permissions of the user (which is the case if there are no
+     * explicit instance permissions) and if there is a (reasonably sized) pagination which requires the results to be sorted.
+     */
+    private boolean canBeExecutedBySpace(Set<SpaceName> spaces, PaginationParam paginationParam, UserWithRoles userWithRoles, DataStage stage) {
+        if (spaces.size() < parallelSpaceQueriesMinSpaces || paginationParam == null || paginationParam.getSize() == null) {
+            return false;
+        }
+        final long window = paginationParam.getFrom() + paginationParam.getSize();
+        return window <= MAX_WINDOW_FOR_PARALLEL_SPACE_QUERIES && window * spaces.size() <= MAX_SORT_KEYS_FOR_PARALLEL_SPACE_QUERIES && permissionsController.getInstancesWithExplicitPermission(userWithRoles, stage).isEmpty();
+    }
+
+    /**
+     * Instead of traversing from the type definition to all its instances (which requires to apply the whitelist filter on every candidate), we query every
+     * (readable) space individually and in parallel. Every sub-query only returns the sort keys of its window (sorted by label and key) - they are merged in
+     * memory and only the documents of the requested window are loaded afterwards.
+     */
+    private Paginated<NormalizedJsonLd> getDocumentsByTypesInParallelBySpace(ArangoDatabase database, Type typeWithLabelInfo, Set<SpaceName> spaces, String filterProperty, String filterValue, PaginationParam paginationParam, String search, List<String> searchableProperties) {
+        //Every space has to deliver the full window since we don't know upfront how the results are distributed across the spaces
+        PaginationParam windowPerSpace = new PaginationParam().setFrom(0).setSize(paginationParam.getFrom() + paginationParam.getSize()).setReturnTotalResults(paginationParam.isReturnTotalResults());
+        final List<SpaceName> spaceList = new ArrayList<>(spaces);
+        final List<Paginated<NormalizedJsonLd>> resultsOfSpaces = Collections.synchronizedList(new ArrayList<>(Collections.nCopies(spaceList.size(), null)));
+        ioExecutor.forEach("documentsBySpace", IntStream.range(0, spaceList.size()).boxed().toList(), i -> resultsOfSpaces.set(i, querySortKeysOfSpace(database, typeWithLabelInfo, spaceList.get(i), filterProperty, filterValue, windowPerSpace, search, searchableProperties)));
+        List<List<NormalizedJsonLd>> sortKeysBySpace = new ArrayList<>();
+        Long totalResults = paginationParam.isReturnTotalResults() ? 0L : null;
+        for (Paginated<NormalizedJsonLd> resultOfSpace : resultsOfSpaces) {
+            sortKeysBySpace.add(resultOfSpace.getData());
+            if (totalResults != null && resultOfSpace.getTotalResults() != null) {
+                totalResults += resultOfSpace.getTotalResults();
+            }
+        }
+        List<NormalizedJsonLd> window = SortedDocumentsMerger.merge(sortKeysBySpace, paginationParam.getFrom(), paginationParam.getSize());
+        List<NormalizedJsonLd> data = getDocumentsInOrder(database, window.stream().map(w -> w.getAs(ArangoVocabulary.ID, String.class)).toList());
+        return new Paginated<>(data, totalResults, data.size(), paginationParam.getFrom());
+    }
+
+    private Paginated<NormalizedJsonLd> querySortKeysOfSpace(ArangoDatabase database, Type typeWithLabelInfo, SpaceName space, String filterProperty, String filterValue, PaginationParam paginationParam, String search, List<String> searchableProperties) {
+        Map<String, Object> bindVars = new HashMap<>();
+        AQL aql = queryDefaults.newPlanCacheableQuery();
+        iterateThroughTypeList(Collections.singletonList(typeWithLabelInfo), searchableProperties, bindVars, aql);
+        aql.indent().addLine(AQL.trust(String.format("FOR v IN @@space OPTIONS {indexHint: \"%s\"}", ArangoDatabaseProxy.BROWSE_AND_SEARCH_INDEX)));
+        aql.addLine(AQL.trust(String.format("FILTER @typeFilter IN v.`%s` AND v.`%s` == null", JsonLdConsts.TYPE, IndexedJsonLdDoc.EMBEDDED)));
+        bindVars.put("typeFilter", typeWithLabelInfo.getName());
+        bindVars.put("@space", ArangoCollectionReference.fromSpace(space).getCollectionName());
+        if (filterProperty != null && filterValue != null) {
+            aql.addLine(AQL.trust("AND v.@property == @value"));
+            bindVars.put("property", filterProperty);
+            bindVars.put("value", getParsedFilterValue(filterValue));
+        }
+        addSearchFilter(bindVars, aql, search, searchableProperties != null && !searchableProperties.isEmpty());
+        aql.addLine(AQL.trust(String.format("SORT v.%s, v.%s ASC", IndexedJsonLdDoc.LABEL, ArangoVocabulary.KEY)));
+        aql.addPagination(paginationParam, bindVars);
+        aql.addLine(AQL.trust(String.format("RETURN KEEP(v, \"%s\", \"%s\", \"%s\")", IndexedJsonLdDoc.LABEL, ArangoVocabulary.KEY, ArangoVocabulary.ID)));
+        return ArangoQueries.queryDocuments(database, new AQLQuery(aql, bindVars), null);
+    }
+
+    private List<NormalizedJsonLd> getDocumentsInOrder(ArangoDatabase database, List<String> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, Object> bindVars = new HashMap<>();
+        AQL aql = queryDefaults.newPlanCacheableQuery();
+        aql.addLine(AQL.trust("FOR id IN @ids"));
+        bindVars.put("ids", ids);
+        aql.addLine(AQL.trust("LET v = DOCUMENT(id)"));
+        //The document could have been removed in the meantime
+        aql.addLine(AQL.trust("FILTER v != null"));
+        aql.addLine(AQL.trust("RETURN v"));
+        return ArangoQueries.queryDocuments(database, new AQLQuery(aql, bindVars), null).getData();
+    }
+
     @ExposesData
     public List<NormalizedJsonLd> getDocumentsByIncomingRelation(DataStage stage, SpaceName space, UUID id, ArangoRelation relation, boolean useOriginalTo, boolean embedded, boolean alternatives) {
         return getDocumentsByRelation(stage, space, id, relation, true, useOriginalTo, embedded, alternatives);
@@ -266,30 +380,15 @@ public class DocumentsRepository extends  AbstractRepository{
 
 
     public Map<UUID, Result<NormalizedJsonLd>> getDocumentsByReferenceList(DataStage stage, List<ArangoDocumentReference> documentReferences, String typeRestriction) {
+        if (CollectionUtils.isEmpty(documentReferences)) {
+            return new HashMap<>();
+        }
         ArangoDatabase db = databases.getByStage(stage);
-        AQL aql = new AQL();
-
-        int counter = 0;
         Map<String, Object> bindVars = new HashMap<>();
-        aql.addLine(AQL.trust("RETURN {"));
-        if (typeRestriction != null && !CollectionUtils.isEmpty(documentReferences)) {
-            bindVars.put("typeRestriction", typeRestriction);
-        }
-        for (ArangoDocumentReference reference : documentReferences) {
-            bindVars.put("doc" + counter, reference.getId());
-            if (typeRestriction != null) {
-                aql.addLine(AQL.trust("\"" + reference.getDocumentId() + "\": @typeRestriction IN DOCUMENT(@doc" + counter + ").`@type` ? DOCUMENT(@doc" + counter + ") : null"));
-            } else {
-                aql.addLine(AQL.trust("\"" + reference.getDocumentId() + "\": DOCUMENT(@doc" + counter + ")"));
-            }
-            counter++;
-            if (counter < documentReferences.size()) {
-                aql.add(AQL.trust(", "));
-            }
-        }
-        aql.addLine(AQL.trust("}"));
+        bindVars.put("references", documentReferences.stream().map(r -> Map.of("key", r.getDocumentId().toString(), "id", r.getId())).toList());
+        bindVars.put("typeRestriction", typeRestriction);
         Map<UUID, Result<NormalizedJsonLd>> result = new HashMap<>();
-        List<NormalizedJsonLd> results = db.query(aql.build().getValue(), NormalizedJsonLd.class, bindVars, new AqlQueryOptions()).asListRemaining().stream().filter(Objects::nonNull).toList();
+        List<NormalizedJsonLd> results = DOCUMENTS_BY_REFERENCES.queryList(db, NormalizedJsonLd.class, bindVars, queryDefaults).stream().filter(Objects::nonNull).toList();
         if (!results.isEmpty()) {
             // The response object is always just a single dictionary
             NormalizedJsonLd singleResult = results.get(0);
@@ -358,8 +457,12 @@ public class DocumentsRepository extends  AbstractRepository{
     }
 
     public List<NormalizedJsonLd> getInvitationDocuments(){
-        final List<UUID> invitations = authContext.getUserWithRolesWithoutTermsCheck().getInvitations();
-        final List<InstanceId> values = ids.resolveId(invitations.stream().distinct().map(id -> new IdWithAlternatives().setId(id).setAlternatives(Collections.singleton(idUtils.buildAbsoluteUrl(id).getId()))).collect(Collectors.toList()), DataStage.IN_PROGRESS).values().stream().filter(Objects::nonNull).toList();
+        final Set<UUID> invitations = authContext.getUserWithRolesWithoutTermsCheck().getInvitationIds();
+        if (invitations.isEmpty()) {
+            // Most users don't have any invitations - we don't need to resolve anything.
+            return Collections.emptyList();
+        }
+        final List<InstanceId> values = ids.resolveId(invitations.stream().map(id -> new IdWithAlternatives().setId(id).setAlternatives(Collections.singleton(idUtils.buildAbsoluteUrl(id).getId()))).collect(Collectors.toList()), DataStage.IN_PROGRESS).values().stream().filter(Objects::nonNull).toList();
         final Map<UUID, Result<NormalizedJsonLd>> documentsByIdList = getDocumentsByIdList(DataStage.IN_PROGRESS, values, null, false, false, false, null, null);
         return documentsByIdList.values().stream().map(Result::getData).collect(Collectors.toList());
     }
@@ -25,8 +25,8 @@
 package org.marmotgraph.graphdb.instances.controller;
 
 import com.arangodb.ArangoDatabase;
-import com.arangodb.model.AqlQueryOptions;
 import org.marmotgraph.arango.commons.aqlbuilder.AQL;
+import org.marmotgraph.arango.commons.aqlbuilder.AqlQueryDefaults;
 import org.marmotgraph.arango.commons.model.ArangoCollectionReference;
 import org.marmotgraph.arango.commons.model.ArangoDocumentReference;
 import org.marmotgraph.commons.AuthContext;
@@ -58,12 +58,14 @@ public class IncomingLinksRepository extends AbstractRepository{
     private final MetaDataController metaDataController;
     private final AuthContext authContext;
     private final IdUtils idUtils;
+    private final AqlQueryDefaults queryDefaults;
 
-    public IncomingLinksRepository(ArangoDatabases databases, MetaDataController metaDataController, AuthContext authContext, IdUtils idUtils) {
+    public IncomingLinksRepository(ArangoDatabases databases, MetaDataController metaDataController, AuthContext authContext, IdUtils idUtils, AqlQueryDefaults queryDefaults) {
         this.databases = databases;
         this.metaDataController = metaDataController;
         this.authContext = authContext;
         this.idUtils = idUtils;
+        this.queryDefaults = queryDefaults;
     }
 
     @ExposesMinimalData
@@ -87,7 +89,7 @@ public class IncomingLinksRepository extends AbstractRepository{
 
     @ExposesMinimalData
     public NormalizedJsonLd fetchIncomingLinks(List<ArangoDocumentReference> documents, DataStage stage, Long from, Long pageSize, String restrictToProperty, String restrictToType) {
-        AQL aql = new AQL();
+        AQL aql = queryDefaults.newPlanCacheableQuery();
         Map<String, Object> bindVars = new HashMap<>();
         ArangoDatabase db = databases.getByStage(stage);
         Set<String> edgeCollections;
@@ -105,16 +107,21 @@ public class IncomingLinksRepository extends AbstractRepository{
                 return null;
             }
         }
-        String edges = String.join(", ", edgeCollections);
+        //We pass the edge collections as bind variables so the query text only depends on the number of edge collections and can profit from the plan cache.
+        List<String> edges = new ArrayList<>();
+        int edgeCounter = 0;
+        for (String edgeCollection : edgeCollections) {
+            edges.add("@@edge" + edgeCounter);
+            bindVars.put("@edge" + edgeCounter, edgeCollection);
+            edgeCounter++;
+        }
         aql.addLine(AQL.trust("RETURN MERGE(FOR instanceId IN @instanceIds"));
         bindVars.put("instanceIds", documents.stream().map(ArangoDocumentReference::getId).collect(Collectors.toList()));
         aql.addLine(AQL.trust("LET doc = DOCUMENT(instanceId)"));
         aql.addLine(AQL.trust("LET inbnd = UNIQUE("));
-        aql.indent().addLine(AQL.trust("FOR inbnd, e IN 1..1 INBOUND doc " + edges));
-        if (restrictToType != null) {
-            aql.addLine(AQL.trust("FILTER @typeRestriction IN inbnd.`@type`"));
-            bindVars.put("typeRestriction", restrictToType);
-        }
+        aql.indent().addLine(AQL.trust("FOR inbnd, e IN 1..1 INBOUND doc " + String.join(", ", edges)));
+        aql.addLine(AQL.trust("FILTER @typeRestriction == null OR @typeRestriction IN inbnd.`@type`"));
+        bindVars.put("typeRestriction", restrictToType);
         aql.addLine(AQL.trust("FILTER inbnd != NULL"));
         aql.addLine(AQL.trust("LET inbndRoot = inbnd.`_embedded` ? DOCUMENT(inbnd.`_originalDocument`) : inbnd"));
         aql.addLine(AQL.trust("RETURN {"));
@@ -130,8 +137,10 @@ public class IncomingLinksRepository extends AbstractRepository{
         aql.addLine(AQL.trust("FOR x IN instancesByIdentifier[*].i"));
         aql.addLine(AQL.trust("COLLECT type = x.`" + JsonLdConsts.TYPE + "` INTO instancesByIdentifierAndType"));
         aql.addLine(AQL.trust("FOR t in type"));
-        aql.addLine(AQL.trust("LET instances = (FOR instance IN instancesByIdentifierAndType[*].x SORT instance.`" + JsonLdConsts.ID + "` LIMIT " + (from != null ? from : 0) + ", " + (pageSize != null ? pageSize : DEFAULT_INCOMING_PAGESIZE) + " RETURN KEEP(instance, \"" + JsonLdConsts.ID + "\", \"" + EBRAINSVocabulary.META_SPACE + "\"))"));
-        aql.addLine(AQL.trust("RETURN { [t] : {\"data\": instances, \"total\": LENGTH(instancesByIdentifierAndType[*].i),\"size\": LENGTH(instances), \"from\": " + (from != null ? from : 0) + "}})"));
+        aql.addLine(AQL.trust("LET instances = (FOR instance IN instancesByIdentifierAndType[*].x SORT instance.`" + JsonLdConsts.ID + "` LIMIT @from, @pageSize RETURN KEEP(instance, \"" + JsonLdConsts.ID + "\", \"" + EBRAINSVocabulary.META_SPACE + "\"))"));
+        aql.addLine(AQL.trust("RETURN { [t] : {\"data\": instances, \"total\": LENGTH(instancesByIdentifierAndType[*].i),\"size\": LENGTH(instances), \"from\": @from}})"));
+        bindVars.put("from", from != null ? from : 0);
+        bindVars.put("pageSize", pageSize != null ? pageSize : DEFAULT_INCOMING_PAGESIZE);
         aql.addLine(AQL.trust("RETURN {"));
         aql.addLine(AQL.trust("[identifier]: MERGE(instancesById)"));
         aql.addLine(AQL.trust("})"));
@@ -140,7 +149,7 @@ public class IncomingLinksRepository extends AbstractRepository{
         aql.indent().addLine(AQL.trust(" [doc._key]: MERGE(groupedByInstances)"));
         aql.outdent().addLine(AQL.trust("})"));
 
-        List<NormalizedJsonLd> instances = db.query(aql.build().getValue(), NormalizedJsonLd.class, bindVars, new AqlQueryOptions()).asListRemaining();
+        List<NormalizedJsonLd> instances = db.query(aql.build().getValue(), NormalizedJsonLd.class, bindVars, aql.getQueryOptions()).asListRemaining();
         if (instances.isEmpty()) {
             return null;
         } else if (instances.size() == 1) {
@@ -85,13 +85,13 @@ public class QueriesRepository extends AbstractRepository{
             final UserWithRoles userWithRoles = authContext.getUserWithRoles();
             Map<String, Object> whitelistFilter = permissionsController.whitelistFilterForReadInstances(metaDataController.getSpaceNames(stage, userWithRoles), userWithRoles, stage);
             if (whitelistFilter != null) {
-                aql.specifyWhitelist();
+                aql.specifyWhitelist(whitelistFilter);
                 bindVars.putAll(whitelistFilter);
             }
             iterateThroughTypeList(Collections.singletonList(new Type(EBRAINSVocabulary.META_QUERY_TYPE)), null, bindVars, aql);
             aql.indent().addLine(AQL.trust("FOR v IN 1..1 OUTBOUND typeDefinition.type @@typeRelationCollection"));
             if (whitelistFilter != null) {
-                aql.addDocumentFilterWithWhitelistFilter(AQL.trust("v"));
+                aql.addDocumentFilterWithWhitelistFilter(AQL.trust("v"), whitelistFilter);
             }
             if (typeFilter != null && !typeFilter.isBlank()) {
                 aql.addLine(AQL.trust("FILTER v.`" + GraphQueryKeys.GRAPH_QUERY_META.getFieldName() + "`.`" + GraphQueryKeys.GRAPH_QUERY_TYPE.getFieldName() + "` == @typeFilter"));
@@ -26,9 +26,10 @@ package org.marmotgraph.graphdb.instances.controller;
 
 import com.arangodb.ArangoDatabase;
 import com.arangodb.entity.CollectionType;
-import com.arangodb.model.AqlQueryOptions;
 import com.arangodb.model.CollectionCreateOptions;
 import org.marmotgraph.arango.commons.aqlbuilder.AQL;
+import org.marmotgraph.arango.commons.aqlbuilder.AqlQueryDefaults;
+import org.marmotgraph.arango.commons.aqlbuilder.AQLTemplate;
 import org.marmotgraph.arango.commons.model.ArangoCollectionReference;
 import org.marmotgraph.arango.commons.model.ArangoDocumentReference;
 import org.marmotgraph.arango.commons.model.InternalSpace;
@@ -57,16 +58,31 @@ import java.util.stream.Collectors;
 @Component
 public class ReleaseStatusRepository extends AbstractRepository {
 
+    private static final AQLTemplate RELEASE_STATUS_OF_INSTANCES = AQLTemplate.of(new AQL()
+            .addLine(AQL.trust("FOR id IN @ids"))
+            .addLine(AQL.trust("LET doc = DOCUMENT(id)"))
+            .addLine(AQL.trust("LET status = FIRST((FOR v IN 1..1 INBOUND  doc @@releaseStatusCollection"))
+            .addLine(AQL.trust("RETURN v.`" + SchemaOrgVocabulary.NAME + "`))"))
+            .addLine(AQL.trust("RETURN status")));
+
+    private static final AQLTemplate TOP_INSTANCE_RELEASE_STATUS = AQLTemplate.of(new AQL()
+            .addLine(AQL.trust("FOR id in @ids"))
+            .addLine(AQL.trust("LET doc = DOCUMENT(id)"))
+            .addLine(AQL.trust("RETURN {\"id\": doc._key, \"status\": NOT_NULL(FIRST(FOR v IN 1..1 INBOUND doc @@releaseStatusCollection"))
+            .addLine(AQL.trust("RETURN v.`" + SchemaOrgVocabulary.NAME + "`), \"" + ReleaseStatus.UNRELEASED.name() + "\")}")));
+
     private final AuthContext authContext;
     private final Permissions permissions;
     private final ScopeRepository scope;
     private final ArangoDatabases databases;
+    private final AqlQueryDefaults queryDefaults;
 
-    public ReleaseStatusRepository(AuthContext authContext, Permissions permissions, ScopeRepository scope, ArangoDatabases databases) {
+    public ReleaseStatusRepository(AuthContext authContext, Permissions permissions, ScopeRepository scope, ArangoDatabases databases, AqlQueryDefaults queryDefaults) {
         this.authContext = authContext;
         this.permissions = permissions;
         this.scope = scope;
         this.databases = databases;
+        this.queryDefaults = queryDefaults;
     }
 
     @ExposesReleaseStatus
@@ -117,17 +133,11 @@ public class ReleaseStatusRepository extends AbstractRepository {
                 Set<InstanceId> instanceIds = fetchInvolvedInstances(scopeForInstance, new HashSet<>());
                 //Ignore top instance
                 instanceIds.remove(new InstanceId(id, space));
-                AQL aql = new AQL();
-                aql.addLine(AQL.trust("FOR id IN @ids"));
                 Map<String, Object> bindVars = new HashMap<>();
                 bindVars.put("ids", instanceIds.stream().map(instanceId -> ArangoDocumentReference.fromInstanceId(instanceId).getId()).collect(Collectors.toList()));
-                aql.addLine(AQL.trust("LET doc = DOCUMENT(id)"));
-                aql.addLine(AQL.trust("LET status = FIRST((FOR v IN 1..1 INBOUND  doc @@releaseStatusCollection"));
                 bindVars.put("@releaseStatusCollection", InternalSpace.RELEASE_STATUS_EDGE_COLLECTION.getCollectionName());
-                aql.addLine(AQL.trust("RETURN v.`" + SchemaOrgVocabulary.NAME + "`))"));
-                aql.addLine(AQL.trust("RETURN status"));
                 ArangoDatabase db = databases.getByStage(DataStage.IN_PROGRESS);
-                List<String> status = db.query(aql.build().getValue(), String.class, bindVars).asListRemaining();
+                List<String> status = RELEASE_STATUS_OF_INSTANCES.queryList(db, String.class, bindVars, queryDefaults);
                 if (status.contains(null) || status.contains(ReleaseStatus.UNRELEASED.name())) {
                     return ReleaseStatus.UNRELEASED;
                 } else if (status.contains(ReleaseStatus.HAS_CHANGED.name())) {
@@ -146,15 +156,10 @@ public class ReleaseStatusRepository extends AbstractRepository {
         if (!db.collection(releaseStatusCollection.getCollectionName()).exists()) {
             db.createCollection(releaseStatusCollection.getCollectionName(), new CollectionCreateOptions().type(CollectionType.EDGES));
         }
-        AQL aql = new AQL();
         Map<String, Object> bindVars = new HashMap<>();
-        aql.addLine(AQL.trust("FOR id in @ids"));
         bindVars.put("ids", instanceId.stream().map(id -> ArangoDocumentReference.fromInstanceId(id).getId()).collect(Collectors.toList()));
-        aql.addLine(AQL.trust("LET doc = DOCUMENT(id)"));
-        aql.addLine(AQL.trust("RETURN {\"id\": doc._key, \"status\": NOT_NULL(FIRST(FOR v IN 1..1 INBOUND doc @@releaseStatusCollection"));
-        aql.addLine(AQL.trust("RETURN v.`" + SchemaOrgVocabulary.NAME + "`), \"" + ReleaseStatus.UNRELEASED.name() + "\")}"));
         bindVars.put("@releaseStatusCollection", releaseStatusCollection.getCollectionName());
-        List<DynamicJson> data = db.query(aql.build().getValue(), DynamicJson.class, bindVars, new AqlQueryOptions()).asListRemaining();
+        List<DynamicJson> data = TOP_INSTANCE_RELEASE_STATUS.queryList(db, DynamicJson.class, bindVars, queryDefaults);
         Map<UUID, ReleaseStatus> result = new HashMap<>();
         data.forEach(d -> {
             result.put(UUID.fromString(d.getAs("id", String.class)), ReleaseStatus.valueOf(d.getAs("status", String.class)));
@@ -27,6 +27,7 @@ package org.marmotgraph.graphdb.instances.controller;
 import com.arangodb.ArangoDBException;
 import org.marmotgraph.arango.commons.ArangoQueries;
 import org.marmotgraph.arango.commons.aqlbuilder.AQL;
+import org.marmotgraph.arango.commons.aqlbuilder.AqlQueryDefaults;
 import org.marmotgraph.arango.commons.aqlbuilder.ArangoVocabulary;
 import org.marmotgraph.arango.commons.model.*;
 import org.marmotgraph.commons.AuthContext;
@@ -58,14 +59,16 @@ public class SuggestionsRepository extends AbstractRepository {
     private final  PermissionsController permissionsController;
     private final MetaDataController metaDataController;
     private final  ArangoDatabases databases;
+    private final AqlQueryDefaults queryDefaults;
 
-    public SuggestionsRepository(InstancesRepository instances, IdUtils idUtils, AuthContext authContext, PermissionsController permissionsController, MetaDataController metaDataController, ArangoDatabases databases) {
+    public SuggestionsRepository(InstancesRepository instances, IdUtils idUtils, AuthContext authContext, PermissionsController permissionsController, MetaDataController metaDataController, ArangoDatabases databases, AqlQueryDefaults queryDefaults) {
         this.instances = instances;
         this.idUtils = idUtils;
         this.authContext = authContext;
         this.permissionsController = permissionsController;
         this.metaDataController = metaDataController;
         this.databases = databases;
+        this.queryDefaults = queryDefaults;
     }
 
     private Paginated<SuggestedLink> getSuggestedLinkById(DataStage stage, InstanceId instanceId, List<UUID> excludeIds) {
@@ -103,7 +106,7 @@ public class SuggestionsRepository extends AbstractRepository {
             }
         }
         Map<String, Object> bindVars = new HashMap<>();
-        AQL aql = new AQL();
+        AQL aql = queryDefaults.newPlanCacheableQuery();
         // ATTENTION: We are only allowed to search by "label" fields but not by "searchable" fields if the user has no read rights
         // for those instances since otherwise, information could be extracted by doing searches. We therefore don't provide additional search fields.
         iterateThroughTypeList(type, null, bindVars, aql);
@@ -113,10 +116,10 @@ public class SuggestionsRepository extends AbstractRepository {
 
         //For suggestions, we're a little more strict. We only show additional information if the user has read rights for the space - individual instance permissions are not reflected.
         final UserWithRoles userWithRoles = authContext.getUserWithRoles();
-        final Map<String, Object> whitelistFilter = permissionsController.whitelistFilterForReadInstances(metaDataController.getSpaceNames(stage, userWithRoles), userWithRoles, stage);
-        if (whitelistFilter != null) {
+        final List<String> readableSpaces = permissionsController.readableSpaceCollections(metaDataController.getSpaceNames(stage, userWithRoles), userWithRoles, stage);
+        if (readableSpaces != null) {
             aql.addLine(AQL.trust("LET restrictedSpaces = @restrictedSpaces"));
-            bindVars.put("restrictedSpaces", whitelistFilter.get(AQL.READ_ACCESS_BY_SPACE));
+            bindVars.put("restrictedSpaces", readableSpaces);
         }
         aql.addLine(AQL.trust("LET searchableProperties = @searchableProperties"));
         bindVars.put("searchableProperties", searchablePropertiesByType);
@@ -138,10 +141,10 @@ public class SuggestionsRepository extends AbstractRepository {
         }
         addSearchFilter(bindVars, aql, search, false);
         aql.addLine(AQL.trust(String.format("SORT v.%s", IndexedJsonLdDoc.LABEL)));
-        aql.addPagination(paginationParam);
+        aql.addPagination(paginationParam, bindVars);
 
         aql.addLine(AQL.trust("LET additionalInfo = "));
-        if (whitelistFilter != null) {
+        if (readableSpaces != null) {
                 aql.addLine(AQL.trust("v.`" + EBRAINSVocabulary.META_SPACE + "` NOT IN restrictedSpaces ? null : "));
         }
         aql.addLine(AQL.trust("CONCAT_SEPARATOR(\", \", (FOR s IN NOT_NULL(searchableProperties[typeDefinition.typeName], []) RETURN v[s]))"));
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.instances.utils;
+
+import org.marmotgraph.arango.commons.aqlbuilder.ArangoVocabulary;
+import org.marmotgraph.commons.jsonld.IndexedJsonLdDoc;
+import org.marmotgraph.commons.jsonld.NormalizedJsonLd;
+
+import java.text.Collator;
+import java.util.*;
+
+/**
+ * Merges multiple lists of documents - each of them already sorted by label and key (as done by "SORT v.label, v._key ASC")
+ * into a single sorted window. This allows to split a listing into independent sub-queries (e.g. one per space) which are
+ * then combined with a k-way merge without having to re-sort the whole result.
+ * <p>
+ * The lists only need to contain the sort keys (label and key) of the documents - the documents of the merged window
+ * can then be fetched on their own.
+ */
+public class SortedDocumentsMerger {
+
+    private SortedDocumentsMerger() {
+    }
+
+    private static final Collator COLLATOR = Collator.getInstance(Locale.ROOT);
+
+    /**
+     * Arango compares values of different types by their type (null < boolean < number < string < array < object) and
+     * strings with the ICU collation of the root locale - we're following the same logic. Strings which are equal for the
+     * collator are ordered by their code points to keep the order total.
+     */
+    public static final Comparator<NormalizedJsonLd> LABEL_AND_KEY_ORDER = (a, b) -> {
+        int byLabel = compareValues(a.get(IndexedJsonLdDoc.LABEL), b.get(IndexedJsonLdDoc.LABEL));
+        return byLabel != 0 ? byLabel : compareValues(a.get(ArangoVocabulary.KEY), b.get(ArangoVocabulary.KEY));
+    };
+
+    /**
+     * @param sortedLists the (individually sorted) lists to merge. Each of them needs to contain at least the first from+size elements of its partition.
+     * @param from        the offset of the window to return
+     * @param size        the size of the window to return
+     * @return the elements of the merged order from "from" to "from+size"
+     */
+    public static List<NormalizedJsonLd> merge(List<List<NormalizedJsonLd>> sortedLists, long from, long size) {
+        final PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(sortedLists.size(), 1), (a, b) -> LABEL_AND_KEY_ORDER.compare(a.current, b.current));
+        for (List<NormalizedJsonLd> sortedList : sortedLists) {
+            final Iterator<NormalizedJsonLd> iterator = sortedList.iterator();
+            if (iterator.hasNext()) {
+                heads.add(new Head(iterator));
+            }
+        }
+        final List<NormalizedJsonLd> result = new ArrayList<>((int) Math.min(size, 1000));
+        long position = 0;
+        while (!heads.isEmpty() && position < from + size) {
+            final Head head = heads.poll();
+            if (position >= from) {
+                result.add(head.current);
+            }
+            position++;
+            if (head.iterator.hasNext()) {
+                head.current = head.iterator.next();
+                heads.add(head);
+            }
+        }
+        return result;
+    }
+
+    private static int compareValues(Object a, Object b) {
+        int byType = Integer.compare(typeRank(a), typeRank(b));
+        if (byType != 0) {
+            return byType;
+        }
+        if (a instanceof String sa && b instanceof String sb) {
+            int collated = COLLATOR.compare(sa, sb);
+            return collated != 0 ? collated : sa.compareTo(sb);
+        }
+        if (a instanceof Number na && b instanceof Number nb) {
+            return Double.compare(na.doubleValue(), nb.doubleValue());
+        }
+        if (a instanceof Boolean ba && b instanceof Boolean bb) {
+            return Boolean.compare(ba, bb);
+        }
+        return 0;
+    }
+
+    private static int typeRank(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Boolean) {
+            return 1;
+        } else if (value instanceof Number) {
+            return 2;
+        } else if (value instanceof String) {
+            return 3;
+        } else if (value instanceof Collection) {
+            return 4;
+        }
+        return 5;
+    }
+
+    private static class Head {
+        private final Iterator<NormalizedJsonLd> iterator;
+        private NormalizedJsonLd current;
+
+        private Head(Iterator<NormalizedJsonLd> iterator) {
+            this.iterator = iterator;
+            this.current = iterator.next();
+        }
+    }
+}
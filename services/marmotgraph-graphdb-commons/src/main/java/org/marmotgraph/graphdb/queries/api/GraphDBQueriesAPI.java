@@ -26,16 +26,25 @@ package org.marmotgraph.graphdb.queries.api;
 
 import org.marmotgraph.commons.AuthContext;
 import org.marmotgraph.commons.api.GraphDBQueries;
+import org.marmotgraph.commons.exception.UnauthorizedException;
+import org.marmotgraph.commons.model.DataStage;
 import org.marmotgraph.commons.model.PaginationParam;
+import org.marmotgraph.commons.model.RunningQuery;
 import org.marmotgraph.commons.model.StreamedQueryResult;
 import org.marmotgraph.commons.models.UserWithRoles;
+import org.marmotgraph.commons.permission.Functionality;
+import org.marmotgraph.commons.permissions.controller.Permissions;
 import org.marmotgraph.commons.query.KgQuery;
+import org.marmotgraph.graphdb.queries.controller.MaterializedQueryController;
 import org.marmotgraph.graphdb.queries.controller.QueryController;
+import org.marmotgraph.graphdb.queries.controller.QueryGovernor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 @Component
 public class GraphDBQueriesAPI implements GraphDBQueries.Client {
@@ -43,10 +52,16 @@ public class GraphDBQueriesAPI implements GraphDBQueries.Client {
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final AuthContext authContext;
     private final QueryController queryController;
+    private final QueryGovernor queryGovernor;
+    private final Permissions permissions;
+    private final MaterializedQueryController materializedQueryController;
 
-    public GraphDBQueriesAPI(AuthContext authContext, QueryController queryController) {
+    public GraphDBQueriesAPI(AuthContext authContext, QueryController queryController, QueryGovernor queryGovernor, Permissions permissions, MaterializedQueryController materializedQueryController) {
         this.queryController = queryController;
         this.authContext = authContext;
+        this.queryGovernor = queryGovernor;
+        this.permissions = permissions;
+        this.materializedQueryController = materializedQueryController;
     }
 
     @Override
@@ -56,6 +71,45 @@ public class GraphDBQueriesAPI implements GraphDBQueries.Client {
         return queryController.queryToStream(userWithRoles, query, paginationParam, params, false);
     }
 
+    @Override
+    public List<RunningQuery> getRunningQueries() {
+        checkPermissionForRunningQueries();
+        return queryGovernor.getRunningQueries();
+    }
+
+    @Override
+    public boolean cancelRunningQuery(UUID id) {
+        checkPermissionForRunningQueries();
+        logger.info("Cancelling query {}", id);
+        return queryGovernor.cancel(id);
+    }
+
+    @Override
+    public void materializeQuery(KgQuery query) {
+        checkPermissionForMaterializedQueries();
+        logger.info("Materializing query {} in stage {}", query.getQueryId(), query.getStage().name());
+        materializedQueryController.materialize(query.getStage(), query.getQueryId(), query.getPayload());
+    }
+
+    @Override
+    public boolean dematerializeQuery(DataStage stage, UUID queryId) {
+        checkPermissionForMaterializedQueries();
+        logger.info("Removing the materialization of query {} in stage {}", queryId, stage.name());
+        return materializedQueryController.dematerialize(stage, queryId);
+    }
+
+    private void checkPermissionForMaterializedQueries(){
+        if(!permissions.hasGlobalPermission(authContext.getUserWithRoles(), Functionality.MANAGE_MATERIALIZED_QUERIES)){
+            throw new UnauthorizedException("The current user doesn't have the rights to manage the materialized queries");
+        }
+    }
+
+    private void checkPermissionForRunningQueries(){
+        if(!permissions.hasGlobalPermission(authContext.getUserWithRoles(), Functionality.MANAGE_RUNNING_QUERIES)){
+            throw new UnauthorizedException("The current user doesn't have the rights to manage the running queries");
+        }
+    }
+
     private void checkPermissionForQueryExecution(UserWithRoles userWithRoles){
         //TODO this is a client permission, not a user permission... let's see how we can handle this.
         //Functionality executeQuery = graphDBMode.isSync() ? Functionality.EXECUTE_SYNC_QUERY : Functionality.EXECUTE_QUERY;
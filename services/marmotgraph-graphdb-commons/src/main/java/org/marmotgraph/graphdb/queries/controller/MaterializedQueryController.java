@@ -0,0 +1,436 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.queries.controller;
+
+import com.arangodb.ArangoCollection;
+import com.arangodb.ArangoDBException;
+import com.arangodb.ArangoDatabase;
+import com.arangodb.entity.CollectionType;
+import com.arangodb.entity.IndexEntity;
+import com.arangodb.model.AqlQueryOptions;
+import com.arangodb.model.DocumentCreateOptions;
+import com.arangodb.model.DocumentUpdateOptions;
+import com.arangodb.model.OverwriteMode;
+import com.arangodb.model.PersistentIndexOptions;
+import org.marmotgraph.arango.commons.ArangoQueries;
+import org.marmotgraph.arango.commons.aqlbuilder.AQL;
+import org.marmotgraph.arango.commons.model.AQLQuery;
+import org.marmotgraph.arango.commons.model.ArangoCollectionReference;
+import org.marmotgraph.arango.commons.model.InternalSpace;
+import org.marmotgraph.commons.exception.InvalidRequestException;
+import org.marmotgraph.commons.jsonld.NormalizedJsonLd;
+import org.marmotgraph.commons.model.DataStage;
+import org.marmotgraph.commons.model.PaginatedStream;
+import org.marmotgraph.commons.model.PaginationParam;
+import org.marmotgraph.commons.query.KgQuery;
+import org.marmotgraph.commons.semantics.vocabularies.EBRAINSVocabulary;
+import org.marmotgraph.graphdb.commons.controller.ArangoDatabases;
+import org.marmotgraph.graphdb.commons.controller.GraphDBArangoUtils;
+import org.marmotgraph.graphdb.commons.controller.GraphDBIOExecutor;
+import org.marmotgraph.graphdb.queries.model.MaterializedQuery;
+import org.marmotgraph.graphdb.queries.model.spec.Specification;
+import org.marmotgraph.graphdb.queries.utils.DataQueryBuilder;
+import org.marmotgraph.graphdb.queries.utils.QueryDependencies;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Materialized queries are stored queries whose result rows are persisted per stage. Ingestion marks them as stale if
+ * it touches an instance the query depends on (see {@link QueryDependencies}) and the stale ones are recalculated
+ * periodically. Reads are a scan on an index over the position of the rows which allows to seek to the requested page
+ * instead of skipping the preceding rows.
+ * <p>
+ * The state of a materialized query is changed by field-level updates under the lock of its instance - a refresh and the
+ * ingestion marking the query as stale therefore can't overwrite each others changes. The (long running) calculation of
+ * the rows happens outside of this lock and only once at a time per query and stage.
+ */
+@Component
+public class MaterializedQueryController {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final long REFRESH_INTERVAL_IN_MS = 30000;
+
+    /**
+     * Other instances keep reading a replaced generation until they have reloaded the materialized queries (see
+     * {@link #refreshStaleQueries()}) - we therefore only remove it once they had the chance to do so.
+     */
+    private static final long PREVIOUS_GENERATION_GRACE_PERIOD_IN_MS = 3 * REFRESH_INTERVAL_IN_MS;
+
+    private static final String QUERY_ID = "queryId";
+    private static final String GENERATION = "generation";
+    private static final String POSITION = "position";
+    private static final String ROW = "row";
+    private static final String PAYLOAD = "payload";
+    private static final String STALE = "stale";
+    private static final String LAST_REFRESH = "lastRefresh";
+    private static final String NUMBER_OF_RESULTS = "numberOfResults";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ArangoDatabases arangoDatabases;
+
+    private final GraphDBArangoUtils graphDBArangoUtils;
+
+    private final SpecificationInterpreter specificationInterpreter;
+
+    private final GraphDBIOExecutor ioExecutor;
+
+    private final Map<DataStage, Map<UUID, MaterializedQuery>> materializedQueries = new ConcurrentHashMap<>();
+
+    private final Map<UUID, QueryDependencies> dependencies = new ConcurrentHashMap<>();
+
+    private final Set<String> databasesWithResultIndex = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> runningRefreshes = ConcurrentHashMap.newKeySet();
+
+    public MaterializedQueryController(ArangoDatabases arangoDatabases, GraphDBArangoUtils graphDBArangoUtils, SpecificationInterpreter specificationInterpreter, GraphDBIOExecutor ioExecutor) {
+        this.arangoDatabases = arangoDatabases;
+        this.graphDBArangoUtils = graphDBArangoUtils;
+        this.specificationInterpreter = specificationInterpreter;
+        this.ioExecutor = ioExecutor;
+    }
+
+    private static boolean isMaterializationSupported(DataStage stage) {
+        return stage == DataStage.IN_PROGRESS || stage == DataStage.RELEASED;
+    }
+
+    private Map<UUID, MaterializedQuery> getMaterializedQueries(DataStage stage) {
+        return materializedQueries.computeIfAbsent(stage, this::loadMaterializedQueries);
+    }
+
+    private Map<UUID, MaterializedQuery> loadMaterializedQueries(DataStage stage) {
+        final ArangoDatabase database = arangoDatabases.getByStage(stage);
+        final ArangoCollection collection = graphDBArangoUtils.getOrCreateArangoCollection(database, ArangoCollectionReference.fromSpace(InternalSpace.MATERIALIZED_QUERIES_SPACE));
+        final Map<UUID, MaterializedQuery> result = new ConcurrentHashMap<>();
+        Map<String, Object> bindVars = new HashMap<>();
+        bindVars.put("@collection", collection.name());
+        database.query("FOR q IN @@collection RETURN q", MaterializedQuery.class, bindVars, new AqlQueryOptions()).forEachRemaining(q -> result.put(q.getQueryId(), q));
+        return result;
+    }
+
+    private ArangoCollection getResultsCollection(ArangoDatabase database) {
+        final ArangoCollection collection = graphDBArangoUtils.getOrCreateArangoCollection(database, ArangoCollectionReference.fromSpace(InternalSpace.MATERIALIZED_QUERY_RESULTS_SPACE));
+        if (!databasesWithResultIndex.contains(database.name())) {
+            final List<String> keysetIndex = Arrays.asList(QUERY_ID, GENERATION, POSITION);
+            if (collection.getIndexes().stream().map(IndexEntity::getFields).noneMatch(i -> new ArrayList<>(i).equals(keysetIndex))) {
+                collection.ensurePersistentIndex(keysetIndex, new PersistentIndexOptions());
+            }
+            databasesWithResultIndex.add(database.name());
+        }
+        return collection;
+    }
+
+    private ArangoCollection getMaterializedQueriesCollection(DataStage stage) {
+        return graphDBArangoUtils.getOrCreateArangoCollection(arangoDatabases.getByStage(stage), ArangoCollectionReference.fromSpace(InternalSpace.MATERIALIZED_QUERIES_SPACE));
+    }
+
+    private void save(DataStage stage, MaterializedQuery materializedQuery) {
+        getMaterializedQueriesCollection(stage).insertDocument(materializedQuery, new DocumentCreateOptions().overwriteMode(OverwriteMode.replace).silent(true));
+    }
+
+    /**
+     * Only writes the given fields - so concurrent updates of other fields (e.g. from an instance with an outdated state) are kept.
+     */
+    private void update(DataStage stage, MaterializedQuery materializedQuery, Map<String, Object> fields) {
+        getMaterializedQueriesCollection(stage).updateDocument(materializedQuery.getKey(), fields, new DocumentUpdateOptions().mergeObjects(false).silent(true));
+    }
+
+    private void markAsStale(DataStage stage, MaterializedQuery materializedQuery) {
+        synchronized (materializedQuery) {
+            if (!materializedQuery.isStale()) {
+                logger.debug("Materialized query {} in stage {} became stale", materializedQuery.getQueryId(), stage.name());
+                update(stage, materializedQuery.setStale(true), Collections.singletonMap(STALE, true));
+            }
+        }
+    }
+
+    private QueryDependencies getDependencies(MaterializedQuery materializedQuery) {
+        return dependencies.computeIfAbsent(materializedQuery.getQueryId(), k -> QueryDependencies.fromSpecification(specificationInterpreter.readSpecification(materializedQuery.getPayload())));
+    }
+
+    public MaterializedQuery getMaterializedQuery(DataStage stage, UUID queryId) {
+        if (queryId == null || !isMaterializationSupported(stage)) {
+            return null;
+        }
+        return getMaterializedQueries(stage).get(queryId);
+    }
+
+    /**
+     * @return the materialization the given query can be answered from or null if it has to be executed
+     */
+    public MaterializedQuery findMaterialization(KgQuery query) {
+        if (query.getIdRestriction() != null || (query.getRestrictToSpaces() != null && !query.getRestrictToSpaces().isEmpty())) {
+            return null;
+        }
+        final MaterializedQuery materializedQuery = getMaterializedQuery(query.getStage(), query.getQueryId());
+        if (materializedQuery == null || materializedQuery.getLastRefresh() == null || getDependencies(materializedQuery).isParameterized()) {
+            return null;
+        }
+        return materializedQuery;
+    }
+
+    public boolean hasMaterializedQueries(DataStage stage) {
+        return isMaterializationSupported(stage) && !getMaterializedQueries(stage).isEmpty();
+    }
+
+    /**
+     * Registers the materialization of the query and calculates its rows in the background.
+     *
+     * @return the future which completes as soon as the first calculation has finished (or immediately if the calculation has to wait for the next scheduled refresh)
+     */
+    public CompletableFuture<MaterializedQuery> materialize(DataStage stage, UUID queryId, NormalizedJsonLd payload) {
+        if (!isMaterializationSupported(stage)) {
+            throw new InvalidRequestException(String.format("Queries can't be materialized in stage %s", stage.name()));
+        }
+        final QueryDependencies queryDependencies = QueryDependencies.fromSpecification(specificationInterpreter.readSpecification(payload));
+        if (queryDependencies.isParameterized()) {
+            throw new InvalidRequestException("Queries with parameterized filters can't be materialized");
+        }
+        final MaterializedQuery existing = getMaterializedQuery(stage, queryId);
+        final MaterializedQuery materializedQuery = new MaterializedQuery().setQueryId(queryId).setPayload(payload).setGeneration(existing != null ? existing.getGeneration() : 0).setNumberOfResults(existing != null ? existing.getNumberOfResults() : 0).setStale(true);
+        dependencies.put(queryId, queryDependencies);
+        save(stage, materializedQuery);
+        getMaterializedQueries(stage).put(queryId, materializedQuery);
+        try {
+            return ioExecutor.submit("materializedQueryRefresh", () -> refresh(stage, materializedQuery)).thenApply(v -> materializedQuery);
+        } catch (RejectedExecutionException e) {
+            // The query is stored as stale - it is therefore calculated by the next scheduled refresh
+            logger.warn("Was not able to submit the calculation of materialized query {} in stage {} - it will be calculated by the next scheduled refresh", queryId, stage.name());
+            return CompletableFuture.completedFuture(materializedQuery);
+        }
+    }
+
+    public boolean dematerialize(DataStage stage, UUID queryId) {
+        final MaterializedQuery materializedQuery = isMaterializationSupported(stage) ? getMaterializedQueries(stage).remove(queryId) : null;
+        if (materializedQuery == null) {
+            return false;
+        }
+        final ArangoDatabase database = arangoDatabases.getByStage(stage);
+        database.collection(ArangoCollectionReference.fromSpace(InternalSpace.MATERIALIZED_QUERIES_SPACE).getCollectionName()).deleteDocument(materializedQuery.getKey());
+        removeRows(database, queryId, null, Collections.emptyMap());
+        return true;
+    }
+
+    /**
+     * Marks all materialized queries of the stage as stale which are depending on the given instance.
+     *
+     * @param instance the payload of the instance - either in its new state or in the state before it has been removed.
+     */
+    public void onInstanceChange(DataStage stage, UUID instanceId, NormalizedJsonLd instance, boolean removed) {
+        if (instance == null || !isMaterializationSupported(stage)) {
+            return;
+        }
+        final Map<UUID, MaterializedQuery> queries = getMaterializedQueries(stage);
+        if (queries.isEmpty()) {
+            return;
+        }
+        final List<String> types = instance.types();
+        if (stage == DataStage.IN_PROGRESS && types != null && types.contains(EBRAINSVocabulary.META_QUERY_TYPE)) {
+            //The stored queries are defined in IN_PROGRESS only but are materialized in the other stages too
+            onQueryChange(DataStage.IN_PROGRESS, instanceId, instance, removed);
+            onQueryChange(DataStage.RELEASED, instanceId, instance, removed);
+        }
+        queries.values().stream().filter(q -> !q.isStale() && getDependencies(q).isAffectedBy(instance)).forEach(q -> markAsStale(stage, q));
+    }
+
+    private void onQueryChange(DataStage stage, UUID queryId, NormalizedJsonLd query, boolean removed) {
+        final MaterializedQuery materializedQuery = getMaterializedQuery(stage, queryId);
+        if (materializedQuery != null) {
+            if (removed) {
+                logger.info("Query {} has been removed - removing its materialization in stage {}", queryId, stage.name());
+                dematerialize(stage, queryId);
+            } else {
+                synchronized (materializedQuery) {
+                    dependencies.remove(queryId);
+                    Map<String, Object> fields = new HashMap<>();
+                    fields.put(PAYLOAD, query);
+                    fields.put(STALE, true);
+                    update(stage, materializedQuery.setPayload(query).setStale(true), fields);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reloads the state of the materialized queries and submits the recalculation of the stale ones to the I/O executor
+     * - so a slow materialization doesn't block the other scheduled jobs.
+     */
+    @Scheduled(fixedDelay = REFRESH_INTERVAL_IN_MS)
+    public void refreshStaleQueries() {
+        // We only reload the stages which have been in use on this instance already - the others are loaded lazily.
+        for (DataStage stage : new ArrayList<>(materializedQueries.keySet())) {
+            try {
+                final Map<UUID, MaterializedQuery> queries = loadMaterializedQueries(stage);
+                materializedQueries.put(stage, queries);
+                queries.values().stream().filter(MaterializedQuery::isStale).forEach(q -> submitRefresh(stage, q));
+            } catch (ArangoDBException e) {
+                logger.error(String.format("Was not able to refresh the materialized queries of stage %s", stage.name()), e);
+            }
+        }
+    }
+
+    private void submitRefresh(DataStage stage, MaterializedQuery materializedQuery) {
+        try {
+            ioExecutor.submit("materializedQueryRefresh", () -> refresh(stage, materializedQuery));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Was not able to submit the refresh of materialized query {} in stage {} - retrying with the next scheduled refresh", materializedQuery.getQueryId(), stage.name());
+        }
+    }
+
+    /**
+     * Calculates the result rows as a new generation and switches to it once they're written completely. The replaced
+     * generation is kept until the next refresh since other instances might still read it. If the query is
+     * refreshed already, the request is skipped - a change which happened in the meantime has marked the query as stale
+     * again and is therefore picked up by the next scheduled refresh.
+     */
+    void refresh(DataStage stage, MaterializedQuery materializedQuery) {
+        final String refreshKey = String.format("%s/%s", stage.name(), materializedQuery.getQueryId());
+        if (!runningRefreshes.add(refreshKey)) {
+            logger.debug("Materialized query {} in stage {} is refreshed already", materializedQuery.getQueryId(), stage.name());
+            return;
+        }
+        try {
+            calculate(stage, materializedQuery);
+        } finally {
+            runningRefreshes.remove(refreshKey);
+        }
+    }
+
+    private void calculate(DataStage stage, MaterializedQuery materializedQuery) {
+        final ArangoDatabase database = arangoDatabases.getByStage(stage);
+        final ArangoCollection results = getResultsCollection(database);
+        final UUID queryId = materializedQuery.getQueryId();
+        final long generation;
+        final long previousGeneration;
+        final Long previousRefresh;
+        final NormalizedJsonLd payload;
+        synchronized (materializedQuery) {
+            previousGeneration = materializedQuery.getGeneration();
+            previousRefresh = materializedQuery.getLastRefresh();
+            generation = previousGeneration + 1;
+            payload = materializedQuery.getPayload();
+            // We reset the flag before we start the calculation - changes happening in the meantime will mark the query as stale again.
+            update(stage, materializedQuery.setStale(false), Collections.singletonMap(STALE, false));
+        }
+        logger.info("Refreshing materialized query {} in stage {}", queryId, stage.name());
+        final Specification specification = specificationInterpreter.readSpecification(payload);
+        final List<ArangoCollectionReference> existingCollections = database.getCollections().stream().map(c -> new ArangoCollectionReference(c.getName(), c.getType() == CollectionType.EDGES)).collect(Collectors.toList());
+        final AQLQuery aql = new DataQueryBuilder(specification, null, null, null, null, Collections.emptyMap(), existingCollections).build();
+        long position = 0;
+        try (Stream<NormalizedJsonLd> rows = ArangoQueries.queryDocumentsAsStream(database, aql, null).getStream()) {
+            List<Map<String, Object>> batch = new ArrayList<>(BATCH_SIZE);
+            for (Iterator<NormalizedJsonLd> iterator = rows.iterator(); iterator.hasNext(); position++) {
+                Map<String, Object> row = new HashMap<>();
+                row.put(QUERY_ID, queryId.toString());
+                row.put(GENERATION, generation);
+                row.put(POSITION, position);
+                row.put(ROW, iterator.next());
+                batch.add(row);
+                if (batch.size() == BATCH_SIZE) {
+                    results.insertDocuments(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                results.insertDocuments(batch);
+            }
+        } catch (RuntimeException e) {
+            logger.error(String.format("Was not able to refresh materialized query %s in stage %s", queryId, stage.name()), e);
+            removeRows(database, queryId, String.format("r.%s == @generation", GENERATION), Collections.singletonMap("generation", generation));
+            synchronized (materializedQuery) {
+                update(stage, materializedQuery.setStale(true), Collections.singletonMap(STALE, true));
+            }
+            return;
+        }
+        final long lastRefresh = new Date().getTime();
+        synchronized (materializedQuery) {
+            Map<String, Object> fields = new HashMap<>();
+            fields.put(GENERATION, generation);
+            fields.put(NUMBER_OF_RESULTS, position);
+            fields.put(LAST_REFRESH, lastRefresh);
+            update(stage, materializedQuery.setGeneration(generation).setNumberOfResults(position).setLastRefresh(lastRefresh), fields);
+        }
+        // Other instances might still read the previous generation (and the one before if it has been replaced only recently) - they are therefore removed by a later refresh.
+        final boolean generationBeforePreviousInUse = previousRefresh != null && lastRefresh - previousRefresh < PREVIOUS_GENERATION_GRACE_PERIOD_IN_MS;
+        removeRows(database, queryId, String.format("r.%s < @generation", GENERATION), Collections.singletonMap("generation", generationBeforePreviousInUse ? previousGeneration - 1 : previousGeneration));
+        logger.info("Materialized query {} in stage {} refreshed with {} results", queryId, stage.name(), position);
+    }
+
+    /**
+     * Removes the rows of the query - either all of them (if the filter is null) or the ones matching the filter.
+     */
+    private void removeRows(ArangoDatabase database, UUID queryId, String filter, Map<String, Object> filterBindVars) {
+        AQL aql = new AQL();
+        Map<String, Object> bindVars = new HashMap<>(filterBindVars);
+        aql.addLine(AQL.trust("FOR r IN @@results"));
+        bindVars.put("@results", getResultsCollection(database).name());
+        aql.addLine(AQL.trust(String.format("FILTER r.%s == @queryId", QUERY_ID)));
+        bindVars.put("queryId", queryId.toString());
+        if (filter != null) {
+            aql.addLine(AQL.trust(String.format("FILTER %s", filter)));
+        }
+        aql.addLine(AQL.trust("REMOVE r IN @@results"));
+        database.query(aql.build().getValue(), Void.class, bindVars, new AqlQueryOptions());
+    }
+
+    public PaginatedStream<NormalizedJsonLd> read(DataStage stage, MaterializedQuery materializedQuery, PaginationParam paginationParam) {
+        final ArangoDatabase database = arangoDatabases.getByStage(stage);
+        final long from = paginationParam != null ? paginationParam.getFrom() : 0;
+        final Long size = paginationParam != null ? paginationParam.getSize() : null;
+        final long generation;
+        final long numberOfResults;
+        synchronized (materializedQuery) {
+            generation = materializedQuery.getGeneration();
+            numberOfResults = materializedQuery.getNumberOfResults();
+        }
+        AQL aql = new AQL();
+        Map<String, Object> bindVars = new HashMap<>();
+        aql.addLine(AQL.trust("FOR r IN @@results"));
+        bindVars.put("@results", getResultsCollection(database).name());
+        aql.addLine(AQL.trust(String.format("FILTER r.%s == @queryId AND r.%s == @generation AND r.%s >= @from", QUERY_ID, GENERATION, POSITION)));
+        bindVars.put("queryId", materializedQuery.getQueryId().toString());
+        bindVars.put("generation", generation);
+        bindVars.put("from", from);
+        aql.addLine(AQL.trust(String.format("SORT r.%s", POSITION)));
+        if (size != null) {
+            aql.addLine(AQL.trust("LIMIT @size"));
+            bindVars.put("size", size);
+        }
+        aql.addLine(AQL.trust(String.format("RETURN r.%s", ROW)));
+        final PaginatedStream<NormalizedJsonLd> result = ArangoQueries.queryDocumentsAsStream(database, new AQLQuery(aql, bindVars), null);
+        final boolean returnTotalResults = paginationParam == null || paginationParam.isReturnTotalResults();
+        return new PaginatedStream<>(result.getStream(), returnTotalResults ? numberOfResults : null, result.getSize(), from);
+    }
+}
@@ -33,6 +33,8 @@ import org.marmotgraph.arango.commons.model.ArangoCollectionReference;
 import org.marmotgraph.arango.commons.model.InternalSpace;
 import org.marmotgraph.commons.Tuple;
 import org.marmotgraph.commons.exception.LimitExceededException;
+import org.marmotgraph.commons.jsonld.NormalizedJsonLd;
+import org.marmotgraph.commons.model.PaginatedStream;
 import org.marmotgraph.commons.model.PaginationParam;
 import org.marmotgraph.commons.model.QueryResult;
 import org.marmotgraph.commons.model.StreamedQueryResult;
@@ -41,10 +43,13 @@ import org.marmotgraph.commons.query.KgQuery;
 import org.marmotgraph.graphdb.commons.controller.ArangoDatabases;
 import org.marmotgraph.graphdb.commons.controller.GraphDBArangoUtils;
 import org.marmotgraph.graphdb.commons.controller.PermissionsController;
+import org.marmotgraph.graphdb.queries.model.MaterializedQuery;
 import org.marmotgraph.graphdb.queries.model.spec.Specification;
 import org.marmotgraph.graphdb.queries.utils.DataQueryBuilder;
 import org.marmotgraph.graphdb.queries.utils.SpecificationToScopeQueryAdapter;
+import org.marmotgraph.graphdb.queries.utils.TraversalPlanner;
 import org.marmotgraph.graphdb.structure.controller.MetaDataController;
+import org.marmotgraph.graphdb.structure.controller.StructureRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -69,22 +74,36 @@ public class QueryController {
 
     private final MetaDataController metaDataController;
 
+    private final StructureRepository structureRepository;
+
+    private final QueryGovernor queryGovernor;
+
+    private final MaterializedQueryController materializedQueryController;
+
     private final Double maxMemoryForQuery;
 
-    public QueryController(SpecificationInterpreter specificationInterpreter, ArangoDatabases arangoDatabases, PermissionsController permissionsController, GraphDBArangoUtils graphDBArangoUtils, @Value("${org.marmotgraph.arango.maxMemory:#{null}}") Double maxMemoryForQuery, MetaDataController metaDataController) {
+    private final boolean traversalPlanning;
+
+    public QueryController(SpecificationInterpreter specificationInterpreter, ArangoDatabases arangoDatabases, PermissionsController permissionsController, GraphDBArangoUtils graphDBArangoUtils, @Value("${org.marmotgraph.arango.maxMemory:#{null}}") Double maxMemoryForQuery, MetaDataController metaDataController, StructureRepository structureRepository, @Value("${org.marmotgraph.queries.traversalPlanning:true}") boolean traversalPlanning, QueryGovernor queryGovernor, MaterializedQueryController materializedQueryController) {
         this.specificationInterpreter = specificationInterpreter;
         this.arangoDatabases = arangoDatabases;
         this.graphDBArangoUtils = graphDBArangoUtils;
         this.permissionsController = permissionsController;
         this.maxMemoryForQuery = maxMemoryForQuery;
         this.metaDataController = metaDataController;
+        this.structureRepository = structureRepository;
+        this.traversalPlanning = traversalPlanning;
+        this.queryGovernor = queryGovernor;
+        this.materializedQueryController = materializedQueryController;
     }
 
 
     public QueryResult query(UserWithRoles userWithRoles, KgQuery query, PaginationParam paginationParam, Map<String, String> filterValues, boolean scopeMode) {
         ArangoDatabase database = arangoDatabases.getByStage(query.getStage());
         final Tuple<AQLQuery, Specification> q = query(database, userWithRoles, query, paginationParam, filterValues, scopeMode);
+        final QueryGovernor.Registration registration = queryGovernor.register(userWithRoles, query.getStage(), query.getMaxRuntime());
         try {
+            queryGovernor.apply(registration, q.getA());
             return new QueryResult(ArangoQueries.queryDocuments(database, q.getA(), maxMemoryForQuery), q.getB().getResponseVocab());
         } catch (ArangoDBException ex) {
             logger.error(String.format("Was not able to execute query: %s", q.getA()));
@@ -94,17 +113,34 @@ public class QueryController {
             } else {
                 throw ex;
             }
+        } finally {
+            queryGovernor.release(registration);
         }
     }
 
     public StreamedQueryResult queryToStream(UserWithRoles userWithRoles, KgQuery query, PaginationParam paginationParam, Map<String, String> filterValues, boolean scopeMode) {
+        // The materialization is calculated without any instance filter - we therefore can only serve it to users who are allowed to see everything.
+        final MaterializedQuery materializedQuery = scopeMode ? null : materializedQueryController.findMaterialization(query);
+        if (materializedQuery != null && permissionsController.hasGlobalReadPermissions(userWithRoles, query.getStage())) {
+            return new StreamedQueryResult(materializedQueryController.read(query.getStage(), materializedQuery, paginationParam), specificationInterpreter.readSpecification(materializedQuery.getPayload()).getResponseVocab());
+        }
         ArangoDatabase database = arangoDatabases.getByStage(query.getStage());
         final Tuple<AQLQuery, Specification> q = query(database, userWithRoles, query, paginationParam, filterValues, scopeMode);
+        final QueryGovernor.Registration registration = queryGovernor.register(userWithRoles, query.getStage(), query.getMaxRuntime());
+        queryGovernor.releaseWithRequest(registration);
         try {
-            return new StreamedQueryResult(ArangoQueries.queryDocumentsAsStream(database, q.getA(), maxMemoryForQuery), q.getB().getResponseVocab());
+            queryGovernor.apply(registration, q.getA());
+            final PaginatedStream<NormalizedJsonLd> result = ArangoQueries.queryDocumentsAsStream(database, q.getA(), maxMemoryForQuery);
+            // The registration is released as soon as the stream is closed - either because the response has been written completely or because the client has aborted the request.
+            // If the stream is never closed, it is released (and the query killed) when the request is completed.
+            return new StreamedQueryResult(new PaginatedStream<>(result.getStream().onClose(() -> queryGovernor.release(registration)), result.getTotalResults(), result.getSize(), result.getFrom()), q.getB().getResponseVocab());
         } catch (ArangoDBException ex) {
+            queryGovernor.release(registration);
             logger.error(String.format("Was not able to execute query: %s", q.getA()));
             throw ex;
+        } catch (RuntimeException ex) {
+            queryGovernor.release(registration);
+            throw ex;
         }
     }
 
@@ -124,7 +160,8 @@ public class QueryController {
         graphDBArangoUtils.getOrCreateArangoCollection(database, ArangoCollectionReference.fromSpace(InternalSpace.TYPE_SPACE));
         graphDBArangoUtils.getOrCreateArangoCollection(database, InternalSpace.TYPE_EDGE_COLLECTION);
         final List<String> spaceRestrictions = query.getRestrictToSpaces() == null ? null : query.getRestrictToSpaces().stream().filter(Objects::nonNull).map(ArangoCollectionReference::fromSpace).map(ArangoCollectionReference::getCollectionName).collect(Collectors.toList());
-        AQLQuery aql = new DataQueryBuilder(specification, paginationParam, whitelistFilter, spaceRestrictions, query.getIdRestriction(), filterValues, database.getCollections().stream().map(c -> new ArangoCollectionReference(c.getName(), c.getType() == CollectionType.EDGES)).collect(Collectors.toList())).build();
+        final TraversalPlanner traversalPlanner = traversalPlanning ? new TraversalPlanner(c -> structureRepository.getCollectionCount(query.getStage(), c)) : null;
+        AQLQuery aql = new DataQueryBuilder(specification, paginationParam, whitelistFilter, spaceRestrictions, query.getIdRestriction(), filterValues, database.getCollections().stream().map(c -> new ArangoCollectionReference(c.getName(), c.getType() == CollectionType.EDGES)).collect(Collectors.toList()), traversalPlanner).build();
         return new Tuple<>(aql, specification);
     }
 
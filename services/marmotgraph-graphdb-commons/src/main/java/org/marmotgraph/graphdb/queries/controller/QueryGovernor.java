@@ -0,0 +1,259 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.queries.controller;
+
+import com.arangodb.ArangoDBException;
+import com.arangodb.ArangoDatabase;
+import com.arangodb.entity.QueryEntity;
+import org.marmotgraph.arango.commons.ArangoQueries;
+import org.marmotgraph.arango.commons.model.AQLQuery;
+import org.marmotgraph.commons.exception.ServiceException;
+import org.marmotgraph.commons.model.DataStage;
+import org.marmotgraph.commons.model.RunningQuery;
+import org.marmotgraph.commons.models.UserWithRoles;
+import org.marmotgraph.graphdb.commons.controller.ArangoDatabases;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps track of the queries currently executed on behalf of users and clients. It restricts the number of concurrent
+ * queries per user and per client, applies the maximal runtime to the queries and allows to kill them in the database.
+ * The queries are identified in the database by their query string and bind variables (see {@link ArangoQueries#findRunningQueries(ArangoDatabase, String, Map)}).
+ * A registration is released when its result has been consumed, when the request which has registered it is completed
+ * (see {@link #releaseWithRequest(Registration)}) or at the latest when it has expired.
+ */
+@Component
+public class QueryGovernor {
+
+    private static final long GRACE_PERIOD_IN_MS = 5000;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ArangoDatabases arangoDatabases;
+
+    private final Double maxRuntime;
+
+    private final double maxRegistrationTime;
+
+    private final int maxConcurrentQueriesPerUser;
+
+    private final int maxConcurrentQueriesPerClient;
+
+    private final Map<UUID, Registration> runningQueries = new ConcurrentHashMap<>();
+
+    public QueryGovernor(ArangoDatabases arangoDatabases, @Value("${org.marmotgraph.queries.maxRuntime:#{null}}") Double maxRuntime, @Value("${org.marmotgraph.queries.maxRegistrationTime:3600}") double maxRegistrationTime, @Value("${org.marmotgraph.queries.maxConcurrentPerUser:10}") int maxConcurrentQueriesPerUser, @Value("${org.marmotgraph.queries.maxConcurrentPerClient:50}") int maxConcurrentQueriesPerClient) {
+        this.arangoDatabases = arangoDatabases;
+        this.maxRuntime = maxRuntime;
+        this.maxRegistrationTime = maxRegistrationTime;
+        this.maxConcurrentQueriesPerUser = maxConcurrentQueriesPerUser;
+        this.maxConcurrentQueriesPerClient = maxConcurrentQueriesPerClient;
+    }
+
+    public static class Registration {
+        private final UUID id;
+        private final String userId;
+        private final String clientId;
+        private final DataStage stage;
+        private final Date started;
+        private final Double maxRuntime;
+        private final long expiresAt;
+        private volatile String query;
+        private volatile Map<String, Object> bindVars;
+
+        private Registration(UUID id, String userId, String clientId, DataStage stage, Double maxRuntime, double maxRegistrationTime) {
+            this.id = id;
+            this.userId = userId;
+            this.clientId = clientId;
+            this.stage = stage;
+            this.started = new Date();
+            this.maxRuntime = maxRuntime;
+            //Every registration expires - even if there is no maximal runtime - so it can't be leaked
+            this.expiresAt = started.getTime() + (maxRuntime != null ? (long) (Math.min(maxRuntime, maxRegistrationTime) * 1000) + GRACE_PERIOD_IN_MS : (long) (maxRegistrationTime * 1000));
+        }
+
+        public UUID getId() {
+            return id;
+        }
+
+        public Double getMaxRuntime() {
+            return maxRuntime;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public Map<String, Object> getBindVars() {
+            return bindVars;
+        }
+
+        private boolean isExpired(long now) {
+            return now > expiresAt;
+        }
+
+        private boolean isSameQuery(Registration other) {
+            return stage == other.stage && query != null && query.equals(other.query) && Objects.equals(bindVars, other.bindVars);
+        }
+    }
+
+    /**
+     * The maximal runtime requested for a single query can only restrict the one configured for the whole system further.
+     */
+    Double resolveMaxRuntime(Double requestedMaxRuntime) {
+        if (requestedMaxRuntime == null || requestedMaxRuntime <= 0) {
+            return maxRuntime;
+        }
+        return maxRuntime == null ? requestedMaxRuntime : Math.min(maxRuntime, requestedMaxRuntime);
+    }
+
+    public Registration register(UserWithRoles userWithRoles, DataStage stage, Double requestedMaxRuntime) {
+        final String userId = userWithRoles.getUser() != null ? userWithRoles.getUser().getNativeId() : null;
+        final String clientId = userWithRoles.getClientId();
+        final Registration registration = new Registration(UUID.randomUUID(), userId, clientId, stage, resolveMaxRuntime(requestedMaxRuntime), maxRegistrationTime);
+        synchronized (runningQueries) {
+            if (userId != null && runningQueries.values().stream().filter(r -> userId.equals(r.userId)).count() >= maxConcurrentQueriesPerUser) {
+                throw new ServiceException(HttpStatus.TOO_MANY_REQUESTS.value(), String.format("You are already running %d queries concurrently - please wait until they are finished", maxConcurrentQueriesPerUser));
+            }
+            if (clientId != null && runningQueries.values().stream().filter(r -> clientId.equals(r.clientId)).count() >= maxConcurrentQueriesPerClient) {
+                throw new ServiceException(HttpStatus.TOO_MANY_REQUESTS.value(), String.format("The client %s is already running %d queries concurrently - please wait until they are finished", clientId, maxConcurrentQueriesPerClient));
+            }
+            runningQueries.put(registration.id, registration);
+        }
+        return registration;
+    }
+
+    /**
+     * Remembers the query so it can be identified in the database and restricts its runtime according to the registration
+     */
+    public void apply(Registration registration, AQLQuery query) {
+        if (registration.maxRuntime != null) {
+            query.getAql().getQueryOptions().maxRuntime(registration.maxRuntime);
+        }
+        registration.bindVars = Map.copyOf(query.getBindVars());
+        registration.query = query.getAql().build().getValue();
+    }
+
+    public void release(Registration registration) {
+        runningQueries.remove(registration.id);
+    }
+
+    /**
+     * Ensures the registration is released (and its query killed if it is still running) as soon as the current request
+     * is completed - no matter if the result has been consumed or if the request has failed or been aborted. Outside
+     * of a request, the registration is released when it expires.
+     */
+    public void releaseWithRequest(Registration registration) {
+        final RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes != null) {
+            requestAttributes.registerDestructionCallback(String.format("%s.%s", QueryGovernor.class.getName(), registration.id), () -> cancel(registration.id), RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    public List<RunningQuery> getRunningQueries() {
+        final Map<DataStage, List<QueryEntity>> queriesInDatabase = new EnumMap<>(DataStage.class);
+        return runningQueries.values().stream().sorted(Comparator.comparing(r -> r.started)).map(r -> {
+            RunningQuery runningQuery = new RunningQuery();
+            runningQuery.setId(r.id);
+            runningQuery.setUserId(r.userId);
+            runningQuery.setClientId(r.clientId);
+            runningQuery.setStage(r.stage);
+            runningQuery.setStarted(r.started);
+            runningQuery.setMaxRuntime(r.maxRuntime);
+            findQueryInDatabase(r, queriesInDatabase.computeIfAbsent(r.stage, this::getQueriesInDatabase)).ifPresent(q -> {
+                runningQuery.setDatabaseQueryId(q.getId());
+                runningQuery.setDatabaseRunTime(q.getRunTime());
+                runningQuery.setDatabaseState(q.getState() != null ? q.getState().name() : null);
+            });
+            return runningQuery;
+        }).collect(Collectors.toList());
+    }
+
+    private List<QueryEntity> getQueriesInDatabase(DataStage stage) {
+        try {
+            return new ArrayList<>(arangoDatabases.getByStage(stage).getCurrentlyRunningQueries());
+        } catch (ArangoDBException e) {
+            logger.warn(String.format("Was not able to read the currently running queries of stage %s", stage.name()), e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Finds the query of the registration in the database. If the same query (with the same bind variables) is
+     * registered several times, the registrations are mapped to the queries in the database in the order they have been started.
+     */
+    Optional<QueryEntity> findQueryInDatabase(Registration registration, Collection<QueryEntity> queriesInDatabase) {
+        if (registration.query == null) {
+            return Optional.empty();
+        }
+        final List<QueryEntity> candidates = ArangoQueries.findRunningQueries(queriesInDatabase, registration.query, registration.bindVars);
+        final long index = runningQueries.values().stream().filter(r -> r != registration && r.isSameQuery(registration) && (r.started.before(registration.started) || r.started.equals(registration.started) && r.id.compareTo(registration.id) < 0)).count();
+        return index < candidates.size() ? Optional.of(candidates.get((int) index)) : Optional.empty();
+    }
+
+    /**
+     * Kills the query in the database and releases its registration.
+     *
+     * @return false if there is no query registered with the given id
+     */
+    public boolean cancel(UUID id) {
+        final Registration registration = runningQueries.get(id);
+        if (registration == null) {
+            return false;
+        }
+        final Optional<QueryEntity> queryInDatabase = registration.query != null ? findQueryInDatabase(registration, getQueriesInDatabase(registration.stage)) : Optional.empty();
+        if (runningQueries.remove(id) == null) {
+            //Released in the meantime
+            return false;
+        }
+        if (queryInDatabase.isPresent() && ArangoQueries.killRunningQuery(arangoDatabases.getByStage(registration.stage), queryInDatabase.get())) {
+            logger.info("Killed query {} of user {} / client {}", registration.id, registration.userId, registration.clientId);
+        }
+        return true;
+    }
+
+    /**
+     * The database already terminates queries exceeding their maximal runtime. This is the safety net for the cases
+     * in which the database didn't do so (or the registration has not been released otherwise) to ensure that the
+     * registrations are released again.
+     */
+    @Scheduled(fixedRate = 10000)
+    public void killExpiredQueries() {
+        final long now = new Date().getTime();
+        runningQueries.values().stream().filter(r -> r.isExpired(now)).toList().forEach(r -> {
+            logger.warn("Query {} of user {} / client {} has expired (maximal runtime: {}s)", r.id, r.userId, r.clientId, r.maxRuntime);
+            cancel(r.id);
+        });
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.queries.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.marmotgraph.arango.commons.aqlbuilder.ArangoVocabulary;
+import org.marmotgraph.commons.jsonld.NormalizedJsonLd;
+
+import java.util.UUID;
+
+/**
+ * The state of a materialized query in a specific stage. The result rows are stored with the generation they've been
+ * calculated for, so a refresh can write a new generation while the previous one is still served.
+ */
+public class MaterializedQuery {
+
+    @JsonProperty(ArangoVocabulary.KEY)
+    private String key;
+
+    private NormalizedJsonLd payload;
+
+    private long generation;
+
+    private boolean stale;
+
+    private Long lastRefresh;
+
+    private long numberOfResults;
+
+    public String getKey() {
+        return key;
+    }
+
+    public UUID getQueryId() {
+        return key != null ? UUID.fromString(key) : null;
+    }
+
+    public MaterializedQuery setQueryId(UUID queryId) {
+        this.key = queryId != null ? queryId.toString() : null;
+        return this;
+    }
+
+    public NormalizedJsonLd getPayload() {
+        return payload;
+    }
+
+    public MaterializedQuery setPayload(NormalizedJsonLd payload) {
+        this.payload = payload;
+        return this;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public MaterializedQuery setGeneration(long generation) {
+        this.generation = generation;
+        return this;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    public MaterializedQuery setStale(boolean stale) {
+        this.stale = stale;
+        return this;
+    }
+
+    public Long getLastRefresh() {
+        return lastRefresh;
+    }
+
+    public MaterializedQuery setLastRefresh(Long lastRefresh) {
+        this.lastRefresh = lastRefresh;
+        return this;
+    }
+
+    public long getNumberOfResults() {
+        return numberOfResults;
+    }
+
+    public MaterializedQuery setNumberOfResults(long numberOfResults) {
+        this.numberOfResults = numberOfResults;
+        return this;
+    }
+}
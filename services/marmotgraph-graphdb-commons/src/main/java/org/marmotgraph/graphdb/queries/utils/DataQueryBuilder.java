@@ -59,11 +59,13 @@ public class DataQueryBuilder {
 
     private final InstanceId idRestriction;
 
+    private final TraversalPlanner traversalPlanner;
+
     public static ArangoAlias fromSpecField(SpecProperty specField) {
         return new ArangoAlias(String.format("%s_%d", specField.propertyName, specField.getAliasPostfix()));
     }
 
-    private static ArangoCollectionReference fromSpecTraversal(SpecTraverse traverse) {
+    static ArangoCollectionReference fromSpecTraversal(SpecTraverse traverse) {
         return new ArangoCollectionReference(new ArangoKey(traverse.pathName).getValue(), true);
     }
 
@@ -80,11 +82,16 @@ public class DataQueryBuilder {
 
         addDocumentFilterWithWhitelistFilter(q, rootAlias.getArangoDocName(), whiteListFilter, spaceRestriction);
 
-        //Define the complex fields (the ones with traversals)
-        q.add(new TraverseBuilder(rootAlias, specification.getProperties()).getTraversedProperty());
+        if (traversalPlanner != null && traversalPlanner.isApplicable(specification.getProperties())) {
+            //Define filters and complex fields in the order defined by the planner
+            addPlannedTraversalsAndFilters(rootAlias);
+        } else {
+            //Define the complex fields (the ones with traversals)
+            q.add(new TraverseBuilder(rootAlias, specification.getProperties()).getTraversedProperty());
 
-        //Define filters
-        q.add(new FilterBuilder(rootAlias, specification.getDocumentFilter(), specification.getProperties()).getFilter());
+            //Define filters
+            q.add(new FilterBuilder(rootAlias, specification.getDocumentFilter(), specification.getProperties()).getFilter());
+        }
 
         //Define sorting
         q.addLine(new SortBuilder(rootAlias, specification.getProperties()).getSort());
@@ -105,7 +112,30 @@ public class DataQueryBuilder {
         return new AQLQuery(q, bindVars);
     }
 
+    /**
+     * Applies the filters which only depend on the root document first, then evaluates the restricting traversals
+     * (cheapest first) each directly followed by its filter, and only then materializes the remaining traversals.
+     * This way, root documents are pruned before the expensive, non-restricting branches are resolved.
+     */
+    private void addPlannedTraversalsAndFilters(ArangoAlias rootAlias) {
+        final List<SpecProperty> properties = specification.getProperties();
+        final List<SpecProperty> traversalProperties = properties.stream().filter(SpecProperty::needsTraversal).filter(p -> !p.isMerge()).collect(Collectors.toList());
+        final List<SpecProperty> directProperties = properties.stream().filter(p -> !traversalProperties.contains(p)).collect(Collectors.toList());
+
+        q.add(new FilterBuilder(rootAlias, specification.getDocumentFilter(), directProperties).getFilter());
+        for (SpecProperty restrictingTraversal : traversalPlanner.restrictingTraversals(traversalProperties)) {
+            final List<SpecProperty> traversal = Collections.singletonList(restrictingTraversal);
+            q.add(new TraverseBuilder(rootAlias, traversal).getTraversedProperty());
+            q.add(new FilterBuilder(rootAlias, null, traversal).getFilter());
+        }
+        q.add(new TraverseBuilder(rootAlias, traversalPlanner.remainingTraversals(traversalProperties)).getTraversedProperty());
+    }
+
     public DataQueryBuilder(Specification specification, PaginationParam pagination, Map<String, Object> whitelistFilter, List<String> spaceRestriction, InstanceId idRestriction, Map<String, String> filterValues, List<ArangoCollectionReference> existingCollections) {
+        this(specification, pagination, whitelistFilter, spaceRestriction, idRestriction, filterValues, existingCollections, null);
+    }
+
+    public DataQueryBuilder(Specification specification, PaginationParam pagination, Map<String, Object> whitelistFilter, List<String> spaceRestriction, InstanceId idRestriction, Map<String, String> filterValues, List<ArangoCollectionReference> existingCollections, TraversalPlanner traversalPlanner) {
         this.q = new AQL();
         this.specification = specification;
         this.pagination = pagination;
@@ -114,11 +144,12 @@ public class DataQueryBuilder {
         this.whiteListFilter = whitelistFilter;
         this.spaceRestriction = spaceRestriction;
         this.idRestriction = idRestriction;
+        this.traversalPlanner = traversalPlanner;
     }
 
     public void defineRootInstance() {
         if (whiteListFilter != null) {
-            this.q.specifyWhitelist();
+            this.q.specifyWhitelist(whiteListFilter);
             this.bindVars.putAll(whiteListFilter);
         }
         if(idRestriction != null) {
@@ -151,7 +182,7 @@ public class DataQueryBuilder {
 
     private static void addDocumentFilterWithWhitelistFilter(AQL aql, TrustedAqlValue documentAlias, Map<String, Object> whitelistFilter, List<String> spaceRestriction) {
         if(whitelistFilter!=null){
-            aql.addDocumentFilterWithWhitelistFilter(documentAlias);
+            aql.addDocumentFilterWithWhitelistFilter(documentAlias, whitelistFilter);
         }
         if(spaceRestriction!=null) {
             aql.addLine(trust("FILTER " + documentAlias.getValue() + "." + ArangoVocabulary.COLLECTION + " IN @spaceRestriction"));
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.queries.utils;
+
+import org.marmotgraph.commons.jsonld.NormalizedJsonLd;
+import org.marmotgraph.commons.model.Type;
+import org.marmotgraph.graphdb.queries.model.fieldFilter.PropertyFilter;
+import org.marmotgraph.graphdb.queries.model.spec.SpecProperty;
+import org.marmotgraph.graphdb.queries.model.spec.SpecTraverse;
+import org.marmotgraph.graphdb.queries.model.spec.Specification;
+
+import java.util.*;
+
+/**
+ * Derives from a {@link Specification} which instances have an influence on the result of a query: The instances of the
+ * root type, the instances of the types the traversals are restricted to and - for traversals without type restrictions -
+ * all instances providing one of the properties the query is following.
+ */
+public class QueryDependencies {
+
+    private final Set<String> types = new HashSet<>();
+    private final Set<String> properties = new HashSet<>();
+    private boolean unrestrictedTraversals;
+    private boolean parameterized;
+
+    public static QueryDependencies fromSpecification(Specification specification) {
+        QueryDependencies dependencies = new QueryDependencies();
+        if (specification.getRootType() != null) {
+            dependencies.types.add(specification.getRootType().getName());
+        }
+        dependencies.parameterized = isParameterized(specification.getDocumentFilter());
+        specification.getProperties().forEach(dependencies::collect);
+        return dependencies;
+    }
+
+    private void collect(SpecProperty property) {
+        // The last step of the path of a leaf is reading a value and therefore doesn't lead to another instance
+        final int traversingSteps = property.isLeaf() ? property.path.size() - 1 : property.path.size();
+        for (int i = 0; i < property.path.size(); i++) {
+            final SpecTraverse traverse = property.path.get(i);
+            properties.add(traverse.pathName);
+            if (i < traversingSteps) {
+                if (traverse.typeRestrictions == null || traverse.typeRestrictions.isEmpty()) {
+                    unrestrictedTraversals = true;
+                } else {
+                    traverse.typeRestrictions.stream().map(Type::getName).forEach(types::add);
+                }
+            }
+        }
+        parameterized |= isParameterized(property.propertyFilter);
+        property.property.forEach(this::collect);
+    }
+
+    private static boolean isParameterized(PropertyFilter filter) {
+        return filter != null && filter.getParameter() != null;
+    }
+
+    /**
+     * @return true if the given instance (either in its new state or in the state before it has been removed) can have an influence on the result of the query.
+     */
+    public boolean isAffectedBy(NormalizedJsonLd instance) {
+        if (instance == null) {
+            return false;
+        }
+        final List<String> instanceTypes = instance.types();
+        if (instanceTypes != null && instanceTypes.stream().anyMatch(types::contains)) {
+            return true;
+        }
+        return unrestrictedTraversals && instance.keySet().stream().anyMatch(properties::contains);
+    }
+
+    /**
+     * @return true if the query depends on filter values provided at execution time - such a query can't be materialized.
+     */
+    public boolean isParameterized() {
+        return parameterized;
+    }
+
+    public Set<String> getTypes() {
+        return Collections.unmodifiableSet(types);
+    }
+
+    public Set<String> getProperties() {
+        return Collections.unmodifiableSet(properties);
+    }
+
+    public boolean hasUnrestrictedTraversals() {
+        return unrestrictedTraversals;
+    }
+}
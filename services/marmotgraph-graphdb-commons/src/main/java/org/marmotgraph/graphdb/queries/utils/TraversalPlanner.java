@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.queries.utils;
+
+import org.marmotgraph.graphdb.queries.model.spec.SpecProperty;
+import org.marmotgraph.graphdb.queries.model.spec.SpecTraverse;
+
+import java.util.*;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Decides in which order the root level traversals of a {@link DataQueryBuilder} are emitted. Traversals which restrict
+ * the root documents (required properties or properties with a value filter) are evaluated first - the cheapest one
+ * according to the cardinality of the involved edge collections at the very beginning - so the corresponding filter can
+ * be applied before the remaining (non-restricting) traversals are materialized.
+ */
+public class TraversalPlanner {
+
+    private final ToLongFunction<String> edgeCollectionCardinality;
+
+    /**
+     * @param edgeCollectionCardinality provides the (estimated) number of edges in the given edge collection. Collections which don't exist are expected to return 0.
+     */
+    public TraversalPlanner(ToLongFunction<String> edgeCollectionCardinality) {
+        this.edgeCollectionCardinality = edgeCollectionCardinality;
+    }
+
+    public static boolean isRestricting(SpecProperty property) {
+        return property.isRequired() || (property.propertyFilter != null && property.propertyFilter.getOp() != null && !property.propertyFilter.getOp().isInstanceFilter());
+    }
+
+    /**
+     * @return true if the planning pass can change anything for the given root properties - this is the case if there is at least one restricting traversal.
+     */
+    public boolean isApplicable(List<SpecProperty> rootProperties) {
+        return rootProperties.stream().anyMatch(p -> p.needsTraversal() && !p.isMerge() && isRestricting(p));
+    }
+
+    /**
+     * @return the restricting traversal properties, cheapest first. Properties with the same cost keep their specification order.
+     */
+    public List<SpecProperty> restrictingTraversals(List<SpecProperty> traversalProperties) {
+        Map<SpecProperty, Long> costs = new HashMap<>();
+        return traversalProperties.stream().filter(TraversalPlanner::isRestricting)
+                .sorted(Comparator.comparingLong(p -> costs.computeIfAbsent(p, this::estimateCost)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the non-restricting traversal properties in specification order
+     */
+    public List<SpecProperty> remainingTraversals(List<SpecProperty> traversalProperties) {
+        return traversalProperties.stream().filter(p -> !isRestricting(p)).collect(Collectors.toList());
+    }
+
+    /**
+     * The cost of a traversal is the sum of the cardinalities of all edge collections it has to walk through (including
+     * the ones of nested properties). An edge collection which doesn't exist has no cost since the traversal is
+     * short-cut to an empty array.
+     * <p>
+     * The availability of indices is not taken into account: all traversals walk the edge index of their collections
+     * and the filters are evaluated on the reached documents (for which there are no dedicated indices).
+     */
+    long estimateCost(SpecProperty property) {
+        long cost = 0;
+        for (SpecTraverse traverse : traversedPath(property)) {
+            cost += Math.max(0, edgeCollectionCardinality.applyAsLong(DataQueryBuilder.fromSpecTraversal(traverse).getCollectionName()));
+        }
+        if (property.hasSubProperties()) {
+            for (SpecProperty subProperty : property.property) {
+                cost += estimateCost(subProperty);
+            }
+        }
+        return cost;
+    }
+
+    private List<SpecTraverse> traversedPath(SpecProperty property) {
+        if (property.hasSubProperties()) {
+            return property.path;
+        }
+        // The last element of a leaf path is a property of the reached document and not a traversal
+        return property.path.isEmpty() ? Collections.emptyList() : property.path.subList(0, property.path.size() - 1);
+    }
+
+}
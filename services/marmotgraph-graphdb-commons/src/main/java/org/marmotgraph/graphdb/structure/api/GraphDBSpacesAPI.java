@@ -122,6 +122,7 @@ public class GraphDBSpacesAPI implements GraphDBSpaces.Client {
             structureRepository.createOrUpdateSpaceDocument(spaceSpecification);
             structureRepository.evictSpacesCache();
             structureRepository.evictSpaceSpecificationsCache();
+            metaDataController.invalidateMetaDataSnapshots();
         } else {
             throw new ForbiddenException(NO_RIGHTS_TO_MANAGE_SPACES);
         }
@@ -141,6 +142,7 @@ public class GraphDBSpacesAPI implements GraphDBSpaces.Client {
             structureRepository.removeSpaceDocument(spaceName);
             structureRepository.evictSpacesCache();
             structureRepository.evictSpaceSpecificationsCache();
+            metaDataController.invalidateMetaDataSnapshots();
         } else {
             throw new ForbiddenException(NO_RIGHTS_TO_MANAGE_SPACES);
         }
@@ -160,6 +162,7 @@ public class GraphDBSpacesAPI implements GraphDBSpaces.Client {
         if (permissionsController.canManageSpaces(authContext.getUserWithRoles(), spaceName)) {
             structureRepository.addLinkBetweenSpaceAndType(spaceName, typeName);
             structureRepository.evictTypesInSpaceBySpecification(spaceName);
+            metaDataController.invalidateMetaDataSnapshots();
         } else {
             throw new ForbiddenException(NO_RIGHTS_TO_MANAGE_SPACES);
         }
@@ -170,6 +173,7 @@ public class GraphDBSpacesAPI implements GraphDBSpaces.Client {
         if (permissionsController.canManageSpaces(authContext.getUserWithRoles(), spaceName)) {
             structureRepository.removeLinkBetweenSpaceAndType(spaceName, typeName);
             structureRepository.evictTypesInSpaceBySpecification(spaceName);
+            metaDataController.invalidateMetaDataSnapshots();
         } else {
             throw new ForbiddenException(NO_RIGHTS_TO_MANAGE_SPACES);
         }
@@ -36,8 +36,10 @@ import org.marmotgraph.commons.model.external.types.TypeInformation;
 import org.marmotgraph.commons.semantics.vocabularies.SchemaOrgVocabulary;
 import org.marmotgraph.graphdb.commons.controller.PermissionsController;
 import org.marmotgraph.graphdb.instances.controller.DocumentsRepository;
+import org.marmotgraph.graphdb.structure.controller.CacheController;
 import org.marmotgraph.graphdb.structure.controller.MetaDataController;
 import org.marmotgraph.graphdb.structure.controller.StructureRepository;
+import org.marmotgraph.graphdb.structure.controller.StructureStatisticsRepository;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
@@ -53,13 +55,17 @@ public class GraphDBTypesAPI implements GraphDBTypes.Client {
     private final MetaDataController metaDataController;
     private final PermissionsController permissionsController;
     private final DocumentsRepository documents;
+    private final StructureStatisticsRepository structureStatistics;
+    private final CacheController cacheController;
 
-    public GraphDBTypesAPI(AuthContext authContext, StructureRepository structureRepository, MetaDataController metaDataController, PermissionsController permissionsController, DocumentsRepository documents) {
+    public GraphDBTypesAPI(AuthContext authContext, StructureRepository structureRepository, MetaDataController metaDataController, PermissionsController permissionsController, DocumentsRepository documents, StructureStatisticsRepository structureStatistics, CacheController cacheController) {
         this.authContext = authContext;
         this.structureRepository = structureRepository;
         this.metaDataController = metaDataController;
         this.permissionsController = permissionsController;
         this.documents = documents;
+        this.structureStatistics = structureStatistics;
+        this.cacheController = cacheController;
     }
 
     @Override
@@ -68,12 +74,19 @@ public class GraphDBTypesAPI implements GraphDBTypes.Client {
         if(metaDataController.isInitialCachePopulationInProgress()){
             throw new ServiceNotAvailableException("The service is not yet available due to ongoing initialization processes.");
         }
+        if (doReflect) {
+            //Clients expect to see the structure of their own writes
+            cacheController.executePendingCacheEvictions(stage);
+        }
         return PaginationParam.paginate(metaDataController.readMetaDataStructure(stage, space, null, withProperties, withIncomingLinks, authContext.getUserWithRoles(), authContext.getClientSpace() != null ? authContext.getClientSpace().getName() : null, authContext.getUserWithRolesWithoutTermsCheck().getPrivateSpace(), documents.getInvitationDocuments(), doReflect), paginationParam);
     }
 
     @Override
     public Map<String, Result<TypeInformation>> getTypesByName(List<String> types, DataStage stage, String space,
                                                                boolean withProperties, boolean withIncomingLinks, boolean doReflect) {
+        if (doReflect) {
+            cacheController.executePendingCacheEvictions(stage);
+        }
         return metaDataController.getTypesByName(types, stage, space, withProperties, withIncomingLinks, authContext.getUserWithRoles(), authContext.getClientSpace()!=null ? authContext.getClientSpace().getName() : null, documents.getInvitationDocuments(), doReflect);
     }
 
@@ -99,11 +112,13 @@ public class GraphDBTypesAPI implements GraphDBTypes.Client {
             if(global) {
                 structureRepository.createOrUpdateTypeDocument(typeName, normalizedJsonLd, null);
                 structureRepository.evictTypeSpecification(typeName.getId());
+                metaDataController.invalidateMetaDataSnapshots();
             }
             else{
                 final SpaceName clientSpace = getClientSpaceOrThrowException();
                 structureRepository.createOrUpdateTypeDocument(typeName, normalizedJsonLd, clientSpace);
                 structureRepository.evictClientSpecificTypeSpecification(typeName.getId(), clientSpace);
+                metaDataController.invalidateMetaDataSnapshots();
             }
         } else {
             throw new ForbiddenException(NO_RIGHTS_TO_DEFINE_TYPES);
@@ -117,11 +132,13 @@ public class GraphDBTypesAPI implements GraphDBTypes.Client {
             if(global){
                 structureRepository.removeTypeDocument(typeName, null);
                 structureRepository.evictTypeSpecification(typeName.getId());
+                metaDataController.invalidateMetaDataSnapshots();
             }
             else{
                 final SpaceName clientSpace = getClientSpaceOrThrowException();
                 structureRepository.removeTypeDocument(typeName, clientSpace);
                 structureRepository.evictClientSpecificTypeSpecification(typeName.getId(), clientSpace);
+                metaDataController.invalidateMetaDataSnapshots();
             }
         } else {
             throw new ForbiddenException(NO_RIGHTS_TO_DEFINE_TYPES);
@@ -158,11 +175,13 @@ public class GraphDBTypesAPI implements GraphDBTypes.Client {
             if(global) {
                 structureRepository.createOrUpdatePropertyDocument(propertyName, normalizedJsonLd, null);
                 structureRepository.evictPropertySpecificationCache(propertyName.getId());
+                metaDataController.invalidateMetaDataSnapshots();
             }
             else{
                 final SpaceName clientSpace = getClientSpaceOrThrowException();
                 structureRepository.createOrUpdatePropertyDocument(propertyName, normalizedJsonLd,  clientSpace);
                 structureRepository.evictClientSpecificPropertySpecificationCache(propertyName.getId(), clientSpace);
+                metaDataController.invalidateMetaDataSnapshots();
             }
         } else {
             throw new ForbiddenException(NO_RIGHTS_TO_DEFINE_PROPERTIES);
@@ -175,11 +194,13 @@ public class GraphDBTypesAPI implements GraphDBTypes.Client {
             if(global) {
                 structureRepository.removePropertyDocument(propertyName, null);
                 structureRepository.evictPropertySpecificationCache(propertyName.getId());
+                metaDataController.invalidateMetaDataSnapshots();
             }
             else{
                 SpaceName clientSpace = getClientSpaceOrThrowException();
                 structureRepository.removePropertyDocument(propertyName, clientSpace);
                 structureRepository.evictClientSpecificPropertySpecificationCache(propertyName.getId(), clientSpace);
+                metaDataController.invalidateMetaDataSnapshots();
             }
         } else {
             throw new ForbiddenException(NO_RIGHTS_TO_DEFINE_PROPERTIES);
@@ -217,11 +238,13 @@ public class GraphDBTypesAPI implements GraphDBTypes.Client {
             if(global) {
                 structureRepository.addLinkBetweenTypeAndProperty(typeName, propertyName, payload, null);
                 structureRepository.evictPropertiesInTypeBySpecificationCache(typeName);
+                metaDataController.invalidateMetaDataSnapshots();
             }
             else{
                 SpaceName clientSpace = getClientSpaceOrThrowException();
                 structureRepository.addLinkBetweenTypeAndProperty(typeName, propertyName, payload, clientSpace);
                 structureRepository.evictClientSpecificPropertiesInTypeBySpecificationCache(typeName, clientSpace);
+                metaDataController.invalidateMetaDataSnapshots();
             }
         } else {
             throw new ForbiddenException(NO_RIGHTS_TO_DEFINE_TYPES);
@@ -234,14 +257,27 @@ public class GraphDBTypesAPI implements GraphDBTypes.Client {
             if(global) {
                 structureRepository.removeLinkBetweenTypeAndProperty(typeName, propertyName, null);
                 structureRepository.evictPropertiesInTypeBySpecificationCache(typeName);
+                metaDataController.invalidateMetaDataSnapshots();
             }
             else{
                 SpaceName clientSpace = getClientSpaceOrThrowException();
                 structureRepository.removeLinkBetweenTypeAndProperty(typeName, propertyName, clientSpace);
                 structureRepository.evictClientSpecificPropertiesInTypeBySpecificationCache(typeName, clientSpace);
+                metaDataController.invalidateMetaDataSnapshots();
             }
         } else {
             throw new ForbiddenException(NO_RIGHTS_TO_DEFINE_TYPES);
         }
     }
+
+    @Override
+    public void rebuildStructureStatistics(DataStage stage) {
+        if (permissionsController.canManageTypesAndProperties(authContext.getUserWithRoles())) {
+            structureStatistics.rebuild(stage);
+            structureRepository.evictReflectionCaches();
+            metaDataController.invalidateMetaDataSnapshots();
+        } else {
+            throw new ForbiddenException(NO_RIGHTS_TO_DEFINE_TYPES);
+        }
+    }
 }
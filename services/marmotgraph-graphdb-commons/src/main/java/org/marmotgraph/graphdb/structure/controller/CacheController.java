@@ -24,26 +24,29 @@
 
 package org.marmotgraph.graphdb.structure.controller;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
 import jakarta.annotation.PostConstruct;
 import org.marmotgraph.arango.commons.model.ArangoCollectionReference;
 import org.marmotgraph.arango.commons.model.InternalSpace;
 import org.marmotgraph.commons.AuthContext;
 import org.marmotgraph.commons.Triple;
 import org.marmotgraph.commons.Tuple;
+import org.marmotgraph.commons.cache.CacheConstant;
 import org.marmotgraph.commons.model.DataStage;
 import org.marmotgraph.commons.model.SpaceName;
 import org.marmotgraph.commons.model.internal.spaces.Space;
 import org.marmotgraph.graphdb.ingestion.model.CacheEvictionPlan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
-import java.time.Duration;
-import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -52,7 +55,17 @@ public class CacheController {
 
     private final StructureRepository structureRepository;
     private final MetaDataController metaDataController;
+    private final ReflectionCachePersistence reflectionCachePersistence;
     private final AuthContext authContext;
+    private final long coalescingWindowInMs;
+    private final long deferredWindowInMs;
+
+    /**
+     * The pending evictions of the reflection caches - requests for the same key within the window are merged into a single eviction.
+     */
+    private final CacheEvictionCoalescer<Tuple<SpaceName, DataStage>> typesInSpaceEvictions;
+    private final CacheEvictionCoalescer<Tuple<Tuple<SpaceName, String>, DataStage>> propertiesOfTypeInSpaceEvictions;
+    private final CacheEvictionCoalescer<Tuple<Triple<SpaceName, String, String>, DataStage>> targetTypesEvictions;
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -62,10 +75,16 @@ public class CacheController {
     }
 
 
-    public CacheController(StructureRepository structureRepository, MetaDataController metaDataController, AuthContext authContext) {
+    public CacheController(StructureRepository structureRepository, MetaDataController metaDataController, ReflectionCachePersistence reflectionCachePersistence, AuthContext authContext, MeterRegistry meterRegistry, ObservationRegistry observationRegistry, @Value("${org.marmotgraph.cache.eviction.coalescingWindowInMs:500}") long coalescingWindowInMs, @Value("${org.marmotgraph.cache.eviction.deferredWindowInMs:30000}") long deferredWindowInMs) {
         this.structureRepository = structureRepository;
         this.metaDataController = metaDataController;
+        this.reflectionCachePersistence = reflectionCachePersistence;
         this.authContext = authContext;
+        this.coalescingWindowInMs = coalescingWindowInMs;
+        this.deferredWindowInMs = deferredWindowInMs;
+        this.typesInSpaceEvictions = new CacheEvictionCoalescer<>(CacheConstant.CACHE_KEYS_TYPES_IN_SPACE, meterRegistry, observationRegistry);
+        this.propertiesOfTypeInSpaceEvictions = new CacheEvictionCoalescer<>(CacheConstant.CACHE_KEYS_PROPERTIES_OF_TYPE_IN_SPACE, meterRegistry, observationRegistry);
+        this.targetTypesEvictions = new CacheEvictionCoalescer<>(CacheConstant.CACHE_KEYS_TARGET_TYPES, meterRegistry, observationRegistry);
     }
 
     private Set<String> getDeleteIds(Map<String, CacheEvictionPlan> plansBeforeTransaction, Map<String, CacheEvictionPlan> plansAfterTransaction) {
@@ -199,11 +218,6 @@ public class CacheController {
         return createIds.stream().map(c -> plansAfterTransaction.get(c).getSpace()).filter(c -> !InternalSpace.INTERNAL_SPACENAMES.contains(c)).anyMatch(c -> !existingSpaces.contains(c));
     }
 
-    private final Map<Tuple<SpaceName, DataStage>, LocalDateTime> deferredSpaceTypesForCacheEviction = Collections.synchronizedMap(new HashMap<>());
-    private final Map<Tuple<Tuple<SpaceName, String>, DataStage>, LocalDateTime> deferredSpaceTypesForPropertyEviction = Collections.synchronizedMap(new HashMap<>());
-    private final Map<Tuple<Triple<SpaceName, String, String>, DataStage>, LocalDateTime> deferredSpaceTypePropertiesForTargetTypeEviction = Collections.synchronizedMap(new HashMap<>());
-
-
     public void evictCacheByPlan(DataStage stage, List<CacheEvictionPlan> plansBeforeTransaction, List<CacheEvictionPlan> plansAfterTransaction) {
         final Map<String, CacheEvictionPlan> beforeTransactionById = plansBeforeTransaction.stream().collect(Collectors.toMap(CacheEvictionPlan::getId, v -> v));
         final Map<String, CacheEvictionPlan> afterTransactionById = plansAfterTransaction.stream().collect(Collectors.toMap(CacheEvictionPlan::getId, v -> v));
@@ -222,43 +236,134 @@ public class CacheController {
         }
 
         final Set<SpaceName> deferredCacheEvictionSpaces = allSpaces.stream().filter(Space::isDeferCache).map(Space::getName).collect(Collectors.toSet());
-        //Evict all of those which are not deferred
-        spaceTypesForCacheEviction.stream().filter(s -> !deferredCacheEvictionSpaces.contains(s)).forEach(s -> structureRepository.evictTypesInSpaceCache(stage, s));
-        spaceTypesForCacheEviction.stream().filter(deferredCacheEvictionSpaces::contains).forEach(s -> deferredSpaceTypesForCacheEviction.put(new Tuple<>(s, stage), LocalDateTime.now()));
+        final long now = System.currentTimeMillis();
+        final Set<SpaceName> evictedImmediately = new HashSet<>();
 
+        for (SpaceName space : spaceTypesForCacheEviction) {
+            final Tuple<SpaceName, DataStage> key = new Tuple<>(space, stage);
+            if (requestEviction(typesInSpaceEvictions, key, now, deferredCacheEvictionSpaces.contains(space), () -> structureRepository.evictTypesInSpaceCache(stage, space))) {
+                evictedImmediately.add(space);
+            }
+        }
 
         final Set<Tuple<SpaceName, String>> spaceTypesForPropertyEviction = findSpaceTypesForPropertyEviction(beforeTransactionById, afterTransactionById, createIds, deleteIds, updateIds);
-        spaceTypesForPropertyEviction.stream().filter(t -> !deferredCacheEvictionSpaces.contains(t.getA())).forEach(t -> structureRepository.evictPropertiesOfTypeInSpaceCache(stage, t.getA(), t.getB()));
-        spaceTypesForPropertyEviction.stream().filter(t -> deferredCacheEvictionSpaces.contains(t.getA())).forEach(t -> deferredSpaceTypesForPropertyEviction.put(new Tuple<>(t, stage), LocalDateTime.now()));
+        for (Tuple<SpaceName, String> spaceType : spaceTypesForPropertyEviction) {
+            final Tuple<Tuple<SpaceName, String>, DataStage> key = new Tuple<>(spaceType, stage);
+            if (requestEviction(propertiesOfTypeInSpaceEvictions, key, now, deferredCacheEvictionSpaces.contains(spaceType.getA()), () -> structureRepository.evictPropertiesOfTypeInSpaceCache(stage, spaceType.getA(), spaceType.getB()))) {
+                evictedImmediately.add(spaceType.getA());
+            }
+        }
 
         final List<String> allRelevantEdges = structureRepository.getAllRelevantEdges(stage);
         final Set<Triple<SpaceName, String, String>> spaceTypePropertiesForTargetTypeEviction = findSpaceTypePropertiesForTargetTypeEviction(beforeTransactionById, afterTransactionById, createIds, deleteIds, updateIds, allRelevantEdges);
-        spaceTypePropertiesForTargetTypeEviction.stream().filter(p -> !deferredCacheEvictionSpaces.contains(p.getA())).forEach(p -> structureRepository.evictTargetTypesCache(stage, p.getA(), p.getB(), p.getC()));
-        spaceTypePropertiesForTargetTypeEviction.stream().filter(p -> deferredCacheEvictionSpaces.contains(p.getA())).forEach(p -> deferredSpaceTypePropertiesForTargetTypeEviction.put(new Tuple<>(p, stage), LocalDateTime.now()));
+        for (Triple<SpaceName, String, String> spaceTypeProperty : spaceTypePropertiesForTargetTypeEviction) {
+            final Tuple<Triple<SpaceName, String, String>, DataStage> key = new Tuple<>(spaceTypeProperty, stage);
+            if (requestEviction(targetTypesEvictions, key, now, deferredCacheEvictionSpaces.contains(spaceTypeProperty.getA()), () -> structureRepository.evictTargetTypesCache(stage, spaceTypeProperty.getA(), spaceTypeProperty.getB(), spaceTypeProperty.getC()))) {
+                evictedImmediately.add(spaceTypeProperty.getA());
+            }
+        }
+        if (forceReflectSpaces) {
+            metaDataController.invalidateMetaDataSnapshots(stage);
+        } else if (!evictedImmediately.isEmpty()) {
+            metaDataController.invalidateMetaDataSnapshots(stage, evictedImmediately);
+        }
+    }
+
+    /**
+     * Deferred spaces are refreshed after the deferred window, all others are evicted after the coalescing window (or immediately if there is none).
+     *
+     * @return true if the eviction has been executed immediately
+     */
+    private <K> boolean requestEviction(CacheEvictionCoalescer<K> coalescer, K key, long now, boolean deferred, Runnable eviction) {
+        if (deferred) {
+            coalescer.request(key, now + deferredWindowInMs, true);
+        } else if (coalescingWindowInMs > 0) {
+            coalescer.request(key, now + coalescingWindowInMs, false);
+        } else {
+            eviction.run();
+            coalescer.executedImmediately();
+            return true;
+        }
+        return false;
     }
 
-    private static final int DEFER_CACHE_EVICTION_DELAY_IN_S = 30;
-    private static final int DEFER_CACHE_EVICTION_MAX_MAP_ENTRIES = 1000;
-
-    @Scheduled(fixedRate = 30000)
-    public synchronized void checkDeferredCacheEviction() {
-            logger.info("Checking for deferred cache eviction...");
-            final Set<Tuple<SpaceName, DataStage>> handledSpaceTypes = deferredSpaceTypesForCacheEviction.keySet().stream().filter(k ->
-                    deferredSpaceTypesForCacheEviction.size() > DEFER_CACHE_EVICTION_MAX_MAP_ENTRIES ||
-                            Duration.between(deferredSpaceTypesForCacheEviction.get(k), LocalDateTime.now()).toSeconds()
-                                    > DEFER_CACHE_EVICTION_DELAY_IN_S).peek(k -> structureRepository.refreshTypesInSpaceCache(k.getB(), k.getA())).collect(Collectors.toSet());
-            handledSpaceTypes.forEach(deferredSpaceTypesForCacheEviction::remove);
-
-            final Set<Tuple<Tuple<SpaceName, String>, DataStage>> handledSpaceTypesForProperty = deferredSpaceTypesForPropertyEviction.keySet().stream().filter(k ->
-                            deferredSpaceTypesForPropertyEviction.size() > DEFER_CACHE_EVICTION_MAX_MAP_ENTRIES ||
-                                    Duration.between(deferredSpaceTypesForPropertyEviction.get(k), LocalDateTime.now()).toSeconds() > DEFER_CACHE_EVICTION_DELAY_IN_S).
-                    peek(k -> structureRepository.refreshPropertiesOfTypeInSpaceCache(k.getB(), k.getA().getA(), k.getA().getB())).collect(Collectors.toSet());
-            handledSpaceTypesForProperty.forEach(deferredSpaceTypesForPropertyEviction::remove);
-
-            final Set<Tuple<Triple<SpaceName, String, String>, DataStage>> handledSpaceTypePropertiesForTargetType = deferredSpaceTypePropertiesForTargetTypeEviction.keySet().stream().filter(k ->
-                            deferredSpaceTypePropertiesForTargetTypeEviction.size() > DEFER_CACHE_EVICTION_MAX_MAP_ENTRIES ||
-                                    Duration.between(deferredSpaceTypePropertiesForTargetTypeEviction.get(k), LocalDateTime.now()).toSeconds() > DEFER_CACHE_EVICTION_DELAY_IN_S).
-                    peek(k -> structureRepository.refreshTargetTypesCache(k.getB(), k.getA().getA(), k.getA().getB(), k.getA().getC())).collect(Collectors.toSet());
-            handledSpaceTypePropertiesForTargetType.forEach(deferredSpaceTypePropertiesForTargetTypeEviction::remove);
+    /**
+     * The collection counts are only used as estimates for query planning - it's therefore enough to refresh them periodically.
+     */
+    @Scheduled(fixedRate = 300000)
+    public void evictCollectionCounts() {
+        structureRepository.evictCollectionCountsCache();
+    }
+
+    /**
+     * The restored reflection caches are not covered by the evictions of this instance for changes which happened before
+     * (or outside of) it - they are therefore validated against their collections regularly.
+     */
+    @Scheduled(fixedDelayString = "${org.marmotgraph.structure.reflectionCache.validationIntervalInMs:60000}", initialDelayString = "${org.marmotgraph.structure.reflectionCache.validationIntervalInMs:60000}")
+    public void validateRestoredReflectionCaches() {
+        for (DataStage stage : Arrays.asList(DataStage.IN_PROGRESS, DataStage.RELEASED)) {
+            final Set<SpaceName> invalidatedSpaces = reflectionCachePersistence.validateRestoredReflections(stage);
+            if (!invalidatedSpaces.isEmpty()) {
+                metaDataController.invalidateMetaDataSnapshots(stage, invalidatedSpaces);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${org.marmotgraph.cache.eviction.checkIntervalInMs:1000}")
+    public void executeCoalescedCacheEvictions() {
+        executeCoalescedCacheEvictions(System.currentTimeMillis(), null);
+    }
+
+    /**
+     * Executes the pending coalesced evictions of the stage right away. To be called before the reflection is read on
+     * behalf of a client so it sees the result of its own writes even if the coalescing window hasn't passed yet.
+     * Deferred spaces are not affected since they accept outdated reflections on purpose.
+     */
+    public void executePendingCacheEvictions(DataStage stage) {
+        executeCoalescedCacheEvictions(System.currentTimeMillis(), stage);
+    }
+
+    /**
+     * @param stage if given, all pending evictions of this stage are executed - otherwise the ones which are due
+     */
+    private void executeCoalescedCacheEvictions(long now, DataStage stage) {
+        final Map<DataStage, Set<SpaceName>> changedSpaces = new EnumMap<>(DataStage.class);
+        final BiConsumer<Tuple<SpaceName, DataStage>, Boolean> typesInSpaceEviction = (k, refresh) -> {
+            if (refresh) {
+                structureRepository.refreshTypesInSpaceCache(k.getB(), k.getA());
+            } else {
+                structureRepository.evictTypesInSpaceCache(k.getB(), k.getA());
+            }
+            changedSpaces.computeIfAbsent(k.getB(), s -> new HashSet<>()).add(k.getA());
+        };
+        final BiConsumer<Tuple<Tuple<SpaceName, String>, DataStage>, Boolean> propertiesOfTypeInSpaceEviction = (k, refresh) -> {
+            if (refresh) {
+                structureRepository.refreshPropertiesOfTypeInSpaceCache(k.getB(), k.getA().getA(), k.getA().getB());
+            } else {
+                structureRepository.evictPropertiesOfTypeInSpaceCache(k.getB(), k.getA().getA(), k.getA().getB());
+            }
+            changedSpaces.computeIfAbsent(k.getB(), s -> new HashSet<>()).add(k.getA().getA());
+        };
+        final BiConsumer<Tuple<Triple<SpaceName, String, String>, DataStage>, Boolean> targetTypesEviction = (k, refresh) -> {
+            if (refresh) {
+                structureRepository.refreshTargetTypesCache(k.getB(), k.getA().getA(), k.getA().getB(), k.getA().getC());
+            } else {
+                structureRepository.evictTargetTypesCache(k.getB(), k.getA().getA(), k.getA().getB(), k.getA().getC());
+            }
+            changedSpaces.computeIfAbsent(k.getB(), s -> new HashSet<>()).add(k.getA().getA());
+        };
+        if (stage == null) {
+            typesInSpaceEvictions.executeDue(now, typesInSpaceEviction);
+            propertiesOfTypeInSpaceEvictions.executeDue(now, propertiesOfTypeInSpaceEviction);
+            targetTypesEvictions.executeDue(now, targetTypesEviction);
+        } else {
+            typesInSpaceEvictions.executePending(k -> k.getB() == stage, typesInSpaceEviction);
+            propertiesOfTypeInSpaceEvictions.executePending(k -> k.getB() == stage, propertiesOfTypeInSpaceEviction);
+            targetTypesEvictions.executePending(k -> k.getB() == stage, targetTypesEviction);
+        }
+        if (!changedSpaces.isEmpty()) {
+            logger.debug("Executed coalesced cache evictions for spaces {}", changedSpaces);
+            changedSpaces.forEach(metaDataController::invalidateMetaDataSnapshots);
+        }
     }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.structure.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Collects cache eviction requests and merges the ones for the same key which arrive within the coalescing window into
+ * a single eviction. This prevents bulk writes from evicting (and therefore re-reflecting) the same cache entry over and over again.
+ * The observation which requested an eviction is kept with the pending eviction so the (later) execution is traced as
+ * part of the same trace. Since at most one eviction is pending per key and it is removed once executed, this keeps at
+ * most one (stopped) observation per key alive for the coalescing window.
+ */
+public class CacheEvictionCoalescer<K> {
+
+    private final Map<K, PendingEviction> pending = new ConcurrentHashMap<>();
+    private final String cache;
+    private final ObservationRegistry observationRegistry;
+    private final Counter requested;
+    private final Counter executed;
+
+    private static class PendingEviction {
+        private final long dueAt;
+        private final boolean refresh;
+        private final Observation origin;
+
+        private PendingEviction(long dueAt, boolean refresh, Observation origin) {
+            this.dueAt = dueAt;
+            this.refresh = refresh;
+            this.origin = origin;
+        }
+    }
+
+    public CacheEvictionCoalescer(String cache, MeterRegistry meterRegistry) {
+        this(cache, meterRegistry, ObservationRegistry.NOOP);
+    }
+
+    public CacheEvictionCoalescer(String cache, MeterRegistry meterRegistry, ObservationRegistry observationRegistry) {
+        this.cache = cache;
+        this.observationRegistry = observationRegistry;
+        this.requested = Counter.builder("marmotgraph.cache.eviction.requested").description("Number of requested cache evictions").tag("cache", cache).register(meterRegistry);
+        this.executed = Counter.builder("marmotgraph.cache.eviction.executed").description("Number of executed cache evictions after coalescing").tag("cache", cache).register(meterRegistry);
+        Gauge.builder("marmotgraph.cache.eviction.pending", pending, Map::size).description("Number of cache evictions waiting for their coalescing window to pass").tag("cache", cache).register(meterRegistry);
+        Gauge.builder("marmotgraph.cache.eviction.coalescing.ratio", this, CacheEvictionCoalescer::getCoalescingRatio).description("Share of the requested cache evictions which have been merged into other evictions").tag("cache", cache).register(meterRegistry);
+    }
+
+    /**
+     * Registers an eviction for the given key. If there is already one pending, the requests are merged and the earlier due time wins.
+     *
+     * @param refresh if the cache entry shall be refreshed instead of being evicted
+     */
+    public void request(K key, long dueAt, boolean refresh) {
+        requested.increment();
+        pending.merge(key, new PendingEviction(dueAt, refresh, observationRegistry.getCurrentObservation()), (existing, requested) -> existing.dueAt <= requested.dueAt ? existing : requested);
+    }
+
+    /**
+     * Registers an eviction which has been executed right away without coalescing.
+     */
+    public void executedImmediately() {
+        requested.increment();
+        executed.increment();
+    }
+
+    /**
+     * Removes the evictions which are due and executes them - each as an observation which continues the trace of the
+     * request which has caused the eviction.
+     *
+     * @return the number of executed evictions
+     */
+    public int executeDue(long now, BiConsumer<K, Boolean> eviction) {
+        return execute((key, pendingEviction) -> pendingEviction.dueAt <= now, eviction);
+    }
+
+    /**
+     * Removes the pending evictions (but not the refreshes) of the matching keys and executes them right away - no
+     * matter if their coalescing window has passed already.
+     *
+     * @return the number of executed evictions
+     */
+    public int executePending(Predicate<K> keyFilter, BiConsumer<K, Boolean> eviction) {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        return execute((key, pendingEviction) -> !pendingEviction.refresh && keyFilter.test(key), eviction);
+    }
+
+    private int execute(BiPredicate<K, PendingEviction> filter, BiConsumer<K, Boolean> eviction) {
+        final Map<K, PendingEviction> due = poll(filter);
+        due.forEach((key, pendingEviction) -> {
+            final Observation observation = Observation.createNotStarted("marmotgraph.cache.eviction", observationRegistry)
+                    .contextualName("coalesced eviction of " + cache)
+                    .parentObservation(pendingEviction.origin)
+                    .lowCardinalityKeyValue("cache", cache)
+                    .lowCardinalityKeyValue("refresh", String.valueOf(pendingEviction.refresh));
+            if (pendingEviction.origin != null) {
+                observation.highCardinalityKeyValue("origin", Objects.requireNonNullElse(pendingEviction.origin.getContext().getContextualName(), pendingEviction.origin.getContext().getName()));
+            }
+            observation.observe(() -> eviction.accept(key, pendingEviction.refresh));
+        });
+        return due.size();
+    }
+
+    private Map<K, PendingEviction> poll(BiPredicate<K, PendingEviction> filter) {
+        Map<K, PendingEviction> due = new HashMap<>();
+        pending.forEach((key, eviction) -> {
+            //We only remove the eviction if it hasn't been replaced in the meantime
+            if (filter.test(key, eviction) && pending.remove(key, eviction)) {
+                due.put(key, eviction);
+            }
+        });
+        executed.increment(due.size());
+        return due;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    double getCoalescingRatio() {
+        final double requestedCount = requested.count();
+        return requestedCount == 0 ? 0 : 1 - (executed.count() + pending.size()) / requestedCount;
+    }
+}
@@ -24,6 +24,8 @@
 
 package org.marmotgraph.graphdb.structure.controller;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.marmotgraph.arango.commons.model.ArangoCollectionReference;
 import org.marmotgraph.commons.Tuple;
 import org.marmotgraph.commons.exception.InstanceNotFoundException;
@@ -39,18 +41,23 @@ import org.marmotgraph.commons.model.internal.spaces.Space;
 import org.marmotgraph.commons.models.UserWithRoles;
 import org.marmotgraph.commons.semantics.vocabularies.EBRAINSVocabulary;
 import org.marmotgraph.commons.semantics.vocabularies.SchemaOrgVocabulary;
+import org.marmotgraph.graphdb.commons.controller.GraphDBIOExecutor;
 import org.marmotgraph.graphdb.commons.controller.PermissionsController;
 import org.marmotgraph.graphdb.structure.model.PropertyOfTypeInSpaceReflection;
 import org.marmotgraph.graphdb.structure.model.TargetTypeReflection;
 import org.marmotgraph.graphdb.structure.model.TypeWithInstanceCountReflection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -60,6 +67,25 @@ public class MetaDataController {
 
     private final StructureRepository structureRepository;
     private final PermissionsController permissionsController;
+    private final StructureStatisticsRepository structureStatistics;
+    private final GraphDBIOExecutor ioExecutor;
+    private final ReflectionCachePersistence reflectionCachePersistence;
+    private final boolean initializeStructureStatistics;
+    private final boolean metaDataSnapshots;
+
+    /**
+     * The materialized meta data structures by stage and client space. They are only served if their version matches
+     * the current structure version of the stage - otherwise they are updated in the background while the requests
+     * fall back to the reflection of the individual spaces. Only the spaces which have changed since the last build
+     * are reflected again (a change without known spaces - e.g. of a specification - requires a full rebuild).
+     */
+    private final Map<Tuple<DataStage, SpaceName>, MetaDataSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<DataStage, AtomicLong> structureVersions = new ConcurrentHashMap<>();
+    private final Map<Tuple<DataStage, SpaceName>, Set<SpaceName>> changedSpaces = new ConcurrentHashMap<>();
+    private final Set<Tuple<DataStage, SpaceName>> requestedFullSnapshotBuilds = ConcurrentHashMap.newKeySet();
+    private final Set<Tuple<DataStage, SpaceName>> requestedSnapshotBuilds = ConcurrentHashMap.newKeySet();
+    private final Set<Tuple<DataStage, SpaceName>> runningSnapshotBuilds = ConcurrentHashMap.newKeySet();
+    private final MeterRegistry meterRegistry;
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -67,23 +93,182 @@ public class MetaDataController {
         return initialCachePopulationInProgress;
     }
 
-    public MetaDataController(StructureRepository structureRepository, PermissionsController permissionsController) {
+    public MetaDataController(StructureRepository structureRepository, PermissionsController permissionsController, StructureStatisticsRepository structureStatistics, GraphDBIOExecutor ioExecutor, ReflectionCachePersistence reflectionCachePersistence, MeterRegistry meterRegistry, @Value("${org.marmotgraph.structure.statistics.initializeOnStartup:true}") boolean initializeStructureStatistics, @Value("${org.marmotgraph.structure.snapshots.enabled:true}") boolean metaDataSnapshots) {
         this.structureRepository = structureRepository;
         this.permissionsController = permissionsController;
+        this.structureStatistics = structureStatistics;
+        this.ioExecutor = ioExecutor;
+        this.reflectionCachePersistence = reflectionCachePersistence;
+        this.meterRegistry = meterRegistry;
+        this.initializeStructureStatistics = initializeStructureStatistics;
+        this.metaDataSnapshots = metaDataSnapshots;
     }
 
     @Async
     public void initializeCache() {
         Date start = new Date();
         logger.info("Initial cache population");
+        if (initializeStructureStatistics) {
+            initializeStructureStatistics(DataStage.IN_PROGRESS);
+            initializeStructureStatistics(DataStage.RELEASED);
+        }
+        //Whatever is still valid from the persisted reflection caches doesn't need to be reflected again
+        reflectionCachePersistence.restore(DataStage.IN_PROGRESS);
+        reflectionCachePersistence.restore(DataStage.RELEASED);
         //We reflect the database during the initial cache population
         readMetaDataStructure(DataStage.IN_PROGRESS, null, null, true, true, UserWithRoles.INTERNAL_ADMIN, null, null, null, true);
         logger.info(String.format("Read meta data structure for IN_PROGRESS in %d ms", new Date().getTime() - start.getTime()));
         readMetaDataStructure(DataStage.RELEASED, null, null, true, true, UserWithRoles.INTERNAL_ADMIN, null, null, null, true);
         initialCachePopulationInProgress = false;
+        if (metaDataSnapshots) {
+            scheduleSnapshotBuild(new Tuple<>(DataStage.IN_PROGRESS, null));
+            scheduleSnapshotBuild(new Tuple<>(DataStage.RELEASED, null));
+        }
         logger.info(String.format("Read all initial metadata structure in %d ms", new Date().getTime() - start.getTime()));
     }
 
+    /**
+     * To be called after the cached structure of the given spaces of the stage has changed (after the caches have been
+     * evicted or refreshed). The snapshots of this stage are outdated from now on and the given spaces are reflected
+     * again in the background.
+     */
+    public void invalidateMetaDataSnapshots(DataStage stage, Collection<SpaceName> spaces) {
+        final Set<Tuple<DataStage, SpaceName>> keys = getSnapshotKeys(stage);
+        keys.forEach(k -> changedSpaces.computeIfAbsent(k, x -> ConcurrentHashMap.newKeySet()).addAll(spaces));
+        structureVersions.computeIfAbsent(stage, s -> new AtomicLong()).incrementAndGet();
+        keys.forEach(this::scheduleSnapshotBuild);
+    }
+
+    /**
+     * To be called after the cached structure of the given stage has changed in a way which can't be attributed to
+     * individual spaces (e.g. spaces have been created or removed). The snapshots of this stage are rebuilt completely.
+     */
+    public void invalidateMetaDataSnapshots(DataStage stage) {
+        final Set<Tuple<DataStage, SpaceName>> keys = getSnapshotKeys(stage);
+        requestedFullSnapshotBuilds.addAll(keys);
+        structureVersions.computeIfAbsent(stage, s -> new AtomicLong()).incrementAndGet();
+        keys.forEach(this::scheduleSnapshotBuild);
+    }
+
+    /**
+     * @return the keys of the snapshots of the stage - including the ones which are currently built for the first time
+     */
+    private Set<Tuple<DataStage, SpaceName>> getSnapshotKeys(DataStage stage) {
+        return Stream.concat(snapshots.keySet().stream(), runningSnapshotBuilds.stream()).filter(k -> k.getA() == stage).collect(Collectors.toSet());
+    }
+
+    /**
+     * To be called after a specification (of spaces, types or properties) has changed - it affects the snapshots of all stages.
+     */
+    public void invalidateMetaDataSnapshots() {
+        Arrays.stream(DataStage.values()).forEach(this::invalidateMetaDataSnapshots);
+    }
+
+    private long getStructureVersion(DataStage stage) {
+        return structureVersions.computeIfAbsent(stage, s -> new AtomicLong()).get();
+    }
+
+    private MetaDataSnapshot getMetaDataSnapshot(DataStage stage, SpaceName clientSpace) {
+        if (!metaDataSnapshots || initialCachePopulationInProgress) {
+            return null;
+        }
+        final Tuple<DataStage, SpaceName> key = new Tuple<>(stage, clientSpace);
+        final MetaDataSnapshot snapshot = snapshots.get(key);
+        if (snapshot != null && snapshot.getVersion() == getStructureVersion(stage)) {
+            return snapshot;
+        }
+        scheduleSnapshotBuild(key);
+        return null;
+    }
+
+    private void scheduleSnapshotBuild(Tuple<DataStage, SpaceName> key) {
+        requestedSnapshotBuilds.add(key);
+        //Multiple changes are coalesced as long as a build for the key is pending or running
+        if (runningSnapshotBuilds.add(key)) {
+            try {
+                ioExecutor.submit("metaDataSnapshot", () -> buildRequestedSnapshots(key));
+            } catch (RejectedExecutionException e) {
+                runningSnapshotBuilds.remove(key);
+                logger.warn("Was not able to schedule the build of the meta data snapshot of stage {}: {}", key.getA().name(), e.getMessage());
+            }
+        }
+    }
+
+    private void buildRequestedSnapshots(Tuple<DataStage, SpaceName> key) {
+        try {
+            while (requestedSnapshotBuilds.remove(key)) {
+                //The version is read before the changes are taken so changes arriving in between are not lost but rather built twice
+                final long version = getStructureVersion(key.getA());
+                final boolean full = requestedFullSnapshotBuilds.remove(key);
+                final Set<SpaceName> changed = changedSpaces.remove(key);
+                try {
+                    final MetaDataSnapshot existing = snapshots.get(key);
+                    final MetaDataSnapshot snapshot = full || existing == null ? buildMetaDataSnapshot(key.getA(), key.getB(), version) : updateMetaDataSnapshot(existing, key.getA(), key.getB(), version, changed != null ? changed : Collections.emptySet());
+                    snapshots.merge(key, snapshot, (e, built) -> built.getVersion() >= e.getVersion() ? built : e);
+                } catch (RuntimeException e) {
+                    //We don't know which spaces have been reflected already - the next build has to start from scratch
+                    requestedFullSnapshotBuilds.add(key);
+                    logger.error(String.format("Was not able to build the meta data snapshot of stage %s", key.getA().name()), e);
+                }
+            }
+        } finally {
+            runningSnapshotBuilds.remove(key);
+        }
+        if (requestedSnapshotBuilds.contains(key)) {
+            scheduleSnapshotBuild(key);
+        }
+    }
+
+    private MetaDataSnapshot buildMetaDataSnapshot(DataStage stage, SpaceName clientSpace, long version) {
+        Date start = new Date();
+        final List<String> allRelevantEdges = structureRepository.getAllRelevantEdges(stage);
+        final List<Space> spaces = getSpaces(stage, UserWithRoles.INTERNAL_ADMIN);
+        final Map<SpaceName, Map<String, TypeInformation>> typeInformationBySpace = reflectForSnapshot(stage, clientSpace, allRelevantEdges, spaces);
+        snapshotBuildTimer(stage, "full").record(new Date().getTime() - start.getTime(), TimeUnit.MILLISECONDS);
+        logger.info(String.format("Built meta data snapshot for %s in %d ms", stage.name(), new Date().getTime() - start.getTime()));
+        return MetaDataSnapshot.of(version, allRelevantEdges, typeInformationBySpace);
+    }
+
+    private MetaDataSnapshot updateMetaDataSnapshot(MetaDataSnapshot existing, DataStage stage, SpaceName clientSpace, long version, Set<SpaceName> changed) {
+        final List<String> allRelevantEdges = structureRepository.getAllRelevantEdges(stage);
+        if (!allRelevantEdges.equals(existing.getAllRelevantEdges())) {
+            //The relevant edges have an impact on the reflection of all spaces
+            return buildMetaDataSnapshot(stage, clientSpace, version);
+        }
+        Date start = new Date();
+        final List<Space> spaces = getSpaces(stage, UserWithRoles.INTERNAL_ADMIN);
+        final Map<SpaceName, Map<String, TypeInformation>> typeInformationBySpace = reflectForSnapshot(stage, clientSpace, allRelevantEdges, spaces.stream().filter(s -> changed.contains(s.getName()) || !existing.contains(s.getName())).toList());
+        snapshotBuildTimer(stage, "incremental").record(new Date().getTime() - start.getTime(), TimeUnit.MILLISECONDS);
+        logger.debug(String.format("Updated %d spaces of the meta data snapshot for %s in %d ms", typeInformationBySpace.size(), stage.name(), new Date().getTime() - start.getTime()));
+        return existing.update(version, spaces.stream().map(Space::getName).toList(), typeInformationBySpace);
+    }
+
+    private Map<SpaceName, Map<String, TypeInformation>> reflectForSnapshot(DataStage stage, SpaceName clientSpace, List<String> allRelevantEdges, List<Space> spaces) {
+        final Map<SpaceName, Map<String, TypeInformation>> typeInformationBySpace = new ConcurrentHashMap<>();
+        ioExecutor.forEach("metaDataSnapshot", spaces, space -> {
+            final Map<String, TypeInformation> typeInformation = new ConcurrentHashMap<>();
+            readMetaDataStructureForSpace(stage, null, false, true, typeInformation, new ConcurrentHashMap<>(), allRelevantEdges, space, clientSpace, null, true);
+            typeInformationBySpace.put(space.getName(), typeInformation);
+        });
+        return typeInformationBySpace;
+    }
+
+    private Timer snapshotBuildTimer(DataStage stage, String mode) {
+        return Timer.builder("marmotgraph.metadata.snapshot.build").description("Time to build a meta data snapshot").tag("stage", stage.name()).tag("mode", mode).register(meterRegistry);
+    }
+
+
+    private void initializeStructureStatistics(DataStage stage) {
+        try {
+            structureStatistics.setupCollection(stage);
+            if (!structureStatistics.isInitialized(stage)) {
+                structureStatistics.rebuild(stage);
+            }
+        } catch (RuntimeException e) {
+            // The reflection falls back to scanning the data as long as the statistics are not available
+            logger.error(String.format("Was not able to initialize the structure statistics of stage %s", stage.name()), e);
+        }
+    }
 
     private void readMetaDataStructureForInvitations(DataStage stage, List<String> typeRestriction, boolean withIncomingLinks, boolean withProperties, Map<String, TypeInformation> typeInformations, Map<String, List<SpaceTypeInformation>> spaceTypeInformationLookup, List<String> allRelevantEdges, SpaceName clientSpace, List<NormalizedJsonLd> invitations, SpaceName privateUserSpace, boolean doReflect) {
         if (stage == DataStage.IN_PROGRESS) {
@@ -168,7 +353,9 @@ public class MetaDataController {
         Date start = new Date();
         Map<String, TypeInformation> typeInformation = new ConcurrentHashMap<>();
         Map<String, List<SpaceTypeInformation>> spaceTypeInformationLookup = new ConcurrentHashMap<>();
-        final List<String> allRelevantEdges = structureRepository.getAllRelevantEdges(stage);
+        //The snapshot reflects the data as it is cached - we therefore can only make use of it if the reflection is requested.
+        final MetaDataSnapshot snapshot = doReflect ? getMetaDataSnapshot(stage, clientSpace) : null;
+        final List<String> allRelevantEdges = snapshot != null ? snapshot.getAllRelevantEdges() : structureRepository.getAllRelevantEdges(stage);
         String resolvedSpaceRestriction = privateUserSpace != null && SpaceName.PRIVATE_SPACE.equals(spaceRestriction) ? privateUserSpace.getName() : spaceRestriction;
         if (!CollectionUtils.isEmpty(invitationDocuments) && (withIncomingLinks || spaceRestriction == null || SpaceName.REVIEW_SPACE.equals(spaceRestriction))) {
             //We have invitations available -> we have to reflect on them explicitly
@@ -176,12 +363,16 @@ public class MetaDataController {
         }
         final List<Space> s = getSpaces(stage, userWithRoles);
         s.sort(Comparator.comparing(space -> space.getName().getName()));
-        s.parallelStream().forEach(space -> {
+        ioExecutor.forEach("readMetaDataStructure", s, space -> {
             // We need all spaces either if there is no space filter or if we require incoming links (because we need to reflect on the whole structure to capture all).
             // If there is a space filter applied and no requirement for incoming links, we can speed things up.
             if (resolvedSpaceRestriction == null || (!SpaceName.REVIEW_SPACE.equals(spaceRestriction) && withIncomingLinks) || space.getName().getName().equals(resolvedSpaceRestriction)) {
-                    //When asking for incoming links we need to fetch the properties as well -> otherwise we won't have the required information available.
+                //When asking for incoming links we need to fetch the properties as well -> otherwise we won't have the required information available.
+                if (snapshot != null && snapshot.contains(space.getName())) {
+                    snapshot.copyInto(space.getName(), typeRestriction, withIncomingLinks, withIncomingLinks || withProperties, privateUserSpace, typeInformation, spaceTypeInformationLookup);
+                } else {
                     readMetaDataStructureForSpace(stage, typeRestriction, withIncomingLinks, withIncomingLinks || withProperties, typeInformation, spaceTypeInformationLookup, allRelevantEdges, space, clientSpace, privateUserSpace, doReflect);
+                }
             }
         });
         final List<TypeInformation> result = aggregateGlobalInformation(withIncomingLinks || withProperties, typeInformation, spaceRestriction == null);
@@ -215,6 +406,8 @@ public class MetaDataController {
         }
 
         final List<TypeInformation> sortedResult = resultsRestrictedBySpace.stream().filter(Objects::nonNull).sorted(Comparator.comparing(TypeInformation::getName)).collect(Collectors.toList());
+        //Tagged by the use of the snapshot so the latency with and without it can be compared
+        Timer.builder("marmotgraph.metadata.read").description("Time to read the meta data structure").tag("stage", stage.name()).tag("snapshot", String.valueOf(snapshot != null)).register(meterRegistry).record(new Date().getTime() - start.getTime(), TimeUnit.MILLISECONDS);
         logger.info(String.format("Read meta data structure in %d ms", new Date().getTime() - start.getTime()));
         return sortedResult;
     }
@@ -326,7 +519,7 @@ public class MetaDataController {
             return r;
         }));
         final Stream<TypeWithInstanceCountReflection> filteredTypes = typeRestriction != null && !withIncomingLinks ? allTypes.filter(t -> typeRestriction.contains(t.getName())) : allTypes;
-        filteredTypes.parallel().forEach(type -> {
+        ioExecutor.forEach("readMetaDataStructureForSpace", filteredTypes.toList(), type -> {
             final TypeInformation typeInformation = typeInformations.computeIfAbsent(type.getName(), t -> new TypeInformation());
             final DynamicJson specification = typesInSpaceBySpecification.get(type.getName());
             typeInformation.setName(Type.labelFromName(type.getName()));
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.structure.controller;
+
+import org.marmotgraph.commons.model.SpaceName;
+import org.marmotgraph.commons.model.external.types.*;
+import org.marmotgraph.commons.semantics.vocabularies.EBRAINSVocabulary;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * An immutable, materialized view of the meta data structure of a stage (for a specific client) as it is seen by a user
+ * with read access to all spaces. It is kept per space so it can be filtered by the readable spaces of the requesting user.
+ * The snapshot never hands out its own objects - consumers receive copies which they are free to aggregate and modify.
+ */
+public class MetaDataSnapshot {
+
+    private final long version;
+    private final List<String> allRelevantEdges;
+    private final Map<SpaceName, List<Fragment>> fragmentsBySpace;
+
+    private static class Fragment {
+        private final TypeInformation header;
+        private final SpaceTypeInformation spaceTypeInformation;
+
+        private Fragment(TypeInformation header, SpaceTypeInformation spaceTypeInformation) {
+            this.header = header;
+            this.spaceTypeInformation = spaceTypeInformation;
+        }
+    }
+
+    private MetaDataSnapshot(long version, List<String> allRelevantEdges, Map<SpaceName, List<Fragment>> fragmentsBySpace) {
+        this.version = version;
+        this.allRelevantEdges = allRelevantEdges;
+        this.fragmentsBySpace = fragmentsBySpace;
+    }
+
+    /**
+     * @param typeInformationBySpace the type information as reflected for each space individually (without private space translation)
+     */
+    public static MetaDataSnapshot of(long version, List<String> allRelevantEdges, Map<SpaceName, Map<String, TypeInformation>> typeInformationBySpace) {
+        Map<SpaceName, List<Fragment>> fragmentsBySpace = new HashMap<>();
+        typeInformationBySpace.forEach((space, typeInformation) -> fragmentsBySpace.put(space, toFragments(typeInformation)));
+        return new MetaDataSnapshot(version, Collections.unmodifiableList(new ArrayList<>(allRelevantEdges)), Collections.unmodifiableMap(fragmentsBySpace));
+    }
+
+    /**
+     * Creates a new snapshot which takes over the information of all spaces of this one except for the updated ones.
+     *
+     * @param spaces                 all spaces of the new snapshot - spaces which don't exist anymore are dropped
+     * @param updatedTypeInformation the type information as reflected for each of the changed spaces individually
+     */
+    public MetaDataSnapshot update(long version, Collection<SpaceName> spaces, Map<SpaceName, Map<String, TypeInformation>> updatedTypeInformation) {
+        Map<SpaceName, List<Fragment>> updatedFragmentsBySpace = new HashMap<>();
+        for (SpaceName space : spaces) {
+            final Map<String, TypeInformation> typeInformation = updatedTypeInformation.get(space);
+            if (typeInformation != null) {
+                updatedFragmentsBySpace.put(space, toFragments(typeInformation));
+            } else if (fragmentsBySpace.containsKey(space)) {
+                updatedFragmentsBySpace.put(space, fragmentsBySpace.get(space));
+            }
+        }
+        return new MetaDataSnapshot(version, allRelevantEdges, Collections.unmodifiableMap(updatedFragmentsBySpace));
+    }
+
+    private static List<Fragment> toFragments(Map<String, TypeInformation> typeInformation) {
+        return typeInformation.values().stream().map(t -> {
+            final TypeInformation header = new TypeInformation();
+            t.forEach((k, v) -> {
+                if (!EBRAINSVocabulary.META_SPACES.equals(k)) {
+                    header.put(k, v);
+                }
+            });
+            //Since the type information has been reflected for a single space, there is exactly one space type information
+            return new Fragment(header, t.getSpaces().get(0));
+        }).toList();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<String> getAllRelevantEdges() {
+        return allRelevantEdges;
+    }
+
+    public boolean contains(SpaceName space) {
+        return fragmentsBySpace.containsKey(space);
+    }
+
+    /**
+     * Populates the given lookups with copies of the information of the given space the same way as a reflection of this space would.
+     */
+    public void copyInto(SpaceName space, List<String> typeRestriction, boolean withIncomingLinks, boolean withProperties, SpaceName privateUserSpace, Map<String, TypeInformation> typeInformations, Map<String, List<SpaceTypeInformation>> spaceTypeInformationLookup) {
+        for (Fragment fragment : fragmentsBySpace.getOrDefault(space, Collections.emptyList())) {
+            final String type = fragment.header.getIdentifier();
+            if (typeRestriction != null && !withIncomingLinks && !typeRestriction.contains(type)) {
+                continue;
+            }
+            final TypeInformation typeInformation = typeInformations.computeIfAbsent(type, t -> new TypeInformation());
+            final List<SpaceTypeInformation> spaceTypeInformations = spaceTypeInformationLookup.computeIfAbsent(type, t -> Collections.synchronizedList(new ArrayList<>()));
+            spaceTypeInformations.add(copy(fragment.spaceTypeInformation, withProperties, privateUserSpace));
+            synchronized (typeInformation) {
+                typeInformation.putAll(fragment.header);
+                typeInformation.setSpaces(spaceTypeInformations);
+            }
+        }
+    }
+
+    private static SpaceTypeInformation copy(SpaceTypeInformation original, boolean withProperties, SpaceName privateUserSpace) {
+        SpaceTypeInformation copy = new SpaceTypeInformation();
+        copy.setSpace(SpaceName.translateSpace(original.getSpace(), privateUserSpace));
+        copy.setOccurrences(original.getOccurrences());
+        if (withProperties) {
+            copy.setProperties(original.getProperties().stream().map(p -> copy(p, privateUserSpace)).collect(Collectors.toCollection(ArrayList::new)));
+        }
+        return copy;
+    }
+
+    private static Property copy(Property original, SpaceName privateUserSpace) {
+        Property copy = new Property();
+        original.forEach((k, v) -> {
+            if (!EBRAINSVocabulary.META_PROPERTY_TARGET_TYPES.equals(k)) {
+                copy.put(k, v);
+            }
+        });
+        if (original.containsKey(EBRAINSVocabulary.META_PROPERTY_TARGET_TYPES)) {
+            copy.setTargetTypes(original.getTargetTypes().stream().map(t -> copy(t, privateUserSpace)).collect(Collectors.toCollection(ArrayList::new)));
+        }
+        return copy;
+    }
+
+    private static TargetType copy(TargetType original, SpaceName privateUserSpace) {
+        TargetType copy = new TargetType();
+        copy.setType(original.getType());
+        copy.setOccurrences(original.getOccurrences());
+        if (original.getSpaces() != null) {
+            copy.setSpaces(original.getSpaces().stream().map(s -> {
+                SpaceReference spaceReference = new SpaceReference();
+                spaceReference.setSpace(SpaceName.translateSpace(s.getSpace(), privateUserSpace));
+                spaceReference.setOccurrences(s.getOccurrences());
+                return spaceReference;
+            }).collect(Collectors.toCollection(ArrayList::new)));
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,644 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.structure.controller;
+
+import com.arangodb.ArangoCollection;
+import com.arangodb.ArangoDatabase;
+import com.arangodb.entity.CollectionEntity;
+import com.arangodb.entity.CollectionType;
+import com.arangodb.model.CollectionCreateOptions;
+import com.arangodb.model.CollectionsReadOptions;
+import com.arangodb.model.DocumentCreateOptions;
+import com.arangodb.model.OverwriteMode;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.annotation.PreDestroy;
+import org.marmotgraph.arango.commons.aqlbuilder.AQL;
+import org.marmotgraph.arango.commons.model.ArangoCollectionReference;
+import org.marmotgraph.arango.commons.model.InternalSpace;
+import org.marmotgraph.commons.cache.CacheConstant;
+import org.marmotgraph.commons.model.DataStage;
+import org.marmotgraph.commons.model.SpaceName;
+import org.marmotgraph.graphdb.commons.controller.ArangoDatabases;
+import org.marmotgraph.graphdb.structure.model.PropertyOfTypeInSpaceReflection;
+import org.marmotgraph.graphdb.structure.model.TargetTypeReflection;
+import org.marmotgraph.graphdb.structure.model.TypeWithInstanceCountReflection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+/**
+ * Persists the reflection caches (reflected spaces, types in space, properties of type in space and target types) to
+ * the structure database - on shutdown and at intervals - so a restarted instance doesn't have to reflect the whole
+ * databases again before the type meta data is fast.
+ * <p>
+ * Every persisted entry carries the revision of the collections it has been reflected from (for target types, these
+ * are the edge collection and the collections of the target spaces too). The revisions are read before the reflection
+ * and kept together with its value (see {@link #readRevisions(DataStage, Collection)} and
+ * {@link #registerReflection(DataStage, String, Object, Object, Map)}) - a change happening after the reflection therefore
+ * invalidates the persisted entry instead of being hidden by it. On restore, only the entries whose
+ * collections haven't changed in the meantime are put back into the caches - the others are reflected lazily as usual.
+ * The restored entries are validated against their collections regularly until they are replaced by a reflection, so
+ * changes which haven't passed the cache eviction of this instance don't keep them alive.
+ */
+@Component
+public class ReflectionCachePersistence {
+
+    static final ArangoCollectionReference REFLECTION_CACHE = new ArangoCollectionReference("reflectionCache", false);
+    static final String KIND_SPACES = "spaces";
+    static final String KIND_SPACE = "space";
+
+    private final ArangoDatabases arangoDatabases;
+    private final CacheManager cacheManager;
+    private final boolean enabled;
+
+    private final Map<DataStage, Queue<RestoredEntry>> restoredEntries = new ConcurrentHashMap<>();
+    private final Map<DataStage, Map<SimpleKey, ReflectedRevisions>> reflectedRevisions = new ConcurrentHashMap<>();
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    public ReflectionCachePersistence(ArangoDatabases arangoDatabases, CacheManager cacheManager, @Value("${org.marmotgraph.structure.reflectionCache.persistence.enabled:false}") boolean enabled) {
+        this.arangoDatabases = arangoDatabases;
+        this.cacheManager = cacheManager;
+        this.enabled = enabled;
+    }
+
+    public static class PersistedReflection {
+        @JsonProperty("_key")
+        private String key;
+        private String kind;
+        private String stage;
+        private String space;
+        private String revision;
+        private List<String> collections;
+        private List<String> spaces;
+        private List<TypeWithInstanceCountReflection> types;
+        private List<PersistedProperties> properties;
+        private List<PersistedTargetTypes> targetTypes;
+
+        public String getKey() {
+            return key;
+        }
+
+        public void setKey(String key) {
+            this.key = key;
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        public void setKind(String kind) {
+            this.kind = kind;
+        }
+
+        public String getStage() {
+            return stage;
+        }
+
+        public void setStage(String stage) {
+            this.stage = stage;
+        }
+
+        public String getSpace() {
+            return space;
+        }
+
+        public void setSpace(String space) {
+            this.space = space;
+        }
+
+        public String getRevision() {
+            return revision;
+        }
+
+        public void setRevision(String revision) {
+            this.revision = revision;
+        }
+
+        public List<String> getCollections() {
+            return collections;
+        }
+
+        public void setCollections(List<String> collections) {
+            this.collections = collections;
+        }
+
+        public List<String> getSpaces() {
+            return spaces;
+        }
+
+        public void setSpaces(List<String> spaces) {
+            this.spaces = spaces;
+        }
+
+        public List<TypeWithInstanceCountReflection> getTypes() {
+            return types;
+        }
+
+        public void setTypes(List<TypeWithInstanceCountReflection> types) {
+            this.types = types;
+        }
+
+        public List<PersistedProperties> getProperties() {
+            return properties;
+        }
+
+        public void setProperties(List<PersistedProperties> properties) {
+            this.properties = properties;
+        }
+
+        public List<PersistedTargetTypes> getTargetTypes() {
+            return targetTypes;
+        }
+
+        public void setTargetTypes(List<PersistedTargetTypes> targetTypes) {
+            this.targetTypes = targetTypes;
+        }
+    }
+
+    public static class PersistedProperties {
+        private String type;
+        private String revision;
+        private List<PropertyOfTypeInSpaceReflection> properties;
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public String getRevision() {
+            return revision;
+        }
+
+        public void setRevision(String revision) {
+            this.revision = revision;
+        }
+
+        public List<PropertyOfTypeInSpaceReflection> getProperties() {
+            return properties;
+        }
+
+        public void setProperties(List<PropertyOfTypeInSpaceReflection> properties) {
+            this.properties = properties;
+        }
+    }
+
+    public static class PersistedTargetTypes {
+        private String type;
+        private String property;
+        private String revision;
+        private String edgeRevision;
+        private Map<String, String> targetSpaceRevisions;
+        private List<TargetTypeReflection> targetTypes;
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public String getProperty() {
+            return property;
+        }
+
+        public void setProperty(String property) {
+            this.property = property;
+        }
+
+        public String getRevision() {
+            return revision;
+        }
+
+        public void setRevision(String revision) {
+            this.revision = revision;
+        }
+
+        public String getEdgeRevision() {
+            return edgeRevision;
+        }
+
+        public void setEdgeRevision(String edgeRevision) {
+            this.edgeRevision = edgeRevision;
+        }
+
+        public Map<String, String> getTargetSpaceRevisions() {
+            return targetSpaceRevisions;
+        }
+
+        public void setTargetSpaceRevisions(Map<String, String> targetSpaceRevisions) {
+            this.targetSpaceRevisions = targetSpaceRevisions;
+        }
+
+        public List<TargetTypeReflection> getTargetTypes() {
+            return targetTypes;
+        }
+
+        public void setTargetTypes(List<TargetTypeReflection> targetTypes) {
+            this.targetTypes = targetTypes;
+        }
+    }
+
+    /**
+     * A restored cache entry together with the state of the collections it has been validated against.
+     */
+    private static class RestoredEntry {
+        private final String cache;
+        private final Object key;
+        private final Object value;
+        private final List<SpaceName> spaces;
+        private final Map<String, String> revisions;
+        private final Set<String> documentCollections;
+
+        private RestoredEntry(String cache, Object key, Object value, List<SpaceName> spaces, Map<String, String> revisions, Set<String> documentCollections) {
+            this.cache = cache;
+            this.key = key;
+            this.value = value;
+            this.spaces = spaces;
+            this.revisions = revisions;
+            this.documentCollections = documentCollections;
+        }
+    }
+
+    /**
+     * A cached reflection together with the revisions of the collections it has been reflected from.
+     */
+    private static class ReflectedRevisions {
+        private final Object value;
+        private final Map<String, String> revisions;
+        private final long registeredAt = System.currentTimeMillis();
+
+        private ReflectedRevisions(Object value, Map<String, String> revisions) {
+            this.value = value;
+            this.revisions = revisions;
+        }
+    }
+
+    /**
+     * Reads the current revisions of the collections a reflection depends on. To be called before the reflection so the
+     * revisions can't be newer than the reflected state.
+     *
+     * @return the revisions by collection name or null if the persistence is disabled or the revisions couldn't be read
+     */
+    public Map<String, String> readRevisions(DataStage stage, Collection<String> collectionNames) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            final ArangoDatabase db = arangoDatabases.getByStage(stage);
+            final Map<String, String> revisions = new HashMap<>();
+            for (String collectionName : collectionNames) {
+                revisions.put(collectionName, getRevision(db, collectionName));
+            }
+            return revisions;
+        } catch (RuntimeException e) {
+            logger.debug("Was not able to read the revisions of the collections {} - the reflection is not going to be persisted", collectionNames, e);
+            return null;
+        }
+    }
+
+    /**
+     * Keeps the revisions read before the reflection (see {@link #readRevisions(DataStage, Collection)}) together with
+     * its value - they are persisted as long as the value is cached.
+     */
+    public void registerReflection(DataStage stage, String cache, Object key, Object value, Map<String, String> revisions) {
+        if (revisions != null && value != null) {
+            reflectedRevisions.computeIfAbsent(stage, s -> new ConcurrentHashMap<>()).put(new SimpleKey(cache, key), new ReflectedRevisions(value, revisions));
+        }
+    }
+
+    /**
+     * @return the revisions the cached value has been reflected from or null if they are unknown
+     */
+    private Map<String, String> getReflectedRevisions(DataStage stage, String cache, Object key, Object value) {
+        final ReflectedRevisions revisions = reflectedRevisions.getOrDefault(stage, Collections.emptyMap()).get(new SimpleKey(cache, key));
+        return revisions != null && revisions.value == value ? revisions.revisions : null;
+    }
+
+    @Scheduled(fixedDelayString = "${org.marmotgraph.structure.reflectionCache.persistence.intervalInMs:600000}", initialDelayString = "${org.marmotgraph.structure.reflectionCache.persistence.intervalInMs:600000}")
+    public void persistRegularly() {
+        if (enabled) {
+            persist();
+        }
+    }
+
+    @PreDestroy
+    public void persistOnShutdown() {
+        if (enabled) {
+            persist();
+        }
+    }
+
+    public void persist() {
+        for (DataStage stage : Arrays.asList(DataStage.IN_PROGRESS, DataStage.RELEASED)) {
+            try {
+                final ArangoDatabase db = arangoDatabases.getByStage(stage);
+                final List<PersistedReflection> documents = collectCachedReflections(stage, documentCollections(db));
+                final ArangoCollection collection = getOrCreateCollection();
+                collection.insertDocuments(documents, new DocumentCreateOptions().overwriteMode(OverwriteMode.replace));
+                //Remove the entries which are not cached anymore
+                AQL aql = new AQL().addLine(AQL.trust("FOR d IN @@collection FILTER d.stage == @stage AND d._key NOT IN @keys REMOVE d IN @@collection"));
+                Map<String, Object> bindVars = new HashMap<>();
+                bindVars.put("@collection", REFLECTION_CACHE.getCollectionName());
+                bindVars.put("stage", stage.name());
+                bindVars.put("keys", documents.stream().map(PersistedReflection::getKey).toList());
+                arangoDatabases.getStructureDB().query(aql.build().getValue(), Void.class, bindVars);
+                logger.info(String.format("Persisted the reflection caches of %d spaces of stage %s", documents.size() - 1, stage.name()));
+            } catch (RuntimeException e) {
+                logger.error(String.format("Was not able to persist the reflection caches of stage %s", stage.name()), e);
+            }
+        }
+    }
+
+    /**
+     * Restores the persisted reflection caches of the given stage as long as the collections they've been reflected from haven't changed.
+     *
+     * @return the number of restored cache entries
+     */
+    public int restore(DataStage stage) {
+        if (!enabled) {
+            return 0;
+        }
+        try {
+            final ArangoDatabase structureDB = arangoDatabases.getStructureDB();
+            if (!structureDB.collection(REFLECTION_CACHE.getCollectionName()).exists()) {
+                return 0;
+            }
+            AQL aql = new AQL().addLine(AQL.trust("FOR d IN @@collection FILTER d.stage == @stage RETURN d"));
+            Map<String, Object> bindVars = new HashMap<>();
+            bindVars.put("@collection", REFLECTION_CACHE.getCollectionName());
+            bindVars.put("stage", stage.name());
+            final List<PersistedReflection> persisted = structureDB.query(aql.build().getValue(), PersistedReflection.class, bindVars).asListRemaining();
+            final ArangoDatabase db = arangoDatabases.getByStage(stage);
+            final int restored = restoreReflections(stage, persisted, collectionName -> getRevision(db, collectionName), documentCollections(db));
+            logger.info(String.format("Restored %d reflection cache entries of stage %s", restored, stage.name()));
+            return restored;
+        } catch (RuntimeException e) {
+            logger.error(String.format("Was not able to restore the reflection caches of stage %s", stage.name()), e);
+            return 0;
+        }
+    }
+
+    List<PersistedReflection> collectCachedReflections(DataStage stage, Set<String> documentCollections) {
+        final long start = System.currentTimeMillis();
+        List<PersistedReflection> result = new ArrayList<>();
+        final List<SpaceName> reflectedSpaces = getCached(CacheConstant.CACHE_KEYS_REFLECTED_SPACES, stage);
+        PersistedReflection spaces = new PersistedReflection();
+        spaces.setKey(key(stage, null));
+        spaces.setKind(KIND_SPACES);
+        spaces.setStage(stage.name());
+        spaces.setCollections(documentCollections.stream().sorted().toList());
+        spaces.setSpaces(reflectedSpaces != null ? reflectedSpaces.stream().map(SpaceName::getName).toList() : null);
+        result.add(spaces);
+        final Set<SimpleKey> persistedKeys = new HashSet<>();
+        if (reflectedSpaces != null) {
+            for (SpaceName spaceName : reflectedSpaces) {
+                final PersistedReflection space = collectCachedReflections(stage, spaceName, persistedKeys);
+                if (space != null) {
+                    result.add(space);
+                }
+            }
+        }
+        //The revisions of the values which are not cached anymore are not needed anymore either (the ones registered in the meantime might not be cached yet)
+        reflectedRevisions.getOrDefault(stage, new ConcurrentHashMap<>()).entrySet().removeIf(r -> !persistedKeys.contains(r.getKey()) && r.getValue().registeredAt < start);
+        return result;
+    }
+
+    /**
+     * @return the cached reflections of the space with the revisions they've been reflected from or null if the types of the space are not cached (or their revision is unknown)
+     */
+    private PersistedReflection collectCachedReflections(DataStage stage, SpaceName spaceName, Set<SimpleKey> persistedKeys) {
+        final String spaceCollection = ArangoCollectionReference.fromSpace(spaceName).getCollectionName();
+        final SimpleKey typesKey = new SimpleKey(stage, spaceName);
+        final List<TypeWithInstanceCountReflection> types = getCached(CacheConstant.CACHE_KEYS_TYPES_IN_SPACE, typesKey);
+        final Map<String, String> typesRevisions = getReflectedRevisions(stage, CacheConstant.CACHE_KEYS_TYPES_IN_SPACE, typesKey, types);
+        if (typesRevisions == null) {
+            return null;
+        }
+        persistedKeys.add(new SimpleKey(CacheConstant.CACHE_KEYS_TYPES_IN_SPACE, typesKey));
+        PersistedReflection space = new PersistedReflection();
+        space.setKey(key(stage, spaceName));
+        space.setKind(KIND_SPACE);
+        space.setStage(stage.name());
+        space.setSpace(spaceName.getName());
+        space.setRevision(typesRevisions.get(spaceCollection));
+        space.setTypes(types);
+        space.setProperties(new ArrayList<>());
+        space.setTargetTypes(new ArrayList<>());
+        for (TypeWithInstanceCountReflection type : types) {
+            final SimpleKey propertiesKey = new SimpleKey(stage, spaceName, type.getName());
+            final List<PropertyOfTypeInSpaceReflection> properties = getCached(CacheConstant.CACHE_KEYS_PROPERTIES_OF_TYPE_IN_SPACE, propertiesKey);
+            final Map<String, String> propertiesRevisions = getReflectedRevisions(stage, CacheConstant.CACHE_KEYS_PROPERTIES_OF_TYPE_IN_SPACE, propertiesKey, properties);
+            if (propertiesRevisions == null) {
+                continue;
+            }
+            persistedKeys.add(new SimpleKey(CacheConstant.CACHE_KEYS_PROPERTIES_OF_TYPE_IN_SPACE, propertiesKey));
+            PersistedProperties persistedProperties = new PersistedProperties();
+            persistedProperties.setType(type.getName());
+            persistedProperties.setRevision(propertiesRevisions.get(spaceCollection));
+            persistedProperties.setProperties(properties);
+            space.getProperties().add(persistedProperties);
+            for (PropertyOfTypeInSpaceReflection property : properties) {
+                final SimpleKey targetTypesKey = new SimpleKey(stage, spaceName, type.getName(), property.getName());
+                final List<TargetTypeReflection> targetTypes = getCached(CacheConstant.CACHE_KEYS_TARGET_TYPES, targetTypesKey);
+                final Map<String, String> targetTypesRevisions = getReflectedRevisions(stage, CacheConstant.CACHE_KEYS_TARGET_TYPES, targetTypesKey, targetTypes);
+                if (targetTypesRevisions != null) {
+                    persistedKeys.add(new SimpleKey(CacheConstant.CACHE_KEYS_TARGET_TYPES, targetTypesKey));
+                    final String edgeCollection = new ArangoCollectionReference(property.getName(), true).getCollectionName();
+                    PersistedTargetTypes persistedTargetTypes = new PersistedTargetTypes();
+                    persistedTargetTypes.setType(type.getName());
+                    persistedTargetTypes.setProperty(property.getName());
+                    persistedTargetTypes.setRevision(targetTypesRevisions.get(spaceCollection));
+                    persistedTargetTypes.setEdgeRevision(targetTypesRevisions.get(edgeCollection));
+                    //The types of the targets can change without any change of the source space or the edges
+                    persistedTargetTypes.setTargetSpaceRevisions(targetSpaceCollections(targetTypes).stream().collect(HashMap::new, (m, c) -> m.put(c, targetTypesRevisions.get(c)), HashMap::putAll));
+                    persistedTargetTypes.setTargetTypes(targetTypes);
+                    space.getTargetTypes().add(persistedTargetTypes);
+                }
+            }
+        }
+        return space;
+    }
+
+    int restoreReflections(DataStage stage, List<PersistedReflection> persisted, RevisionLookup revisions, Set<String> documentCollections) {
+        int restored = 0;
+        for (PersistedReflection reflection : persisted) {
+            if (KIND_SPACES.equals(reflection.getKind())) {
+                //The reflected spaces are derived from the existing collections - they are valid as long as no collection has been added or removed.
+                if (reflection.getSpaces() != null && reflection.getCollections() != null && new HashSet<>(reflection.getCollections()).equals(documentCollections)) {
+                    final List<SpaceName> spaces = reflection.getSpaces().stream().map(SpaceName::fromString).toList();
+                    restore(stage, CacheConstant.CACHE_KEYS_REFLECTED_SPACES, stage, spaces, new RestoredEntry(CacheConstant.CACHE_KEYS_REFLECTED_SPACES, stage, spaces, spaces, null, documentCollections));
+                    restored++;
+                }
+            } else if (KIND_SPACE.equals(reflection.getKind())) {
+                final SpaceName spaceName = SpaceName.fromString(reflection.getSpace());
+                final String spaceCollection = ArangoCollectionReference.fromSpace(spaceName).getCollectionName();
+                final String revision = revisions.getRevision(spaceCollection);
+                if (revision == null || !revision.equals(reflection.getRevision())) {
+                    continue;
+                }
+                final Map<String, String> spaceRevision = Map.of(spaceCollection, revision);
+                restore(stage, CacheConstant.CACHE_KEYS_TYPES_IN_SPACE, new SimpleKey(stage, spaceName), Collections.unmodifiableList(reflection.getTypes()), spaceName, spaceRevision);
+                restored++;
+                for (PersistedProperties properties : reflection.getProperties()) {
+                    if (!revision.equals(properties.getRevision())) {
+                        continue;
+                    }
+                    restore(stage, CacheConstant.CACHE_KEYS_PROPERTIES_OF_TYPE_IN_SPACE, new SimpleKey(stage, spaceName, properties.getType()), Collections.unmodifiableList(properties.getProperties()), spaceName, spaceRevision);
+                    restored++;
+                }
+                for (PersistedTargetTypes targetTypes : reflection.getTargetTypes()) {
+                    if (!revision.equals(targetTypes.getRevision()) || targetTypes.getTargetSpaceRevisions() == null) {
+                        continue;
+                    }
+                    //The target types additionally depend on the edges of the property and on the target spaces
+                    final Map<String, String> targetTypeRevisions = new HashMap<>(spaceRevision);
+                    targetTypeRevisions.put(new ArangoCollectionReference(targetTypes.getProperty(), true).getCollectionName(), targetTypes.getEdgeRevision());
+                    targetTypeRevisions.putAll(targetTypes.getTargetSpaceRevisions());
+                    if (isUnchanged(targetTypeRevisions, revisions)) {
+                        restore(stage, CacheConstant.CACHE_KEYS_TARGET_TYPES, new SimpleKey(stage, spaceName, targetTypes.getType(), targetTypes.getProperty()), Collections.unmodifiableList(targetTypes.getTargetTypes()), spaceName, targetTypeRevisions);
+                        restored++;
+                    }
+                }
+            }
+        }
+        return restored;
+    }
+
+    private void restore(DataStage stage, String cache, Object key, Object value, SpaceName space, Map<String, String> revisions) {
+        restore(stage, cache, key, value, new RestoredEntry(cache, key, value, List.of(space), revisions, null));
+    }
+
+    private void restore(DataStage stage, String cache, Object key, Object value, RestoredEntry entry) {
+        getCache(cache).put(key, value);
+        if (entry.revisions != null) {
+            //The restored value is persisted again with the revisions it has been validated against
+            registerReflection(stage, cache, key, value, entry.revisions);
+        }
+        restoredEntries.computeIfAbsent(stage, s -> new ConcurrentLinkedQueue<>()).add(entry);
+    }
+
+    private static boolean isUnchanged(Map<String, String> revisions, RevisionLookup currentRevisions) {
+        return revisions.entrySet().stream().allMatch(r -> Objects.equals(r.getValue(), currentRevisions.getRevision(r.getKey())));
+    }
+
+    static Set<String> targetSpaceCollections(List<TargetTypeReflection> targetTypes) {
+        return targetTypes.stream().map(TargetTypeReflection::getSpace).filter(Objects::nonNull).map(s -> ArangoCollectionReference.fromSpace(SpaceName.fromString(s)).getCollectionName()).collect(Collectors.toSet());
+    }
+
+    /**
+     * Evicts the restored cache entries of the stage whose collections have changed since they were restored.
+     *
+     * @return the spaces whose reflection has been evicted
+     */
+    public Set<SpaceName> validateRestoredReflections(DataStage stage) {
+        final Queue<RestoredEntry> entries = restoredEntries.get(stage);
+        if (entries == null || entries.isEmpty()) {
+            return Collections.emptySet();
+        }
+        try {
+            final ArangoDatabase db = arangoDatabases.getByStage(stage);
+            return validateRestoredReflections(stage, collectionName -> getRevision(db, collectionName), documentCollections(db));
+        } catch (RuntimeException e) {
+            logger.warn("Was not able to validate the restored reflection caches of stage {}: {}", stage.name(), e.getMessage());
+            return Collections.emptySet();
+        }
+    }
+
+    Set<SpaceName> validateRestoredReflections(DataStage stage, RevisionLookup revisions, Set<String> documentCollections) {
+        final Queue<RestoredEntry> entries = restoredEntries.getOrDefault(stage, new ConcurrentLinkedQueue<>());
+        //Many entries depend on the same collections - we only ask for each revision once per validation
+        final Map<String, Optional<String>> currentRevisions = new HashMap<>();
+        final RevisionLookup cachedRevisions = c -> currentRevisions.computeIfAbsent(c, k -> Optional.ofNullable(revisions.getRevision(k))).orElse(null);
+        final Set<SpaceName> invalidated = new HashSet<>();
+        entries.removeIf(entry -> {
+            if (getCached(entry.cache, entry.key) != entry.value) {
+                //The entry has been replaced or evicted - it is kept up to date by the regular cache eviction from now on
+                return true;
+            }
+            final boolean valid = entry.documentCollections != null ? entry.documentCollections.equals(documentCollections) : isUnchanged(entry.revisions, cachedRevisions);
+            if (!valid) {
+                getCache(entry.cache).evict(entry.key);
+                invalidated.addAll(entry.spaces);
+            }
+            return !valid;
+        });
+        if (!invalidated.isEmpty()) {
+            logger.info(String.format("Evicted the outdated restored reflection caches of %d spaces of stage %s", invalidated.size(), stage.name()));
+        }
+        return invalidated;
+    }
+
+    interface RevisionLookup {
+        String getRevision(String collectionName);
+    }
+
+    private static String key(DataStage stage, SpaceName space) {
+        return UUID.nameUUIDFromBytes(String.format("%s:%s", stage.name(), space != null ? space.getName() : "").getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getCached(String cacheName, Object key) {
+        final Cache.ValueWrapper valueWrapper = getCache(cacheName).get(key);
+        return valueWrapper != null ? (T) valueWrapper.get() : null;
+    }
+
+    private Cache getCache(String cacheName) {
+        return Objects.requireNonNull(cacheManager.getCache(cacheName), String.format("Cache %s is not configured", cacheName));
+    }
+
+    private static Set<String> documentCollections(ArangoDatabase db) {
+        return db.getCollections(new CollectionsReadOptions().excludeSystem(true)).stream().filter(c -> c.getType() == CollectionType.DOCUMENT).map(CollectionEntity::getName).filter(c -> !InternalSpace.INTERNAL_SPACENAMES.contains(c)).collect(Collectors.toSet());
+    }
+
+    private static String getRevision(ArangoDatabase db, String collectionName) {
+        final ArangoCollection collection = db.collection(collectionName);
+        return collection.exists() ? collection.getRevision().getRevision() : null;
+    }
+
+    private ArangoCollection getOrCreateCollection() {
+        final ArangoDatabase structureDB = arangoDatabases.getStructureDB();
+        final ArangoCollection collection = structureDB.collection(REFLECTION_CACHE.getCollectionName());
+        if (!collection.exists()) {
+            structureDB.createCollection(REFLECTION_CACHE.getCollectionName(), new CollectionCreateOptions().type(CollectionType.DOCUMENT));
+        }
+        return collection;
+    }
+}
@@ -32,6 +32,8 @@ import com.arangodb.model.CollectionsReadOptions;
 import com.arangodb.model.DocumentCreateOptions;
 import com.arangodb.model.OverwriteMode;
 import org.marmotgraph.arango.commons.aqlbuilder.AQL;
+import org.marmotgraph.arango.commons.aqlbuilder.AqlQueryDefaults;
+import org.marmotgraph.arango.commons.aqlbuilder.AQLTemplate;
 import org.marmotgraph.arango.commons.aqlbuilder.ArangoVocabulary;
 import org.marmotgraph.arango.commons.model.ArangoCollectionReference;
 import org.marmotgraph.arango.commons.model.ArangoDatabaseProxy;
@@ -61,6 +63,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.interceptor.SimpleKey;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
@@ -74,12 +77,18 @@ public class StructureRepository {
     private final ArangoDatabases arangoDatabases;
     private final JsonAdapter jsonAdapter;
     private final GraphDBArangoUtils graphDBArangoUtils;
+    private final StructureStatisticsRepository structureStatistics;
+    private final AqlQueryDefaults queryDefaults;
+    private final ReflectionCachePersistence reflectionCachePersistence;
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    public StructureRepository(ArangoDatabases arangoDatabases, JsonAdapter jsonAdapter, GraphDBArangoUtils graphDBArangoUtils) {
+    public StructureRepository(ArangoDatabases arangoDatabases, JsonAdapter jsonAdapter, GraphDBArangoUtils graphDBArangoUtils, StructureStatisticsRepository structureStatistics, AqlQueryDefaults queryDefaults, ReflectionCachePersistence reflectionCachePersistence) {
         this.arangoDatabases = arangoDatabases;
         this.jsonAdapter = jsonAdapter;
         this.graphDBArangoUtils = graphDBArangoUtils;
+        this.structureStatistics = structureStatistics;
+        this.queryDefaults = queryDefaults;
+        this.reflectionCachePersistence = reflectionCachePersistence;
     }
 
     private final static ArangoCollectionReference SPACES = new ArangoCollectionReference("spaces", false);
@@ -88,6 +97,73 @@ public class StructureRepository {
     private final static ArangoCollectionReference TYPE_IN_SPACE = new ArangoCollectionReference("typeInSpace", true);
     private final static ArangoCollectionReference PROPERTY_IN_TYPE = new ArangoCollectionReference("propertyInType", true);
 
+    private final static AQLTemplate SORTED_SPACES = AQLTemplate.withResultCacheOf(new AQL()
+            .addLine(AQL.trust("FOR d IN @@collection"))
+            .addLine(AQL.trust(String.format("SORT d.`%s` ASC", SchemaOrgVocabulary.NAME)))
+            .addLine(AQL.trust("RETURN KEEP(d, ATTRIBUTES(d, true))")));
+
+    private final static AQLTemplate TYPES_IN_SPACE = AQLTemplate.withResultCacheOf(new AQL()
+            .addLine(AQL.trust("FOR t IN @@collection FILTER t._from == @id"))
+            .addLine(AQL.trust(String.format("RETURN DOCUMENT(t._to).`%s`", SchemaOrgVocabulary.IDENTIFIER))));
+
+    private final static AQLTemplate TYPE_SPECIFICATION = AQLTemplate.withResultCacheOf(new AQL()
+            .addLine(AQL.trust("LET doc = DOCUMENT(@id)"))
+            .addLine(AQL.trust("LET result = DOCUMENT(@clientSpace, doc._key)"))
+            .addLine(AQL.trust("FILTER result != NULL"))
+            .addLine(AQL.trust("RETURN KEEP(result, ATTRIBUTES(result, True))")));
+
+    private final static AQLTemplate PROPERTY_SPECIFICATION = AQLTemplate.withResultCacheOf(new AQL()
+            .addLine(AQL.trust("LET doc = DOCUMENT(@id)"))
+            .addLine(AQL.trust("RETURN KEEP(doc, ATTRIBUTES(doc, True))")));
+
+    private final static AQLTemplate PROPERTIES_IN_TYPE = AQLTemplate.withResultCacheOf(new AQL()
+            .addLine(AQL.trust("FOR t IN @@collection FILTER t._from == @id"))
+            .addLine(AQL.trust("LET doc = DOCUMENT(t._to)"))
+            .addLine(AQL.trust("FILTER doc != NULL"))
+            .addLine(AQL.trust(String.format("RETURN MERGE(KEEP(doc, [\"%s\"]), KEEP(t, ATTRIBUTES(t, True)))", SchemaOrgVocabulary.IDENTIFIER))));
+
+    //The reflection queries run on the data collections which are changed frequently - the result cache wouldn't be of much help
+    private final static AQLTemplate REFLECTED_TYPES_IN_SPACE = AQLTemplate.of(new AQL()
+            .addLine(AQL.trust("LET typeGroups=(FOR i in @@collection"))
+            .addLine(AQL.trust(String.format("FILTER i.`%s` != NULL", JsonLdConsts.TYPE)))
+            .addLine(AQL.trust(String.format("COLLECT t=i.`%s` WITH COUNT INTO length", JsonLdConsts.TYPE)))
+            .addLine(AQL.trust("RETURN {\"name\": t, \"occurrences\": length})"))
+            .addLine(AQL.trust("LET types = UNIQUE(typeGroups[**].name[**])"))
+            .addLine(AQL.trust("FOR t IN types"))
+            .addLine(AQL.trust("LET countsInGroup = SUM(FOR g IN typeGroups FILTER t IN g.name RETURN g.occurrences)"))
+            .addLine(AQL.trust("RETURN { \"name\": t, \"occurrences\": countsInGroup }")));
+
+    private final static AQLTemplate REFLECTED_PROPERTIES_OF_TYPE_IN_SPACE = AQLTemplate.of(new AQL()
+            .addLine(AQL.trust("LET attGroups = (FOR d IN @@collection"))
+            .addLine(AQL.trust(String.format("FILTER @type IN d.`%s`", JsonLdConsts.TYPE)))
+            .addLine(AQL.trust("COLLECT attGroup =  ATTRIBUTES(d, true) WITH COUNT INTO length"))
+            .addLine(AQL.trust("RETURN {\"attributes\": attGroup, \"count\": length})"))
+            .addLine(AQL.trust("LET attributes = UNIQUE(attGroups[**].attributes[**])"))
+            .addLine(AQL.trust("FOR att IN attributes"))
+            .addLine(AQL.trust("LET countsInGroup = SUM(FOR g IN attGroups FILTER att IN g.attributes RETURN g.count)"))
+            .addLine(AQL.trust("RETURN { \"name\": att, \"occurrences\": countsInGroup }")));
+
+    private final static AQLTemplate REFLECTED_TARGET_TYPES = AQLTemplate.of(new AQL()
+            .addLine(AQL.trust(String.format("FOR i IN @@collection FILTER @type IN i.`%s` AND i.@property != NULL", JsonLdConsts.TYPE)))
+            .addLine(AQL.trust("LET targetType = FLATTEN("))
+            .addLine(AQL.trust("       FOR target IN 1..1 OUTBOUND i @@propertyEdge"))
+            .addLine(AQL.trust("FILTER target != NULL AND target.`@type` != NULL"))
+            .addLine(AQL.trust(String.format("FOR type IN TO_ARRAY(target.`%s`)", JsonLdConsts.TYPE)))
+            .addLine(AQL.trust(String.format("COLLECT t = type, s=target.`%s` WITH COUNT INTO length", EBRAINSVocabulary.META_SPACE)))
+            .addLine(AQL.trust("RETURN {"))
+            .addLine(AQL.trust("    \"type\": t,"))
+            .addLine(AQL.trust("    \"space\": s,"))
+            .addLine(AQL.trust("    \"count\": length"))
+            .addLine(AQL.trust("}"))
+            .addLine(AQL.trust(" )"))
+            .addLine(AQL.trust(" FOR t IN targetType"))
+            .addLine(AQL.trust(" COLLECT type = t.type, space = t.space AGGREGATE count = SUM(t.count)"))
+            .addLine(AQL.trust(" RETURN {"))
+            .addLine(AQL.trust("\"name\": type,"))
+            .addLine(AQL.trust("\"space\": space,"))
+            .addLine(AQL.trust("\"occurrences\": count"))
+            .addLine(AQL.trust("}")));
+
     public static void setupCollections(ArangoDatabaseProxy database) {
         database.createCollectionIfItDoesntExist(SPACES);
         database.createCollectionIfItDoesntExist(TYPES);
@@ -175,15 +251,11 @@ public class StructureRepository {
     }
 
     private List<Space> doGetSpaces(){
-        AQL aql = new AQL();
         final ArangoDatabase structureDB = arangoDatabases.getStructureDB();
         if(structureDB.collection(SPACES.getCollectionName()).exists()) {
             Map<String, Object> bindVars = new HashMap<>();
-            aql.addLine(AQL.trust("FOR d IN @@collection"));
             bindVars.put("@collection", SPACES.getCollectionName());
-            aql.addLine(AQL.trust(String.format("SORT d.`%s` ASC", SchemaOrgVocabulary.NAME)));
-            aql.addLine(AQL.trust("RETURN KEEP(d, ATTRIBUTES(d, true))"));
-            return Collections.unmodifiableList(structureDB.query(aql.build().getValue(), Space.class, bindVars).asListRemaining());
+            return Collections.unmodifiableList(SORTED_SPACES.queryList(structureDB, Space.class, bindVars, queryDefaults));
         }
         return Collections.emptyList();
     }
@@ -206,15 +278,11 @@ public class StructureRepository {
     }
 
     private List<SpaceSpecification> doGetSpaceSpecifications(){
-        AQL aql = new AQL();
         final ArangoDatabase structureDB = arangoDatabases.getStructureDB();
         if(structureDB.collection(SPACES.getCollectionName()).exists()) {
             Map<String, Object> bindVars = new HashMap<>();
-            aql.addLine(AQL.trust("FOR d IN @@collection"));
             bindVars.put("@collection", SPACES.getCollectionName());
-            aql.addLine(AQL.trust(String.format("SORT d.`%s` ASC", SchemaOrgVocabulary.NAME)));
-            aql.addLine(AQL.trust("RETURN KEEP(d, ATTRIBUTES(d, true))"));
-            return Collections.unmodifiableList(structureDB.query(aql.build().getValue(), SpaceSpecification.class, bindVars).asListRemaining());
+            return Collections.unmodifiableList(SORTED_SPACES.queryList(structureDB, SpaceSpecification.class, bindVars, queryDefaults));
         }
         return Collections.emptyList();
     }
@@ -258,13 +326,10 @@ public class StructureRepository {
         final ArangoDatabase structureDB = arangoDatabases.getStructureDB();
         if(structureDB.collection(TYPE_IN_SPACE.getCollectionName()).exists()) {
             final UUID spaceUUID = spaceSpecificationRef(spaceName.getName());
-            AQL query = new AQL();
             Map<String, Object> bindVars = new HashMap<>();
-            query.addLine(AQL.trust("FOR t IN @@collection FILTER t._from == @id"));
             bindVars.put("@collection", TYPE_IN_SPACE.getCollectionName());
             bindVars.put("id", String.format("%s/%s", SPACES.getCollectionName(), spaceUUID));
-            query.addLine(AQL.trust(String.format("RETURN DOCUMENT(t._to).`%s`", SchemaOrgVocabulary.IDENTIFIER)));
-            return structureDB.query(query.build().getValue(), String.class, bindVars).asListRemaining();
+            return TYPES_IN_SPACE.queryList(structureDB, String.class, bindVars, queryDefaults);
         }
         return Collections.emptyList();
     }
@@ -290,15 +355,10 @@ public class StructureRepository {
         final ArangoDatabase structureDB = arangoDatabases.getStructureDB();
         if (structureDB.collection(collectionReference.getCollectionName()).exists()) {
             final UUID typeUUID = typeSpecificationRef(typeName);
-            AQL query = new AQL();
             Map<String, Object> bindVars = new HashMap<>();
-            query.addLine(AQL.trust("LET doc = DOCUMENT(@id)"));
             bindVars.put("id", String.format("%s/%s", TYPES.getCollectionName(), typeUUID));
-            query.addLine(AQL.trust("LET result = DOCUMENT(@clientSpace, doc._key)"));
-            query.addLine(AQL.trust("FILTER result != NULL"));
             bindVars.put("clientSpace", collectionReference.getCollectionName());
-            query.addLine(AQL.trust("RETURN KEEP(result, ATTRIBUTES(result, True))"));
-            return getSingleResult(structureDB.query(query.build().getValue(), DynamicJson.class, bindVars).asListRemaining(), typeUUID);
+            return getSingleResult(TYPE_SPECIFICATION.queryList(structureDB, DynamicJson.class, bindVars, queryDefaults), typeUUID);
         }
         return null;
     }
@@ -321,18 +381,19 @@ public class StructureRepository {
     }
 
     private List<TypeWithInstanceCountReflection> doReflectTypesInSpace(DataStage stage, SpaceName name){
-        AQL aql = new AQL();
-        Map<String, Object> bindVars = new HashMap<>();
-        aql.addLine(AQL.trust("LET typeGroups=(FOR i in @@collection"));
-        bindVars.put("@collection", ArangoCollectionReference.fromSpace(name).getCollectionName());
-        aql.addLine(AQL.trust(String.format("FILTER i.`%s` != NULL", JsonLdConsts.TYPE)));
-        aql.addLine(AQL.trust(String.format("COLLECT t=i.`%s` WITH COUNT INTO length", JsonLdConsts.TYPE)));
-        aql.addLine(AQL.trust("RETURN {\"name\": t, \"occurrences\": length})"));
-        aql.addLine(AQL.trust("LET types = UNIQUE(typeGroups[**].name[**])"));
-        aql.addLine(AQL.trust("FOR t IN types"));
-        aql.addLine(AQL.trust("LET countsInGroup = SUM(FOR g IN typeGroups FILTER t IN g.name RETURN g.occurrences)"));
-        aql.addLine(AQL.trust("RETURN { \"name\": t, \"occurrences\": countsInGroup }"));
-        return Collections.unmodifiableList(arangoDatabases.getByStage(stage).query(aql.build().getValue(), TypeWithInstanceCountReflection.class, bindVars).asListRemaining());
+        final String collectionName = ArangoCollectionReference.fromSpace(name).getCollectionName();
+        //The revision is read upfront - a change during the reflection therefore invalidates the persisted reflection
+        final Map<String, String> revisions = reflectionCachePersistence.readRevisions(stage, List.of(collectionName));
+        final List<TypeWithInstanceCountReflection> result;
+        if (structureStatistics.isInitialized(stage)) {
+            result = Collections.unmodifiableList(structureStatistics.getTypesInSpace(stage, name));
+        } else {
+            Map<String, Object> bindVars = new HashMap<>();
+            bindVars.put("@collection", collectionName);
+            result = Collections.unmodifiableList(REFLECTED_TYPES_IN_SPACE.queryList(arangoDatabases.getByStage(stage), TypeWithInstanceCountReflection.class, bindVars, queryDefaults));
+        }
+        reflectionCachePersistence.registerReflection(stage, CacheConstant.CACHE_KEYS_TYPES_IN_SPACE, new SimpleKey(stage, name), result, revisions);
+        return result;
     }
 
 
@@ -374,12 +435,9 @@ public class StructureRepository {
         final ArangoDatabase structureDB = arangoDatabases.getStructureDB();
         if (structureDB.collection(collectionReference.getCollectionName()).exists()) {
             final UUID propertyUUID = propertySpecificationRef(propertyName);
-            AQL query = new AQL();
             Map<String, Object> bindVars = new HashMap<>();
-            query.addLine(AQL.trust("LET doc = DOCUMENT(@id)"));
             bindVars.put("id", String.format("%s/%s", collectionReference.getCollectionName(), propertyUUID));
-            query.addLine(AQL.trust("RETURN KEEP(doc, ATTRIBUTES(doc, True))"));
-            return getSingleResult(structureDB.query(query.build().getValue(), DynamicJson.class, bindVars).asListRemaining(), propertyUUID);
+            return getSingleResult(PROPERTY_SPECIFICATION.queryList(structureDB, DynamicJson.class, bindVars, queryDefaults), propertyUUID);
         }
         return null;
     }
@@ -423,15 +481,10 @@ public class StructureRepository {
         final ArangoDatabase structureDB = arangoDatabases.getStructureDB();
         if (structureDB.collection(collectionReference.getCollectionName()).exists()) {
             final UUID typeUUID = typeSpecificationRef(type);
-            AQL query = new AQL();
             Map<String, Object> bindVars = new HashMap<>();
-            query.addLine(AQL.trust("FOR t IN @@collection FILTER t._from == @id"));
             bindVars.put("@collection", collectionReference.getCollectionName());
             bindVars.put("id", String.format("%s/%s", TYPES.getCollectionName(), typeUUID));
-            query.addLine(AQL.trust("LET doc = DOCUMENT(t._to)"));
-            query.addLine(AQL.trust("FILTER doc != NULL"));
-            query.addLine(AQL.trust(String.format("RETURN MERGE(KEEP(doc, [\"%s\"]), KEEP(t, ATTRIBUTES(t, True)))", SchemaOrgVocabulary.IDENTIFIER)));
-            return structureDB.query(query.build().getValue(), DynamicJson.class, bindVars).asListRemaining();
+            return PROPERTIES_IN_TYPE.queryList(structureDB, DynamicJson.class, bindVars, queryDefaults);
         }
         return Collections.emptyList();
     }
@@ -454,19 +507,19 @@ public class StructureRepository {
     }
 
     private List<PropertyOfTypeInSpaceReflection> doReflectPropertiesOfTypeInSpace(DataStage stage, SpaceName spaceName, String type){
-        AQL aql = new AQL();
-        Map<String, Object> bindVars = new HashMap<>();
-        aql.addLine(AQL.trust("LET attGroups = (FOR d IN @@collection"));
-        bindVars.put("@collection", ArangoCollectionReference.fromSpace(spaceName).getCollectionName());
-        aql.addLine(AQL.trust(String.format("FILTER @type IN d.`%s`", JsonLdConsts.TYPE)));
-        bindVars.put("type", type);
-        aql.addLine(AQL.trust("COLLECT attGroup =  ATTRIBUTES(d, true) WITH COUNT INTO length"));
-        aql.addLine(AQL.trust("RETURN {\"attributes\": attGroup, \"count\": length})"));
-        aql.addLine(AQL.trust("LET attributes = UNIQUE(attGroups[**].attributes[**])"));
-        aql.addLine(AQL.trust("FOR att IN attributes"));
-        aql.addLine(AQL.trust("LET countsInGroup = SUM(FOR g IN attGroups FILTER att IN g.attributes RETURN g.count)"));
-        aql.addLine(AQL.trust("RETURN { \"name\": att, \"occurrences\": countsInGroup }"));
-        return Collections.unmodifiableList(arangoDatabases.getByStage(stage).query(aql.build().getValue(), PropertyOfTypeInSpaceReflection.class, bindVars).asListRemaining());
+        final String collectionName = ArangoCollectionReference.fromSpace(spaceName).getCollectionName();
+        final Map<String, String> revisions = reflectionCachePersistence.readRevisions(stage, List.of(collectionName));
+        final List<PropertyOfTypeInSpaceReflection> result;
+        if (structureStatistics.isInitialized(stage)) {
+            result = Collections.unmodifiableList(structureStatistics.getPropertiesOfTypeInSpace(stage, spaceName, type));
+        } else {
+            Map<String, Object> bindVars = new HashMap<>();
+            bindVars.put("@collection", collectionName);
+            bindVars.put("type", type);
+            result = Collections.unmodifiableList(REFLECTED_PROPERTIES_OF_TYPE_IN_SPACE.queryList(arangoDatabases.getByStage(stage), PropertyOfTypeInSpaceReflection.class, bindVars, queryDefaults));
+        }
+        reflectionCachePersistence.registerReflection(stage, CacheConstant.CACHE_KEYS_PROPERTIES_OF_TYPE_IN_SPACE, new SimpleKey(stage, spaceName, type), result, revisions);
+        return result;
     }
 
     @Cacheable(value = CacheConstant.CACHE_KEYS_TARGET_TYPES, sync = true)
@@ -487,43 +540,62 @@ public class StructureRepository {
     }
 
     private List<TargetTypeReflection> doReflectTargetTypes(DataStage stage, SpaceName spaceName, String type, String property){
+        final String collectionName = ArangoCollectionReference.fromSpace(spaceName).getCollectionName();
         final ArangoCollectionReference edgeCollection = new ArangoCollectionReference(property, true);
-        //It's a property which actually does have target types
-        AQL aql = new AQL();
-        Map<String, Object> bindVars = new HashMap<>();
-        aql.addLine(AQL.trust(String.format("FOR i IN @@collection FILTER @type IN i.`%s` AND i.@property != NULL", JsonLdConsts.TYPE)));
-        bindVars.put("@collection", ArangoCollectionReference.fromSpace(spaceName).getCollectionName());
-        bindVars.put("type", type);
-        bindVars.put("property", property);
-        aql.addLine(AQL.trust("LET targetType = FLATTEN("));
-        aql.addLine(AQL.trust("       FOR target IN 1..1 OUTBOUND i @@propertyEdge"));
-        bindVars.put("@propertyEdge", edgeCollection.getCollectionName());
-        aql.addLine(AQL.trust("FILTER target != NULL AND target.`@type` != NULL"));
-        aql.addLine(AQL.trust(String.format("FOR type IN TO_ARRAY(target.`%s`)", JsonLdConsts.TYPE)));
-        aql.addLine(AQL.trust(String.format("COLLECT t = type, s=target.`%s` WITH COUNT INTO length", EBRAINSVocabulary.META_SPACE)));
-        aql.addLine(AQL.trust("RETURN {"));
-        aql.addLine(AQL.trust("    \"type\": t,"));
-        aql.addLine(AQL.trust("    \"space\": s,"));
-        aql.addLine(AQL.trust("    \"count\": length"));
-        aql.addLine(AQL.trust("}"));
-        aql.addLine(AQL.trust(" )"));
-        aql.addLine(AQL.trust(" FOR t IN targetType"));
-        aql.addLine(AQL.trust(" COLLECT type = t.type, space = t.space AGGREGATE count = SUM(t.count)"));
-        aql.addLine(AQL.trust(" RETURN {"));
-        aql.addLine(AQL.trust("\"name\": type,"));
-        aql.addLine(AQL.trust("\"space\": space,"));
-        aql.addLine(AQL.trust("\"occurrences\": count"));
-        aql.addLine(AQL.trust("}"));
-        try(ArangoCursor<TargetTypeReflection> query = arangoDatabases.getByStage(stage).query(aql.build().getValue(), TargetTypeReflection.class, bindVars)){
-            return Collections.unmodifiableList(query.asListRemaining());
-        } catch (IOException e) {
-            logger.error(e.getMessage(), e);
-            return null;
+        final Map<String, String> revisions = reflectionCachePersistence.readRevisions(stage, List.of(collectionName, edgeCollection.getCollectionName()));
+        final List<TargetTypeReflection> result;
+        if (structureStatistics.isInitialized(stage)) {
+            result = Collections.unmodifiableList(structureStatistics.getTargetTypes(stage, spaceName, type, property));
+        } else {
+            //It's a property which actually does have target types
+            Map<String, Object> bindVars = new HashMap<>();
+            bindVars.put("@collection", collectionName);
+            bindVars.put("type", type);
+            bindVars.put("property", property);
+            bindVars.put("@propertyEdge", edgeCollection.getCollectionName());
+            try (ArangoCursor<TargetTypeReflection> query = REFLECTED_TARGET_TYPES.query(arangoDatabases.getByStage(stage), TargetTypeReflection.class, bindVars, queryDefaults)) {
+                result = Collections.unmodifiableList(query.asListRemaining());
+            } catch (IOException e) {
+                logger.error(e.getMessage(), e);
+                return null;
+            }
+        }
+        if (revisions != null && result != null) {
+            //The target spaces are only known from the reflection itself - their revisions are therefore read right after it.
+            final Map<String, String> targetSpaceRevisions = reflectionCachePersistence.readRevisions(stage, ReflectionCachePersistence.targetSpaceCollections(result));
+            if (targetSpaceRevisions != null) {
+                targetSpaceRevisions.putAll(revisions);
+                reflectionCachePersistence.registerReflection(stage, CacheConstant.CACHE_KEYS_TARGET_TYPES, new SimpleKey(stage, spaceName, type, property), result, targetSpaceRevisions);
+            }
+        }
+        return result;
+    }
+
+    @CacheEvict(value = {CacheConstant.CACHE_KEYS_TYPES_IN_SPACE, CacheConstant.CACHE_KEYS_PROPERTIES_OF_TYPE_IN_SPACE, CacheConstant.CACHE_KEYS_TARGET_TYPES}, allEntries = true)
+    public void evictReflectionCaches() {
+        logger.debug("Cache evict: clearing all caches of reflected types, properties and target types");
+    }
+
+    @Cacheable(value = CacheConstant.CACHE_KEYS_COLLECTION_COUNTS, sync = true)
+    public Long getCollectionCount(DataStage stage, String collectionName) {
+        logger.debug("Missing cache hit: Counting documents of collection {} (stage {})", collectionName, stage.name());
+        return doGetCollectionCount(stage, collectionName);
+    }
+
+    @CacheEvict(value = CacheConstant.CACHE_KEYS_COLLECTION_COUNTS, allEntries = true)
+    public void evictCollectionCountsCache() {
+        logger.debug("Cache evict: clearing cache for collection counts");
+    }
+
+    private Long doGetCollectionCount(DataStage stage, String collectionName) {
+        final ArangoCollection collection = arangoDatabases.getByStage(stage).collection(collectionName);
+        if (!collection.exists()) {
+            return 0L;
         }
-        //return Collections.emptyList();
+        return collection.count().getCount();
     }
 
-    private final List<String> EDGE_BLACKLIST = Arrays.asList(
+    static final List<String> EDGE_BLACKLIST = Arrays.asList(
             new ArangoCollectionReference(EBRAINSVocabulary.META_ALTERNATIVE, true).getCollectionName(),
             new ArangoCollectionReference(EBRAINSVocabulary.META_USER, true).getCollectionName(),
             InternalSpace.DOCUMENT_ID_EDGE_COLLECTION.getCollectionName(),
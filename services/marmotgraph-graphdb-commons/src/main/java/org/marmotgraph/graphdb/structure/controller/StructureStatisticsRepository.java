@@ -0,0 +1,649 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.structure.controller;
+
+import com.arangodb.ArangoCollection;
+import com.arangodb.ArangoDatabase;
+import com.arangodb.entity.CollectionEntity;
+import com.arangodb.entity.CollectionType;
+import com.arangodb.entity.StreamTransactionEntity;
+import com.arangodb.model.*;
+import io.micrometer.core.instrument.Timer;
+import org.marmotgraph.arango.commons.aqlbuilder.AQL;
+import org.marmotgraph.arango.commons.model.ArangoCollectionReference;
+import org.marmotgraph.arango.commons.model.InternalSpace;
+import org.marmotgraph.commons.jsonld.JsonLdConsts;
+import org.marmotgraph.commons.model.DataStage;
+import org.marmotgraph.commons.model.SpaceName;
+import org.marmotgraph.commons.semantics.vocabularies.EBRAINSVocabulary;
+import org.marmotgraph.graphdb.commons.controller.ArangoDatabases;
+import org.marmotgraph.graphdb.commons.controller.ArangoTransactionMetrics;
+import org.marmotgraph.graphdb.commons.controller.GraphDBIOExecutor;
+import org.marmotgraph.graphdb.structure.model.PropertyOfTypeInSpaceReflection;
+import org.marmotgraph.graphdb.structure.model.TargetTypeReflection;
+import org.marmotgraph.graphdb.structure.model.TypeWithInstanceCountReflection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the counters the structure reflection is based on (instances of a type in a space, properties of a type in
+ * a space and target types of a property) in the database of the stage, so the reflection doesn't need to scan the
+ * data collections anymore.
+ * <p>
+ * The counters are maintained incrementally: every transaction appends the difference it causes as additional
+ * documents (in the same stream transaction as the data, so the counters can't diverge from it) - appending never
+ * conflicts with concurrent transactions. The counter documents of the same dimensions are summed up when read and
+ * are compacted regularly. Since the counters only become reliable once they have been built from the data, the
+ * reflection falls back to the full scan as long as {@link #rebuild(DataStage)} hasn't been executed for a stage.
+ * <p>
+ * Maintaining the counters must never prevent data from being written: if a transaction can't record its difference,
+ * the statistics of the stage are {@link #invalidate(DataStage) invalidated} and rebuilt in the background.
+ */
+@Component
+public class StructureStatisticsRepository {
+
+    public static final ArangoCollectionReference STATISTICS = ArangoCollectionReference.fromSpace(InternalSpace.STRUCTURE_STATISTICS_SPACE);
+    static final String KIND_TYPE = "type";
+    static final String KIND_PROPERTY = "property";
+    static final String KIND_TARGET_TYPE = "targetType";
+    private static final String INITIALIZED = "initialized";
+    private static final List<String> DIMENSIONS = Arrays.asList("kind", "space", "type", "property", "targetSpace", "targetType");
+    private static final int COMPACTION_BATCH_SIZE = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ArangoDatabases databases;
+
+    private final ArangoTransactionMetrics transactionMetrics;
+
+    private final GraphDBIOExecutor ioExecutor;
+
+    private final Set<DataStage> initializedStages = ConcurrentHashMap.newKeySet();
+
+    private final Set<DataStage> stagesWithCollection = ConcurrentHashMap.newKeySet();
+
+    private final Set<DataStage> requestedRebuilds = ConcurrentHashMap.newKeySet();
+
+    private final Set<DataStage> runningRebuilds = ConcurrentHashMap.newKeySet();
+
+    public StructureStatisticsRepository(ArangoDatabases databases, ArangoTransactionMetrics transactionMetrics, GraphDBIOExecutor ioExecutor) {
+        this.databases = databases;
+        this.transactionMetrics = transactionMetrics;
+        this.ioExecutor = ioExecutor;
+    }
+
+    /**
+     * The structural information of a document or an edge which contributes to the counters.
+     */
+    public static class Source {
+        private String id;
+        private String collection;
+        private boolean edge;
+        private List<String> types;
+        private List<String> properties;
+        private String property;
+        private String from;
+        private String to;
+        private String sourceCollection;
+        private List<String> sourceTypes;
+        private String targetSpace;
+        private List<String> targetTypes;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getCollection() {
+            return collection;
+        }
+
+        public void setCollection(String collection) {
+            this.collection = collection;
+        }
+
+        public boolean isEdge() {
+            return edge;
+        }
+
+        public void setEdge(boolean edge) {
+            this.edge = edge;
+        }
+
+        public List<String> getTypes() {
+            return types;
+        }
+
+        public void setTypes(List<String> types) {
+            this.types = types;
+        }
+
+        public List<String> getProperties() {
+            return properties;
+        }
+
+        public void setProperties(List<String> properties) {
+            this.properties = properties;
+        }
+
+        public String getProperty() {
+            return property;
+        }
+
+        public void setProperty(String property) {
+            this.property = property;
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public void setFrom(String from) {
+            this.from = from;
+        }
+
+        public String getTo() {
+            return to;
+        }
+
+        public void setTo(String to) {
+            this.to = to;
+        }
+
+        public String getSourceCollection() {
+            return sourceCollection;
+        }
+
+        public void setSourceCollection(String sourceCollection) {
+            this.sourceCollection = sourceCollection;
+        }
+
+        public List<String> getSourceTypes() {
+            return sourceTypes;
+        }
+
+        public void setSourceTypes(List<String> sourceTypes) {
+            this.sourceTypes = sourceTypes;
+        }
+
+        public String getTargetSpace() {
+            return targetSpace;
+        }
+
+        public void setTargetSpace(String targetSpace) {
+            this.targetSpace = targetSpace;
+        }
+
+        public List<String> getTargetTypes() {
+            return targetTypes;
+        }
+
+        public void setTargetTypes(List<String> targetTypes) {
+            this.targetTypes = targetTypes;
+        }
+    }
+
+    public ArangoCollection getOrCreateCollection(ArangoDatabase db) {
+        ArangoCollection collection = db.collection(STATISTICS.getCollectionName());
+        if (!collection.exists()) {
+            synchronized (this) {
+                if (!collection.exists()) {
+                    db.createCollection(STATISTICS.getCollectionName(), new CollectionCreateOptions().type(CollectionType.DOCUMENT));
+                    collection.ensurePersistentIndex(Arrays.asList("kind", "space", "type", "property"), new PersistentIndexOptions());
+                }
+            }
+        }
+        return collection;
+    }
+
+    /**
+     * Ensures the statistics collection of the stage exists. The database is only asked the first time (or again after
+     * an {@link #invalidate(DataStage) invalidation}) so the transactions don't pay a round trip for it.
+     *
+     * @return false if the collection is not available
+     */
+    public boolean setupCollection(DataStage stage) {
+        if (stagesWithCollection.contains(stage)) {
+            return true;
+        }
+        try {
+            getOrCreateCollection(databases.getByStage(stage));
+            stagesWithCollection.add(stage);
+            return true;
+        } catch (RuntimeException e) {
+            logger.warn("Was not able to set up the structure statistics collection of stage {}: {}", stage.name(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reads the structural information of the given documents / edges - within the stream transaction if one is given.
+     */
+    public Map<String, Source> snapshot(ArangoDatabase db, Collection<String> ids, String streamTransactionId) {
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        AQL aql = new AQL();
+        aql.addLine(AQL.trust("FOR id IN @ids"));
+        aql.addLine(AQL.trust("LET collection = PARSE_IDENTIFIER(id).collection"));
+        aql.addLine(AQL.trust("FILTER collection NOT IN @excluded"));
+        aql.addLine(AQL.trust("LET doc = DOCUMENT(id)"));
+        aql.addLine(AQL.trust("FILTER doc != NULL"));
+        aql.addLine(AQL.trust("LET source = doc._from != NULL ? DOCUMENT(doc._from) : NULL"));
+        aql.addLine(AQL.trust("LET target = doc._to != NULL ? DOCUMENT(doc._to) : NULL"));
+        aql.addLine(AQL.trust(String.format("RETURN doc._from == NULL ? { \"id\": id, \"collection\": collection, \"types\": TO_ARRAY(doc.`%s`), \"properties\": ATTRIBUTES(doc, true) }", JsonLdConsts.TYPE)));
+        aql.addLine(AQL.trust(String.format(": { \"id\": id, \"collection\": collection, \"edge\": true, \"property\": doc._originalLabel, \"from\": doc._from, \"to\": doc._to, \"sourceCollection\": PARSE_IDENTIFIER(doc._from).collection, \"sourceTypes\": TO_ARRAY(source.`%s`), \"targetSpace\": target.`%s`, \"targetTypes\": TO_ARRAY(target.`%s`) }", JsonLdConsts.TYPE, EBRAINSVocabulary.META_SPACE, JsonLdConsts.TYPE)));
+        Map<String, Object> bindVars = new HashMap<>();
+        bindVars.put("ids", ids);
+        bindVars.put("excluded", getExcludedCollections());
+        AqlQueryOptions options = new AqlQueryOptions();
+        if (streamTransactionId != null) {
+            options.streamTransactionId(streamTransactionId);
+        }
+        return db.query(aql.build().getValue(), Source.class, bindVars, options).asListRemaining().stream().collect(Collectors.toMap(Source::getId, s -> s));
+    }
+
+    private static List<String> getExcludedCollections() {
+        return Stream.concat(InternalSpace.INTERNAL_SPACENAMES.stream(), StructureRepository.EDGE_BLACKLIST.stream()).toList();
+    }
+
+    /**
+     * Appends the counter differences caused by the transaction. Has to be called after all write operations of the
+     * transaction but before it is committed.
+     *
+     * @param before the snapshot of the given ids before the transaction
+     * @param ids    the ids of all documents and edges written by the transaction
+     */
+    public void recordChanges(ArangoDatabase db, String streamTransactionId, Map<String, Source> before, Collection<String> ids) {
+        Map<String, Source> after = snapshot(db, ids, streamTransactionId);
+        Set<String> documentsWithChangedTypes = findDocumentsWithChangedTypes(before, after);
+        // The edges of documents changing their types are affected too - even if they're not part of the transaction
+        Map<String, Source> adjacentEdges = snapshot(db, findAdjacentEdges(db, streamTransactionId, documentsWithChangedTypes, ids), streamTransactionId);
+        Map<List<String>, Long> delta = computeDelta(before, after, adjacentEdges);
+        if (!delta.isEmpty()) {
+            insertCounters(db, streamTransactionId, delta);
+        }
+    }
+
+    static Set<String> findDocumentsWithChangedTypes(Map<String, Source> before, Map<String, Source> after) {
+        return after.values().stream().filter(s -> !s.isEdge()).filter(s -> {
+            Source previous = before.get(s.getId());
+            return previous != null && !new HashSet<>(s.getTypes()).equals(new HashSet<>(previous.getTypes()));
+        }).map(Source::getId).collect(Collectors.toSet());
+    }
+
+    private Set<String> findAdjacentEdges(ArangoDatabase db, String streamTransactionId, Set<String> documentIds, Collection<String> excludedIds) {
+        if (documentIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        List<String> edgeCollections = db.getCollections(new CollectionsReadOptions().excludeSystem(true)).stream().filter(c -> c.getType() == CollectionType.EDGES).map(CollectionEntity::getName).filter(c -> !StructureRepository.EDGE_BLACKLIST.contains(c)).toList();
+        if (edgeCollections.isEmpty()) {
+            return Collections.emptySet();
+        }
+        AQL aql = new AQL();
+        aql.addLine(AQL.trust("FOR id IN @ids"));
+        aql.addLine(AQL.trust("FOR v, e IN 1..1 ANY id " + edgeCollections.stream().map(e -> String.format("`%s`", e)).collect(Collectors.joining(", "))));
+        aql.addLine(AQL.trust("FILTER e._id NOT IN @excluded"));
+        aql.addLine(AQL.trust("RETURN DISTINCT e._id"));
+        Map<String, Object> bindVars = new HashMap<>();
+        bindVars.put("ids", documentIds);
+        bindVars.put("excluded", excludedIds);
+        return new HashSet<>(db.query(aql.build().getValue(), String.class, bindVars, new AqlQueryOptions().streamTransactionId(streamTransactionId)).asListRemaining());
+    }
+
+    /**
+     * @param adjacentEdges edges which are not part of the transaction (their current state therefore is the state
+     *                      before the transaction too) but which are connected to documents changing their types.
+     */
+    static Map<List<String>, Long> computeDelta(Map<String, Source> before, Map<String, Source> after, Map<String, Source> adjacentEdges) {
+        Map<List<String>, Long> delta = new HashMap<>();
+        before.values().forEach(s -> addContribution(delta, s, -1));
+        after.values().forEach(s -> addContribution(delta, s, 1));
+        adjacentEdges.values().forEach(e -> {
+            addContribution(delta, e, 1);
+            Source previous = withEndpointsBefore(e, before, after);
+            if (previous != null) {
+                addContribution(delta, previous, -1);
+            }
+        });
+        delta.values().removeIf(v -> v == 0);
+        return delta;
+    }
+
+    /**
+     * @return the edge as it was seen before the transaction or null if one of its endpoints didn't exist.
+     */
+    private static Source withEndpointsBefore(Source edge, Map<String, Source> before, Map<String, Source> after) {
+        Source previous = new Source();
+        previous.setEdge(true);
+        previous.setProperty(edge.getProperty());
+        previous.setSourceCollection(edge.getSourceCollection());
+        previous.setSourceTypes(edge.getSourceTypes());
+        previous.setTargetSpace(edge.getTargetSpace());
+        previous.setTargetTypes(edge.getTargetTypes());
+        if (after.containsKey(edge.getFrom())) {
+            Source from = before.get(edge.getFrom());
+            if (from == null) {
+                return null;
+            }
+            previous.setSourceTypes(from.getTypes());
+        }
+        if (after.containsKey(edge.getTo())) {
+            Source to = before.get(edge.getTo());
+            if (to == null) {
+                return null;
+            }
+            previous.setTargetTypes(to.getTypes());
+        }
+        return previous;
+    }
+
+    static void addContribution(Map<List<String>, Long> counters, Source source, long increment) {
+        if (source.isEdge()) {
+            if (source.getProperty() == null || source.getSourceTypes() == null || source.getTargetTypes() == null) {
+                return;
+            }
+            for (String sourceType : source.getSourceTypes()) {
+                for (String targetType : source.getTargetTypes()) {
+                    counters.merge(Arrays.asList(KIND_TARGET_TYPE, source.getSourceCollection(), sourceType, source.getProperty(), source.getTargetSpace(), targetType), increment, Long::sum);
+                }
+            }
+        } else if (source.getTypes() != null) {
+            for (String type : source.getTypes()) {
+                counters.merge(Arrays.asList(KIND_TYPE, source.getCollection(), type, null, null, null), increment, Long::sum);
+                if (source.getProperties() != null) {
+                    for (String property : source.getProperties()) {
+                        counters.merge(Arrays.asList(KIND_PROPERTY, source.getCollection(), type, property, null, null), increment, Long::sum);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Map<String, Object> toDocument(List<String> dimensions, long count) {
+        Map<String, Object> document = new HashMap<>();
+        for (int i = 0; i < DIMENSIONS.size(); i++) {
+            if (dimensions.get(i) != null) {
+                document.put(DIMENSIONS.get(i), dimensions.get(i));
+            }
+        }
+        document.put("count", count);
+        return document;
+    }
+
+    private void insertCounters(ArangoDatabase db, String streamTransactionId, Map<List<String>, Long> counters) {
+        List<Map<String, Object>> documents = counters.entrySet().stream().map(e -> toDocument(e.getKey(), e.getValue())).toList();
+        DocumentCreateOptions options = new DocumentCreateOptions().silent(true);
+        if (streamTransactionId != null) {
+            options.streamTransactionId(streamTransactionId);
+        }
+        db.collection(STATISTICS.getCollectionName()).insertDocuments(documents, options);
+    }
+
+    public boolean isInitialized(DataStage stage) {
+        if (initializedStages.contains(stage)) {
+            return true;
+        }
+        ArangoCollection collection = databases.getByStage(stage).collection(STATISTICS.getCollectionName());
+        if (collection.exists() && collection.documentExists(INITIALIZED)) {
+            initializedStages.add(stage);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Marks the statistics of the stage as not initialized (the reflection falls back to the full scan) and rebuilds
+     * them in the background. To be called after a transaction has been committed without recording its difference.
+     */
+    public void invalidate(DataStage stage) {
+        initializedStages.remove(stage);
+        stagesWithCollection.remove(stage);
+        try {
+            ArangoCollection collection = databases.getByStage(stage).collection(STATISTICS.getCollectionName());
+            if (collection.exists() && collection.documentExists(INITIALIZED)) {
+                collection.deleteDocument(INITIALIZED);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Was not able to mark the structure statistics of stage {} as not initialized: {}", stage.name(), e.getMessage());
+        }
+        requestRebuild(stage);
+    }
+
+    private void requestRebuild(DataStage stage) {
+        requestedRebuilds.add(stage);
+        if (runningRebuilds.add(stage)) {
+            try {
+                ioExecutor.submit("rebuildStructureStatistics", () -> rebuildRequested(stage));
+            } catch (RejectedExecutionException e) {
+                runningRebuilds.remove(stage);
+                logger.warn("Was not able to schedule the rebuild of the structure statistics of stage {}: {}", stage.name(), e.getMessage());
+            }
+        }
+    }
+
+    private void rebuildRequested(DataStage stage) {
+        try {
+            // A rebuild which has already started might not see the data of the invalidating transaction - we therefore run again
+            while (requestedRebuilds.remove(stage)) {
+                rebuild(stage);
+            }
+        } catch (RuntimeException e) {
+            logger.error(String.format("Was not able to rebuild the structure statistics of stage %s", stage.name()), e);
+        } finally {
+            runningRebuilds.remove(stage);
+        }
+        if (requestedRebuilds.contains(stage)) {
+            requestRebuild(stage);
+        }
+    }
+
+    private <T> List<T> readCounters(DataStage stage, String kind, SpaceName space, String type, String property, String groupBy, Class<T> clazz) {
+        AQL aql = new AQL();
+        Map<String, Object> bindVars = new HashMap<>();
+        aql.addLine(AQL.trust("FOR s IN @@statistics"));
+        aql.addLine(AQL.trust("FILTER s.kind == @kind AND s.space == @space"));
+        bindVars.put("@statistics", STATISTICS.getCollectionName());
+        bindVars.put("kind", kind);
+        bindVars.put("space", ArangoCollectionReference.fromSpace(space).getCollectionName());
+        if (type != null) {
+            aql.addLine(AQL.trust("AND s.type == @type"));
+            bindVars.put("type", type);
+        }
+        if (property != null) {
+            aql.addLine(AQL.trust("AND s.property == @property"));
+            bindVars.put("property", property);
+        }
+        if (KIND_TARGET_TYPE.equals(kind)) {
+            aql.addLine(AQL.trust("COLLECT name = s.targetType, targetSpace = s.targetSpace AGGREGATE occurrences = SUM(s.count)"));
+            aql.addLine(AQL.trust("FILTER occurrences > 0"));
+            aql.addLine(AQL.trust("RETURN { \"name\": name, \"space\": targetSpace, \"occurrences\": occurrences }"));
+        } else {
+            aql.addLine(AQL.trust(String.format("COLLECT name = s.%s AGGREGATE occurrences = SUM(s.count)", groupBy)));
+            aql.addLine(AQL.trust("FILTER occurrences > 0"));
+            aql.addLine(AQL.trust("RETURN { \"name\": name, \"occurrences\": occurrences }"));
+        }
+        return databases.getByStage(stage).query(aql.build().getValue(), clazz, bindVars).asListRemaining();
+    }
+
+    public List<TypeWithInstanceCountReflection> getTypesInSpace(DataStage stage, SpaceName space) {
+        return readCounters(stage, KIND_TYPE, space, null, null, "type", TypeWithInstanceCountReflection.class);
+    }
+
+    public List<PropertyOfTypeInSpaceReflection> getPropertiesOfTypeInSpace(DataStage stage, SpaceName space, String type) {
+        return readCounters(stage, KIND_PROPERTY, space, type, null, "property", PropertyOfTypeInSpaceReflection.class);
+    }
+
+    public List<TargetTypeReflection> getTargetTypes(DataStage stage, SpaceName space, String type, String property) {
+        return readCounters(stage, KIND_TARGET_TYPE, space, type, property, null, TargetTypeReflection.class);
+    }
+
+    /**
+     * Recalculates all counters of the stage by scanning the data - to initialize the statistics or to repair them.
+     * Transactions committed while the rebuild is running are reflected correctly since the removal of the previous
+     * counters and the scan happen on the same snapshot.
+     */
+    public void rebuild(DataStage stage) {
+        long start = System.currentTimeMillis();
+        logger.info("Rebuilding the structure statistics of stage {}", stage.name());
+        ArangoDatabase db = databases.getByStage(stage);
+        getOrCreateCollection(db);
+        stagesWithCollection.add(stage);
+        List<String> excluded = getExcludedCollections();
+        Collection<CollectionEntity> collections = db.getCollections(new CollectionsReadOptions().excludeSystem(true));
+        Timer.Sample transactionSample = transactionMetrics.begin();
+        StreamTransactionEntity tx = db.beginStreamTransaction(new StreamTransactionOptions().writeCollections(STATISTICS.getCollectionName()));
+        try {
+            AqlQueryOptions options = new AqlQueryOptions().streamTransactionId(tx.getId());
+            db.query("FOR s IN @@statistics REMOVE s IN @@statistics", Void.class, Map.of("@statistics", STATISTICS.getCollectionName()), options);
+            Map<List<String>, Long> counters = new HashMap<>();
+            for (CollectionEntity collection : collections) {
+                if (excluded.contains(collection.getName())) {
+                    continue;
+                }
+                if (collection.getType() == CollectionType.EDGES) {
+                    countTargetTypes(db, options, collection.getName(), counters);
+                } else {
+                    countTypesAndProperties(db, options, collection.getName(), counters);
+                }
+            }
+            counters.values().removeIf(v -> v == 0);
+            if (!counters.isEmpty()) {
+                insertCounters(db, tx.getId(), counters);
+            }
+            db.collection(STATISTICS.getCollectionName()).insertDocument(Map.of("_key", INITIALIZED, "timestamp", System.currentTimeMillis()), new DocumentCreateOptions().overwriteMode(OverwriteMode.replace).streamTransactionId(tx.getId()));
+            db.commitStreamTransaction(tx.getId());
+            transactionMetrics.committed(transactionSample, "statistics.rebuild");
+            initializedStages.add(stage);
+            logger.info("Rebuilt {} structure statistics of stage {} in {}ms", counters.size(), stage.name(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            db.abortStreamTransaction(tx.getId());
+            transactionMetrics.aborted(transactionSample, "statistics.rebuild");
+            throw e;
+        }
+    }
+
+    private void countTypesAndProperties(ArangoDatabase db, AqlQueryOptions options, String collection, Map<List<String>, Long> counters) {
+        AQL aql = new AQL();
+        aql.addLine(AQL.trust("FOR d IN @@collection"));
+        aql.addLine(AQL.trust(String.format("FOR t IN TO_ARRAY(d.`%s`)", JsonLdConsts.TYPE)));
+        aql.addLine(AQL.trust("FOR a IN APPEND([null], ATTRIBUTES(d, true))"));
+        aql.addLine(AQL.trust("COLLECT type = t, property = a WITH COUNT INTO count"));
+        aql.addLine(AQL.trust("RETURN [type, property, count]"));
+        db.query(aql.build().getValue(), List.class, Map.of("@collection", collection), options).asListRemaining().forEach(r -> {
+            String type = (String) r.get(0);
+            String property = (String) r.get(1);
+            counters.merge(Arrays.asList(property == null ? KIND_TYPE : KIND_PROPERTY, collection, type, property, null, null), ((Number) r.get(2)).longValue(), Long::sum);
+        });
+    }
+
+    private void countTargetTypes(ArangoDatabase db, AqlQueryOptions options, String edgeCollection, Map<List<String>, Long> counters) {
+        AQL aql = new AQL();
+        aql.addLine(AQL.trust("FOR e IN @@collection"));
+        aql.addLine(AQL.trust("FILTER e._originalLabel != NULL"));
+        aql.addLine(AQL.trust("LET sourceCollection = PARSE_IDENTIFIER(e._from).collection"));
+        aql.addLine(AQL.trust("FILTER sourceCollection NOT IN @excluded"));
+        aql.addLine(AQL.trust("LET source = DOCUMENT(e._from)"));
+        aql.addLine(AQL.trust("LET target = DOCUMENT(e._to)"));
+        aql.addLine(AQL.trust(String.format("FOR st IN TO_ARRAY(source.`%s`)", JsonLdConsts.TYPE)));
+        aql.addLine(AQL.trust(String.format("FOR tt IN TO_ARRAY(target.`%s`)", JsonLdConsts.TYPE)));
+        aql.addLine(AQL.trust(String.format("COLLECT space = sourceCollection, type = st, property = e._originalLabel, targetSpace = target.`%s`, targetType = tt WITH COUNT INTO count", EBRAINSVocabulary.META_SPACE)));
+        aql.addLine(AQL.trust("RETURN [space, type, property, targetSpace, targetType, count]"));
+        db.query(aql.build().getValue(), List.class, Map.of("@collection", edgeCollection, "excluded", getExcludedCollections()), options).asListRemaining().forEach(r ->
+                counters.merge(Arrays.asList(KIND_TARGET_TYPE, (String) r.get(0), (String) r.get(1), (String) r.get(2), (String) r.get(3), (String) r.get(4)), ((Number) r.get(5)).longValue(), Long::sum)
+        );
+    }
+
+    /**
+     * Sums up the counter documents of the same dimensions to keep the reads proportional to the number of results.
+     */
+    @Scheduled(fixedDelayString = "${org.marmotgraph.structure.statistics.compactionIntervalInMs:60000}", initialDelayString = "${org.marmotgraph.structure.statistics.compactionIntervalInMs:60000}")
+    public void compact() {
+        for (DataStage stage : Arrays.asList(DataStage.IN_PROGRESS, DataStage.RELEASED)) {
+            ArangoDatabase db = databases.getByStage(stage);
+            if (db.collection(STATISTICS.getCollectionName()).exists()) {
+                try {
+                    compact(db);
+                } catch (RuntimeException e) {
+                    // Another instance might be compacting at the same time - we just try again the next time
+                    logger.warn("Was not able to compact the structure statistics of stage {}: {}", stage.name(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void compact(ArangoDatabase db) {
+        AQL aql = new AQL();
+        aql.addLine(AQL.trust("FOR s IN @@statistics"));
+        aql.addLine(AQL.trust("FILTER s.kind != NULL"));
+        aql.addLine(AQL.trust("COLLECT kind = s.kind, space = s.space, type = s.type, property = s.property, targetSpace = s.targetSpace, targetType = s.targetType INTO keys = s._key"));
+        aql.addLine(AQL.trust("FILTER LENGTH(keys) > 1"));
+        aql.addLine(AQL.trust("LIMIT @batchSize"));
+        aql.addLine(AQL.trust("RETURN { \"dimensions\": [kind, space, type, property, targetSpace, targetType], \"keys\": keys }"));
+        List<Map> groups = db.query(aql.build().getValue(), Map.class, Map.of("@statistics", STATISTICS.getCollectionName(), "batchSize", COMPACTION_BATCH_SIZE)).asListRemaining();
+        if (groups.isEmpty()) {
+            return;
+        }
+        List<Object> keys = groups.stream().flatMap(g -> ((List<?>) g.get("keys")).stream()).collect(Collectors.toList());
+        Timer.Sample transactionSample = transactionMetrics.begin();
+        StreamTransactionEntity tx = db.beginStreamTransaction(new StreamTransactionOptions().writeCollections(STATISTICS.getCollectionName()));
+        try {
+            // The removal fails if another process has compacted one of the documents in the meantime - we then
+            // abort since we would count them twice otherwise.
+            List<Map> merged = db.query("FOR k IN @keys REMOVE k IN @@statistics COLLECT kind = OLD.kind, space = OLD.space, type = OLD.type, property = OLD.property, targetSpace = OLD.targetSpace, targetType = OLD.targetType AGGREGATE count = SUM(OLD.count) RETURN { \"dimensions\": [kind, space, type, property, targetSpace, targetType], \"count\": count }",
+                    Map.class, Map.of("@statistics", STATISTICS.getCollectionName(), "keys", keys), new AqlQueryOptions().streamTransactionId(tx.getId())).asListRemaining();
+            Map<List<String>, Long> counters = new HashMap<>();
+            for (Map m : merged) {
+                @SuppressWarnings("unchecked") List<String> dimensions = (List<String>) m.get("dimensions");
+                long count = ((Number) m.get("count")).longValue();
+                if (count != 0) {
+                    counters.merge(dimensions, count, Long::sum);
+                }
+            }
+            if (!counters.isEmpty()) {
+                insertCounters(db, tx.getId(), counters);
+            }
+            db.commitStreamTransaction(tx.getId());
+            transactionMetrics.committed(transactionSample, "statistics.compaction");
+            logger.debug("Compacted {} structure statistics documents into {}", keys.size(), counters.size());
+        } catch (RuntimeException e) {
+            db.abortStreamTransaction(tx.getId());
+            transactionMetrics.aborted(transactionSample, "statistics.compaction");
+            throw e;
+        }
+    }
+
+}
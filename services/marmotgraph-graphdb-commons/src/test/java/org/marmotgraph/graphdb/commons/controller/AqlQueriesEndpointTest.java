@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.commons.controller;
+
+import org.junit.jupiter.api.Test;
+import org.marmotgraph.arango.commons.AqlQueryExecutor;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AqlQueriesEndpointTest {
+
+    private final AqlQueriesEndpoint endpoint = new AqlQueriesEndpoint(new AqlQueryExecutor(1000, 1000, null));
+
+    @Test
+    void ordersCaseInsensitively() {
+        //Given
+
+        //When
+        AqlQueriesEndpoint.Report report = endpoint.getTopQueries(null, "max_time");
+
+        //Then
+        assertEquals(AqlQueryExecutor.Order.MAX_TIME, report.getOrderBy());
+        assertTrue(report.getQueries().isEmpty());
+    }
+
+    @Test
+    void unknownOrderIsABadRequest() {
+        //Given
+
+        //When
+        InvalidEndpointRequestException e = assertThrows(InvalidEndpointRequestException.class, () -> endpoint.getTopQueries(null, "fastest"));
+
+        //Then
+        assertTrue(e.getReason().contains("fastest"));
+    }
+}
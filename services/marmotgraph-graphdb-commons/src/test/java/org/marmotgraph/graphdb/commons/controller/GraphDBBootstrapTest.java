@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.commons.controller;
+
+import com.arangodb.ArangoCollection;
+import com.arangodb.ArangoDatabase;
+import com.arangodb.entity.CollectionEntity;
+import com.arangodb.entity.CollectionPropertiesEntity;
+import com.arangodb.entity.CollectionType;
+import com.arangodb.model.CollectionsReadOptions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.marmotgraph.arango.commons.model.ArangoDatabaseProxy;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class GraphDBBootstrapTest {
+
+    private final GraphDBIOExecutor ioExecutor = new GraphDBIOExecutor(new SimpleMeterRegistry(), ObservationRegistry.NOOP, 4, 1000, 1, 100, false);
+    private final ArangoDatabaseProxy structureDB = mock(ArangoDatabaseProxy.class);
+    private final ArangoDatabaseProxy releasedDB = mock(ArangoDatabaseProxy.class);
+    private final ArangoDatabaseProxy nativeDB = mock(ArangoDatabaseProxy.class);
+    private final ArangoDatabaseProxy inProgressDB = mock(ArangoDatabaseProxy.class);
+    private final ArangoDatabaseProxy consistencyChecks = mock(ArangoDatabaseProxy.class);
+    private final ArangoDatabase inProgress = mock(ArangoDatabase.class);
+    private final ArangoDatabase released = mock(ArangoDatabase.class);
+    private GraphDBBootstrap bootstrap;
+
+    @BeforeEach
+    void setUp() {
+        when(inProgressDB.get()).thenReturn(inProgress);
+        when(releasedDB.get()).thenReturn(released);
+        bootstrap = new GraphDBBootstrap(new ArangoDatabases(structureDB, releasedDB, nativeDB, inProgressDB, consistencyChecks), ioExecutor, 2, 10, 20);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ioExecutor.shutdown();
+    }
+
+    private static List<ArangoCollection> mockCollections(ArangoDatabase db, String prefix, int numberOfCollections) {
+        final CollectionPropertiesEntity info = mock(CollectionPropertiesEntity.class);
+        when(info.getType()).thenReturn(CollectionType.DOCUMENT);
+        final List<CollectionEntity> entities = IntStream.range(0, numberOfCollections).mapToObj(i -> {
+            final CollectionEntity entity = mock(CollectionEntity.class);
+            when(entity.getName()).thenReturn(prefix + i);
+            final ArangoCollection collection = mock(ArangoCollection.class);
+            when(collection.getIndexes()).thenReturn(Collections.emptyList());
+            when(collection.getInfo()).thenReturn(info);
+            when(db.collection(prefix + i)).thenReturn(collection);
+            return entity;
+        }).toList();
+        when(db.getCollections(any(CollectionsReadOptions.class))).thenReturn(entities);
+        return entities.stream().map(e -> db.collection(e.getName())).toList();
+    }
+
+    @Test
+    void notReadyBeforeBootstrap() {
+        //Given
+
+        //When
+        final Status status = bootstrap.health().getStatus();
+
+        //Then
+        assertEquals(GraphDBBootstrap.State.PENDING, bootstrap.getState());
+        assertEquals(Status.OUT_OF_SERVICE, status);
+    }
+
+    @Test
+    void bootstrapEnsuresIndicesOfAllCollections() {
+        //Given
+        final List<ArangoCollection> collections = mockCollections(inProgress, "inProgress", 5);
+        mockCollections(released, "released", 3);
+
+        //When
+        bootstrap.bootstrap();
+
+        //Then
+        assertEquals(GraphDBBootstrap.State.READY, bootstrap.getState());
+        assertEquals(Status.UP, bootstrap.health().getStatus());
+        assertEquals(8, bootstrap.health().getDetails().get("collectionsWithEnsuredIndices"));
+        collections.forEach(c -> verify(c, atLeastOnce()).ensurePersistentIndex(any(), any()));
+    }
+
+    @Test
+    void bootstrapCreatesDatabasesOnlyOnce() {
+        //Given
+        mockCollections(inProgress, "inProgress", 1);
+        mockCollections(released, "released", 1);
+
+        //When
+        bootstrap.bootstrap();
+        bootstrap.bootstrap();
+
+        //Then
+        verify(inProgressDB, times(1)).createIfItDoesntExist();
+        verify(releasedDB, times(1)).createIfItDoesntExist();
+        verify(structureDB, times(1)).createIfItDoesntExist();
+        verify(nativeDB, never()).createIfItDoesntExist();
+    }
+
+    @Test
+    void failedBootstrapIsRetriedAndReportedAsOutOfService() throws InterruptedException {
+        //Given
+        doThrow(new IllegalStateException("Arango is not reachable")).when(releasedDB).createIfItDoesntExist();
+        final Thread bootstrapThread = new Thread(bootstrap::bootstrap);
+
+        //When
+        bootstrapThread.start();
+        Health health = bootstrap.health();
+        while (bootstrap.getState() != GraphDBBootstrap.State.RETRYING || (int) health.getDetails().get("attempts") < 2) {
+            Thread.sleep(5);
+            health = bootstrap.health();
+        }
+        bootstrapThread.interrupt();
+        bootstrapThread.join(1000);
+
+        //Then
+        assertEquals(Status.OUT_OF_SERVICE, health.getStatus());
+        assertEquals("Arango is not reachable", health.getDetails().get("failure"));
+        assertFalse(bootstrapThread.isAlive());
+    }
+
+    @Test
+    void failedBootstrapIsReadyAfterSuccessfulRetry() {
+        //Given
+        mockCollections(inProgress, "inProgress", 1);
+        mockCollections(released, "released", 1);
+        doThrow(new IllegalStateException("Arango is not reachable")).doNothing().when(releasedDB).createIfItDoesntExist();
+
+        //When
+        bootstrap.bootstrap();
+
+        //Then
+        assertEquals(GraphDBBootstrap.State.READY, bootstrap.getState());
+        assertEquals(Status.UP, bootstrap.health().getStatus());
+        assertEquals(2, bootstrap.health().getDetails().get("attempts"));
+        assertNull(bootstrap.health().getDetails().get("failure"));
+    }
+}
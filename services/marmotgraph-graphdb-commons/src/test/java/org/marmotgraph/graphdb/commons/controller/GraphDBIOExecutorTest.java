@@ -0,0 +1,229 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.commons.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphDBIOExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private GraphDBIOExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void blockingFanOutDoesNotStarveParallelStreams() throws InterruptedException {
+        //Given
+        executor = new GraphDBIOExecutor(meterRegistry, ObservationRegistry.NOOP, 4, 1000, 4, 100, false);
+        CountDownLatch release = new CountDownLatch(1);
+        Set<Thread> executingThreads = ConcurrentHashMap.newKeySet();
+        List<Thread> typesRequests = IntStream.range(0, 8).mapToObj(i -> new Thread(() -> executor.forEach("test", IntStream.range(0, 10).boxed().toList(), item -> {
+            executingThreads.add(Thread.currentThread());
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }))).toList();
+        typesRequests.forEach(Thread::start);
+        //The blocking operations queue up in the I/O executor
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            while (executor.getQueueDepth() == 0) {
+                Thread.sleep(10);
+            }
+        });
+
+        //When
+        final long sum = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> IntStream.range(0, 100000).parallel().mapToLong(i -> i).sum());
+
+        //Then
+        assertEquals(4999950000L, sum);
+        release.countDown();
+        for (Thread typesRequest : typesRequests) {
+            typesRequest.join(10000);
+        }
+        assertTrue(executingThreads.stream().noneMatch(t -> t instanceof ForkJoinWorkerThread));
+        assertEquals(80, meterRegistry.get("marmotgraph.graphdb.io.execution").tag("operation", "test").timer().count());
+    }
+
+    @Test
+    void nestedFanOutCompletesWithSingleThread() {
+        //Given
+        executor = new GraphDBIOExecutor(meterRegistry, ObservationRegistry.NOOP, 1, 1000, 1, 100, false);
+        Set<String> visited = ConcurrentHashMap.newKeySet();
+
+        //When
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> executor.forEach("outer", List.of("a", "b", "c"), outer -> executor.forEach("inner", List.of(1, 2, 3), inner -> visited.add(outer + inner))));
+
+        //Then
+        assertEquals(9, visited.size());
+    }
+
+    @Test
+    void failureIsPropagatedAfterAllTasksCompleted() {
+        //Given
+        executor = new GraphDBIOExecutor(meterRegistry, ObservationRegistry.NOOP, 2, 1000, 2, 100, true);
+        Set<Integer> visited = ConcurrentHashMap.newKeySet();
+
+        //When
+        final IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> executor.forEach("failing", List.of(1, 2, 3, 4), i -> {
+            visited.add(i);
+            if (i == 2) {
+                throw new IllegalArgumentException("failed");
+            }
+        }));
+
+        //Then
+        assertEquals("failed", exception.getMessage());
+        assertEquals(Set.of(1, 2, 3, 4), visited);
+    }
+
+    @Test
+    void currentObservationIsPropagatedToTheTasks() {
+        //Given
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(context -> true);
+        executor = new GraphDBIOExecutor(meterRegistry, observationRegistry, 4, 1000, 4, 100, false);
+        Observation request = Observation.start("request", observationRegistry);
+        Set<Observation> observationsInTasks = ConcurrentHashMap.newKeySet();
+        Set<Thread> executingThreads = ConcurrentHashMap.newKeySet();
+
+        //When
+        try (Observation.Scope ignored = request.openScope()) {
+            executor.forEach("propagation", IntStream.range(0, 20).boxed().toList(), i -> {
+                executingThreads.add(Thread.currentThread());
+                observationsInTasks.add(observationRegistry.getCurrentObservation());
+                try {
+                    //Simulates a blocking database call so the tasks are distributed across the pool
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        request.stop();
+
+        //Then
+        assertEquals(Set.of(request), observationsInTasks);
+        assertTrue(executingThreads.size() > 1);
+    }
+
+    @Test
+    void submittedActionRunsInTheBackground() throws Exception {
+        //Given
+        executor = new GraphDBIOExecutor(meterRegistry, ObservationRegistry.NOOP, 1, 1000, 1, 100, false);
+        CountDownLatch release = new CountDownLatch(1);
+        Set<Thread> executingThreads = ConcurrentHashMap.newKeySet();
+
+        //When
+        CompletableFuture<Void> future = executor.submit("background", () -> {
+            executingThreads.add(Thread.currentThread());
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        boolean doneBeforeRelease = future.isDone();
+        release.countDown();
+        future.get(10, TimeUnit.SECONDS);
+
+        //Then
+        assertFalse(doneBeforeRelease);
+        assertFalse(executingThreads.contains(Thread.currentThread()));
+        assertEquals(1, meterRegistry.get("marmotgraph.graphdb.io.execution").tag("operation", "background").timer().count());
+    }
+
+    @Test
+    void fanOutWithFullQueueIsExecutedByTheCallingThread() {
+        //Given
+        executor = new GraphDBIOExecutor(meterRegistry, ObservationRegistry.NOOP, 1, 1, 1, 1, false);
+        Set<Integer> visited = ConcurrentHashMap.newKeySet();
+        Set<Integer> visitedByCallingThread = ConcurrentHashMap.newKeySet();
+
+        //When
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> executor.forEach("saturated", List.of(1, 2, 3, 4, 5), i -> {
+            visited.add(i);
+            if (!Thread.currentThread().getName().startsWith("GraphDBIO-")) {
+                visitedByCallingThread.add(i);
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        //Then
+        assertEquals(Set.of(1, 2, 3, 4, 5), visited);
+        assertTrue(visitedByCallingThread.containsAll(Set.of(1, 4, 5)));
+    }
+
+    @Test
+    void backgroundActionsAreBoundedAndDoNotBlockFanOuts() throws Exception {
+        //Given
+        executor = new GraphDBIOExecutor(meterRegistry, ObservationRegistry.NOOP, 1, 10, 1, 1, false);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocking = () -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        CompletableFuture<Void> running = executor.submit("background", blocking);
+        CompletableFuture<Void> queued = executor.submit("background", blocking);
+        Set<Integer> visited = ConcurrentHashMap.newKeySet();
+
+        //When
+        assertThrows(RejectedExecutionException.class, () -> executor.submit("background", blocking));
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> executor.forEach("request", List.of(1, 2, 3), visited::add));
+
+        //Then
+        assertEquals(Set.of(1, 2, 3), visited);
+        release.countDown();
+        CompletableFuture.allOf(running, queued).get(10, TimeUnit.SECONDS);
+    }
+}
@@ -31,10 +31,13 @@ import org.marmotgraph.commons.permissions.controller.Permissions;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import org.marmotgraph.arango.commons.aqlbuilder.AQL;
+import org.marmotgraph.commons.models.UserWithRoles;
+import org.marmotgraph.commons.permission.Functionality;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 class PermissionsControllerTest  {
@@ -42,7 +45,7 @@ class PermissionsControllerTest  {
     @Test
     void testRemoveSpacesWithoutReadAccessReduce() {
         Permissions permissions = Mockito.mock(Permissions.class);
-        PermissionsController permissionsController = new PermissionsController(permissions);
+        PermissionsController permissionsController = new PermissionsController(permissions, Mockito.mock(PermissionGrantsRepository.class), 1000);
         Set<SpaceName> readableSpaces = Collections.singleton(new SpaceName("canRead"));
         Mockito.when(permissions.getSpacesForPermission(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(readableSpaces);
 
@@ -54,7 +57,7 @@ class PermissionsControllerTest  {
     @Test
     void testRemoveSpacesWithoutReadAccessNone() {
         Permissions permissions = Mockito.mock(Permissions.class);
-        PermissionsController permissionsController = new PermissionsController(permissions);
+        PermissionsController permissionsController = new PermissionsController(permissions, Mockito.mock(PermissionGrantsRepository.class), 1000);
         Set<SpaceName> readableSpaces = Collections.singleton(new SpaceName("canRead"));
         Mockito.when(permissions.getSpacesForPermission(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(readableSpaces);
 
@@ -62,4 +65,94 @@ class PermissionsControllerTest  {
 
         assertEquals(Collections.emptySet(), spaceNames);
     }
-}
\ No newline at end of file
+
+    private Permissions mockPermissionsWithExplicitInstances(Set<UUID> instances) {
+        Permissions permissions = Mockito.mock(Permissions.class);
+        Mockito.when(permissions.getSpacesForPermission(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(Collections.singleton(new SpaceName("canRead")));
+        Mockito.when(permissions.getInstancesWithExplicitPermission(Mockito.<UserWithRoles>any(), Mockito.eq(Functionality.READ))).thenReturn(instances);
+        return permissions;
+    }
+
+    @Test
+    void testWhitelistFilterForSmallGrants() {
+        //Given
+        Set<UUID> instances = Set.of(UUID.randomUUID(), UUID.randomUUID());
+        PermissionGrantsRepository grants = Mockito.mock(PermissionGrantsRepository.class);
+        PermissionsController permissionsController = new PermissionsController(mockPermissionsWithExplicitInstances(instances), grants, 2);
+
+        //When
+        Map<String, Object> whitelistFilter = permissionsController.whitelistFilterForReadInstances(Collections.emptySet(), null, DataStage.IN_PROGRESS);
+
+        //Then
+        assertEquals(instances, ((Map<?, ?>) whitelistFilter.get(AQL.READ_ACCESS_BY_INVITATION)).keySet());
+        assertFalse(whitelistFilter.containsKey(AQL.READ_ACCESS_BY_GRANT_SET));
+        Mockito.verifyNoInteractions(grants);
+    }
+
+    @Test
+    void testWhitelistFilterForLargeGrants() {
+        //Given
+        Set<UUID> instances = IntStream.range(0, 3).mapToObj(i -> UUID.randomUUID()).collect(Collectors.toSet());
+        PermissionGrantsRepository grants = Mockito.mock(PermissionGrantsRepository.class);
+        Mockito.when(grants.findMaterialized(DataStage.IN_PROGRESS, instances)).thenReturn("internalpermissiongrants/abc-");
+        PermissionsController permissionsController = new PermissionsController(mockPermissionsWithExplicitInstances(instances), grants, 2);
+
+        //When
+        Map<String, Object> whitelistFilter = permissionsController.whitelistFilterForReadInstances(Collections.emptySet(), null, DataStage.IN_PROGRESS);
+
+        //Then
+        assertEquals("internalpermissiongrants/abc-", whitelistFilter.get(AQL.READ_ACCESS_BY_GRANT_SET));
+        assertFalse(whitelistFilter.containsKey(AQL.READ_ACCESS_BY_INVITATION));
+        AQL aql = new AQL();
+        aql.specifyWhitelist(whitelistFilter);
+        aql.addDocumentFilterWithWhitelistFilter(AQL.trust("v"), whitelistFilter);
+        assertTrue(aql.build().getValue().contains("LET invitation=@" + AQL.READ_ACCESS_BY_GRANT_SET));
+        assertTrue(aql.build().getValue().contains("DOCUMENT(CONCAT(invitation, v._key)) != null"));
+    }
+
+    @Test
+    void testWhitelistFilterForLargeGrantsNotMaterializedYet() {
+        //Given
+        Set<UUID> instances = IntStream.range(0, 3).mapToObj(i -> UUID.randomUUID()).collect(Collectors.toSet());
+        PermissionGrantsRepository grants = Mockito.mock(PermissionGrantsRepository.class);
+        PermissionsController permissionsController = new PermissionsController(mockPermissionsWithExplicitInstances(instances), grants, 2);
+
+        //When
+        Map<String, Object> whitelistFilter = permissionsController.whitelistFilterForReadInstances(Collections.emptySet(), null, DataStage.IN_PROGRESS);
+
+        //Then
+        assertEquals(instances, ((Map<?, ?>) whitelistFilter.get(AQL.READ_ACCESS_BY_INVITATION)).keySet());
+        assertFalse(whitelistFilter.containsKey(AQL.READ_ACCESS_BY_GRANT_SET));
+        Mockito.verify(grants, Mockito.never()).materialize(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void testReadableSpacesDontMaterializeGrants() {
+        //Given
+        Set<UUID> instances = IntStream.range(0, 3).mapToObj(i -> UUID.randomUUID()).collect(Collectors.toSet());
+        PermissionGrantsRepository grants = Mockito.mock(PermissionGrantsRepository.class);
+        PermissionsController permissionsController = new PermissionsController(mockPermissionsWithExplicitInstances(instances), grants, 2);
+
+        //When
+        List<String> readableSpaces = permissionsController.readableSpaceCollections(Collections.emptySet(), null, DataStage.IN_PROGRESS);
+
+        //Then
+        assertEquals(List.of("canread"), readableSpaces);
+        Mockito.verifyNoInteractions(grants);
+    }
+
+    @Test
+    void testGrantSetIdIsIndependentOfOrder() {
+        //Given
+        List<UUID> instances = IntStream.range(0, 10).mapToObj(i -> UUID.randomUUID()).collect(Collectors.toList());
+        List<UUID> shuffled = new ArrayList<>(instances);
+        Collections.shuffle(shuffled);
+
+        //When
+        String id = PermissionGrantsRepository.getGrantSetId(instances);
+
+        //Then
+        assertEquals(id, PermissionGrantsRepository.getGrantSetId(shuffled));
+        assertNotEquals(id, PermissionGrantsRepository.getGrantSetId(instances.subList(1, 10)));
+    }
+}
@@ -30,6 +30,7 @@ import org.marmotgraph.commons.jsonld.NormalizedJsonLd;
 import org.marmotgraph.commons.model.*;
 import org.marmotgraph.commons.model.internal.spaces.Space;
 import org.marmotgraph.graphdb.commons.controller.ArangoRepositoryCommons;
+import org.marmotgraph.graphdb.queries.controller.MaterializedQueryController;
 import org.marmotgraph.test.factory.UserFactory;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -41,7 +42,7 @@ import java.util.UUID;
 public class TodoListProcessorUnitTest {
 
 
-    private final TodoListProcessor processor = Mockito.spy(new TodoListProcessor(Mockito.mock(ArangoRepositoryCommons.class), Mockito.mock(StructureSplitter.class), Mockito.mock(MainEventTracker.class), Mockito.mock(IdUtils.class), Mockito.mock(DataController.class), Mockito.mock(ReleasingController.class)));
+    private final TodoListProcessor processor = Mockito.spy(new TodoListProcessor(Mockito.mock(ArangoRepositoryCommons.class), Mockito.mock(StructureSplitter.class), Mockito.mock(MainEventTracker.class), Mockito.mock(IdUtils.class), Mockito.mock(DataController.class), Mockito.mock(ReleasingController.class), Mockito.mock(MaterializedQueryController.class)));
 
     @Test
     public void doProcessTodoList() {
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.instances.controller;
+
+import org.marmotgraph.commons.jsonld.JsonLdId;
+import org.marmotgraph.commons.jsonld.NormalizedJsonLd;
+import org.marmotgraph.commons.model.*;
+import org.marmotgraph.commons.model.external.types.SpaceTypeInformation;
+import org.marmotgraph.commons.model.external.types.TypeInformation;
+import org.marmotgraph.graphdb.AbstractGraphTest;
+import org.marmotgraph.test.TestCategories;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Ensures that the parallel execution by space of {@link DocumentsRepository#getDocumentsByTypes} returns the same results as the dynamic resolution.
+ */
+@Tag(TestCategories.API)
+class DocumentsRepositoryParallelTest extends AbstractGraphTest {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private static final String TYPE = "https://thesimpsons.com/FamilyMember";
+
+    @Autowired
+    DocumentsRepository documentsRepository;
+
+    private final DataStage stage = DataStage.IN_PROGRESS;
+
+    @Test
+    void parallelBySpaceReturnsSameResultsAsDynamic() {
+        //Given
+        Type type = createInstancesInSpaces(5, 20);
+
+        for (long from : Arrays.asList(0L, 7L, 45L, 95L)) {
+            PaginationParam paginationParam = new PaginationParam().setFrom(from).setSize(10L).setReturnTotalResults(true);
+
+            //When
+            Paginated<NormalizedJsonLd> dynamic = documentsRepository.getDocumentsByTypes(stage, type, null, null, null, paginationParam, null, false, false, null, false);
+            Paginated<NormalizedJsonLd> parallel = documentsRepository.getDocumentsByTypes(stage, type, null, null, null, paginationParam, null, false, false, null, true);
+
+            //Then
+            assertEquals(dynamic.getTotalResults(), parallel.getTotalResults());
+            assertEquals(dynamic.getSize(), parallel.getSize());
+            assertEquals(dynamic.getFrom(), parallel.getFrom());
+            assertEquals(ids(dynamic), ids(parallel), String.format("Different results for page starting at %d", from));
+        }
+    }
+
+    @Test
+    @Tag(TestCategories.LOAD)
+    void benchmarkParallelBySpace() {
+        //Given
+        Type type = createInstancesInSpaces(20, 500);
+        PaginationParam paginationParam = new PaginationParam().setFrom(0).setSize(50L).setReturnTotalResults(true);
+
+        //When
+        long dynamicTime = 0;
+        long parallelTime = 0;
+        Paginated<NormalizedJsonLd> dynamic = null;
+        Paginated<NormalizedJsonLd> parallel = null;
+        for (int run = 0; run < 10; run++) {
+            long start = System.currentTimeMillis();
+            dynamic = documentsRepository.getDocumentsByTypes(stage, type, null, null, null, paginationParam, null, false, false, null, false);
+            dynamicTime += System.currentTimeMillis() - start;
+            start = System.currentTimeMillis();
+            parallel = documentsRepository.getDocumentsByTypes(stage, type, null, null, null, paginationParam, null, false, false, null, true);
+            parallelTime += System.currentTimeMillis() - start;
+        }
+
+        //Then
+        assertEquals(ids(dynamic), ids(parallel));
+        logger.info("Dynamic: {} ms, parallel by space: {} ms (10 runs over 20 spaces with 500 instances each)", dynamicTime, parallelTime);
+    }
+
+    private Type createInstancesInSpaces(int numberOfSpaces, int instancesPerSpace) {
+        List<SpaceTypeInformation> spaces = new ArrayList<>();
+        for (int s = 0; s < numberOfSpaces; s++) {
+            SpaceName spaceName = new SpaceName("space" + s);
+            for (int i = 0; i < instancesPerSpace; i++) {
+                NormalizedJsonLd member = new NormalizedJsonLd();
+                member.put("@type", Collections.singletonList(TYPE));
+                // We produce some duplicate names across the spaces to make sure the ordering by key is applied too.
+                member.put("http://schema.org/name", String.format("Member %d", (i * 7 + s) % 50));
+                upsert(spaceName, member, stage);
+            }
+            SpaceTypeInformation spaceTypeInformation = new SpaceTypeInformation();
+            spaceTypeInformation.setSpace(spaceName.getName());
+            spaces.add(spaceTypeInformation);
+        }
+        TypeInformation typeInformation = new TypeInformation();
+        typeInformation.setIdentifier(TYPE);
+        typeInformation.setSpaces(spaces);
+        return Type.fromPayload(typeInformation);
+    }
+
+    private List<JsonLdId> ids(Paginated<NormalizedJsonLd> paginated) {
+        return paginated.getData().stream().map(NormalizedJsonLd::id).toList();
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.instances.utils;
+
+import org.marmotgraph.arango.commons.aqlbuilder.ArangoVocabulary;
+import org.marmotgraph.commons.jsonld.IndexedJsonLdDoc;
+import org.marmotgraph.commons.jsonld.NormalizedJsonLd;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SortedDocumentsMergerTest {
+
+    @Test
+    void mergeReturnsSameOrderAsSortingEverything() {
+        //Given
+        Random random = new Random(42);
+        List<NormalizedJsonLd> all = IntStream.range(0, 500).mapToObj(i -> doc(random.nextInt(10) == 0 ? null : "label" + random.nextInt(50), String.format("key%03d", i))).collect(Collectors.toList());
+        Map<Integer, List<NormalizedJsonLd>> partitions = all.stream().collect(Collectors.groupingBy(d -> Math.abs(d.get(ArangoVocabulary.KEY).hashCode()) % 7));
+        List<List<NormalizedJsonLd>> sortedPartitions = partitions.values().stream().map(p -> p.stream().sorted(SortedDocumentsMerger.LABEL_AND_KEY_ORDER).toList()).collect(Collectors.toList());
+        List<NormalizedJsonLd> expected = all.stream().sorted(SortedDocumentsMerger.LABEL_AND_KEY_ORDER).toList();
+
+        //When
+        List<NormalizedJsonLd> firstPage = SortedDocumentsMerger.merge(sortedPartitions, 0, 20);
+        List<NormalizedJsonLd> laterPage = SortedDocumentsMerger.merge(sortedPartitions, 130, 20);
+        List<NormalizedJsonLd> lastPage = SortedDocumentsMerger.merge(sortedPartitions, 490, 20);
+
+        //Then
+        assertEquals(expected.subList(0, 20), firstPage);
+        assertEquals(expected.subList(130, 150), laterPage);
+        assertEquals(expected.subList(490, 500), lastPage);
+    }
+
+    @Test
+    void mergeOrdersNullLabelsFirstAndFallsBackToKey() {
+        //Given
+        List<NormalizedJsonLd> first = Arrays.asList(doc(null, "b"), doc("Bart", "a"));
+        List<NormalizedJsonLd> second = Arrays.asList(doc(null, "a"), doc("bart", "c"), doc("Homer", "d"));
+
+        //When
+        List<NormalizedJsonLd> result = SortedDocumentsMerger.merge(Arrays.asList(first, second, Collections.emptyList()), 0, 10);
+
+        //Then
+        assertEquals(Arrays.asList("a", "b", "c", "a", "d"), result.stream().map(d -> d.get(ArangoVocabulary.KEY)).toList());
+    }
+
+    private static NormalizedJsonLd doc(String label, String key) {
+        NormalizedJsonLd doc = new NormalizedJsonLd();
+        doc.put(IndexedJsonLdDoc.LABEL, label);
+        doc.put(ArangoVocabulary.KEY, key);
+        return doc;
+    }
+}
@@ -31,14 +31,12 @@ import org.marmotgraph.commons.JsonAdapter;
 import org.marmotgraph.commons.jsonld.NormalizedJsonLd;
 import org.marmotgraph.graphdb.queries.model.spec.Specification;
 import org.marmotgraph.graphdb.queries.utils.DataQueryBuilder;
+import org.marmotgraph.graphdb.queries.utils.TraversalPlanner;
 import org.marmotgraph.test.JsonAdapter4Test;
 import org.marmotgraph.test.Simpsons;
 import org.junit.jupiter.api.Test;
 
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
+import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -190,4 +188,90 @@ public class DataQueryBuilderTest {
         assertEquals(expected, aqlQuery.getAql().build().getValue());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void buildPlannedQueryWithRequiredTraversal(){
+        //Given
+        NormalizedJsonLd query = jsonAdapter.fromJson(Simpsons.Queries.FAMILY_MEMBERS_WITH_REQUIRED_CHILDREN, NormalizedJsonLd.class);
+        Specification specification = new SpecificationInterpreter().readSpecification(query);
+        List<ArangoCollectionReference> existingCollections = Arrays.asList(ArangoCollectionReference.fromSpace(Simpsons.SPACE_NAME), new ArangoCollectionReference(new ArangoKey("http://schema.org/address").getValue(), true), new ArangoCollectionReference(new ArangoKey("http://schema.org/children").getValue(), true));
+
+        //When
+        AQLQuery aqlQuery = new DataQueryBuilder(specification, null, null, null, null, null, existingCollections, new TraversalPlanner(c -> 10L)).build();
+
+        //Then
+        String expected = """
+
+                FOR root_doc IN 1..1 OUTBOUND DOCUMENT(@@typeCollection, @typeId) @@typeRelation
+
+                FILTER root_doc != NULL
+
+                AND (IS_ARRAY(root_doc.`http://schema.org/givenName`) ? root_doc.`http://schema.org/givenName`[* FILTER LOWER(CURRENT) LIKE LOWER(@staticFilter3)] != [] : LOWER(root_doc.`http://schema.org/givenName`) LIKE LOWER(@staticFilter3))
+                LET schema_org_children_2 = UNIQUE(FLATTEN(FOR schema_org_children_2_doc\s
+                    IN 1..1 OUTBOUND root_doc `schema_org_children`
+                FILTER schema_org_children_2_doc != NULL
+
+                FILTER schema_org_children_2_doc.`http://schema.org/givenName` != NULL
+                RETURN DISTINCT schema_org_children_2_doc.`http://schema.org/givenName`
+                ))
+                FILTER root_doc != NULL
+
+                AND schema_org_children_2 !=null
+                AND schema_org_children_2 !=""
+                AND schema_org_children_2 !=[]
+                LET schema_org_streetaddress_1 = FIRST(UNIQUE(FLATTEN(FOR schema_org_streetaddress_1_doc\s
+                    IN 1..1 OUTBOUND root_doc `schema_org_address`
+                FILTER schema_org_streetaddress_1_doc != NULL
+
+                FILTER schema_org_streetaddress_1_doc.`http://schema.org/streetAddress` != NULL
+                RETURN DISTINCT schema_org_streetaddress_1_doc.`http://schema.org/streetAddress`
+                ))
+                )
+
+                RETURN {
+                   "http://schema.org/givenName": root_doc.`http://schema.org/givenName`,\s
+                   "http://schema.org/streetAddress": schema_org_streetaddress_1,\s
+                   "http://schema.org/children": schema_org_children_2
+                }""";
+        assertEquals(expected, aqlQuery.getAql().build().getValue());
+    }
+
+    @Test
+    public void plannedQueriesOnlyReorderTheUnplannedQuery(){
+        //Given
+        List<ArangoCollectionReference> existingCollections = Arrays.asList(ArangoCollectionReference.fromSpace(Simpsons.SPACE_NAME), new ArangoCollectionReference(new ArangoKey("http://schema.org/address").getValue(), true), new ArangoCollectionReference(new ArangoKey("http://schema.org/children").getValue(), true));
+        List<String> queries = Arrays.asList(Simpsons.Queries.FAMILY_NAMES_NORMALIZED, Simpsons.Queries.HOMER_WITH_EMBEDDED_TRAVERSAL, Simpsons.Queries.HOMER_WITH_PARTIALLY_RESOLVED_CHILDREN, Simpsons.Queries.MULTI_LEVEL_QUERY, Simpsons.Queries.MULTI_LEVEL_QUERY_WITH_STATIC_AND_NESTED_TYPE_FILTER, Simpsons.Queries.QUERY_DYNAMIC_FILTER_WITH_FALLBACK, Simpsons.Queries.FAMILY_MEMBERS_WITH_REQUIRED_CHILDREN);
+
+        for (String query : queries) {
+            Specification specification = new SpecificationInterpreter().readSpecification(jsonAdapter.fromJson(query, NormalizedJsonLd.class));
+
+            //When
+            AQLQuery unplanned = new DataQueryBuilder(specification, null, null, null, null, null, existingCollections).build();
+            AQLQuery planned = new DataQueryBuilder(specification, null, null, null, null, null, existingCollections, new TraversalPlanner(c -> c.contains("children") ? 1L : 100L)).build();
+
+            //Then
+            String unplannedAql = unplanned.getAql().build().getValue();
+            String plannedAql = planned.getAql().build().getValue();
+            assertEquals(unplanned.getBindVars(), planned.getBindVars(), query);
+            assertEquals(statements(unplannedAql), statements(plannedAql), query);
+            assertEquals(unplannedAql.substring(unplannedAql.lastIndexOf("RETURN {")), plannedAql.substring(plannedAql.lastIndexOf("RETURN {")), query);
+            if (!new TraversalPlanner(c -> 0L).isApplicable(specification.getProperties())) {
+                assertEquals(unplannedAql, plannedAql, query);
+            }
+        }
+    }
+
+    /**
+     * The planner only changes the order of the (traversal and filter) statements - it might repeat the null check of
+     * the root document before each filter though which is why we compare the distinct statements.
+     */
+    private static Set<String> statements(String aql) {
+        Set<String> statements = new HashSet<>();
+        for (String line : aql.split("\n")) {
+            if (!line.isBlank()) {
+                statements.add(line.trim());
+            }
+        }
+        return statements;
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.queries.controller;
+
+import com.arangodb.ArangoDatabase;
+import com.arangodb.entity.CollectionType;
+import org.marmotgraph.arango.commons.ArangoQueries;
+import org.marmotgraph.arango.commons.model.ArangoCollectionReference;
+import org.marmotgraph.arango.commons.model.ArangoDocumentReference;
+import org.marmotgraph.commons.api.Ids;
+import org.marmotgraph.commons.jsonld.NormalizedJsonLd;
+import org.marmotgraph.commons.model.DataStage;
+import org.marmotgraph.commons.model.IdWithAlternatives;
+import org.marmotgraph.graphdb.AbstractGraphTest;
+import org.marmotgraph.graphdb.commons.controller.ArangoDatabases;
+import org.marmotgraph.graphdb.queries.model.spec.Specification;
+import org.marmotgraph.graphdb.queries.utils.DataQueryBuilder;
+import org.marmotgraph.graphdb.queries.utils.TraversalPlanner;
+import org.marmotgraph.graphdb.structure.controller.StructureRepository;
+import org.marmotgraph.test.Simpsons;
+import org.marmotgraph.test.TestCategories;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ensures that the traversal planning of the {@link DataQueryBuilder} doesn't change the results of a query.
+ */
+@Tag(TestCategories.API)
+public class DataQueryPlanningTest extends AbstractGraphTest {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    ArangoDatabases arangoDatabases;
+
+    @Autowired
+    StructureRepository structureRepository;
+
+    @Autowired
+    SpecificationInterpreter specificationInterpreter;
+
+    @Autowired
+    Ids.Client ids;
+
+    private final DataStage stage = DataStage.IN_PROGRESS;
+
+    private static final List<String> SPECIFICATIONS = Arrays.asList(
+            Simpsons.Queries.FAMILY_NAMES_NORMALIZED,
+            Simpsons.Queries.HOMER_WITH_EMBEDDED_TRAVERSAL,
+            Simpsons.Queries.HOMER_WITH_PARTIALLY_RESOLVED_CHILDREN,
+            Simpsons.Queries.MULTI_LEVEL_QUERY,
+            Simpsons.Queries.MULTI_LEVEL_QUERY_WITH_STATIC_AND_NESTED_TYPE_FILTER,
+            Simpsons.Queries.QUERY_DYNAMIC_FILTER_WITH_FALLBACK,
+            Simpsons.Queries.FAMILY_MEMBERS_WITH_REQUIRED_CHILDREN
+    );
+
+    @Test
+    public void plannedQueriesReturnSameResults() {
+        //Given
+        upsertWithId(Simpsons.Characters.HOMER);
+        upsertWithId(Simpsons.Characters.MARGE);
+        upsertWithId(Simpsons.Characters.MAGGIE);
+        upsertWithId(Simpsons.Characters.LISA);
+
+        for (String query : SPECIFICATIONS) {
+            //When
+            List<NormalizedJsonLd> unplanned = execute(query, null);
+            List<NormalizedJsonLd> planned = execute(query, plannerFromStatistics());
+
+            //Then
+            assertEquals(unplanned, planned, String.format("The planned query returned a different result for %s", query));
+        }
+    }
+
+    @Test
+    @Tag(TestCategories.LOAD)
+    public void benchmarkPlannedQueryOnGeneratedGraph() {
+        //Given
+        int numberOfFamilies = 2000;
+        for (int i = 0; i < numberOfFamilies; i++) {
+            // Only every tenth family has a child - the required children traversal is therefore very selective.
+            String child = i % 10 == 0 ? String.format("http://simpsons/generated/child%d", i) : null;
+            if (child != null) {
+                upsertWithId(generatedMember(child, "Kid", null));
+            }
+            upsertWithId(generatedMember(String.format("http://simpsons/generated/parent%d", i), i % 2 == 0 ? "Marge" : "Homer", child));
+        }
+
+        //When
+        long unplannedTime = 0;
+        long plannedTime = 0;
+        List<NormalizedJsonLd> unplanned = null;
+        List<NormalizedJsonLd> planned = null;
+        for (int run = 0; run < 10; run++) {
+            long start = System.currentTimeMillis();
+            unplanned = execute(Simpsons.Queries.FAMILY_MEMBERS_WITH_REQUIRED_CHILDREN, null);
+            unplannedTime += System.currentTimeMillis() - start;
+            start = System.currentTimeMillis();
+            planned = execute(Simpsons.Queries.FAMILY_MEMBERS_WITH_REQUIRED_CHILDREN, plannerFromStatistics());
+            plannedTime += System.currentTimeMillis() - start;
+        }
+
+        //Then
+        assertEquals(unplanned, planned);
+        logger.info("Unplanned: {} ms, planned: {} ms (10 runs over {} families)", unplannedTime, plannedTime, numberOfFamilies);
+    }
+
+    private TraversalPlanner plannerFromStatistics() {
+        structureRepository.evictCollectionCountsCache();
+        return new TraversalPlanner(c -> structureRepository.getCollectionCount(stage, c));
+    }
+
+    private List<NormalizedJsonLd> execute(String query, TraversalPlanner traversalPlanner) {
+        ArangoDatabase database = arangoDatabases.getByStage(stage);
+        Specification specification = specificationInterpreter.readSpecification(jsonAdapter.fromJson(query, NormalizedJsonLd.class));
+        List<ArangoCollectionReference> existingCollections = database.getCollections().stream().map(c -> new ArangoCollectionReference(c.getName(), c.getType() == CollectionType.EDGES)).collect(Collectors.toList());
+        return ArangoQueries.queryDocuments(database, new DataQueryBuilder(specification, null, null, null, null, null, existingCollections, traversalPlanner).build(), null).getData();
+    }
+
+    private String generatedMember(String identifier, String givenName, String child) {
+        NormalizedJsonLd member = new NormalizedJsonLd();
+        member.put("http://schema.org/identifier", identifier);
+        member.put("@type", Collections.singletonList("https://thesimpsons.com/FamilyMember"));
+        member.put("http://schema.org/givenName", givenName);
+        if (child != null) {
+            member.put("http://schema.org/children", Collections.singletonList(Collections.singletonMap("@id", child)));
+        }
+        return jsonAdapter.toJson(member);
+    }
+
+    private void upsertWithId(String payload) {
+        NormalizedJsonLd document = jsonAdapter.fromJson(payload, NormalizedJsonLd.class);
+        ArangoDocumentReference documentId = upsert(Simpsons.SPACE_NAME, document, stage);
+        ids.createOrUpdateId(new IdWithAlternatives().setId(documentId.getDocumentId()).setSpace(Simpsons.SPACE_NAME.getName()).setAlternatives(document.identifiers()), stage);
+    }
+
+}
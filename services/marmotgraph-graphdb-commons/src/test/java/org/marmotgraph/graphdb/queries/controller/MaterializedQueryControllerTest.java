@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.queries.controller;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.marmotgraph.commons.jsonld.NormalizedJsonLd;
+import org.marmotgraph.commons.model.DataStage;
+import org.marmotgraph.commons.model.PaginatedStream;
+import org.marmotgraph.commons.model.PaginationParam;
+import org.marmotgraph.commons.models.UserWithRoles;
+import org.marmotgraph.commons.query.KgQuery;
+import org.marmotgraph.graphdb.AbstractGraphTest;
+import org.marmotgraph.graphdb.queries.model.MaterializedQuery;
+import org.marmotgraph.test.Simpsons;
+import org.marmotgraph.test.TestCategories;
+import org.marmotgraph.test.factory.UserFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag(TestCategories.API)
+class MaterializedQueryControllerTest extends AbstractGraphTest {
+
+    @Autowired
+    QueryController queryController;
+
+    @Autowired
+    MaterializedQueryController materializedQueryController;
+
+    private final DataStage stage = DataStage.IN_PROGRESS;
+    private final UserWithRoles userWithRoles = UserFactory.globalAdmin().getUserWithRoles();
+
+    private List<NormalizedJsonLd> execute(KgQuery query, PaginationParam paginationParam) {
+        PaginatedStream<NormalizedJsonLd> result = queryController.queryToStream(userWithRoles, query, paginationParam, Collections.emptyMap(), false).getStream();
+        return result.getStream().toList();
+    }
+
+    @Test
+    void materializeAndRefresh() {
+        //Given
+        upsert(Simpsons.SPACE_NAME, jsonAdapter.fromJson(Simpsons.Characters.HOMER, NormalizedJsonLd.class), stage);
+        upsert(Simpsons.SPACE_NAME, jsonAdapter.fromJson(Simpsons.Characters.MAGGIE, NormalizedJsonLd.class), stage);
+        UUID queryId = UUID.randomUUID();
+        NormalizedJsonLd payload = jsonAdapter.fromJson(Simpsons.Queries.FAMILY_NAMES_NORMALIZED, NormalizedJsonLd.class);
+        KgQuery dynamicQuery = new KgQuery(payload, stage);
+        KgQuery storedQuery = new KgQuery(payload, stage).setQueryId(queryId);
+        PaginationParam secondPage = new PaginationParam().setSize(1L).setFrom(1);
+
+        //When
+        MaterializedQuery materializedQuery = materializedQueryController.materialize(stage, queryId, payload).join();
+        List<NormalizedJsonLd> fromMaterialization = execute(storedQuery, secondPage);
+        List<NormalizedJsonLd> fromExecution = execute(dynamicQuery, secondPage);
+
+        upsert(Simpsons.SPACE_NAME, jsonAdapter.fromJson(Simpsons.Characters.LISA, NormalizedJsonLd.class), stage);
+        boolean staleAfterIngestion = materializedQueryController.getMaterializedQuery(stage, queryId).isStale();
+        materializedQueryController.refreshStaleQueries();
+
+        //Then
+        assertEquals(2, materializedQuery.getNumberOfResults());
+        assertEquals(fromExecution, fromMaterialization);
+        assertTrue(staleAfterIngestion);
+        assertEquals(3, materializedQueryController.getMaterializedQuery(stage, queryId).getNumberOfResults());
+        assertEquals(execute(dynamicQuery, null), execute(storedQuery, null));
+    }
+
+}
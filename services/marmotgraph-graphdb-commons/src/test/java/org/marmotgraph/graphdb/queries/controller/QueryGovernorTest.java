@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.queries.controller;
+
+import com.arangodb.entity.QueryEntity;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.marmotgraph.arango.commons.aqlbuilder.AQL;
+import org.marmotgraph.arango.commons.model.AQLQuery;
+import org.marmotgraph.commons.exception.ServiceException;
+import org.marmotgraph.commons.model.DataStage;
+import org.marmotgraph.commons.models.UserWithRoles;
+import org.marmotgraph.graphdb.commons.controller.ArangoDatabases;
+import org.marmotgraph.test.factory.UserFactory;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryGovernorTest {
+
+    private final UserWithRoles userWithRoles = UserFactory.globalAdmin().getUserWithRoles();
+
+    @Test
+    void resolveMaxRuntime() {
+        //Given
+        QueryGovernor restricted = new QueryGovernor(Mockito.mock(ArangoDatabases.class), 60.0, 3600, 1, 1);
+        QueryGovernor unrestricted = new QueryGovernor(Mockito.mock(ArangoDatabases.class), null, 3600, 1, 1);
+
+        //When
+        //Then
+        assertEquals(60.0, restricted.resolveMaxRuntime(null));
+        assertEquals(10.0, restricted.resolveMaxRuntime(10.0));
+        assertEquals(60.0, restricted.resolveMaxRuntime(120.0));
+        assertNull(unrestricted.resolveMaxRuntime(null));
+        assertEquals(120.0, unrestricted.resolveMaxRuntime(120.0));
+    }
+
+    @Test
+    void registerExceedingConcurrencyLimit() {
+        //Given
+        QueryGovernor queryGovernor = new QueryGovernor(Mockito.mock(ArangoDatabases.class), null, 3600, 2, 10);
+        queryGovernor.register(userWithRoles, DataStage.IN_PROGRESS, null);
+        QueryGovernor.Registration second = queryGovernor.register(userWithRoles, DataStage.IN_PROGRESS, null);
+
+        //When
+        ServiceException exception = assertThrows(ServiceException.class, () -> queryGovernor.register(userWithRoles, DataStage.IN_PROGRESS, null));
+        queryGovernor.release(second);
+        QueryGovernor.Registration third = queryGovernor.register(userWithRoles, DataStage.IN_PROGRESS, null);
+
+        //Then
+        assertEquals(429, exception.getStatusCode());
+        assertNotNull(third);
+    }
+
+    @Test
+    void apply() {
+        //Given
+        QueryGovernor queryGovernor = new QueryGovernor(Mockito.mock(ArangoDatabases.class), 30.0, 3600, 1, 1);
+        QueryGovernor.Registration registration = queryGovernor.register(userWithRoles, DataStage.IN_PROGRESS, null);
+        AQLQuery query = new AQLQuery(new AQL(), Collections.emptyMap());
+
+        //When
+        queryGovernor.apply(registration, query);
+
+        //Then
+        assertEquals(query.getAql().build().getValue(), registration.getQuery());
+        assertEquals(query.getBindVars(), registration.getBindVars());
+        assertEquals(30.0, query.getAql().getQueryOptions().getMaxRuntime());
+    }
+
+    @Test
+    void registrationsWithoutMaxRuntimeExpire() throws InterruptedException {
+        //Given
+        QueryGovernor queryGovernor = new QueryGovernor(Mockito.mock(ArangoDatabases.class), null, 0, 1, 1);
+        queryGovernor.register(userWithRoles, DataStage.IN_PROGRESS, null);
+        Thread.sleep(5);
+
+        //When
+        queryGovernor.killExpiredQueries();
+
+        //Then
+        assertTrue(queryGovernor.getRunningQueries().isEmpty());
+        assertNotNull(queryGovernor.register(userWithRoles, DataStage.IN_PROGRESS, null));
+    }
+
+    @Test
+    void releaseWithRequest() {
+        //Given
+        QueryGovernor queryGovernor = new QueryGovernor(Mockito.mock(ArangoDatabases.class), null, 3600, 1, 1);
+        QueryGovernor.Registration registration = queryGovernor.register(userWithRoles, DataStage.IN_PROGRESS, null);
+        RequestAttributes requestAttributes = Mockito.mock(RequestAttributes.class);
+        ArgumentCaptor<Runnable> callback = ArgumentCaptor.forClass(Runnable.class);
+        RequestContextHolder.setRequestAttributes(requestAttributes);
+
+        //When
+        try {
+            queryGovernor.releaseWithRequest(registration);
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+        Mockito.verify(requestAttributes).registerDestructionCallback(Mockito.anyString(), callback.capture(), Mockito.eq(RequestAttributes.SCOPE_REQUEST));
+        callback.getValue().run();
+
+        //Then
+        assertTrue(queryGovernor.getRunningQueries().isEmpty());
+    }
+
+    @Test
+    void findQueryInDatabaseByQueryAndBindVars() throws InterruptedException {
+        //Given
+        QueryGovernor queryGovernor = new QueryGovernor(Mockito.mock(ArangoDatabases.class), null, 3600, 10, 10);
+        AQL aql = new AQL().addLine(AQL.trust("FOR doc IN @@collection LIMIT @size RETURN doc"));
+        QueryGovernor.Registration first = queryGovernor.register(userWithRoles, DataStage.IN_PROGRESS, null);
+        queryGovernor.apply(first, new AQLQuery(aql, Map.<String, Object>of("@collection", "foo", "size", 10L)));
+        Thread.sleep(5);
+        QueryGovernor.Registration second = queryGovernor.register(userWithRoles, DataStage.IN_PROGRESS, null);
+        queryGovernor.apply(second, new AQLQuery(aql, Map.<String, Object>of("@collection", "foo", "size", 10L)));
+        String query = aql.build().getValue();
+        List<QueryEntity> queriesInDatabase = List.of(
+                queryEntity("3", query, Map.<String, Object>of("@collection", "bar", "size", 10), 1000),
+                queryEntity("2", query, Map.<String, Object>of("@collection", "foo", "size", 10), 2000),
+                queryEntity("1", query, Map.<String, Object>of("@collection", "foo", "size", 10), 1000));
+
+        //When
+        Optional<QueryEntity> firstInDatabase = queryGovernor.findQueryInDatabase(first, queriesInDatabase);
+        Optional<QueryEntity> secondInDatabase = queryGovernor.findQueryInDatabase(second, queriesInDatabase);
+
+        //Then
+        assertEquals("1", firstInDatabase.orElseThrow().getId());
+        assertEquals("2", secondInDatabase.orElseThrow().getId());
+    }
+
+    private static QueryEntity queryEntity(String id, String query, Map<String, Object> bindVars, long started) {
+        return new ObjectMapper().convertValue(Map.of("id", id, "query", query, "bindVars", bindVars, "started", started), QueryEntity.class);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.queries.utils;
+
+import org.junit.jupiter.api.Test;
+import org.marmotgraph.commons.JsonAdapter;
+import org.marmotgraph.commons.jsonld.NormalizedJsonLd;
+import org.marmotgraph.graphdb.queries.controller.SpecificationInterpreter;
+import org.marmotgraph.test.JsonAdapter4Test;
+import org.marmotgraph.test.Simpsons;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryDependenciesTest {
+
+    private final JsonAdapter jsonAdapter = new JsonAdapter4Test();
+
+    private QueryDependencies dependencies(String query) {
+        return QueryDependencies.fromSpecification(new SpecificationInterpreter().readSpecification(jsonAdapter.fromJson(query, NormalizedJsonLd.class)));
+    }
+
+    private NormalizedJsonLd instance(String type, String property) {
+        NormalizedJsonLd instance = new NormalizedJsonLd();
+        instance.addTypes(type);
+        instance.addProperty(property, "foo");
+        return instance;
+    }
+
+    @Test
+    void directPropertiesOnly() {
+        //Given
+        QueryDependencies dependencies = dependencies(Simpsons.Queries.FAMILY_NAMES_NORMALIZED);
+
+        //When
+        //Then
+        assertEquals(Collections.singleton("https://thesimpsons.com/FamilyMember"), dependencies.getTypes());
+        assertFalse(dependencies.hasUnrestrictedTraversals());
+        assertFalse(dependencies.isParameterized());
+        assertTrue(dependencies.isAffectedBy(instance("https://thesimpsons.com/FamilyMember", "http://schema.org/givenName")));
+        assertFalse(dependencies.isAffectedBy(instance("http://schema.org/PostalAddress", "http://schema.org/givenName")));
+    }
+
+    @Test
+    void typeRestrictedTraversal() {
+        //Given
+        QueryDependencies dependencies = dependencies(Simpsons.Queries.HOMER_WITH_EMBEDDED_TRAVERSAL);
+
+        //When
+        //Then
+        assertEquals(Set.of("https://thesimpsons.com/FamilyMember", "http://schema.org/PostalAddress"), dependencies.getTypes());
+        assertFalse(dependencies.hasUnrestrictedTraversals());
+        assertTrue(dependencies.isAffectedBy(instance("http://schema.org/PostalAddress", "http://schema.org/streetAddress")));
+        assertFalse(dependencies.isAffectedBy(instance("http://schema.org/Place", "http://schema.org/streetAddress")));
+    }
+
+    @Test
+    void unrestrictedTraversal() {
+        //Given
+        QueryDependencies dependencies = dependencies(Simpsons.Queries.FAMILY_MEMBERS_WITH_REQUIRED_CHILDREN);
+
+        //When
+        //Then
+        assertTrue(dependencies.hasUnrestrictedTraversals());
+        assertTrue(dependencies.getProperties().containsAll(Set.of("http://schema.org/address", "http://schema.org/streetAddress", "http://schema.org/children")));
+        assertTrue(dependencies.isAffectedBy(instance("http://schema.org/Place", "http://schema.org/streetAddress")));
+        assertFalse(dependencies.isAffectedBy(instance("http://schema.org/Place", "http://schema.org/name")));
+    }
+
+    @Test
+    void parameterizedFilter() {
+        //Given
+        QueryDependencies dependencies = dependencies(Simpsons.Queries.QUERY_DYNAMIC_FILTER);
+
+        //When
+        //Then
+        assertTrue(dependencies.isParameterized());
+    }
+}
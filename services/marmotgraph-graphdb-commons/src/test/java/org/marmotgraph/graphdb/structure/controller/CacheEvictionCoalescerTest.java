@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.structure.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.marmotgraph.commons.tracing.InMemorySpanRecorder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheEvictionCoalescerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void requestsForSameKeyAreMerged() {
+        //Given
+        CacheEvictionCoalescer<String> coalescer = new CacheEvictionCoalescer<>("test", meterRegistry);
+
+        //When
+        for (int i = 0; i < 100; i++) {
+            coalescer.request("space", 1000 + i, false);
+        }
+        coalescer.request("otherSpace", 1000, true);
+
+        //Then
+        assertEquals(2, coalescer.getPendingCount());
+        final Map<String, Boolean> due = new HashMap<>();
+        coalescer.executeDue(1000, due::put);
+        assertEquals(Map.of("space", false, "otherSpace", true), due);
+        assertEquals(0, coalescer.getPendingCount());
+        assertEquals(101, meterRegistry.get("marmotgraph.cache.eviction.requested").tag("cache", "test").counter().count());
+        assertEquals(2, meterRegistry.get("marmotgraph.cache.eviction.executed").tag("cache", "test").counter().count());
+        assertEquals(1 - 2 / 101.0, meterRegistry.get("marmotgraph.cache.eviction.coalescing.ratio").tag("cache", "test").gauge().value(), 0.0001);
+    }
+
+    @Test
+    void evictionsAreOnlyExecutedWhenDue() {
+        //Given
+        CacheEvictionCoalescer<String> coalescer = new CacheEvictionCoalescer<>("test", meterRegistry);
+        coalescer.request("space", 2000, false);
+        final Map<String, Boolean> notYetDue = new HashMap<>();
+        final Map<String, Boolean> due = new HashMap<>();
+
+        //When
+        coalescer.executeDue(1999, notYetDue::put);
+        coalescer.executeDue(2000, due::put);
+
+        //Then
+        assertTrue(notYetDue.isEmpty());
+        assertEquals(Map.of("space", false), due);
+    }
+
+    @Test
+    void pendingEvictionsAreExecutedBeforeTheyAreDueButRefreshesAreKept() {
+        //Given
+        CacheEvictionCoalescer<String> coalescer = new CacheEvictionCoalescer<>("test", meterRegistry);
+        coalescer.request("space", 2000, false);
+        coalescer.request("otherSpace", 2000, false);
+        coalescer.request("deferredSpace", 2000, true);
+        Map<String, Boolean> executed = new HashMap<>();
+
+        //When
+        final int numberOfEvictions = coalescer.executePending(k -> !k.equals("otherSpace"), executed::put);
+
+        //Then
+        assertEquals(1, numberOfEvictions);
+        assertEquals(Map.of("space", false), executed);
+        assertEquals(2, coalescer.getPendingCount());
+    }
+
+    @Test
+    void immediateEvictionsAreNotCoalesced() {
+        //Given
+        CacheEvictionCoalescer<String> coalescer = new CacheEvictionCoalescer<>("test", meterRegistry);
+
+        //When
+        coalescer.executedImmediately();
+        coalescer.executedImmediately();
+
+        //Then
+        assertEquals(0, coalescer.getCoalescingRatio());
+        assertEquals(2, meterRegistry.get("marmotgraph.cache.eviction.executed").tag("cache", "test").counter().count());
+    }
+
+    @Test
+    void deferredEvictionContinuesTheTraceOfTheRequest() {
+        //Given
+        InMemorySpanRecorder spanRecorder = new InMemorySpanRecorder();
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(spanRecorder);
+        CacheEvictionCoalescer<String> coalescer = new CacheEvictionCoalescer<>("test", meterRegistry, observationRegistry);
+        Observation write = Observation.start("write", observationRegistry);
+        try (Observation.Scope ignored = write.openScope()) {
+            coalescer.request("space", 1000, true);
+        }
+        write.stop();
+        //The request is gone by the time the eviction is executed - only the coalescer keeps its observation
+        write = null;
+        System.gc();
+        Map<String, Boolean> executed = new HashMap<>();
+
+        //When
+        final int numberOfEvictions = coalescer.executeDue(1000, executed::put);
+
+        //Then
+        assertEquals(1, numberOfEvictions);
+        assertEquals(Map.of("space", true), executed);
+        InMemorySpanRecorder.RecordedSpan writeSpan = spanRecorder.getSpans("write").get(0);
+        InMemorySpanRecorder.RecordedSpan evictionSpan = spanRecorder.getSpans("marmotgraph.cache.eviction").get(0);
+        assertEquals(writeSpan.getSpanId(), evictionSpan.getParentSpanId());
+        assertEquals(writeSpan.getTraceId(), evictionSpan.getTraceId());
+        assertEquals("test", evictionSpan.getTags().get("cache"));
+        assertEquals("write", evictionSpan.getTags().get("origin"));
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.structure.controller;
+
+import org.junit.jupiter.api.Test;
+import org.marmotgraph.commons.model.SpaceName;
+import org.marmotgraph.commons.model.Type;
+import org.marmotgraph.commons.model.external.types.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetaDataSnapshotTest {
+
+    private static final String PERSON = "https://schema.org/Person";
+    private static final String ORGANIZATION = "https://schema.org/Organization";
+    private static final String AFFILIATION = "https://schema.org/affiliation";
+    private static final SpaceName SPACE = new SpaceName("neuroscience");
+    private static final SpaceName PRIVATE_SPACE = new SpaceName("private-123");
+
+    private static TypeInformation typeInSpace(SpaceName space, String type, int occurrences, String targetSpace) {
+        TypeInformation typeInformation = new TypeInformation();
+        typeInformation.setIdentifier(type);
+        typeInformation.setName(Type.labelFromName(type));
+        SpaceTypeInformation spaceTypeInformation = new SpaceTypeInformation();
+        spaceTypeInformation.setSpace(space.getName());
+        spaceTypeInformation.setOccurrences(occurrences);
+        Property property = new Property();
+        property.setIdentifier(AFFILIATION);
+        property.setOccurrences(occurrences);
+        TargetType targetType = new TargetType();
+        targetType.setType(ORGANIZATION);
+        targetType.setOccurrences(occurrences);
+        SpaceReference spaceReference = new SpaceReference();
+        spaceReference.setSpace(targetSpace);
+        spaceReference.setOccurrences(occurrences);
+        targetType.setSpaces(new ArrayList<>(List.of(spaceReference)));
+        property.setTargetTypes(new ArrayList<>(List.of(targetType)));
+        spaceTypeInformation.setProperties(new ArrayList<>(List.of(property)));
+        typeInformation.setSpaces(new ArrayList<>(List.of(spaceTypeInformation)));
+        return typeInformation;
+    }
+
+    private static MetaDataSnapshot snapshot() {
+        Map<SpaceName, Map<String, TypeInformation>> typeInformationBySpace = new HashMap<>();
+        typeInformationBySpace.put(SPACE, Map.of(PERSON, typeInSpace(SPACE, PERSON, 5, PRIVATE_SPACE.getName()), ORGANIZATION, typeInSpace(SPACE, ORGANIZATION, 2, SPACE.getName())));
+        typeInformationBySpace.put(PRIVATE_SPACE, Map.of(PERSON, typeInSpace(PRIVATE_SPACE, PERSON, 1, SPACE.getName())));
+        return MetaDataSnapshot.of(1, List.of("affiliation"), typeInformationBySpace);
+    }
+
+    @Test
+    void copyIntoMergesSpacesOfSameType() {
+        //Given
+        MetaDataSnapshot snapshot = snapshot();
+        Map<String, TypeInformation> typeInformation = new ConcurrentHashMap<>();
+        Map<String, List<SpaceTypeInformation>> lookup = new ConcurrentHashMap<>();
+
+        //When
+        snapshot.copyInto(SPACE, null, false, true, null, typeInformation, lookup);
+        snapshot.copyInto(PRIVATE_SPACE, null, false, true, null, typeInformation, lookup);
+
+        //Then
+        assertEquals(Set.of(PERSON, ORGANIZATION), typeInformation.keySet());
+        final List<SpaceTypeInformation> personSpaces = typeInformation.get(PERSON).getSpaces();
+        assertEquals(2, personSpaces.size());
+        assertEquals(Set.of(SPACE.getName(), PRIVATE_SPACE.getName()), new HashSet<>(personSpaces.stream().map(SpaceTypeInformation::getSpace).toList()));
+        assertEquals(Type.labelFromName(PERSON), typeInformation.get(PERSON).getName());
+    }
+
+    @Test
+    void copyIntoTranslatesPrivateSpaceAndRestrictsTypes() {
+        //Given
+        MetaDataSnapshot snapshot = snapshot();
+        Map<String, TypeInformation> typeInformation = new ConcurrentHashMap<>();
+        Map<String, List<SpaceTypeInformation>> lookup = new ConcurrentHashMap<>();
+
+        //When
+        snapshot.copyInto(SPACE, List.of(PERSON), false, true, PRIVATE_SPACE, typeInformation, lookup);
+        snapshot.copyInto(PRIVATE_SPACE, List.of(PERSON), false, false, PRIVATE_SPACE, typeInformation, lookup);
+
+        //Then
+        assertEquals(Set.of(PERSON), typeInformation.keySet());
+        final List<SpaceTypeInformation> spaces = lookup.get(PERSON);
+        final SpaceTypeInformation inSpace = spaces.stream().filter(s -> s.getSpace().equals(SPACE.getName())).findFirst().orElseThrow();
+        assertEquals(SpaceName.PRIVATE_SPACE, inSpace.getProperties().get(0).getTargetTypes().get(0).getSpaces().get(0).getSpace());
+        final SpaceTypeInformation inPrivateSpace = spaces.stream().filter(s -> s.getSpace().equals(SpaceName.PRIVATE_SPACE)).findFirst().orElseThrow();
+        assertNull(inPrivateSpace.getProperties());
+    }
+
+    @Test
+    void copiesAreIndependentOfSnapshot() {
+        //Given
+        MetaDataSnapshot snapshot = snapshot();
+        Map<String, TypeInformation> typeInformation = new ConcurrentHashMap<>();
+        snapshot.copyInto(SPACE, null, false, true, PRIVATE_SPACE, typeInformation, new ConcurrentHashMap<>());
+
+        //When
+        final Property property = typeInformation.get(PERSON).getSpaces().get(0).getProperties().get(0);
+        property.setOccurrences(100);
+        property.getTargetTypes().get(0).getSpaces().get(0).setSpace("changed");
+        typeInformation.get(PERSON).setOccurrences(100);
+        Map<String, TypeInformation> secondCopy = new ConcurrentHashMap<>();
+        snapshot.copyInto(SPACE, null, false, true, null, secondCopy, new ConcurrentHashMap<>());
+
+        //Then
+        final Property originalProperty = secondCopy.get(PERSON).getSpaces().get(0).getProperties().get(0);
+        assertEquals(5, originalProperty.getOccurrences());
+        assertEquals(PRIVATE_SPACE.getName(), originalProperty.getTargetTypes().get(0).getSpaces().get(0).getSpace());
+        assertNull(secondCopy.get(PERSON).getOccurrences());
+    }
+
+    @Test
+    void updateReplacesChangedSpacesOnly() {
+        //Given
+        MetaDataSnapshot snapshot = snapshot();
+        SpaceName newSpace = new SpaceName("new");
+
+        //When
+        MetaDataSnapshot updated = snapshot.update(2, List.of(SPACE, newSpace), Map.of(SPACE, Map.of(PERSON, typeInSpace(SPACE, PERSON, 7, SPACE.getName())), newSpace, Map.of(ORGANIZATION, typeInSpace(newSpace, ORGANIZATION, 1, SPACE.getName()))));
+
+        //Then
+        assertEquals(2, updated.getVersion());
+        assertEquals(snapshot.getAllRelevantEdges(), updated.getAllRelevantEdges());
+        assertTrue(updated.contains(newSpace));
+        assertFalse(updated.contains(PRIVATE_SPACE), "Spaces which don't exist anymore are dropped");
+        Map<String, TypeInformation> typeInformation = new ConcurrentHashMap<>();
+        updated.copyInto(SPACE, null, false, true, null, typeInformation, new ConcurrentHashMap<>());
+        assertEquals(Set.of(PERSON), typeInformation.keySet());
+        assertEquals(7, typeInformation.get(PERSON).getSpaces().get(0).getOccurrences());
+        Map<String, TypeInformation> original = new ConcurrentHashMap<>();
+        snapshot.copyInto(SPACE, null, false, true, null, original, new ConcurrentHashMap<>());
+        assertEquals(Set.of(PERSON, ORGANIZATION), original.keySet());
+    }
+}
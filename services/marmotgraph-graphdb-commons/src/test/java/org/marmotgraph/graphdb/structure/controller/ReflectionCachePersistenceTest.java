@@ -0,0 +1,238 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.structure.controller;
+
+import org.junit.jupiter.api.Test;
+import org.marmotgraph.arango.commons.model.ArangoCollectionReference;
+import org.marmotgraph.commons.cache.CacheConstant;
+import org.marmotgraph.commons.model.DataStage;
+import org.marmotgraph.commons.model.SpaceName;
+import org.marmotgraph.graphdb.commons.controller.ArangoDatabases;
+import org.marmotgraph.graphdb.structure.model.PropertyOfTypeInSpaceReflection;
+import org.marmotgraph.graphdb.structure.model.TargetTypeReflection;
+import org.marmotgraph.graphdb.structure.model.TypeWithInstanceCountReflection;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.interceptor.SimpleKey;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class ReflectionCachePersistenceTest {
+
+    private static final String PERSON = "https://schema.org/Person";
+    private static final String AFFILIATION = "https://schema.org/affiliation";
+    private static final SpaceName SPACE = new SpaceName("neuroscience");
+    private static final SpaceName TARGET_SPACE = new SpaceName("organizations");
+    private static final DataStage STAGE = DataStage.IN_PROGRESS;
+    private static final Set<String> COLLECTIONS = Set.of("neuroscience");
+
+    private final CacheManager cacheManager = new ConcurrentMapCacheManager(CacheConstant.CACHE_KEYS_REFLECTED_SPACES, CacheConstant.CACHE_KEYS_TYPES_IN_SPACE, CacheConstant.CACHE_KEYS_PROPERTIES_OF_TYPE_IN_SPACE, CacheConstant.CACHE_KEYS_TARGET_TYPES);
+    private final ReflectionCachePersistence persistence = new ReflectionCachePersistence(mock(ArangoDatabases.class), cacheManager, true);
+
+    private void populateCaches() {
+        populateCaches("1");
+    }
+
+    /**
+     * Populates the caches the same way as the reflection does - with the given revision of all involved collections read upfront.
+     */
+    private void populateCaches(String revision) {
+        TypeWithInstanceCountReflection type = new TypeWithInstanceCountReflection();
+        type.setName(PERSON);
+        type.setOccurrences(3);
+        PropertyOfTypeInSpaceReflection property = new PropertyOfTypeInSpaceReflection();
+        property.setName(AFFILIATION);
+        property.setOccurrences(2);
+        TargetTypeReflection targetType = new TargetTypeReflection();
+        targetType.setName(PERSON);
+        targetType.setSpace(TARGET_SPACE.getName());
+        targetType.setOccurrences(2);
+        cacheManager.getCache(CacheConstant.CACHE_KEYS_REFLECTED_SPACES).put(STAGE, List.of(SPACE));
+        final String spaceCollection = ArangoCollectionReference.fromSpace(SPACE).getCollectionName();
+        final String edgeCollection = new ArangoCollectionReference(AFFILIATION, true).getCollectionName();
+        final String targetSpaceCollection = ArangoCollectionReference.fromSpace(TARGET_SPACE).getCollectionName();
+        cache(CacheConstant.CACHE_KEYS_TYPES_IN_SPACE, new SimpleKey(STAGE, SPACE), List.of(type), Map.of(spaceCollection, revision));
+        cache(CacheConstant.CACHE_KEYS_PROPERTIES_OF_TYPE_IN_SPACE, new SimpleKey(STAGE, SPACE, PERSON), List.of(property), Map.of(spaceCollection, revision));
+        cache(CacheConstant.CACHE_KEYS_TARGET_TYPES, new SimpleKey(STAGE, SPACE, PERSON, AFFILIATION), List.of(targetType), Map.of(spaceCollection, revision, edgeCollection, revision, targetSpaceCollection, revision));
+    }
+
+    private void cache(String cache, Object key, Object value, Map<String, String> revisions) {
+        cacheManager.getCache(cache).put(key, value);
+        persistence.registerReflection(STAGE, cache, key, value, revisions);
+    }
+
+    private void clearCaches() {
+        cacheManager.getCacheNames().forEach(c -> cacheManager.getCache(c).clear());
+    }
+
+    private Object cached(String cache, Object key) {
+        final var valueWrapper = cacheManager.getCache(cache).get(key);
+        return valueWrapper != null ? valueWrapper.get() : null;
+    }
+
+    @Test
+    void restoresUnchangedReflections() {
+        //Given
+        populateCaches();
+        final List<ReflectionCachePersistence.PersistedReflection> persisted = persistence.collectCachedReflections(STAGE, COLLECTIONS);
+        clearCaches();
+
+        //When
+        final int restored = persistence.restoreReflections(STAGE, persisted, c -> "1", COLLECTIONS);
+
+        //Then
+        assertEquals(4, restored);
+        assertEquals(List.of(SPACE), cached(CacheConstant.CACHE_KEYS_REFLECTED_SPACES, STAGE));
+        assertNotNull(cached(CacheConstant.CACHE_KEYS_TYPES_IN_SPACE, new SimpleKey(STAGE, SPACE)));
+        assertNotNull(cached(CacheConstant.CACHE_KEYS_PROPERTIES_OF_TYPE_IN_SPACE, new SimpleKey(STAGE, SPACE, PERSON)));
+        assertNotNull(cached(CacheConstant.CACHE_KEYS_TARGET_TYPES, new SimpleKey(STAGE, SPACE, PERSON, AFFILIATION)));
+    }
+
+    @Test
+    void skipsReflectionsOfChangedCollections() {
+        //Given
+        populateCaches();
+        final List<ReflectionCachePersistence.PersistedReflection> persisted = persistence.collectCachedReflections(STAGE, COLLECTIONS);
+        clearCaches();
+
+        //When
+        final int restored = persistence.restoreReflections(STAGE, persisted, c -> c.equals("neuroscience") ? "1" : "2", Set.of("neuroscience", "newspace"));
+
+        //Then
+        assertEquals(2, restored);
+        assertNull(cached(CacheConstant.CACHE_KEYS_REFLECTED_SPACES, STAGE));
+        assertNotNull(cached(CacheConstant.CACHE_KEYS_TYPES_IN_SPACE, new SimpleKey(STAGE, SPACE)));
+        assertNull(cached(CacheConstant.CACHE_KEYS_TARGET_TYPES, new SimpleKey(STAGE, SPACE, PERSON, AFFILIATION)));
+    }
+
+    @Test
+    void onlyPersistsCachedReflections() {
+        //Given
+        cacheManager.getCache(CacheConstant.CACHE_KEYS_REFLECTED_SPACES).put(STAGE, List.of(SPACE));
+
+        //When
+        final List<ReflectionCachePersistence.PersistedReflection> persisted = persistence.collectCachedReflections(STAGE, COLLECTIONS);
+
+        //Then
+        assertEquals(1, persisted.size());
+        assertEquals(ReflectionCachePersistence.KIND_SPACES, persisted.get(0).getKind());
+    }
+
+    @Test
+    void skipsTargetTypesOfChangedTargetSpaces() {
+        //Given
+        populateCaches();
+        final List<ReflectionCachePersistence.PersistedReflection> persisted = persistence.collectCachedReflections(STAGE, COLLECTIONS);
+        clearCaches();
+        final String targetSpaceCollection = ArangoCollectionReference.fromSpace(TARGET_SPACE).getCollectionName();
+
+        //When
+        final int restored = persistence.restoreReflections(STAGE, persisted, c -> c.equals(targetSpaceCollection) ? "2" : "1", COLLECTIONS);
+
+        //Then
+        assertEquals(3, restored);
+        assertNotNull(cached(CacheConstant.CACHE_KEYS_PROPERTIES_OF_TYPE_IN_SPACE, new SimpleKey(STAGE, SPACE, PERSON)));
+        assertNull(cached(CacheConstant.CACHE_KEYS_TARGET_TYPES, new SimpleKey(STAGE, SPACE, PERSON, AFFILIATION)));
+    }
+
+    @Test
+    void validationEvictsRestoredReflectionsOfChangedCollections() {
+        //Given
+        populateCaches();
+        final List<ReflectionCachePersistence.PersistedReflection> persisted = persistence.collectCachedReflections(STAGE, COLLECTIONS);
+        clearCaches();
+        persistence.restoreReflections(STAGE, persisted, c -> "1", COLLECTIONS);
+        //A reflection which has replaced the restored entry is kept up to date by the regular eviction
+        cacheManager.getCache(CacheConstant.CACHE_KEYS_PROPERTIES_OF_TYPE_IN_SPACE).put(new SimpleKey(STAGE, SPACE, PERSON), List.of());
+        final String spaceCollection = ArangoCollectionReference.fromSpace(SPACE).getCollectionName();
+
+        //When
+        final Set<SpaceName> unchanged = persistence.validateRestoredReflections(STAGE, c -> "1", COLLECTIONS);
+        final Set<SpaceName> invalidated = persistence.validateRestoredReflections(STAGE, c -> c.equals(spaceCollection) ? "2" : "1", COLLECTIONS);
+
+        //Then
+        assertTrue(unchanged.isEmpty());
+        assertEquals(Set.of(SPACE), invalidated);
+        assertNull(cached(CacheConstant.CACHE_KEYS_TYPES_IN_SPACE, new SimpleKey(STAGE, SPACE)));
+        assertNull(cached(CacheConstant.CACHE_KEYS_TARGET_TYPES, new SimpleKey(STAGE, SPACE, PERSON, AFFILIATION)));
+        assertEquals(List.of(), cached(CacheConstant.CACHE_KEYS_PROPERTIES_OF_TYPE_IN_SPACE, new SimpleKey(STAGE, SPACE, PERSON)));
+        assertEquals(List.of(SPACE), cached(CacheConstant.CACHE_KEYS_REFLECTED_SPACES, STAGE));
+    }
+
+    @Test
+    void persistsTheRevisionsReadBeforeTheReflection() {
+        //Given
+        populateCaches("1");
+        //The collections have changed after the reflection but the eviction hasn't happened yet
+        final List<ReflectionCachePersistence.PersistedReflection> persisted = persistence.collectCachedReflections(STAGE, COLLECTIONS);
+        clearCaches();
+
+        //When
+        final int restored = persistence.restoreReflections(STAGE, persisted, c -> "2", COLLECTIONS);
+
+        //Then
+        assertEquals(1, restored);
+        assertNull(cached(CacheConstant.CACHE_KEYS_TYPES_IN_SPACE, new SimpleKey(STAGE, SPACE)));
+        assertNull(cached(CacheConstant.CACHE_KEYS_PROPERTIES_OF_TYPE_IN_SPACE, new SimpleKey(STAGE, SPACE, PERSON)));
+    }
+
+    @Test
+    void skipsCachedValuesWithoutKnownRevisions() {
+        //Given
+        populateCaches();
+        //A value which has replaced the reflection without its revisions being known
+        cacheManager.getCache(CacheConstant.CACHE_KEYS_PROPERTIES_OF_TYPE_IN_SPACE).put(new SimpleKey(STAGE, SPACE, PERSON), List.of());
+
+        //When
+        final List<ReflectionCachePersistence.PersistedReflection> persisted = persistence.collectCachedReflections(STAGE, COLLECTIONS);
+
+        //Then
+        assertEquals(2, persisted.size());
+        assertTrue(persisted.get(1).getProperties().isEmpty());
+        assertTrue(persisted.get(1).getTargetTypes().isEmpty());
+        assertEquals("1", persisted.get(1).getRevision());
+    }
+
+    @Test
+    void restoredReflectionsArePersistedAgain() {
+        //Given
+        populateCaches();
+        final List<ReflectionCachePersistence.PersistedReflection> persisted = persistence.collectCachedReflections(STAGE, COLLECTIONS);
+        final ReflectionCachePersistence restarted = new ReflectionCachePersistence(mock(ArangoDatabases.class), cacheManager, true);
+        clearCaches();
+        restarted.restoreReflections(STAGE, persisted, c -> "1", COLLECTIONS);
+
+        //When
+        final List<ReflectionCachePersistence.PersistedReflection> persistedAgain = restarted.collectCachedReflections(STAGE, COLLECTIONS);
+
+        //Then
+        assertEquals(2, persistedAgain.size());
+        assertEquals(1, persistedAgain.get(1).getProperties().size());
+        assertEquals(1, persistedAgain.get(1).getTargetTypes().size());
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ * Copyright 2021 - 2024 EBRAINS AISBL
+ * Copyright 2024 - 2025 ETH Zurich
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package org.marmotgraph.graphdb.structure.controller;
+
+import com.arangodb.ArangoCollection;
+import com.arangodb.ArangoDatabase;
+import org.junit.jupiter.api.Test;
+import org.marmotgraph.commons.model.DataStage;
+import org.marmotgraph.graphdb.commons.controller.ArangoDatabases;
+import org.marmotgraph.graphdb.commons.controller.ArangoTransactionMetrics;
+import org.marmotgraph.graphdb.commons.controller.GraphDBIOExecutor;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class StructureStatisticsRepositoryTest {
+
+    private static final String PERSON = "https://schema.org/Person";
+    private static final String ORGANIZATION = "https://schema.org/Organization";
+    private static final String NAME = "https://schema.org/name";
+    private static final String AFFILIATION = "https://schema.org/affiliation";
+
+    private static StructureStatisticsRepository.Source document(String id, List<String> types, List<String> properties) {
+        StructureStatisticsRepository.Source source = new StructureStatisticsRepository.Source();
+        source.setId(id);
+        source.setCollection(id.split("/")[0]);
+        source.setTypes(types);
+        source.setProperties(properties);
+        return source;
+    }
+
+    private static StructureStatisticsRepository.Source edge(String id, String from, List<String> sourceTypes, String to, List<String> targetTypes) {
+        StructureStatisticsRepository.Source source = new StructureStatisticsRepository.Source();
+        source.setId(id);
+        source.setEdge(true);
+        source.setProperty(AFFILIATION);
+        source.setFrom(from);
+        source.setTo(to);
+        source.setSourceCollection(from.split("/")[0]);
+        source.setSourceTypes(sourceTypes);
+        source.setTargetSpace(to.split("/")[0]);
+        source.setTargetTypes(targetTypes);
+        return source;
+    }
+
+    private static Map<String, StructureStatisticsRepository.Source> snapshot(StructureStatisticsRepository.Source... sources) {
+        Map<String, StructureStatisticsRepository.Source> result = new HashMap<>();
+        Arrays.stream(sources).forEach(s -> result.put(s.getId(), s));
+        return result;
+    }
+
+    private static List<String> type(String space, String type) {
+        return Arrays.asList(StructureStatisticsRepository.KIND_TYPE, space, type, null, null, null);
+    }
+
+    private static List<String> property(String space, String type, String property) {
+        return Arrays.asList(StructureStatisticsRepository.KIND_PROPERTY, space, type, property, null, null);
+    }
+
+    private static List<String> targetType(String space, String type, String targetSpace, String targetType) {
+        return Arrays.asList(StructureStatisticsRepository.KIND_TARGET_TYPE, space, type, AFFILIATION, targetSpace, targetType);
+    }
+
+    @Test
+    void computeDeltaForCreation() {
+        //Given
+        Map<String, StructureStatisticsRepository.Source> after = snapshot(document("foo/a", List.of(PERSON), List.of(NAME, AFFILIATION)), edge("affiliation/e", "foo/a", List.of(PERSON), "bar/b", List.of(ORGANIZATION)));
+
+        //When
+        Map<List<String>, Long> delta = StructureStatisticsRepository.computeDelta(Collections.emptyMap(), after, Collections.emptyMap());
+
+        //Then
+        assertEquals(Map.of(type("foo", PERSON), 1L, property("foo", PERSON, NAME), 1L, property("foo", PERSON, AFFILIATION), 1L, targetType("foo", PERSON, "bar", ORGANIZATION), 1L), delta);
+    }
+
+    @Test
+    void computeDeltaForUpdateWithoutStructuralChange() {
+        //Given
+        Map<String, StructureStatisticsRepository.Source> before = snapshot(document("foo/a", List.of(PERSON), List.of(NAME)));
+        Map<String, StructureStatisticsRepository.Source> after = snapshot(document("foo/a", List.of(PERSON), List.of(NAME)));
+
+        //When
+        Map<List<String>, Long> delta = StructureStatisticsRepository.computeDelta(before, after, Collections.emptyMap());
+
+        //Then
+        assertTrue(delta.isEmpty());
+    }
+
+    @Test
+    void computeDeltaForDeletion() {
+        //Given
+        Map<String, StructureStatisticsRepository.Source> before = snapshot(document("foo/a", List.of(PERSON, ORGANIZATION), List.of(NAME)));
+
+        //When
+        Map<List<String>, Long> delta = StructureStatisticsRepository.computeDelta(before, Collections.emptyMap(), Collections.emptyMap());
+
+        //Then
+        assertEquals(Map.of(type("foo", PERSON), -1L, type("foo", ORGANIZATION), -1L, property("foo", PERSON, NAME), -1L, property("foo", ORGANIZATION, NAME), -1L), delta);
+    }
+
+    @Test
+    void computeDeltaForTypeChangeOfLinkedDocument() {
+        //Given
+        Map<String, StructureStatisticsRepository.Source> before = snapshot(document("bar/b", List.of(ORGANIZATION), List.of(NAME)));
+        Map<String, StructureStatisticsRepository.Source> after = snapshot(document("bar/b", List.of(PERSON), List.of(NAME)));
+        // The incoming edge is not part of the transaction - its target types are the ones after the transaction
+        Map<String, StructureStatisticsRepository.Source> adjacentEdges = snapshot(edge("affiliation/e", "foo/a", List.of(PERSON), "bar/b", List.of(PERSON)));
+
+        //When
+        Set<String> changedDocuments = StructureStatisticsRepository.findDocumentsWithChangedTypes(before, after);
+        Map<List<String>, Long> delta = StructureStatisticsRepository.computeDelta(before, after, adjacentEdges);
+
+        //Then
+        assertEquals(Set.of("bar/b"), changedDocuments);
+        assertEquals(Map.of(type("bar", ORGANIZATION), -1L, type("bar", PERSON), 1L, property("bar", ORGANIZATION, NAME), -1L, property("bar", PERSON, NAME), 1L,
+                targetType("foo", PERSON, "bar", ORGANIZATION), -1L, targetType("foo", PERSON, "bar", PERSON), 1L), delta);
+    }
+
+    @Test
+    void invalidateMarksStatisticsAsNotInitializedAndRequestsRebuild() {
+        //Given
+        ArangoDatabases databases = mock(ArangoDatabases.class);
+        ArangoDatabase db = mock(ArangoDatabase.class);
+        ArangoCollection collection = mock(ArangoCollection.class);
+        GraphDBIOExecutor ioExecutor = mock(GraphDBIOExecutor.class);
+        when(databases.getByStage(DataStage.IN_PROGRESS)).thenReturn(db);
+        when(db.collection(StructureStatisticsRepository.STATISTICS.getCollectionName())).thenReturn(collection);
+        when(collection.exists()).thenReturn(true);
+        when(collection.documentExists("initialized")).thenReturn(true);
+        StructureStatisticsRepository repository = new StructureStatisticsRepository(databases, mock(ArangoTransactionMetrics.class), ioExecutor);
+        assertTrue(repository.isInitialized(DataStage.IN_PROGRESS));
+
+        //When
+        repository.invalidate(DataStage.IN_PROGRESS);
+        repository.invalidate(DataStage.IN_PROGRESS);
+
+        //Then
+        verify(collection, times(2)).deleteDocument("initialized");
+        when(collection.documentExists("initialized")).thenReturn(false);
+        assertFalse(repository.isInitialized(DataStage.IN_PROGRESS));
+        // The second invalidation is coalesced with the pending rebuild
+        verify(ioExecutor, times(1)).submit(eq("rebuildStructureStatistics"), any());
+    }
+
+}
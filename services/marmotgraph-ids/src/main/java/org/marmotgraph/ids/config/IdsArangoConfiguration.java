@@ -25,6 +25,7 @@
 package org.marmotgraph.ids.config;
 
 import com.arangodb.ArangoDB;
+import org.marmotgraph.arango.commons.AqlQueryExecutor;
 import org.marmotgraph.arango.commons.model.ArangoDatabaseProxy;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -55,8 +56,8 @@ public class IdsArangoConfiguration {
 
     @Bean
     @Qualifier("idsDB")
-    public ArangoDatabaseProxy produceIdsDB(@Qualifier("arangoBuilderForIds") ArangoDB.Builder arangoDB) {
-        return new ArangoDatabaseProxy(arangoDB.build(), "kg1-ids");
+    public ArangoDatabaseProxy produceIdsDB(@Qualifier("arangoBuilderForIds") ArangoDB.Builder arangoDB, AqlQueryExecutor aqlQueryExecutor) {
+        return new ArangoDatabaseProxy(arangoDB.build(), "kg1-ids", aqlQueryExecutor);
     }
 
 }
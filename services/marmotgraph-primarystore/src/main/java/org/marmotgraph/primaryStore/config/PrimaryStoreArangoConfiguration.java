@@ -25,6 +25,7 @@
 package org.marmotgraph.primaryStore.config;
 
 import com.arangodb.ArangoDB;
+import org.marmotgraph.arango.commons.AqlQueryExecutor;
 import org.marmotgraph.arango.commons.model.ArangoDatabaseProxy;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -55,14 +56,14 @@ public class PrimaryStoreArangoConfiguration {
 
     @Bean
     @Qualifier("primaryStoreDB")
-    public ArangoDatabaseProxy producePrimaryStoreDb(@Qualifier("arangoBuilderForPrimaryStore") ArangoDB.Builder arangoDB) {
-        return new ArangoDatabaseProxy(arangoDB.build(), "kg1-events");
+    public ArangoDatabaseProxy producePrimaryStoreDb(@Qualifier("arangoBuilderForPrimaryStore") ArangoDB.Builder arangoDB, AqlQueryExecutor aqlQueryExecutor) {
+        return new ArangoDatabaseProxy(arangoDB.build(), "kg1-events", aqlQueryExecutor);
     }
 
     @Bean
     @Qualifier("userDB")
-    public ArangoDatabaseProxy produceUsersDb(@Qualifier("arangoBuilderForPrimaryStore") ArangoDB.Builder arangoDB) {
-        return new ArangoDatabaseProxy(arangoDB.build(), "kg1-users");
+    public ArangoDatabaseProxy produceUsersDb(@Qualifier("arangoBuilderForPrimaryStore") ArangoDB.Builder arangoDB, AqlQueryExecutor aqlQueryExecutor) {
+        return new ArangoDatabaseProxy(arangoDB.build(), "kg1-users", aqlQueryExecutor);
     }
 
 }
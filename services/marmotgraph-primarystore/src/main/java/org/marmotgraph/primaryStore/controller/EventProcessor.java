@@ -24,6 +24,8 @@
 
 package org.marmotgraph.primaryStore.controller;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.marmotgraph.commons.api.Indexing;
 import org.marmotgraph.commons.jsonld.InstanceId;
 import org.marmotgraph.commons.jsonld.NormalizedJsonLd;
@@ -42,6 +44,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Component
@@ -54,14 +57,32 @@ public class EventProcessor {
 
     private final InferenceProcessor inferenceProcessor;
 
+    private final MeterRegistry meterRegistry;
+
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    public EventProcessor(Indexing.Client indexing, EventRepository eventRepository, EventController eventController, InferenceProcessor inferenceProcessor) {
+    public EventProcessor(Indexing.Client indexing, EventRepository eventRepository, EventController eventController, InferenceProcessor inferenceProcessor, MeterRegistry meterRegistry) {
         this.indexing = indexing;
         this.eventRepository = eventRepository;
         this.eventController = eventController;
         this.inferenceProcessor = inferenceProcessor;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Measures a stage of the event pipeline ("marmotgraph.event.stage")
+     */
+    private <T> T timeStage(String stage, Event.Type type, Supplier<T> execution) {
+        final Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T result = execution.get();
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(Timer.builder("marmotgraph.event.stage").description("Execution time of the stages of the event pipeline").tag("stage", stage).tag("type", type != null ? type.name() : "unknown").tag("outcome", outcome).register(meterRegistry));
+        }
     }
 
     public void rerunEvents(SpaceName spaceName){
@@ -74,20 +95,24 @@ public class EventProcessor {
     }
 
     public Set<InstanceId> postEvent(Event event) {
-        PersistedEvent persistedEvent = eventController.persistEvent(event, event.getType().getStage());
+        PersistedEvent persistedEvent = timeStage("persist", event.getType(), () -> eventController.persistEvent(event, event.getType().getStage()));
         List<PersistedEvent> inferredEvents = processEvent(persistedEvent);
         return inferredEvents.stream().map(e -> new InstanceId(e.getDocumentId(), e.getSpaceName())).collect(Collectors.toSet());
     }
 
     public List<PersistedEvent> processEvent(PersistedEvent persistedEvent) {
         try {
-            indexing.indexEvent(persistedEvent);
+            timeStage("index", persistedEvent.getType(), () -> {
+                indexing.indexEvent(persistedEvent);
+                return null;
+            });
         } catch (Exception e) {
             eventRepository.recordFailedEvent(new FailedEvent(persistedEvent, e, ZonedDateTime.now()));
             throw e;
         }
         if (persistedEvent.getDataStage() == DataStage.NATIVE) {
-            return autoRelease(inferenceProcessor.triggerInference(persistedEvent.getSpaceName(), persistedEvent.getDocumentId()));
+            List<PersistedEvent> inferredEvents = timeStage("inference", persistedEvent.getType(), () -> inferenceProcessor.triggerInference(persistedEvent.getSpaceName(), persistedEvent.getDocumentId()));
+            return autoRelease(inferredEvents);
         }
         return Collections.emptyList();
     }
@@ -25,6 +25,7 @@
 package org.marmotgraph.tenants.config;
 
 import com.arangodb.ArangoDB;
+import org.marmotgraph.arango.commons.AqlQueryExecutor;
 import org.marmotgraph.arango.commons.model.ArangoDatabaseProxy;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -55,8 +56,8 @@ public class TenantArangoConfiguration {
 
     @Bean
     @Qualifier("tenantsDB")
-    public ArangoDatabaseProxy produceTenantsDB(@Qualifier("arangoBuilderForTenants") ArangoDB.Builder arangoDB) {
-        return new ArangoDatabaseProxy(arangoDB.build(), "kg1-tenants");
+    public ArangoDatabaseProxy produceTenantsDB(@Qualifier("arangoBuilderForTenants") ArangoDB.Builder arangoDB, AqlQueryExecutor aqlQueryExecutor) {
+        return new ArangoDatabaseProxy(arangoDB.build(), "kg1-tenants", aqlQueryExecutor);
     }
 
 }